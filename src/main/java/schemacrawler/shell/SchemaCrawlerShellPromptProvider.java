@@ -28,12 +28,15 @@ http://www.gnu.org/licenses/
 package schemacrawler.shell;
 
 
+import java.util.Optional;
+
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.shell.jline.PromptProvider;
 
+import schemacrawler.shell.jobs.Job;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 
 @Configurable
@@ -66,7 +69,31 @@ public class SchemaCrawlerShellPromptProvider
       foregroundColor = AttributedStyle.WHITE;
     }
 
-    return new AttributedString("schemacrawler> ",
+    final String prompt;
+    final Optional<Job> runningJob = state == null? Optional.empty()
+                                                  : state.getJobRegistry()
+                                                    .getRunningJob();
+    if (runningJob.isPresent())
+    {
+      final Job job = runningJob.get();
+      final String progress = job.getProgress();
+      if (progress.isEmpty())
+      {
+        prompt = String.format("schemacrawler [job %d]> ", job.getId());
+      }
+      else
+      {
+        prompt = String.format("schemacrawler [job %d: %s]> ",
+                               job.getId(),
+                               progress);
+      }
+    }
+    else
+    {
+      prompt = "schemacrawler> ";
+    }
+
+    return new AttributedString(prompt,
                                 AttributedStyle.DEFAULT.bold()
                                   .foreground(foregroundColor));
   }
@@ -0,0 +1,411 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static sf.util.Utility.isBlank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.schemacrawler.SchemaRetrievalOptions;
+import sf.util.ObjectToString;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * On-disk cache of serialized catalogs. Catalogs are keyed by a hash of
+ * the connection and the options used to crawl them, and are written
+ * to a temporary file which is atomically moved into place, so that
+ * concurrent writers and readers never see a partially written catalog.
+ */
+public final class CatalogCache
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogCache.class.getName());
+
+  private static final String CATALOG_EXTENSION = ".catalog.gz";
+  private static final String DESCRIPTION_EXTENSION = ".properties";
+
+  /**
+   * Computes the cache key for a catalog. Object identity hash codes in
+   * the string representation of the options are ignored, so that
+   * equivalent options produce the same key.
+   *
+   * @param detail
+   *        Description of the tables loaded in more detail, or null
+   * @return Hexadecimal SHA-256 hash of the connection and the options
+   */
+  public static String cacheKey(final String connectionUrl,
+                                final String user,
+                                final SchemaCrawlerOptions schemaCrawlerOptions,
+                                final InfoLevel infoLevel,
+                                final String detail,
+                                final SchemaRetrievalOptions schemaRetrievalOptions)
+  {
+    final StringBuilder buffer = new StringBuilder(4096);
+    buffer.append(connectionUrl).append('\n');
+    buffer.append(user).append('\n');
+    buffer.append(infoLevel).append('\n');
+    if (detail != null)
+    {
+      buffer.append(detail).append('\n');
+    }
+    buffer.append(ObjectToString.toString(schemaCrawlerOptions)).append('\n');
+    buffer.append(ObjectToString.toString(schemaRetrievalOptions));
+    final String fingerprint = buffer.toString()
+      .replaceAll("@[0-9a-fA-F]+", "").replaceAll("\\r?\\n", "\n");
+
+    try
+    {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final byte[] hash = digest.digest(fingerprint.getBytes(UTF_8));
+      final StringBuilder key = new StringBuilder(hash.length * 2);
+      for (final byte b: hash)
+      {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException("Cannot compute catalog cache key", e);
+    }
+  }
+
+  private final Path directory;
+  private final Duration timeToLive;
+
+  /**
+   * @param directory
+   *        Cache directory, created if it does not exist
+   * @param timeToLive
+   *        Age after which cached catalogs are no longer used, or zero
+   *        for cached catalogs that never expire
+   */
+  public CatalogCache(final Path directory, final Duration timeToLive)
+  {
+    this.directory = requireNonNull(directory, "No cache directory provided")
+      .toAbsolutePath().normalize();
+    this.timeToLive = requireNonNull(timeToLive, "No time to live provided");
+  }
+
+  /**
+   * Removes cached catalogs.
+   *
+   * @param key
+   *        Cache key, or blank to remove all cached catalogs
+   * @return Number of catalogs removed
+   */
+  public int evict(final String key)
+  {
+    int count = 0;
+    for (final CatalogCacheEntry entry: list())
+    {
+      if (isBlank(key) || entry.getKey().equals(key.trim()))
+      {
+        try
+        {
+          deleteEntry(entry.getKey());
+          count++;
+        }
+        catch (final IOException e)
+        {
+          throw new RuntimeException(String
+            .format("Cannot evict cached catalog %s", entry.getKey()), e);
+        }
+      }
+    }
+    return count;
+  }
+
+  public Path getDirectory()
+  {
+    return directory;
+  }
+
+  public Duration getTimeToLive()
+  {
+    return timeToLive;
+  }
+
+  public List<CatalogCacheEntry> list()
+  {
+    final List<CatalogCacheEntry> entries = new ArrayList<>();
+    if (!Files.isDirectory(directory))
+    {
+      return entries;
+    }
+
+    try (final DirectoryStream<Path> catalogFiles = Files
+      .newDirectoryStream(directory, "*" + CATALOG_EXTENSION))
+    {
+      for (final Path catalogFile: catalogFiles)
+      {
+        final String fileName = catalogFile.getFileName().toString();
+        final String key = fileName.substring(0,
+                                              fileName.length()
+                                                 - CATALOG_EXTENSION.length());
+        try
+        {
+          final Instant lastModified = Files.getLastModifiedTime(catalogFile)
+            .toInstant();
+          final Properties description = readDescription(key);
+          entries.add(new CatalogCacheEntry(key,
+                                            catalogFile,
+                                            Files.size(catalogFile),
+                                            lastModified,
+                                            isExpired(lastModified),
+                                            description.getProperty("url", ""),
+                                            description.getProperty("user", ""),
+                                            description
+                                              .getProperty("infolevel", "")));
+        }
+        catch (final IOException e)
+        {
+          // File was removed by another process while listing
+          LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+      }
+    }
+    catch (final IOException e)
+    {
+      throw new RuntimeException("Cannot list catalog cache", e);
+    }
+
+    entries.sort((entry1, entry2) -> entry2.getLastModified()
+      .compareTo(entry1.getLastModified()));
+    return entries;
+  }
+
+  /**
+   * Reads a cached catalog. Missing, expired and unreadable catalogs are
+   * all treated as cache misses.
+   *
+   * @param key
+   *        Cache key
+   * @return Cached catalog, if available
+   */
+  public Optional<Catalog> load(final String key)
+  {
+    requireNonNull(key, "No cache key provided");
+
+    final Path catalogFile = catalogFile(key);
+    try
+    {
+      if (!Files.isRegularFile(catalogFile))
+      {
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Catalog cache miss <%s>", key));
+        return Optional.empty();
+      }
+      if (isExpired(Files.getLastModifiedTime(catalogFile).toInstant()))
+      {
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Cached catalog has expired <%s>", key));
+        return Optional.empty();
+      }
+
+      try (
+          final ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(Files
+            .newInputStream(catalogFile))));)
+      {
+        final Catalog catalog = (Catalog) in.readObject();
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Catalog cache hit <%s>", key));
+        return Optional.ofNullable(catalog);
+      }
+    }
+    catch (final IOException | ClassNotFoundException | ClassCastException e)
+    {
+      // For example, the file was evicted while reading, or was written
+      // by an incompatible version of SchemaCrawler
+      LOGGER.log(Level.WARNING,
+                 new StringFormat("Cannot read cached catalog <%s>", key),
+                 e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Writes a catalog to the cache, replacing any previously cached
+   * catalog with the same key.
+   *
+   * @param key
+   *        Cache key
+   * @param catalog
+   *        Catalog to cache
+   * @param description
+   *        Description of the catalog, for listing the cache
+   */
+  public void save(final String key,
+                   final Catalog catalog,
+                   final Properties description)
+  {
+    requireNonNull(key, "No cache key provided");
+    requireNonNull(catalog, "No catalog provided");
+
+    try
+    {
+      Files.createDirectories(directory);
+
+      final Path tempCatalogFile = Files.createTempFile(directory, key, ".tmp");
+      try
+      {
+        try (
+            final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files
+              .newOutputStream(tempCatalogFile))));)
+        {
+          out.writeObject(catalog);
+        }
+        moveIntoPlace(tempCatalogFile, catalogFile(key));
+      }
+      finally
+      {
+        Files.deleteIfExists(tempCatalogFile);
+      }
+
+      if (description != null)
+      {
+        final Path tempDescriptionFile = Files
+          .createTempFile(directory, key, ".tmp");
+        try
+        {
+          try (final OutputStream out = Files
+            .newOutputStream(tempDescriptionFile);)
+          {
+            description.store(out, "SchemaCrawler catalog cache");
+          }
+          moveIntoPlace(tempDescriptionFile, descriptionFile(key));
+        }
+        finally
+        {
+          Files.deleteIfExists(tempDescriptionFile);
+        }
+      }
+
+      LOGGER.log(Level.INFO, new StringFormat("Cached catalog <%s>", key));
+    }
+    catch (final IOException e)
+    {
+      // A catalog that cannot be cached is not an error for the load
+      LOGGER.log(Level.WARNING,
+                 new StringFormat("Cannot cache catalog <%s>", key),
+                 e);
+    }
+  }
+
+  private Path catalogFile(final String key)
+  {
+    return directory.resolve(key + CATALOG_EXTENSION);
+  }
+
+  private void deleteEntry(final String key)
+    throws IOException
+  {
+    Files.deleteIfExists(catalogFile(key));
+    Files.deleteIfExists(descriptionFile(key));
+  }
+
+  private Path descriptionFile(final String key)
+  {
+    return directory.resolve(key + DESCRIPTION_EXTENSION);
+  }
+
+  private boolean isExpired(final Instant lastModified)
+  {
+    if (timeToLive.isZero() || timeToLive.isNegative())
+    {
+      return false;
+    }
+    return lastModified.plus(timeToLive).isBefore(Instant.now());
+  }
+
+  private void moveIntoPlace(final Path source, final Path target)
+    throws IOException
+  {
+    try
+    {
+      Files.move(source,
+                 target,
+                 StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (final AtomicMoveNotSupportedException e)
+    {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private Properties readDescription(final String key)
+  {
+    final Properties description = new Properties();
+    final Path descriptionFile = descriptionFile(key);
+    if (Files.isRegularFile(descriptionFile))
+    {
+      try (final InputStream in = Files.newInputStream(descriptionFile);)
+      {
+        description.load(in);
+      }
+      catch (final IOException e)
+      {
+        LOGGER.log(Level.FINE, e.getMessage(), e);
+      }
+    }
+    return description;
+  }
+
+}
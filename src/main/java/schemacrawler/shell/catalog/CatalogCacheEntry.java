@@ -0,0 +1,125 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Description of a catalog in the on-disk catalog cache.
+ */
+public final class CatalogCacheEntry
+{
+
+  private final String key;
+  private final Path path;
+  private final long size;
+  private final Instant lastModified;
+  private final boolean expired;
+  private final String connectionUrl;
+  private final String user;
+  private final String infoLevel;
+
+  CatalogCacheEntry(final String key,
+                    final Path path,
+                    final long size,
+                    final Instant lastModified,
+                    final boolean expired,
+                    final String connectionUrl,
+                    final String user,
+                    final String infoLevel)
+  {
+    this.key = requireNonNull(key, "No cache key provided");
+    this.path = requireNonNull(path, "No cache file provided");
+    this.size = size;
+    this.lastModified = requireNonNull(lastModified,
+                                       "No modification time provided");
+    this.expired = expired;
+    this.connectionUrl = connectionUrl;
+    this.user = user;
+    this.infoLevel = infoLevel;
+  }
+
+  public String getConnectionUrl()
+  {
+    return connectionUrl;
+  }
+
+  public String getInfoLevel()
+  {
+    return infoLevel;
+  }
+
+  public String getKey()
+  {
+    return key;
+  }
+
+  public Instant getLastModified()
+  {
+    return lastModified;
+  }
+
+  public Path getPath()
+  {
+    return path;
+  }
+
+  public long getSize()
+  {
+    return size;
+  }
+
+  public String getUser()
+  {
+    return user;
+  }
+
+  public boolean isExpired()
+  {
+    return expired;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%s  %s  %s  %s  %,d bytes  %s%s",
+                         key,
+                         connectionUrl,
+                         user,
+                         infoLevel,
+                         size,
+                         lastModified,
+                         expired? "  (expired)": "");
+  }
+
+}
@@ -0,0 +1,424 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import schemacrawler.schema.AttributedObject;
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.ColumnDataType;
+import schemacrawler.schema.ColumnReference;
+import schemacrawler.schema.CrawlInfo;
+import schemacrawler.schema.DatabaseInfo;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.Grant;
+import schemacrawler.schema.Index;
+import schemacrawler.schema.IndexColumn;
+import schemacrawler.schema.JdbcDriverInfo;
+import schemacrawler.schema.JdbcDriverProperty;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Privilege;
+import schemacrawler.schema.Property;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.RoutineColumn;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.TableConstraint;
+import schemacrawler.schema.TableConstraintColumn;
+import schemacrawler.schema.Trigger;
+
+/**
+ * Hash of the metadata in a catalog, which is the same for catalogs
+ * loaded at different times from an unchanged database. Everything that
+ * output for the catalog can show is hashed, including privileges,
+ * column data types and attributes such as row counts and weak
+ * associations. The crawl timestamp and run id are not part of the
+ * fingerprint.
+ */
+public final class CatalogFingerprint
+{
+
+  /**
+   * @return Hexadecimal SHA-256 hash of the catalog metadata
+   */
+  public static String fingerprint(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    return new CatalogFingerprint().digest(catalog);
+  }
+
+  private final MessageDigest digest;
+
+  private CatalogFingerprint()
+  {
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException("Cannot compute catalog fingerprint", e);
+    }
+  }
+
+  private String digest(final Catalog catalog)
+  {
+    final CrawlInfo crawlInfo = catalog.getCrawlInfo();
+    if (crawlInfo != null)
+    {
+      update(crawlInfo.getSchemaCrawlerInfo(),
+             crawlInfo.getDatabaseInfo(),
+             crawlInfo.getJdbcDriverInfo(),
+             crawlInfo.getTitle());
+    }
+    final DatabaseInfo databaseInfo = catalog.getDatabaseInfo();
+    if (databaseInfo != null)
+    {
+      update("database", databaseInfo.getUserName());
+      updateProperties(databaseInfo.getServerInfo());
+      updateProperties(databaseInfo.getProperties());
+    }
+    final JdbcDriverInfo jdbcDriverInfo = catalog.getJdbcDriverInfo();
+    if (jdbcDriverInfo != null)
+    {
+      update("driver",
+             jdbcDriverInfo.getDriverClassName(),
+             jdbcDriverInfo.getConnectionUrl(),
+             jdbcDriverInfo.isJdbcCompliant());
+      for (final JdbcDriverProperty driverProperty: jdbcDriverInfo
+        .getDriverProperties())
+      {
+        update(driverProperty.getName(),
+               driverProperty.getValue(),
+               driverProperty.isRequired(),
+               driverProperty.getChoices());
+      }
+    }
+    updateAttributes(catalog);
+
+    for (final Schema schema: catalog.getSchemas())
+    {
+      update("schema", schema.getFullName(), schema.getRemarks());
+    }
+    for (final ColumnDataType columnDataType: catalog
+      .getSystemColumnDataTypes())
+    {
+      updateColumnDataType(columnDataType);
+    }
+    for (final ColumnDataType columnDataType: catalog.getColumnDataTypes())
+    {
+      updateColumnDataType(columnDataType);
+    }
+
+    for (final Table table: catalog.getTables())
+    {
+      update("table",
+             table.getFullName(),
+             table.getTableType(),
+             table.getRemarks(),
+             table.getDefinition());
+      updateAttributes(table);
+      updatePrivileges(table.getPrivileges());
+      for (final Column column: table.getColumns())
+      {
+        update("column",
+               column.getName(),
+               column.getOrdinalPosition(),
+               column.getColumnDataType().getFullName(),
+               column.getWidth(),
+               column.getSize(),
+               column.getDecimalDigits(),
+               column.isNullable(),
+               column.getDefaultValue(),
+               column.isPartOfPrimaryKey(),
+               column.isPartOfForeignKey(),
+               column.isPartOfIndex(),
+               column.isPartOfUniqueIndex(),
+               column.isAutoIncremented(),
+               column.isGenerated(),
+               column.isHidden(),
+               column.getRemarks());
+        updateColumnDataType(column.getColumnDataType());
+        updateAttributes(column);
+        updatePrivileges(column.getPrivileges());
+      }
+      if (table.getPrimaryKey() != null)
+      {
+        update("primary key",
+               table.getPrimaryKey().getName(),
+               table.getPrimaryKey().getColumns());
+      }
+      for (final ForeignKey foreignKey: table.getForeignKeys())
+      {
+        update("foreign key",
+               foreignKey.getName(),
+               foreignKey.getUpdateRule(),
+               foreignKey.getDeleteRule(),
+               foreignKey.getDeferrability());
+        for (final ColumnReference columnReference: foreignKey
+          .getColumnReferences())
+        {
+          update(columnReference.getForeignKeyColumn().getFullName(),
+                 columnReference.getPrimaryKeyColumn().getFullName());
+        }
+      }
+      for (final Index index: table.getIndexes())
+      {
+        update("index",
+               index.getName(),
+               index.getIndexType(),
+               index.isUnique(),
+               index.getCardinality(),
+               index.getPages(),
+               index.getRemarks(),
+               index.getDefinition());
+        for (final IndexColumn indexColumn: index.getColumns())
+        {
+          update(indexColumn.getName(),
+                 indexColumn.getIndexOrdinalPosition(),
+                 indexColumn.getSortSequence(),
+                 indexColumn.getColumnDataType().getFullName(),
+                 indexColumn.getWidth());
+        }
+      }
+      for (final TableConstraint tableConstraint: table.getTableConstraints())
+      {
+        update("constraint",
+               tableConstraint.getName(),
+               tableConstraint.getConstraintType(),
+               tableConstraint.isDeferrable(),
+               tableConstraint.isInitiallyDeferred(),
+               tableConstraint.getDefinition());
+        for (final TableConstraintColumn tableConstraintColumn: tableConstraint
+          .getColumns())
+        {
+          update(tableConstraintColumn.getName());
+        }
+      }
+      for (final Trigger trigger: table.getTriggers())
+      {
+        update("trigger",
+               trigger.getName(),
+               trigger.getEventManipulationType(),
+               trigger.getActionOrder(),
+               trigger.getActionOrientation(),
+               trigger.getConditionTiming(),
+               trigger.getActionCondition(),
+               trigger.getActionStatement());
+      }
+    }
+
+    for (final Routine routine: catalog.getRoutines())
+    {
+      update("routine",
+             routine.getFullName(),
+             routine.getSpecificName(),
+             routine.getRoutineType(),
+             routine.getReturnType(),
+             routine.getRemarks(),
+             routine.getDefinition());
+      updateAttributes(routine);
+      for (final RoutineColumn<?> routineColumn: routine.getColumns())
+      {
+        update(routineColumn.getName(),
+               routineColumn.getColumnType(),
+               routineColumn.getColumnDataType().getFullName(),
+               routineColumn.getWidth());
+      }
+    }
+
+    for (final Sequence sequence: catalog.getSequences())
+    {
+      update("sequence",
+             sequence.getFullName(),
+             sequence.getMinimumValue(),
+             sequence.getMaximumValue(),
+             sequence.getIncrement(),
+             sequence.isCycle());
+      updateAttributes(sequence);
+    }
+
+    for (final Synonym synonym: catalog.getSynonyms())
+    {
+      update("synonym",
+             synonym.getFullName(),
+             synonym.getReferencedObject().getFullName());
+      updateAttributes(synonym);
+    }
+
+    final byte[] hash = digest.digest();
+    final StringBuilder fingerprint = new StringBuilder(hash.length * 2);
+    for (final byte b: hash)
+    {
+      fingerprint.append(String.format("%02x", b));
+    }
+    return fingerprint.toString();
+  }
+
+  private void update(final Object... values)
+  {
+    for (final Object value: values)
+    {
+      digest.update(text(value).getBytes(UTF_8));
+      digest.update((byte) 0);
+    }
+    digest.update((byte) '\n');
+  }
+
+  /**
+   * Attributes are hashed in name order, since they are kept in hash
+   * maps.
+   */
+  private void updateAttributes(final AttributedObject attributedObject)
+  {
+    final Map<String, Object> attributes = attributedObject.getAttributes();
+    if (attributes == null)
+    {
+      return;
+    }
+    for (final Map.Entry<String, Object> attribute: new TreeMap<>(attributes)
+      .entrySet())
+    {
+      update("attribute", attribute.getKey(), attribute.getValue());
+    }
+  }
+
+  private void updateColumnDataType(final ColumnDataType columnDataType)
+  {
+    update("data type",
+           columnDataType.getFullName(),
+           columnDataType.getDatabaseSpecificTypeName(),
+           columnDataType.getJavaSqlType().getName(),
+           columnDataType.getBaseType() != null? columnDataType.getBaseType()
+             .getFullName(): null,
+           columnDataType.isUserDefined(),
+           columnDataType.getPrecision(),
+           columnDataType.getMinimumScale(),
+           columnDataType.getMaximumScale(),
+           columnDataType.getNumPrecisionRadix(),
+           columnDataType.getCreateParameters(),
+           columnDataType.getLiteralPrefix(),
+           columnDataType.getLiteralSuffix(),
+           columnDataType.getLocalTypeName(),
+           columnDataType.getSearchable(),
+           columnDataType.isNullable(),
+           columnDataType.isAutoIncrementable(),
+           columnDataType.isCaseSensitive(),
+           columnDataType.isFixedPrecisionScale(),
+           columnDataType.isUnsigned(),
+           columnDataType.getRemarks());
+  }
+
+  /**
+   * Grants are hashed in sorted order, since their order is not kept.
+   */
+  private void updatePrivileges(final Collection<? extends Privilege<?>> privileges)
+  {
+    for (final Privilege<?> privilege: privileges)
+    {
+      final List<String> grants = new ArrayList<>();
+      for (final Grant<?> grant: privilege.getGrants())
+      {
+        grants.add(text(Arrays.asList(grant.getGrantor(),
+                                      grant.getGrantee(),
+                                      grant.isGrantable())));
+      }
+      Collections.sort(grants);
+      update("privilege", privilege.getName(), privilege.getRemarks(), grants);
+    }
+  }
+
+  private void updateProperties(final Collection<? extends Property> properties)
+  {
+    for (final Property property: properties)
+    {
+      update(property.getName(), property.getValue());
+    }
+  }
+
+  /**
+   * Text for a value, using full names for database objects and column
+   * references, which do not always have their own text.
+   */
+  private String text(final Object value)
+  {
+    if (value instanceof ColumnReference)
+    {
+      final ColumnReference columnReference = (ColumnReference) value;
+      return text(columnReference.getForeignKeyColumn()) + " -> "
+             + text(columnReference.getPrimaryKeyColumn());
+    }
+    else if (value instanceof NamedObject && !(value instanceof Iterable))
+    {
+      return ((NamedObject) value).getFullName();
+    }
+    else if (value instanceof Iterable)
+    {
+      final StringBuilder text = new StringBuilder("[");
+      for (final Object element: (Iterable<?>) value)
+      {
+        text.append(text(element)).append(", ");
+      }
+      return text.append("]").toString();
+    }
+    else if (value instanceof Map)
+    {
+      return text(new TreeMap<>((Map<?, ?>) value).entrySet());
+    }
+    else if (value instanceof Map.Entry)
+    {
+      final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+      return text(entry.getKey()) + "=" + text(entry.getValue());
+    }
+    else if (value instanceof Object[])
+    {
+      return text(Arrays.asList((Object[]) value));
+    }
+    else
+    {
+      return String.valueOf(value);
+    }
+  }
+
+}
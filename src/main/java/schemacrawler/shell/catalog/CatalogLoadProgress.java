@@ -0,0 +1,267 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import schemacrawler.shell.jdbc.JdbcMonitor;
+import sf.util.SchemaCrawlerLogger;
+
+/**
+ * Tracks the progress of a catalog load from the metadata that is
+ * retrieved over monitored connections, and cancels the load by
+ * cancelling in-flight statements and failing further JDBC calls.
+ * <p>
+ * The time remaining is estimated from the retrieval phase, since
+ * SchemaCrawler retrieves metadata in a fixed order, or, for parallel
+ * loads, from the number of schemas loaded.
+ */
+public final class CatalogLoadProgress
+  implements JdbcMonitor
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogLoadProgress.class.getName());
+
+  private static final class Phase
+  {
+    private final String description;
+    private final double fractionDone;
+
+    Phase(final String description, final double fractionDone)
+    {
+      this.description = description;
+      this.fractionDone = fractionDone;
+    }
+  }
+
+  private static final Map<String, Phase> PHASES = new HashMap<>();
+
+  static
+  {
+    addPhase(new Phase("schemas", 0.01), "getSchemas", "getCatalogs");
+    addPhase(new Phase("column data types", 0.02), "getTypeInfo", "getUDTs");
+    addPhase(new Phase("tables", 0.05), "getTables");
+    addPhase(new Phase("columns", 0.15), "getColumns");
+    addPhase(new Phase("foreign keys", 0.45),
+             "getImportedKeys",
+             "getExportedKeys",
+             "getCrossReference");
+    addPhase(new Phase("indexes", 0.65), "getPrimaryKeys", "getIndexInfo");
+    addPhase(new Phase("privileges", 0.85),
+             "getTablePrivileges",
+             "getColumnPrivileges");
+    addPhase(new Phase("routines", 0.9), "getProcedures", "getFunctions");
+    addPhase(new Phase("routine parameters", 0.93),
+             "getProcedureColumns",
+             "getFunctionColumns");
+  }
+
+  private static void addPhase(final Phase phase, final String... methods)
+  {
+    for (final String method: methods)
+    {
+      PHASES.put(method, phase);
+    }
+  }
+
+  private final long started;
+  private final AtomicLong rows;
+  private final AtomicInteger schemasLoaded;
+  private final Set<Statement> statements;
+  private volatile int schemaCount;
+  private volatile Phase phase;
+  private volatile boolean cancelled;
+
+  public CatalogLoadProgress()
+  {
+    started = System.nanoTime();
+    rows = new AtomicLong();
+    schemasLoaded = new AtomicInteger();
+    statements = ConcurrentHashMap.newKeySet();
+    phase = new Phase("database information", 0);
+  }
+
+  /**
+   * Stops the load. In-flight statements are cancelled, and further JDBC
+   * calls on monitored connections fail.
+   */
+  public void cancel()
+  {
+    cancelled = true;
+    for (final Statement statement: statements)
+    {
+      try
+      {
+        statement.cancel();
+      }
+      catch (final SQLException | RuntimeException e)
+      {
+        LOGGER.log(Level.FINE, e.getMessage(), e);
+      }
+    }
+  }
+
+  @Override
+  public void checkCancelled()
+    throws SQLException
+  {
+    if (cancelled)
+    {
+      throw new SQLException("Catalog load was cancelled");
+    }
+  }
+
+  public Duration getElapsed()
+  {
+    return Duration.ofNanos(System.nanoTime() - started);
+  }
+
+  /**
+   * @return Estimated time to finish the load, if it can be estimated
+   */
+  public Duration getEstimatedTimeRemaining()
+  {
+    final double fractionDone;
+    if (schemaCount > 1)
+    {
+      fractionDone = schemasLoaded.get() / (double) schemaCount;
+    }
+    else
+    {
+      fractionDone = phase.fractionDone;
+    }
+    if (fractionDone <= 0 || fractionDone >= 1)
+    {
+      return null;
+    }
+    final long elapsed = getElapsed().toMillis();
+    return Duration.ofMillis((long) (elapsed * (1 - fractionDone)
+                                     / fractionDone));
+  }
+
+  public String getPhase()
+  {
+    return phase.description;
+  }
+
+  public long getRowsRetrieved()
+  {
+    return rows.get();
+  }
+
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  @Override
+  public void retrieving(final String name)
+  {
+    final Phase retrievalPhase = PHASES.get(name);
+    if (retrievalPhase != null)
+    {
+      phase = retrievalPhase;
+    }
+    else if (name.startsWith("execute"))
+    {
+      // Information schema views, and plug-in queries
+      phase = new Phase("metadata queries", phase.fractionDone);
+    }
+  }
+
+  @Override
+  public void rowRetrieved()
+  {
+    rows.incrementAndGet();
+  }
+
+  public void schemaLoaded()
+  {
+    schemasLoaded.incrementAndGet();
+  }
+
+  public void setSchemaCount(final int schemaCount)
+  {
+    this.schemaCount = schemaCount;
+  }
+
+  @Override
+  public void statementClosed(final Statement statement)
+  {
+    if (statement != null)
+    {
+      statements.remove(statement);
+    }
+  }
+
+  @Override
+  public void statementOpened(final Statement statement)
+  {
+    if (statement != null)
+    {
+      statements.add(statement);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append(String.format("%,d objects, retrieving %s",
+                                getRowsRetrieved(),
+                                getPhase()));
+    if (schemaCount > 1)
+    {
+      buffer.append(String.format(", %d of %d schemas",
+                                  schemasLoaded.get(),
+                                  schemaCount));
+    }
+    final Duration remaining = getEstimatedTimeRemaining();
+    if (remaining != null)
+    {
+      final long seconds = remaining.getSeconds();
+      buffer.append(String.format(", about %d:%02d remaining",
+                                  seconds / 60,
+                                  seconds % 60));
+    }
+    return buffer.toString();
+  }
+
+}
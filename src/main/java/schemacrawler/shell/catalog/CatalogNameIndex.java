@@ -0,0 +1,353 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.RoutineColumn;
+import schemacrawler.schema.Table;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Inverted index of the names of tables, columns, routines and routine
+ * parameters in a loaded catalog. Each object is given an integer id,
+ * and every normalized name and name token maps to a sorted array of
+ * the ids of the objects that have it. Names are normalized to lower
+ * case, and split into tokens at underscores, other punctuation, digits
+ * and changes of case, so that "ORDER_ITEMS" and "orderItems" both have
+ * the tokens "order" and "items".
+ */
+public final class CatalogNameIndex
+{
+
+  public enum ObjectType
+  {
+   table,
+   column,
+   routine,
+   parameter;
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogNameIndex.class.getName());
+
+  private static final Pattern TOKEN_BOUNDARY = Pattern
+    .compile("[^\\p{L}\\p{N}]+|(?<=\\p{Ll})(?=\\p{Lu})|(?<=\\p{L})(?=\\p{N})|(?<=\\p{N})(?=\\p{L})");
+
+  /**
+   * Builds a name index for a catalog.
+   *
+   * @param catalog
+   *        Loaded catalog
+   * @return Name index
+   */
+  public static CatalogNameIndex build(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+
+    final long start = System.nanoTime();
+    final CatalogNameIndex index = new CatalogNameIndex();
+    for (final Table table: catalog.getTables())
+    {
+      index.add(table, ObjectType.table);
+      for (final Column column: table.getColumns())
+      {
+        index.add(column, ObjectType.column);
+      }
+    }
+    for (final Routine routine: catalog.getRoutines())
+    {
+      index.add(routine, ObjectType.routine);
+      for (final RoutineColumn<?> parameter: routine.getColumns())
+      {
+        index.add(parameter, ObjectType.parameter);
+      }
+    }
+    index.compact();
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Indexed %d names with %d distinct tokens in %d ms",
+                                index.size(),
+                                index.getTokenCount(),
+                                (System.nanoTime() - start) / 1_000_000L));
+    return index;
+  }
+
+  /**
+   * Normalizes a name for lookup, by converting it to lower case.
+   */
+  static String normalize(final String name)
+  {
+    return name == null? "": name.toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Splits a name into normalized tokens. The whole normalized name is
+   * always the first token.
+   */
+  static Set<String> tokenize(final String name)
+  {
+    final Set<String> tokens = new LinkedHashSet<>();
+    final String normalizedName = normalize(name);
+    if (normalizedName.isEmpty())
+    {
+      return tokens;
+    }
+    tokens.add(normalizedName);
+    for (final String token: TOKEN_BOUNDARY.split(name))
+    {
+      if (!token.isEmpty())
+      {
+        tokens.add(normalize(token));
+      }
+    }
+    return tokens;
+  }
+
+  private final List<NamedObject> objects;
+  private final List<ObjectType> objectTypes;
+  private Map<String, Postings> building;
+  private TreeMap<String, int[]> postings;
+
+  private CatalogNameIndex()
+  {
+    objects = new ArrayList<>();
+    objectTypes = new ArrayList<>();
+    building = new HashMap<>();
+  }
+
+  /**
+   * Finds objects by name. Each word in the query has to match a name
+   * token, or a token prefix if the word ends with "*". A dotted query,
+   * such as "authors.first*", matches the last part against the object
+   * name, and the earlier parts against the names of the parent objects.
+   *
+   * @param query
+   *        Name query
+   * @param objectType
+   *        Type of objects to find, or null for all types
+   * @param limit
+   *        Maximum number of objects to return
+   * @return Matching objects, in catalog order
+   */
+  public List<NamedObject> find(final String query,
+                                final ObjectType objectType,
+                                final int limit)
+  {
+    final List<NamedObject> found = new ArrayList<>();
+    if (query == null || query.trim().isEmpty() || limit <= 0)
+    {
+      return found;
+    }
+
+    final String[] parts = query.trim().split("\\.");
+    final BitSet matches = matchWords(parts[parts.length - 1]);
+    if (matches == null)
+    {
+      return found;
+    }
+
+    for (int id = matches.nextSetBit(0); id >= 0
+                                         && found.size() < limit; id = matches
+                                           .nextSetBit(id + 1))
+    {
+      if (objectType != null && objectTypes.get(id) != objectType)
+      {
+        continue;
+      }
+      final NamedObject object = objects.get(id);
+      if (parts.length == 1 || matchesParents(object, parts))
+      {
+        found.add(object);
+      }
+    }
+    return found;
+  }
+
+  public int getTokenCount()
+  {
+    return postings.size();
+  }
+
+  /**
+   * Looks up the ids of objects that have a name token.
+   *
+   * @param token
+   *        Name token, which is normalized before lookup
+   * @return Sorted object ids, which is empty if there are none
+   */
+  public int[] lookup(final String token)
+  {
+    final int[] ids = postings.get(normalize(token));
+    return ids == null? new int[0]: ids.clone();
+  }
+
+  public int size()
+  {
+    return objects.size();
+  }
+
+  private void add(final NamedObject object, final ObjectType objectType)
+  {
+    final int id = objects.size();
+    objects.add(object);
+    objectTypes.add(objectType);
+    for (final String token: tokenize(object.getName()))
+    {
+      building.computeIfAbsent(token, key -> new Postings()).add(id);
+    }
+  }
+
+  private void compact()
+  {
+    postings = new TreeMap<>();
+    for (final Map.Entry<String, Postings> entry: building.entrySet())
+    {
+      postings.put(entry.getKey(), entry.getValue().toArray());
+    }
+    building = null;
+  }
+
+  /**
+   * Matches all words of a query part, and intersects the matches.
+   *
+   * @return Matching ids, or null if there are none
+   */
+  private BitSet matchWords(final String queryPart)
+  {
+    BitSet matches = null;
+    for (final String word: queryPart.trim().split("\\s+"))
+    {
+      final BitSet wordMatches = matchWord(word);
+      if (matches == null)
+      {
+        matches = wordMatches;
+      }
+      else
+      {
+        matches.and(wordMatches);
+      }
+      if (matches.isEmpty())
+      {
+        return null;
+      }
+    }
+    return matches;
+  }
+
+  private BitSet matchWord(final String word)
+  {
+    final BitSet matches = new BitSet(objects.size());
+    final String normalizedWord = normalize(word);
+    if (normalizedWord.endsWith("*"))
+    {
+      final String prefix = normalizedWord
+        .substring(0, normalizedWord.length() - 1);
+      final SortedMap<String, int[]> prefixed = postings
+        .subMap(prefix, prefix + Character.MAX_VALUE);
+      for (final int[] ids: prefixed.values())
+      {
+        for (final int id: ids)
+        {
+          matches.set(id);
+        }
+      }
+    }
+    else
+    {
+      final int[] ids = postings.get(normalizedWord);
+      if (ids != null)
+      {
+        for (final int id: ids)
+        {
+          matches.set(id);
+        }
+      }
+    }
+    return matches;
+  }
+
+  private boolean matchesParents(final NamedObject object,
+                                 final String[] parts)
+  {
+    // Full names are quoted as needed, so compare without quotes
+    final String[] names = normalize(object.getFullName()).replace("\"", "")
+      .split("\\.");
+    int nameIndex = names.length - 2;
+    for (int i = parts.length - 2; i >= 0; i--)
+    {
+      final String part = normalize(parts[i].trim());
+      if (part.isEmpty() || part.equals("*"))
+      {
+        nameIndex--;
+        continue;
+      }
+      boolean matched = false;
+      while (nameIndex >= 0 && !matched)
+      {
+        matched = matchesName(names[nameIndex], part);
+        nameIndex--;
+      }
+      if (!matched)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean matchesName(final String name, final String part)
+  {
+    if (part.endsWith("*"))
+    {
+      return name.startsWith(part.substring(0, part.length() - 1));
+    }
+    return name.equals(part) || tokenize(name).contains(part);
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
+
+/**
+ * Part of a catalog, for rendering large diagrams in parts. Tables are
+ * partitioned into groups that are connected by foreign keys. Small
+ * groups are packed together into parts, groups that are too large are
+ * split by schema, and then into consecutive runs of tables, and tables
+ * without foreign keys are put together.
+ */
+public final class CatalogPartition
+{
+
+  /**
+   * Partitions the tables in a foreign key graph.
+   *
+   * @param foreignKeyGraph
+   *        Foreign key graph of the tables to partition
+   * @param maxTables
+   *        Number of tables above which a group is split
+   * @return Parts, with connected tables first, largest first
+   */
+  public static List<CatalogPartition> partition(final ForeignKeyGraph foreignKeyGraph,
+                                                 final int maxTables)
+  {
+    requireNonNull(foreignKeyGraph, "No foreign key graph provided");
+    if (maxTables < 1)
+    {
+      throw new IllegalArgumentException("Maximum number of tables in a part should be at least 1");
+    }
+
+    final List<CatalogPartition> partitions = new ArrayList<>();
+    final List<List<List<Table>>> packedComponents = new ArrayList<>();
+    final List<Table> unconnectedTables = new ArrayList<>();
+    for (final List<Table> component: foreignKeyGraph.connectedComponents())
+    {
+      if (component.size() == 1)
+      {
+        unconnectedTables.addAll(component);
+      }
+      else if (component.size() <= maxTables)
+      {
+        pack(packedComponents, component, maxTables);
+      }
+      else
+      {
+        for (final Map.Entry<Schema, List<Table>> schemaTables: bySchema(component)
+          .entrySet())
+        {
+          split(partitions,
+                schemaTables.getValue(),
+                schemaTables.getKey().getFullName(),
+                maxTables);
+        }
+      }
+    }
+    for (final List<List<Table>> components: packedComponents)
+    {
+      final List<Table> partTables = new ArrayList<>();
+      components.forEach(partTables::addAll);
+      final String firstTable = components.get(0).get(0).getFullName();
+      final String description = components.size() == 1? firstTable
+                                                       : String
+                                                         .format("%s, and %d more groups",
+                                                                 firstTable,
+                                                                 components
+                                                                   .size() - 1);
+      partitions.add(new CatalogPartition(partitions.size() + 1,
+                                          partTables,
+                                          description));
+    }
+    split(partitions,
+          unconnectedTables,
+          "Tables without foreign keys",
+          maxTables);
+    return partitions;
+  }
+
+  private static Map<Schema, List<Table>> bySchema(final List<Table> tables)
+  {
+    final Map<Schema, List<Table>> bySchema = new LinkedHashMap<>();
+    for (final Table table: tables)
+    {
+      bySchema.computeIfAbsent(table.getSchema(), schema -> new ArrayList<>())
+        .add(table);
+    }
+    return bySchema;
+  }
+
+  /**
+   * Adds a group of connected tables to the first part that has room
+   * for it. Groups come largest first, so parts are filled closely.
+   */
+  private static void pack(final List<List<List<Table>>> packedComponents,
+                           final List<Table> component,
+                           final int maxTables)
+  {
+    for (final List<List<Table>> components: packedComponents)
+    {
+      int size = component.size();
+      for (final List<Table> packedComponent: components)
+      {
+        size = size + packedComponent.size();
+      }
+      if (size <= maxTables)
+      {
+        components.add(component);
+        return;
+      }
+    }
+    final List<List<Table>> components = new ArrayList<>();
+    components.add(component);
+    packedComponents.add(components);
+  }
+
+  private static void split(final List<CatalogPartition> partitions,
+                            final List<Table> tables,
+                            final String description,
+                            final int maxTables)
+  {
+    for (int start = 0; start < tables.size(); start = start + maxTables)
+    {
+      final List<Table> partTables = tables
+        .subList(start, Math.min(start + maxTables, tables.size()));
+      partitions.add(new CatalogPartition(partitions.size() + 1,
+                                          new ArrayList<>(partTables),
+                                          description));
+    }
+  }
+
+  private final int number;
+  private final List<Table> tables;
+  private final String description;
+
+  private CatalogPartition(final int number,
+                           final List<Table> tables,
+                           final String description)
+  {
+    this.number = number;
+    this.tables = tables;
+    this.description = description;
+  }
+
+  /**
+   * Short description of the part, such as a table in it, or its
+   * schema.
+   */
+  public String getDescription()
+  {
+    return description;
+  }
+
+  /**
+   * @return Part number, starting with 1
+   */
+  public int getNumber()
+  {
+    return number;
+  }
+
+  public List<Table> getTables()
+  {
+    return Collections.unmodifiableList(tables);
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("part %d: %s (%d tables)",
+                         number,
+                         description,
+                         tables.size());
+  }
+
+}
@@ -0,0 +1,322 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.ExcludeAll;
+import schemacrawler.schemacrawler.InclusionRule;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
+import schemacrawler.schemacrawler.SchemaRetrievalOptions;
+import schemacrawler.shell.jdbc.RowCountJdbc;
+import schemacrawler.tools.catalogloader.CatalogLoader;
+import schemacrawler.tools.catalogloader.CatalogLoaderRegistry;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Refreshes a loaded catalog by crawling again only the tables whose
+ * DDL markers changed since the catalog was loaded, and the tables that
+ * were added, in a single crawl limited to those tables. Dropped tables
+ * are removed. The crawled tables are patched into the loaded catalog.
+ * Tables can also be selected for a refresh by name.
+ */
+public final class CatalogRefresher
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogRefresher.class.getName());
+
+  private static boolean matchesKey(final String fullName,
+                                    final Set<String> keys)
+  {
+    final String name = RowCountJdbc.tableKey(fullName);
+    for (final String key: keys)
+    {
+      if (name.equals(key) || name.endsWith("." + key))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final DataSource dataSource;
+  private final Config additionalConfiguration;
+  private final SchemaRetrievalOptions schemaRetrievalOptions;
+  private final SchemaCrawlerOptions schemaCrawlerOptions;
+  private int changedCount;
+  private int addedCount;
+  private int droppedCount;
+  private boolean baseline;
+
+  public CatalogRefresher(final DataSource dataSource,
+                          final Config additionalConfiguration,
+                          final SchemaRetrievalOptions schemaRetrievalOptions,
+                          final SchemaCrawlerOptions schemaCrawlerOptions)
+  {
+    this.dataSource = requireNonNull(dataSource, "No data-source provided");
+    this.additionalConfiguration = additionalConfiguration;
+    this.schemaRetrievalOptions = requireNonNull(schemaRetrievalOptions,
+                                                 "No schema retrieval options provided");
+    this.schemaCrawlerOptions = requireNonNull(schemaCrawlerOptions,
+                                               "No SchemaCrawler options provided");
+  }
+
+  public int getAddedCount()
+  {
+    return addedCount;
+  }
+
+  public int getChangedCount()
+  {
+    return changedCount;
+  }
+
+  public int getDroppedCount()
+  {
+    return droppedCount;
+  }
+
+  /**
+   * @return Whether the catalog had no DDL markers, so that the current
+   *         markers were only recorded as a baseline for the next
+   *         refresh
+   */
+  public boolean isBaseline()
+  {
+    return baseline;
+  }
+
+  /**
+   * Refreshes the catalog, from the tables whose DDL markers changed.
+   *
+   * @return Refreshed catalog, or the same catalog if no tables changed
+   */
+  public Catalog refresh(final Catalog catalog)
+    throws Exception
+  {
+    requireNonNull(catalog, "No catalog provided");
+
+    final Map<String, String> ddlMarkers;
+    try (final Connection connection = dataSource.getConnection();)
+    {
+      ddlMarkers = DdlMarkers.snapshot(connection, catalog.getSchemas());
+    }
+
+    final Optional<Map<String, String>> optionalPreviousDdlMarkers = DdlMarkers
+      .lookup(catalog);
+    baseline = !optionalPreviousDdlMarkers.isPresent();
+    if (baseline)
+    {
+      LOGGER.log(Level.INFO,
+                 "Catalog has no DDL markers, so recording a baseline");
+      DdlMarkers.attach(catalog, ddlMarkers);
+      return catalog;
+    }
+    final Map<String, String> previousDdlMarkers = optionalPreviousDdlMarkers
+      .get();
+
+    // Changed, added and dropped tables in the schemas of the catalog
+    final Set<String> schemaKeys = DdlMarkers.schemaKeys(catalog);
+    final Set<String> candidateKeys = new HashSet<>();
+    for (final Map.Entry<String, String> ddlMarker: ddlMarkers.entrySet())
+    {
+      final String key = ddlMarker.getKey();
+      if (schemaKeys.contains(key.substring(0, key.lastIndexOf('.')))
+          && !ddlMarker.getValue().equals(previousDdlMarkers.get(key)))
+      {
+        candidateKeys.add(key);
+      }
+    }
+    for (final String key: previousDdlMarkers.keySet())
+    {
+      if (!ddlMarkers.containsKey(key))
+      {
+        candidateKeys.add(key);
+      }
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Found %d changed, added or dropped tables",
+                                candidateKeys.size()));
+
+    final Catalog refreshedCatalog;
+    if (candidateKeys.isEmpty())
+    {
+      refreshedCatalog = catalog;
+    }
+    else
+    {
+      refreshedCatalog = patch(catalog,
+                               fullName -> matchesKey(fullName, candidateKeys),
+                               candidateKeys);
+    }
+    DdlMarkers.attach(refreshedCatalog, ddlMarkers);
+    return refreshedCatalog;
+  }
+
+  /**
+   * Refreshes the selected tables in the catalog, whether or not their
+   * DDL markers changed. Tables that match the rule but are not in the
+   * catalog yet are added. DDL markers are not changed, so the next
+   * refresh from DDL markers may crawl these tables again.
+   *
+   * @param tableInclusionRule
+   *        Selects tables to refresh, by fully qualified name
+   * @return Refreshed catalog
+   */
+  public Catalog refresh(final Catalog catalog,
+                         final InclusionRule tableInclusionRule)
+    throws Exception
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(tableInclusionRule, "No table inclusion rule provided");
+
+    baseline = false;
+    final Set<String> selectedKeys = new HashSet<>();
+    for (final Table table: catalog.getTables())
+    {
+      if (tableInclusionRule.test(table.getFullName()))
+      {
+        selectedKeys.add(DdlMarkers.key(table));
+      }
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Selected %d tables to refresh",
+                                selectedKeys.size()));
+
+    return patch(catalog, tableInclusionRule, selectedKeys);
+  }
+
+  /**
+   * Crawls the selected tables, and patches them into the catalog.
+   * Foreign keys between the crawled tables and the rest of the catalog
+   * are linked to the tables in the catalog by key, so tables related
+   * to the selected tables do not need to be crawled again.
+   *
+   * @param tableSelection
+   *        Selects tables to crawl, by fully qualified name
+   * @param selectedKeys
+   *        Keys of selected tables that are in the catalog, which are
+   *        replaced, or removed if they are not crawled again
+   */
+  private Catalog patch(final Catalog catalog,
+                        final InclusionRule tableSelection,
+                        final Set<String> selectedKeys)
+    throws Exception
+  {
+    final InclusionRule tableInclusionRule = schemaCrawlerOptions
+      .getTableInclusionRule();
+    // Routines, synonyms and sequences are not refreshed
+    final SchemaCrawlerOptions patchOptions = SchemaCrawlerOptionsBuilder
+      .builder().fromOptions(schemaCrawlerOptions)
+      .includeTables(fullName -> tableInclusionRule.test(fullName)
+                                 && tableSelection.test(fullName))
+      .parentTableFilterDepth(0).childTableFilterDepth(0)
+      .includeRoutines(new ExcludeAll()).includeSynonyms(new ExcludeAll())
+      .includeSequences(new ExcludeAll()).toOptions();
+
+    final long start = System.nanoTime();
+    final Catalog patch = loadCatalog(patchOptions);
+
+    final Set<String> baseKeys = new HashSet<>();
+    for (final Table table: catalog.getTables())
+    {
+      baseKeys.add(DdlMarkers.key(table));
+    }
+    final Set<String> patchKeys = new HashSet<>();
+    for (final Table table: patch.getTables())
+    {
+      patchKeys.add(DdlMarkers.key(table));
+    }
+    changedCount = 0;
+    addedCount = 0;
+    droppedCount = 0;
+    for (final String key: patchKeys)
+    {
+      if (!baseKeys.contains(key))
+      {
+        addedCount++;
+      }
+      else if (selectedKeys.contains(key))
+      {
+        changedCount++;
+      }
+    }
+    for (final String key: selectedKeys)
+    {
+      if (baseKeys.contains(key) && !patchKeys.contains(key))
+      {
+        droppedCount++;
+      }
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Crawled %d tables again, in %d ms",
+                                patchKeys.size(),
+                                (System.nanoTime() - start) / 1_000_000L));
+
+    return new PatchedCatalog(catalog, patch, selectedKeys);
+  }
+
+  private Catalog loadCatalog(final SchemaCrawlerOptions options)
+    throws Exception
+  {
+    try (final Connection connection = dataSource.getConnection();)
+    {
+      final CatalogLoaderRegistry catalogLoaderRegistry = new CatalogLoaderRegistry();
+      final CatalogLoader catalogLoader = catalogLoaderRegistry
+        .lookupCatalogLoader(schemaRetrievalOptions.getDatabaseServerType()
+          .getDatabaseSystemIdentifier());
+
+      catalogLoader.setAdditionalConfiguration(additionalConfiguration);
+      catalogLoader.setConnection(connection);
+      catalogLoader.setSchemaRetrievalOptions(schemaRetrievalOptions);
+      catalogLoader.setSchemaCrawlerOptions(options);
+
+      final Catalog catalog = catalogLoader.loadCatalog();
+      requireNonNull(catalog, "Catalog could not be retrieved");
+      return catalog;
+    }
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.DatabaseObjectInfoRetrieval;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.SchemaInfoLevel;
+import schemacrawler.schemacrawler.SchemaInfoLevelBuilder;
+import schemacrawler.schemacrawler.SchemaInfoRetrieval;
+
+/**
+ * Plans an upgrade of a loaded catalog to more detail. The retrieval
+ * steps that were run for the catalog are kept with it as an attribute,
+ * and compared with the requested steps. Only the kinds of database
+ * objects, such as tables or routines, that need extra steps are
+ * crawled again. All other kinds of database objects are kept from the
+ * loaded catalog.
+ * <p>
+ * Detail can only be added to the loaded objects of a kind by crawling
+ * them again, so for each kind that is crawled again, the steps that
+ * were already run are repeated along with the extra steps. An upgrade
+ * only saves queries if the steps that would be repeated just list the
+ * objects, as for a catalog loaded at the minimum info level. Otherwise,
+ * it is cheaper to load the whole catalog.
+ */
+public final class CatalogUpgrade
+{
+
+  private static final String SCHEMA_INFO_RETRIEVALS = "schemacrawler.shell.schema_info_retrievals";
+
+  /**
+   * Keeps the retrieval steps of the schema info level with a catalog.
+   */
+  public static void attach(final Catalog catalog,
+                            final SchemaInfoLevel schemaInfoLevel)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(schemaInfoLevel, "No schema info level provided");
+    catalog.setAttribute(SCHEMA_INFO_RETRIEVALS,
+                         schemaInfoRetrievals(schemaInfoLevel));
+  }
+
+  /**
+   * Plans an upgrade of the catalog to the requested schema info level.
+   *
+   * @return Upgrade plan, or empty if the catalog does not record the
+   *         retrieval steps that were run for it
+   */
+  public static Optional<CatalogUpgrade> plan(final Catalog catalog,
+                                              final SchemaInfoLevel schemaInfoLevel)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(schemaInfoLevel, "No schema info level provided");
+    // SchemaCrawler fails to look up missing attributes
+    final Optional<EnumSet<SchemaInfoRetrieval>> retrieved = Optional
+      .ofNullable(catalog.getAttribute(SCHEMA_INFO_RETRIEVALS));
+    if (!retrieved.isPresent())
+    {
+      return Optional.empty();
+    }
+    return Optional.of(new CatalogUpgrade(retrieved.get(),
+                                          schemaInfoRetrievals(schemaInfoLevel),
+                                          schemaInfoLevel.getTag()));
+  }
+
+  private static EnumSet<SchemaInfoRetrieval> schemaInfoRetrievals(final SchemaInfoLevel schemaInfoLevel)
+  {
+    final EnumSet<SchemaInfoRetrieval> schemaInfoRetrievals = EnumSet
+      .noneOf(SchemaInfoRetrieval.class);
+    for (final SchemaInfoRetrieval schemaInfoRetrieval: SchemaInfoRetrieval
+      .values())
+    {
+      if (schemaInfoLevel.is(schemaInfoRetrieval))
+      {
+        schemaInfoRetrievals.add(schemaInfoRetrieval);
+      }
+    }
+    return schemaInfoRetrievals;
+  }
+
+  private final EnumSet<SchemaInfoRetrieval> additional;
+  private final EnumSet<SchemaInfoRetrieval> combined;
+  private final EnumSet<DatabaseObjectInfoRetrieval> upgraded;
+  private final String tag;
+
+  private CatalogUpgrade(final EnumSet<SchemaInfoRetrieval> retrieved,
+                         final EnumSet<SchemaInfoRetrieval> requested,
+                         final String tag)
+  {
+    additional = EnumSet.copyOf(requested);
+    additional.removeAll(retrieved);
+    combined = EnumSet.copyOf(retrieved);
+    combined.addAll(requested);
+    upgraded = EnumSet.noneOf(DatabaseObjectInfoRetrieval.class);
+    for (final SchemaInfoRetrieval schemaInfoRetrieval: additional)
+    {
+      upgraded.add(schemaInfoRetrieval.getDatabaseObjectInfoRetrieval());
+    }
+    this.tag = tag;
+  }
+
+  /**
+   * @return Retrieval steps that were not run for the loaded catalog
+   */
+  public Set<SchemaInfoRetrieval> getAdditionalRetrievals()
+  {
+    return Collections.unmodifiableSet(additional);
+  }
+
+  /**
+   * Schema info level for the upgrade crawl, with all steps for the
+   * kinds of database objects that are crawled again, and no steps for
+   * other kinds.
+   *
+   * @return Schema info level for the upgrade crawl
+   */
+  public SchemaInfoLevel getSchemaInfoLevel()
+  {
+    final Config config = new Config();
+    for (final SchemaInfoRetrieval schemaInfoRetrieval: SchemaInfoRetrieval
+      .values())
+    {
+      final boolean retrieve = combined.contains(schemaInfoRetrieval)
+                               && upgraded.contains(schemaInfoRetrieval
+                                 .getDatabaseObjectInfoRetrieval());
+      config.put(schemaInfoRetrieval.getKey(), String.valueOf(retrieve));
+    }
+    return SchemaInfoLevelBuilder.builder().withTag(tag).fromConfig(config)
+      .toOptions();
+  }
+
+  /**
+   * @return Kinds of database objects that are crawled again
+   */
+  public Set<DatabaseObjectInfoRetrieval> getUpgraded()
+  {
+    return Collections.unmodifiableSet(upgraded);
+  }
+
+  public boolean isNeeded()
+  {
+    return !upgraded.isEmpty();
+  }
+
+  /**
+   * Checks whether the upgrade crawl repeats only the steps that list
+   * objects, and no steps that retrieve detail for them, such as
+   * columns or indexes.
+   *
+   * @return Whether the upgrade runs fewer queries than loading the
+   *         whole catalog
+   */
+  public boolean isSavingQueries()
+  {
+    for (final SchemaInfoRetrieval schemaInfoRetrieval: getRepeatedRetrievals())
+    {
+      if (schemaInfoRetrieval.getInfoLevel() != InfoLevel.minimum)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Retrieval steps that were run for the loaded catalog, and
+   *         are run again for the kinds of database objects that are
+   *         crawled again
+   */
+  public Set<SchemaInfoRetrieval> getRepeatedRetrievals()
+  {
+    final EnumSet<SchemaInfoRetrieval> repeated = EnumSet
+      .noneOf(SchemaInfoRetrieval.class);
+    for (final SchemaInfoRetrieval schemaInfoRetrieval: combined)
+    {
+      if (!additional.contains(schemaInfoRetrieval) && upgraded
+        .contains(schemaInfoRetrieval.getDatabaseObjectInfoRetrieval()))
+      {
+        repeated.add(schemaInfoRetrieval);
+      }
+    }
+    return repeated;
+  }
+
+  /**
+   * Merges the upgrade crawl into the loaded catalog.
+   *
+   * @return Upgraded catalog
+   */
+  public Catalog upgrade(final Catalog catalog, final Catalog upgrade)
+  {
+    final Catalog upgradedCatalog = new UpgradedCatalog(catalog,
+                                                        upgrade,
+                                                        upgraded);
+    upgradedCatalog.setAttribute(SCHEMA_INFO_RETRIEVALS,
+                                 EnumSet.copyOf(combined));
+    return upgradedCatalog;
+  }
+
+}
@@ -0,0 +1,412 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.nCopies;
+import static java.util.Objects.requireNonNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.SchemaReference;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.InclusionRule;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Markers that change when the definition of a table changes, for
+ * finding the tables to crawl again when a catalog is refreshed. Markers
+ * for the tables in the schemas of a catalog are read at once from the
+ * data dictionary, using the DDL timestamps that Oracle, SQL Server and
+ * DB2 keep. PostgreSQL does not keep DDL timestamps, so the row versions
+ * of the system catalog rows for the table, its columns, indexes and
+ * constraints are used instead, since DDL rewrites those rows. MySQL
+ * keeps the creation time of a table, but not the time of in-place or
+ * instant ALTERs, so the marker is a checksum of the creation time and
+ * comment of the table, with the definitions of its columns, indexes
+ * and key columns. Changes to triggers, privileges and table options
+ * are not seen in MySQL markers. For other databases, the marker is a
+ * hash of the column definitions that the driver reports.
+ * <p>
+ * Markers are kept with the catalog as an attribute, so that they are
+ * cached and exported with it. Tables are keyed by schema and table
+ * name.
+ */
+public final class DdlMarkers
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(DdlMarkers.class.getName());
+
+  private static final String DDL_MARKERS = "schemacrawler.shell.ddl_markers";
+
+  private static final String ORACLE_MARKERS = "SELECT OWNER, OBJECT_NAME, "
+                                               + "TO_CHAR(LAST_DDL_TIME, 'YYYY-MM-DD HH24:MI:SS') "
+                                               + "FROM ALL_OBJECTS "
+                                               + "WHERE OBJECT_TYPE IN ('TABLE', 'VIEW', 'MATERIALIZED VIEW') "
+                                               + "AND OWNER IN (%1$s)";
+  private static final String POSTGRESQL_MARKERS = "SELECT n.nspname, c.relname, "
+                                                   + "c.xmin::text "
+                                                   + "|| ':' || COALESCE((SELECT string_agg(a.xmin::text, ',' ORDER BY a.attnum) FROM pg_catalog.pg_attribute a WHERE a.attrelid = c.oid AND a.attnum > 0), '') "
+                                                   + "|| ':' || COALESCE((SELECT string_agg(i.xmin::text, ',' ORDER BY i.indexrelid) FROM pg_catalog.pg_index i WHERE i.indrelid = c.oid), '') "
+                                                   + "|| ':' || COALESCE((SELECT string_agg(k.xmin::text, ',' ORDER BY k.oid) FROM pg_catalog.pg_constraint k WHERE k.conrelid = c.oid), '') "
+                                                   + "FROM pg_catalog.pg_class c "
+                                                   + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                                                   + "WHERE c.relkind IN ('r', 'p', 'v', 'm', 'f') "
+                                                   + "AND n.nspname IN (%1$s)";
+  private static final String MYSQL_MARKERS = "SELECT d.TABLE_SCHEMA, d.TABLE_NAME, "
+                                              + "CONCAT(COUNT(*), ':', SUM(CRC32(d.DEFINITION))) "
+                                              + "FROM ("
+                                              + "SELECT TABLE_SCHEMA, TABLE_NAME, CONCAT_WS('|', 'T', CREATE_TIME, TABLE_COMMENT) AS DEFINITION "
+                                              + "FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA IN (%1$s) "
+                                              + "UNION ALL "
+                                              + "SELECT TABLE_SCHEMA, TABLE_NAME, CONCAT_WS('|', 'C', ORDINAL_POSITION, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, EXTRA, COLUMN_COMMENT) "
+                                              + "FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA IN (%1$s) "
+                                              + "UNION ALL "
+                                              + "SELECT TABLE_SCHEMA, TABLE_NAME, CONCAT_WS('|', 'I', INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME, NON_UNIQUE) "
+                                              + "FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA IN (%1$s) "
+                                              + "UNION ALL "
+                                              + "SELECT TABLE_SCHEMA, TABLE_NAME, CONCAT_WS('|', 'K', CONSTRAINT_NAME, ORDINAL_POSITION, COLUMN_NAME, REFERENCED_TABLE_SCHEMA, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME) "
+                                              + "FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA IN (%1$s)"
+                                              + ") d "
+                                              + "GROUP BY d.TABLE_SCHEMA, d.TABLE_NAME";
+  private static final String SQLSERVER_MARKERS = "SELECT s.name, o.name, "
+                                                  + "CONVERT(VARCHAR(30), o.modify_date, 126) "
+                                                  + "FROM sys.objects o "
+                                                  + "JOIN sys.schemas s ON s.schema_id = o.schema_id "
+                                                  + "WHERE o.type IN ('U', 'V') "
+                                                  + "AND s.name IN (%1$s)";
+  private static final String DB2_MARKERS = "SELECT TRIM(TABSCHEMA), TABNAME, "
+                                            + "VARCHAR(ALTER_TIME) "
+                                            + "FROM SYSCAT.TABLES "
+                                            + "WHERE TRIM(TABSCHEMA) IN (%1$s)";
+
+  /**
+   * Keeps markers with a catalog, for the schemas in the catalog only.
+   */
+  public static void attach(final Catalog catalog,
+                            final Map<String, String> ddlMarkers)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(ddlMarkers, "No DDL markers provided");
+
+    final HashMap<String, String> catalogDdlMarkers = new HashMap<>();
+    final Set<String> schemaKeys = schemaKeys(catalog);
+    for (final Map.Entry<String, String> ddlMarker: ddlMarkers.entrySet())
+    {
+      final String key = ddlMarker.getKey();
+      if (schemaKeys.contains(key.substring(0, key.lastIndexOf('.'))))
+      {
+        catalogDdlMarkers.put(key, ddlMarker.getValue());
+      }
+    }
+    catalog.setAttribute(DDL_MARKERS, catalogDdlMarkers);
+  }
+
+  /**
+   * @return Key of a table, by schema and table name
+   */
+  public static String key(final Table table)
+  {
+    requireNonNull(table, "No table provided");
+    return schemaKey(table.getSchema()) + "." + table.getName();
+  }
+
+  /**
+   * @return Markers kept with the catalog, if any
+   */
+  public static Optional<Map<String, String>> lookup(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    // SchemaCrawler fails to look up missing attributes, and catalog
+    // decorators do not report the attributes that they have
+    return Optional.ofNullable(catalog.getAttribute(DDL_MARKERS));
+  }
+
+  /**
+   * @return Keys of the schemas in the catalog
+   */
+  public static Set<String> schemaKeys(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    return schemaKeys(catalog.getSchemas());
+  }
+
+  /**
+   * Lists the schemas that a crawl with the schema inclusion rule will
+   * load, so that markers can be read before the crawl.
+   *
+   * @return Schemas matching the inclusion rule
+   */
+  public static Collection<Schema> schemas(final Connection connection,
+                                           final InclusionRule schemaInclusionRule)
+    throws SQLException
+  {
+    requireNonNull(connection, "No connection provided");
+    requireNonNull(schemaInclusionRule, "No schema inclusion rule provided");
+
+    final DatabaseMetaData metaData = connection.getMetaData();
+    final List<Schema> schemas = new ArrayList<>();
+    if (metaData.supportsSchemasInTableDefinitions())
+    {
+      try (final ResultSet results = metaData.getSchemas();)
+      {
+        while (results.next())
+        {
+          schemas.add(new SchemaReference(results.getString("TABLE_CATALOG"),
+                                          results.getString("TABLE_SCHEM")));
+        }
+      }
+    }
+    else
+    {
+      try (final ResultSet results = metaData.getCatalogs();)
+      {
+        while (results.next())
+        {
+          schemas
+            .add(new SchemaReference(results.getString("TABLE_CAT"), null));
+        }
+      }
+    }
+    schemas.removeIf(schema -> !schemaInclusionRule.test(schema.getFullName()));
+    return schemas;
+  }
+
+  /**
+   * Reads markers for the tables in the given schemas, from the data
+   * dictionary where possible.
+   *
+   * @return Markers, by table key
+   */
+  public static Map<String, String> snapshot(final Connection connection,
+                                             final Collection<? extends Schema> schemas)
+    throws SQLException
+  {
+    requireNonNull(connection, "No connection provided");
+    requireNonNull(schemas, "No schemas provided");
+
+    final long start = System.nanoTime();
+    final List<String> schemaKeys = new ArrayList<>(schemaKeys(schemas));
+    if (schemaKeys.isEmpty())
+    {
+      return new HashMap<>();
+    }
+    final DatabaseMetaData metaData = connection.getMetaData();
+    final String query = dataDictionaryQuery(metaData);
+    final Map<String, String> ddlMarkers;
+    if (query != null)
+    {
+      final String sql = String
+        .format(query, String.join(", ", nCopies(schemaKeys.size(), "?")));
+      ddlMarkers = new HashMap<>();
+      try (final PreparedStatement statement = connection
+        .prepareStatement(sql);)
+      {
+        // The list of schemas is repeated for each part of the query
+        final long parameterCount = sql.chars().filter(c -> c == '?')
+          .count();
+        for (int i = 0; i < parameterCount; i++)
+        {
+          statement.setString(i + 1,
+                              schemaKeys.get(i % schemaKeys.size()));
+        }
+        try (final ResultSet results = statement.executeQuery();)
+        {
+          while (results.next())
+          {
+            ddlMarkers.put(results.getString(1) + "." + results.getString(2),
+                           String.valueOf(results.getString(3)));
+          }
+        }
+      }
+    }
+    else
+    {
+      ddlMarkers = columnSignatures(metaData, schemas);
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Read DDL markers for %d tables in %d schemas, %s, in %d ms",
+                                ddlMarkers.size(),
+                                schemaKeys.size(),
+                                query != null? "from the data dictionary"
+                                             : "from column definitions",
+                                (System.nanoTime() - start) / 1_000_000L));
+    return ddlMarkers;
+  }
+
+  /**
+   * Hashes the column definitions of each table, with a metadata call
+   * for each schema.
+   */
+  private static Map<String, String> columnSignatures(final DatabaseMetaData metaData,
+                                                      final Collection<? extends Schema> schemas)
+    throws SQLException
+  {
+    final Set<String> schemaKeys = schemaKeys(schemas);
+    final Map<String, StringBuilder> signatures = new HashMap<>();
+    for (final Schema schema: schemas)
+    {
+      try (final ResultSet results = metaData
+        .getColumns(schema.getCatalogName(), schema.getName(), "%", "%");)
+      {
+        while (results.next())
+        {
+          final String schemaName = results.getString("TABLE_SCHEM");
+          final String schemaKey = schemaName != null? schemaName
+                                                     : results
+                                                       .getString("TABLE_CAT");
+          // Schema names are patterns, so other schemas can match
+          if (!schemaKeys.contains(schemaKey))
+          {
+            continue;
+          }
+          final String key = schemaKey + "." + results.getString("TABLE_NAME");
+          signatures.computeIfAbsent(key, k -> new StringBuilder())
+            .append(results.getInt("ORDINAL_POSITION")).append(' ')
+            .append(results.getString("COLUMN_NAME")).append(' ')
+            .append(results.getString("TYPE_NAME")).append(' ')
+            .append(results.getInt("COLUMN_SIZE")).append(' ')
+            .append(results.getInt("DECIMAL_DIGITS")).append(' ')
+            .append(results.getInt("NULLABLE")).append(' ')
+            .append(results.getString("COLUMN_DEF")).append('\n');
+        }
+      }
+    }
+
+    final MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException("Cannot hash column definitions", e);
+    }
+    final Map<String, String> ddlMarkers = new HashMap<>();
+    for (final Map.Entry<String, StringBuilder> signature: signatures
+      .entrySet())
+    {
+      final byte[] hash = digest
+        .digest(signature.getValue().toString().getBytes(UTF_8));
+      final StringBuilder ddlMarker = new StringBuilder(hash.length * 2);
+      for (final byte b: hash)
+      {
+        ddlMarker.append(String.format("%02x", b));
+      }
+      ddlMarkers.put(signature.getKey(), ddlMarker.toString());
+    }
+    return ddlMarkers;
+  }
+
+  private static Set<String> schemaKeys(final Collection<? extends Schema> schemas)
+  {
+    final Set<String> schemaKeys = new HashSet<>();
+    for (final Schema schema: schemas)
+    {
+      final String schemaKey = schemaKey(schema);
+      if (schemaKey != null)
+      {
+        schemaKeys.add(schemaKey);
+      }
+    }
+    return schemaKeys;
+  }
+
+  private static String dataDictionaryQuery(final DatabaseMetaData metaData)
+  {
+    try
+    {
+      final String databaseProductName = metaData.getDatabaseProductName()
+        .toLowerCase(Locale.ENGLISH);
+      if (databaseProductName.contains("oracle"))
+      {
+        return ORACLE_MARKERS;
+      }
+      else if (databaseProductName.contains("postgresql"))
+      {
+        return POSTGRESQL_MARKERS;
+      }
+      else if (databaseProductName.contains("mysql")
+               || databaseProductName.contains("mariadb"))
+      {
+        return MYSQL_MARKERS;
+      }
+      else if (databaseProductName.contains("microsoft sql server"))
+      {
+        return SQLSERVER_MARKERS;
+      }
+      else if (databaseProductName.startsWith("db2"))
+      {
+        return DB2_MARKERS;
+      }
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.FINE, e.getMessage(), e);
+    }
+    return null;
+  }
+
+  /**
+   * Schemas are keyed by schema name, or by catalog name for databases
+   * that only have catalogs.
+   */
+  private static String schemaKey(final Schema schema)
+  {
+    return schema.getName() != null? schema.getName()
+                                   : schema.getCatalogName();
+  }
+
+  private DdlMarkers()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,544 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.RoutineColumn;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.Trigger;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Trigram index of the definition text of tables and routines, which is
+ * the same text that is searched by grep for definitions - remarks,
+ * view and routine definitions, and trigger action statements. Before a
+ * regular expression is run over definitions, the literal text that any
+ * match has to contain is looked up in the index, and only the tables
+ * and routines that have all of its trigrams are candidates. Trigrams
+ * are case-insensitive, so candidates are a superset of the matches.
+ */
+public final class DefinitionIndex
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(DefinitionIndex.class.getName());
+
+  /**
+   * Builds a definition index for a catalog.
+   *
+   * @param catalog
+   *        Loaded catalog
+   * @return Definition index
+   */
+  public static DefinitionIndex build(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+
+    final long start = System.nanoTime();
+    final DefinitionIndex index = new DefinitionIndex();
+    for (final Table table: catalog.getTables())
+    {
+      index.add(table);
+    }
+    for (final Routine routine: catalog.getRoutines())
+    {
+      index.add(routine);
+    }
+    index.compact();
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Indexed %,d characters of definitions for %d objects, with %d distinct trigrams in %d ms",
+                                index.characterCount,
+                                index.objects.size(),
+                                index.postings.size(),
+                                (System.nanoTime() - start) / 1_000_000L));
+    return index;
+  }
+
+  /**
+   * Finds literal text that every match of a regular expression has to
+   * contain. The analysis is conservative - anything inside groups or
+   * character classes, optional characters, and patterns with
+   * alternatives do not contribute any literals.
+   *
+   * @param regex
+   *        Regular expression
+   * @return Lower case literals of at least three characters, which may
+   *         be empty if nothing is known
+   */
+  static List<String> requiredLiterals(final String regex)
+  {
+    final List<String> literals = new ArrayList<>();
+    if (regex == null)
+    {
+      return literals;
+    }
+
+    final StringBuilder run = new StringBuilder();
+    final int length = regex.length();
+    for (int i = 0; i < length; i++)
+    {
+      final char ch = regex.charAt(i);
+      switch (ch)
+      {
+        case '\\':
+          if (i + 1 < length)
+          {
+            final char escaped = regex.charAt(++i);
+            if (escaped == 'Q')
+            {
+              final int end = regex.indexOf("\\E", i + 1);
+              final int quoteEnd = end < 0? length: end;
+              run.append(regex, i + 1, quoteEnd);
+              i = end < 0? length: end + 1;
+            }
+            else if (Character.isLetterOrDigit(escaped))
+            {
+              // Character classes, back references and other escapes,
+              // which may be followed by a code point, name or number
+              endRun(run, literals);
+              i = skipEscape(regex, i);
+            }
+            else
+            {
+              run.append(escaped);
+            }
+          }
+          break;
+        case '[':
+          endRun(run, literals);
+          i = skipCharacterClass(regex, i);
+          break;
+        case '(':
+          if (hasCommentsFlag(regex, i))
+          {
+            // Whitespace in the pattern is ignored after this
+            return new ArrayList<>();
+          }
+          endRun(run, literals);
+          i = skipGroup(regex, i);
+          break;
+        case '|':
+          // Alternatives at the top level mean nothing is required
+          return new ArrayList<>();
+        case '?':
+        case '*':
+          dropLast(run);
+          endRun(run, literals);
+          break;
+        case '{':
+          if (i + 1 < length
+              && (regex.charAt(i + 1) == '0' || regex.charAt(i + 1) == ','))
+          {
+            dropLast(run);
+          }
+          endRun(run, literals);
+          final int close = regex.indexOf('}', i);
+          i = close < 0? length: close;
+          break;
+        case '+':
+        case '.':
+        case '^':
+        case '$':
+          endRun(run, literals);
+          break;
+        default:
+          run.append(ch);
+          break;
+      }
+    }
+    endRun(run, literals);
+    return literals;
+  }
+
+  /**
+   * Gets the text that grep for definitions searches for a table or
+   * routine.
+   */
+  private static List<String> definitionTexts(final NamedObject object)
+  {
+    final List<String> texts = new ArrayList<>();
+    if (object instanceof Table)
+    {
+      final Table table = (Table) object;
+      texts.add(table.getRemarks());
+      texts.add(table.getDefinition());
+      for (final Column column: table.getColumns())
+      {
+        texts.add(column.getRemarks());
+      }
+      for (final Trigger trigger: table.getTriggers())
+      {
+        texts.add(trigger.getActionStatement());
+      }
+    }
+    else if (object instanceof Routine)
+    {
+      final Routine routine = (Routine) object;
+      texts.add(routine.getRemarks());
+      texts.add(routine.getDefinition());
+      for (final RoutineColumn<?> parameter: routine.getColumns())
+      {
+        texts.add(parameter.getRemarks());
+      }
+    }
+    return texts;
+  }
+
+  private static void dropLast(final StringBuilder run)
+  {
+    if (run.length() > 0)
+    {
+      run.setLength(run.length() - 1);
+    }
+  }
+
+  private static void endRun(final StringBuilder run,
+                             final List<String> literals)
+  {
+    if (run.length() >= 3)
+    {
+      literals.add(run.toString().toLowerCase(Locale.ENGLISH));
+    }
+    run.setLength(0);
+  }
+
+  /**
+   * Checks whether a group sets inline flags that include "x", for
+   * comments mode.
+   */
+  private static boolean hasCommentsFlag(final String regex, final int start)
+  {
+    if (start + 1 >= regex.length() || regex.charAt(start + 1) != '?')
+    {
+      return false;
+    }
+    for (int i = start + 2; i < regex.length(); i++)
+    {
+      final char ch = regex.charAt(i);
+      if (ch == 'x')
+      {
+        return true;
+      }
+      if (!Character.isLetter(ch) && ch != '-')
+      {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static int skipCharacterClass(final String regex, final int start)
+  {
+    int i = start + 1;
+    if (i < regex.length() && regex.charAt(i) == '^')
+    {
+      i++;
+    }
+    if (i < regex.length() && regex.charAt(i) == ']')
+    {
+      i++;
+    }
+    int depth = 1;
+    for (; i < regex.length(); i++)
+    {
+      final char ch = regex.charAt(i);
+      if (ch == '\\')
+      {
+        i = skipQuote(regex, i);
+      }
+      else if (ch == '[')
+      {
+        depth++;
+      }
+      else if (ch == ']' && --depth == 0)
+      {
+        return i;
+      }
+    }
+    return regex.length();
+  }
+
+  /**
+   * Skips over an escaped character, or text that is quoted up to "\E",
+   * inside a group or character class, and returns the position of the
+   * last character.
+   */
+  private static int skipQuote(final String regex, final int start)
+  {
+    if (start + 1 < regex.length() && regex.charAt(start + 1) == 'Q')
+    {
+      final int end = regex.indexOf("\\E", start + 2);
+      return end < 0? regex.length(): end + 1;
+    }
+    return start + 1;
+  }
+
+  /**
+   * Skips over what follows a letter or digit escape, such as the
+   * hexadecimal digits of a code point, or the name of a group or
+   * property, and returns the position of the last character of the
+   * escape. More characters may be skipped than the escape uses, since
+   * a shorter literal is still required.
+   */
+  private static int skipEscape(final String regex, final int start)
+  {
+    final int length = regex.length();
+    final char escaped = regex.charAt(start);
+    int i = start;
+    switch (escaped)
+    {
+      case 'x':
+      case 'p':
+      case 'P':
+      case 'N':
+        if (i + 1 < length && regex.charAt(i + 1) == '{')
+        {
+          final int close = regex.indexOf('}', i + 1);
+          return close < 0? length: close;
+        }
+        return escaped == 'x'? Math.min(i + 2, length - 1)
+                             : Math.min(i + 1, length - 1);
+      case 'u':
+        return Math.min(i + 4, length - 1);
+      case 'c':
+        return Math.min(i + 1, length - 1);
+      case 'k':
+        if (i + 1 < length && regex.charAt(i + 1) == '<')
+        {
+          final int close = regex.indexOf('>', i + 1);
+          return close < 0? length: close;
+        }
+        return i;
+      case '0':
+        while (i + 1 < length && i - start < 3 && regex.charAt(i + 1) >= '0'
+               && regex.charAt(i + 1) <= '7')
+        {
+          i++;
+        }
+        return i;
+      default:
+        // Back references are followed by as many digits as there are
+        // groups
+        while (Character.isDigit(escaped) && i + 1 < length
+               && Character.isDigit(regex.charAt(i + 1)))
+        {
+          i++;
+        }
+        return i;
+    }
+  }
+
+  private static int skipGroup(final String regex, final int start)
+  {
+    int depth = 0;
+    for (int i = start; i < regex.length(); i++)
+    {
+      final char ch = regex.charAt(i);
+      if (ch == '\\')
+      {
+        i = skipQuote(regex, i);
+      }
+      else if (ch == '[')
+      {
+        i = skipCharacterClass(regex, i);
+      }
+      else if (ch == '(')
+      {
+        depth++;
+      }
+      else if (ch == ')' && --depth == 0)
+      {
+        return i;
+      }
+    }
+    return regex.length();
+  }
+
+  private static long trigram(final String text, final int offset)
+  {
+    return (long) text.charAt(offset) << 32
+           | (long) text.charAt(offset + 1) << 16
+           | text.charAt(offset + 2);
+  }
+
+  private final List<NamedObject> objects;
+  private Map<Long, Postings> building;
+  private Map<Long, int[]> postings;
+  private long characterCount;
+
+  private DefinitionIndex()
+  {
+    objects = new ArrayList<>();
+    building = new HashMap<>();
+  }
+
+  /**
+   * Finds candidate tables and routines that may have definitions
+   * matching a regular expression.
+   *
+   * @param pattern
+   *        Regular expression
+   * @return Candidates, or empty if the index cannot narrow down the
+   *         candidates for the pattern, and all objects have to be
+   *         checked
+   */
+  public Optional<Set<NamedObject>> candidates(final Pattern pattern)
+  {
+    requireNonNull(pattern, "No pattern provided");
+
+    if ((pattern.flags() & (Pattern.COMMENTS | Pattern.LITERAL)) != 0)
+    {
+      return Optional.empty();
+    }
+
+    int[] candidateIds = null;
+    for (final String literal: requiredLiterals(pattern.pattern()))
+    {
+      for (int offset = 0; offset + 3 <= literal.length(); offset++)
+      {
+        final int[] ids = postings.get(trigram(literal, offset));
+        if (ids == null)
+        {
+          return Optional.of(Collections.emptySet());
+        }
+        candidateIds = candidateIds == null? ids
+                                           : Postings.intersect(candidateIds,
+                                                                ids);
+      }
+    }
+    if (candidateIds == null)
+    {
+      return Optional.empty();
+    }
+
+    final Set<NamedObject> candidates = new HashSet<>();
+    for (final int id: candidateIds)
+    {
+      candidates.add(objects.get(id));
+    }
+    return Optional.of(candidates);
+  }
+
+  /**
+   * @return Indexed tables and routines, in catalog order
+   */
+  public List<NamedObject> getObjects()
+  {
+    return Collections.unmodifiableList(objects);
+  }
+
+  /**
+   * Searches definitions for a regular expression, checking only the
+   * candidates from the index.
+   *
+   * @param pattern
+   *        Regular expression to find in definitions
+   * @param limit
+   *        Maximum number of objects to return
+   * @return Tables and routines with definitions that contain a match,
+   *         in catalog order
+   */
+  public List<NamedObject> search(final Pattern pattern, final int limit)
+  {
+    final Optional<Set<NamedObject>> candidates = candidates(pattern);
+    final List<NamedObject> found = new ArrayList<>();
+    for (final NamedObject object: objects)
+    {
+      if (found.size() >= limit)
+      {
+        break;
+      }
+      if (candidates.isPresent() && !candidates.get().contains(object))
+      {
+        continue;
+      }
+      for (final String text: definitionTexts(object))
+      {
+        if (text != null && pattern.matcher(text).find())
+        {
+          found.add(object);
+          break;
+        }
+      }
+    }
+    return found;
+  }
+
+  private void add(final NamedObject object)
+  {
+    final int id = objects.size();
+    objects.add(object);
+    for (final String text: definitionTexts(object))
+    {
+      if (text == null || text.length() < 3)
+      {
+        continue;
+      }
+      characterCount += text.length();
+      final String normalizedText = text.toLowerCase(Locale.ENGLISH);
+      for (int offset = 0; offset + 3 <= normalizedText.length(); offset++)
+      {
+        building.computeIfAbsent(trigram(normalizedText, offset),
+                                 key -> new Postings())
+          .add(id);
+      }
+    }
+  }
+
+  private void compact()
+  {
+    postings = new HashMap<>(building.size() * 4 / 3 + 1);
+    for (final Map.Entry<Long, Postings> entry: building.entrySet())
+    {
+      postings.put(entry.getKey(), entry.getValue().toArray());
+    }
+    building = null;
+  }
+
+}
@@ -0,0 +1,744 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+import schemacrawler.crawl.BaseColumnReference;
+import schemacrawler.filter.FilterFactory;
+import schemacrawler.schema.BaseForeignKey;
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.ColumnDataType;
+import schemacrawler.schema.ColumnReference;
+import schemacrawler.schema.DependantObject;
+import schemacrawler.schema.ForeignKeyColumnReference;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.PartialDatabaseObject;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.TableRelationshipType;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+import schemacrawler.schemacrawler.InclusionRule;
+import schemacrawler.schemacrawler.InclusionRuleWithRegularExpression;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+import sf.util.Utility;
+
+/**
+ * Filtered view over a catalog that has already been loaded. Schema,
+ * table, routine, synonym and sequence inclusion rules, table and
+ * routine types, grep rules, and parent and child table depth are
+ * applied the same way as during a crawl, and the loaded catalog is left
+ * as it is. Diagrams show foreign keys to tables that are filtered out
+ * differently, so when tables are filtered out, the view hands out
+ * wrapped tables, which carry their own marks, along with the keys,
+ * columns and references that lead from one table to another. A view
+ * can only narrow what was loaded, and column and parameter exclusion
+ * rules, and leaving out tables without rows, only take effect when the
+ * catalog is loaded.
+ */
+public final class FilteredCatalog
+  extends BaseCatalogDecorator
+{
+
+  private static final long serialVersionUID = 5432937183245093018L;
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(FilteredCatalog.class.getName());
+
+  /**
+   * Wraps a table, or an object that leads from one table to another,
+   * for the view. Wrapped tables keep their attributes in the wrapper,
+   * so marks, and attributes that are set while the view is rendered,
+   * do not change the loaded catalog, which is shared with other views,
+   * and with commands that are running.
+   */
+  private final class ViewHandler
+    implements InvocationHandler, Serializable
+  {
+
+    private static final long serialVersionUID = -2860436718924372204L;
+
+    private final Object object;
+    private final Map<String, Object> attributes;
+
+    ViewHandler(final Object object)
+    {
+      this.object = object;
+      if (object instanceof Table)
+      {
+        attributes = tableAttributes((Table) object);
+      }
+      else
+      {
+        attributes = null;
+      }
+    }
+
+    @Override
+    public Object invoke(final Object proxy,
+                         final Method method,
+                         final Object[] args)
+      throws Throwable
+    {
+      if (attributes != null)
+      {
+        switch (method.getName())
+        {
+          case "getAttribute":
+            final Object value = args[0] == null? null: attributes
+              .get(args[0]);
+            return value == null && args.length > 1? args[1]: value;
+          case "getAttributes":
+            synchronized (attributes)
+            {
+              return Collections.unmodifiableMap(new HashMap<>(attributes));
+            }
+          case "hasAttribute":
+            return args[0] != null && attributes.containsKey(args[0]);
+          case "lookupAttribute":
+            return Optional.of(attributes.get(args[0]));
+          case "removeAttribute":
+            if (!Utility.isBlank((String) args[0]))
+            {
+              attributes.remove(args[0]);
+            }
+            return null;
+          case "setAttribute":
+            if (!Utility.isBlank((String) args[0]))
+            {
+              if (args[1] == null)
+              {
+                attributes.remove(args[0]);
+              }
+              else
+              {
+                attributes.put((String) args[0], args[1]);
+              }
+            }
+            return null;
+          default:
+            break;
+        }
+      }
+
+      final Object result;
+      try
+      {
+        result = method.invoke(object, unwrap(args));
+      }
+      catch (final InvocationTargetException e)
+      {
+        throw e.getCause();
+      }
+      return view(result, method.getReturnType());
+    }
+
+  }
+
+  /**
+   * Foreign key column reference with wrapped columns. Column references
+   * are compared with references that SchemaCrawler makes, such as weak
+   * associations, which are only equal to other base column references.
+   */
+  private static final class ViewColumnReference
+    extends BaseColumnReference
+    implements ForeignKeyColumnReference
+  {
+
+    private static final long serialVersionUID = 7127931380213470462L;
+
+    private final int keySequence;
+
+    ViewColumnReference(final int keySequence,
+                        final Column primaryKeyColumn,
+                        final Column foreignKeyColumn)
+    {
+      super(primaryKeyColumn, foreignKeyColumn);
+      this.keySequence = keySequence;
+    }
+
+    @Override
+    public int compareTo(final ColumnReference columnReference)
+    {
+      int comparison = 0;
+      if (columnReference instanceof ForeignKeyColumnReference)
+      {
+        comparison = keySequence
+                     - ((ForeignKeyColumnReference) columnReference)
+                       .getKeySequence();
+      }
+      if (comparison == 0)
+      {
+        comparison = super.compareTo(columnReference);
+      }
+      return comparison;
+    }
+
+    @Override
+    public int getKeySequence()
+    {
+      return keySequence;
+    }
+
+  }
+
+  private static final String FILTERED_OUT = "schemacrawler.table.filtered_out";
+  private static final String NO_GREP_MATCH = "schemacrawler.table.no_grep_match";
+  private static final String WEAK_ASSOCIATIONS = "schemacrawler.weak_associations";
+
+  private static <N extends NamedObject> Predicate<N> narrow(final Predicate<N> filter,
+                                                            final Set<NamedObject> candidates)
+  {
+    return namedObject -> candidates.contains(namedObject)
+                          && filter.test(namedObject);
+  }
+
+  private static <N> List<N> filter(final Collection<N> namedObjects,
+                                    final Predicate<? super N> filter)
+  {
+    final List<N> filtered = new ArrayList<>();
+    for (final N namedObject: namedObjects)
+    {
+      if (filter.test(namedObject))
+      {
+        filtered.add(namedObject);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Finds the only tables and routines that can match a grep for
+   * definitions. An inverted match includes objects that do not match,
+   * so the candidates cannot be used then.
+   */
+  private static Optional<Set<NamedObject>> definitionCandidates(final SchemaCrawlerOptions options,
+                                                                 final DefinitionIndex definitionIndex)
+  {
+    if (definitionIndex == null || options.isGrepInvertMatch())
+    {
+      return Optional.empty();
+    }
+    final Optional<InclusionRule> grepDefinitionInclusionRule = options
+      .getGrepDefinitionInclusionRule();
+    if (!grepDefinitionInclusionRule.isPresent()
+        || !(grepDefinitionInclusionRule
+          .get() instanceof InclusionRuleWithRegularExpression))
+    {
+      return Optional.empty();
+    }
+    return definitionIndex
+      .candidates(((InclusionRuleWithRegularExpression) grepDefinitionInclusionRule
+        .get()).getInclusionPattern());
+  }
+
+  private static boolean isPartial(final Table table)
+  {
+    return table instanceof PartialDatabaseObject;
+  }
+
+  private static boolean isViewed(final Object object)
+  {
+    return object instanceof Table || object instanceof DependantObject
+           || object instanceof BaseForeignKey;
+  }
+
+  private static Class<?>[] publicInterfaces(final Class<?> type)
+  {
+    final Set<Class<?>> interfaces = new LinkedHashSet<>();
+    for (Class<?> superType = type; superType != null; superType = superType
+      .getSuperclass())
+    {
+      for (final Class<?> superInterface: superType.getInterfaces())
+      {
+        if (Modifier.isPublic(superInterface.getModifiers()))
+        {
+          interfaces.add(superInterface);
+        }
+      }
+    }
+    return interfaces.toArray(new Class<?>[interfaces.size()]);
+  }
+
+  private static Object[] unwrap(final Object[] args)
+  {
+    if (args == null)
+    {
+      return null;
+    }
+    final Object[] unwrapped = args.clone();
+    for (int i = 0; i < unwrapped.length; i++)
+    {
+      final Object arg = unwrapped[i];
+      if (arg != null && Proxy.isProxyClass(arg.getClass())
+          && Proxy.getInvocationHandler(arg) instanceof ViewHandler)
+      {
+        unwrapped[i] = ((ViewHandler) Proxy.getInvocationHandler(arg)).object;
+      }
+    }
+    return unwrapped;
+  }
+
+  private final Set<Schema> schemas;
+  private final Set<Table> tables;
+  private final Set<Routine> routines;
+  private final Set<Synonym> synonyms;
+  private final Set<Sequence> sequences;
+  private final boolean isFiltered;
+  private final boolean isGrepOnlyMatching;
+  private final Map<Object, Object> views;
+
+  public FilteredCatalog(final Catalog catalog,
+                         final SchemaCrawlerOptions options)
+  {
+    this(catalog, options, (DefinitionIndex) null, null);
+  }
+
+  /**
+   * Creates a filtered view, using a definition index to narrow down the
+   * tables and routines that need to be checked when grepping
+   * definitions, and a foreign key graph to add parent and child tables.
+   * Either may be null.
+   */
+  public FilteredCatalog(final Catalog catalog,
+                         final SchemaCrawlerOptions options,
+                         final DefinitionIndex definitionIndex,
+                         final ForeignKeyGraph foreignKeyGraph)
+  {
+    this(catalog,
+         options,
+         definitionCandidates(options, definitionIndex),
+         foreignKeyGraph);
+  }
+
+  private FilteredCatalog(final Catalog catalog,
+                          final SchemaCrawlerOptions options,
+                          final Optional<Set<NamedObject>> definitionCandidates,
+                          final ForeignKeyGraph foreignKeyGraph)
+  {
+    this(catalog,
+         options,
+         definitionCandidates,
+         filterTables(catalog, options, definitionCandidates, foreignKeyGraph));
+  }
+
+  private FilteredCatalog(final Catalog catalog,
+                          final SchemaCrawlerOptions options,
+                          final Optional<Set<NamedObject>> definitionCandidates,
+                          final Set<Table> tables)
+  {
+    super(catalog);
+
+    Predicate<Routine> routineFilter = FilterFactory.routineFilter(options);
+    if (definitionCandidates.isPresent()
+        && !options.getGrepRoutineColumnInclusionRule().isPresent())
+    {
+      routineFilter = narrow(routineFilter, definitionCandidates.get());
+    }
+
+    // Schema objects compare by name, so objects selected from the
+    // loaded catalog also select their copies
+    schemas = new HashSet<>(filter(catalog.getSchemas(),
+                                   FilterFactory.schemaFilter(options)));
+    this.tables = tables;
+    isFiltered = catalog.getTables().stream()
+      .anyMatch(table -> !isPartial(table) && !tables.contains(table));
+    isGrepOnlyMatching = options.isGrepOnlyMatching();
+    views = Collections.synchronizedMap(new IdentityHashMap<>());
+    routines = new HashSet<>(filter(catalog.getRoutines(), routineFilter));
+    synonyms = new HashSet<>(filter(catalog.getSynonyms(),
+                                    FilterFactory.synonymFilter(options)));
+    sequences = new HashSet<>(filter(catalog.getSequences(),
+                                     FilterFactory.sequenceFilter(options)));
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Filtered catalog to %d of %d tables, and %d of %d routines",
+                                tables.size(),
+                                catalog.getTables().size(),
+                                routines.size(),
+                                catalog.getRoutines().size()));
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes()
+  {
+    return filter(catalog.getColumnDataTypes(), this::isIncluded);
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes(final Schema schema)
+  {
+    return filter(catalog.getColumnDataTypes(schema), this::isIncluded);
+  }
+
+  @Override
+  public Collection<Routine> getRoutines()
+  {
+    return filter(catalog.getRoutines(), routines::contains);
+  }
+
+  @Override
+  public Collection<Routine> getRoutines(final Schema schema)
+  {
+    return filter(catalog.getRoutines(schema), routines::contains);
+  }
+
+  @Override
+  public Collection<Schema> getSchemas()
+  {
+    return filter(catalog.getSchemas(), schemas::contains);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences()
+  {
+    return filter(catalog.getSequences(), sequences::contains);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences(final Schema schema)
+  {
+    return filter(catalog.getSequences(schema), sequences::contains);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms()
+  {
+    return filter(catalog.getSynonyms(), synonyms::contains);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms(final Schema schema)
+  {
+    return filter(catalog.getSynonyms(schema), synonyms::contains);
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    return view(filter(catalog.getTables(), tables::contains));
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    return view(filter(catalog.getTables(schema), tables::contains));
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends ColumnDataType> lookupColumnDataType(final Schema schema,
+                                                                 final String name)
+  {
+    return catalog.lookupColumnDataType(schema, name).filter(this::isIncluded);
+  }
+
+  @Override
+  public Optional<? extends Routine> lookupRoutine(final Schema schema,
+                                                   final String name)
+  {
+    return catalog.lookupRoutine(schema, name).filter(routines::contains);
+  }
+
+  @Override
+  public Optional<? extends Schema> lookupSchema(final String name)
+  {
+    return catalog.lookupSchema(name).filter(schemas::contains);
+  }
+
+  @Override
+  public Optional<? extends Sequence> lookupSequence(final Schema schema,
+                                                     final String name)
+  {
+    return catalog.lookupSequence(schema, name).filter(sequences::contains);
+  }
+
+  @Override
+  public Optional<? extends Synonym> lookupSynonym(final Schema schema,
+                                                   final String name)
+  {
+    return catalog.lookupSynonym(schema, name).filter(synonyms::contains);
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    return catalog.lookupTable(schema, name).filter(tables::contains)
+      .map(this::view);
+  }
+
+  /**
+   * Selects tables the same way as the tables reducer does during a
+   * crawl, first by the table filter, and then by adding parent and
+   * child tables to the requested depth.
+   */
+  private static Set<Table> filterTables(final Catalog catalog,
+                                         final SchemaCrawlerOptions options,
+                                         final Optional<Set<NamedObject>> definitionCandidates,
+                                         final ForeignKeyGraph foreignKeyGraph)
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(options, "No SchemaCrawler options provided");
+    if (options.isNoEmptyTables())
+    {
+      throw new IllegalArgumentException("Tables without rows cannot be filtered out in memory");
+    }
+
+    Predicate<Table> tableFilter = FilterFactory.tableFilter(options);
+    if (definitionCandidates.isPresent()
+        && !options.getGrepColumnInclusionRule().isPresent())
+    {
+      tableFilter = narrow(tableFilter, definitionCandidates.get());
+    }
+    final Set<Table> filteredTables = new HashSet<>(filter(catalog
+      .getTables(), tableFilter));
+
+    final Set<Table> keepTables = new HashSet<>(filteredTables);
+    final int childTableFilterDepth = options.getChildTableFilterDepth();
+    final int parentTableFilterDepth = options.getParentTableFilterDepth();
+    if (foreignKeyGraph != null)
+    {
+      keepTables.addAll(foreignKeyGraph.expand(filteredTables,
+                                               TableRelationshipType.child,
+                                               childTableFilterDepth));
+      keepTables.addAll(foreignKeyGraph.expand(filteredTables,
+                                               TableRelationshipType.parent,
+                                               parentTableFilterDepth));
+    }
+    else
+    {
+      keepTables.addAll(includeRelatedTables(catalog,
+                                             TableRelationshipType.child,
+                                             childTableFilterDepth,
+                                             filteredTables));
+      keepTables.addAll(includeRelatedTables(catalog,
+                                             TableRelationshipType.parent,
+                                             parentTableFilterDepth,
+                                             filteredTables));
+    }
+    return keepTables;
+  }
+
+  /**
+   * Adds related tables to the requested depth. Related tables that were
+   * loaded separately, such as tables in other schemas of a merged
+   * catalog, are referenced as partial tables, and are looked up in the
+   * catalog.
+   */
+  private static Set<Table> includeRelatedTables(final Catalog catalog,
+                                                 final TableRelationshipType tableRelationshipType,
+                                                 final int depth,
+                                                 final Set<Table> filteredTables)
+  {
+    final Set<Table> includedTables = new HashSet<>(filteredTables);
+    for (int i = 0; i < depth; i++)
+    {
+      for (final Table table: new ArrayList<>(includedTables))
+      {
+        for (final Table relatedTable: table
+          .getRelatedTables(tableRelationshipType))
+        {
+          if (!isPartial(relatedTable))
+          {
+            includedTables.add(relatedTable);
+          }
+          else
+          {
+            catalog
+              .lookupTable(relatedTable.getSchema(), relatedTable.getName())
+              .filter(loadedTable -> !isPartial(loadedTable))
+              .ifPresent(includedTables::add);
+          }
+        }
+      }
+    }
+    return includedTables;
+  }
+
+  /**
+   * System column data types do not belong to any loaded schema, and are
+   * always included.
+   */
+  private boolean isIncluded(final ColumnDataType columnDataType)
+  {
+    final Schema schema = columnDataType.getSchema();
+    return schema == null || schemas.contains(schema)
+           || !catalog.lookupSchema(schema.getFullName()).isPresent();
+  }
+
+  /**
+   * Copies the attributes of a loaded table for a wrapped table, with
+   * the marks of the view. Weak associations are found when a catalog
+   * is rendered, and refer to the tables that were rendered, so they
+   * are found again for the view.
+   */
+  private Map<String, Object> tableAttributes(final Table table)
+  {
+    final Map<String, Object> attributes = Collections
+      .synchronizedMap(new HashMap<>(table.getAttributes()));
+    attributes.remove(WEAK_ASSOCIATIONS);
+    if (!isPartial(table))
+    {
+      attributes.remove(FILTERED_OUT);
+      attributes.remove(NO_GREP_MATCH);
+      if (!tables.contains(table))
+      {
+        attributes.put(FILTERED_OUT, true);
+        if (isGrepOnlyMatching)
+        {
+          attributes.put(NO_GREP_MATCH, true);
+        }
+      }
+    }
+    return attributes;
+  }
+
+  private <T> List<T> view(final List<T> objects)
+  {
+    final List<T> viewed = new ArrayList<>(objects.size());
+    for (final T object: objects)
+    {
+      viewed.add(view(object));
+    }
+    return viewed;
+  }
+
+  /**
+   * Wraps an object for the view. If no tables are filtered out, the
+   * object is used as it is. The same object is always wrapped the same
+   * way, so wrapped objects can be compared by identity.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T view(final T object)
+  {
+    if (!isFiltered || object instanceof ViewColumnReference)
+    {
+      return object;
+    }
+    if (object instanceof ForeignKeyColumnReference)
+    {
+      final ForeignKeyColumnReference columnReference = (ForeignKeyColumnReference) object;
+      final Column primaryKeyColumn = view(columnReference
+        .getPrimaryKeyColumn());
+      final Column foreignKeyColumn = view(columnReference
+        .getForeignKeyColumn());
+      return (T) views.computeIfAbsent(object,
+                                       viewedObject -> new ViewColumnReference(columnReference
+                                         .getKeySequence(),
+                                                                               primaryKeyColumn,
+                                                                               foreignKeyColumn));
+    }
+    if (!isViewed(object) || Proxy.isProxyClass(object.getClass()))
+    {
+      return object;
+    }
+    return (T) views.computeIfAbsent(object,
+                                     viewedObject -> Proxy
+                                       .newProxyInstance(FilteredCatalog.class
+                                         .getClassLoader(),
+                                                         publicInterfaces(viewedObject
+                                                           .getClass()),
+                                                         new ViewHandler(viewedObject)));
+  }
+
+  /**
+   * Wraps a result for the view, if it can still be used as the type
+   * that is returned. Collections of objects are copied, with the
+   * objects wrapped.
+   */
+  private Object view(final Object result, final Class<?> returnType)
+  {
+    if (result instanceof Collection
+        && (returnType == Collection.class || returnType == List.class))
+    {
+      return view(new ArrayList<>((Collection<?>) result));
+    }
+    if (result instanceof Iterator && returnType == Iterator.class)
+    {
+      final Iterator<?> iterator = (Iterator<?>) result;
+      return new Iterator<Object>()
+      {
+
+        @Override
+        public boolean hasNext()
+        {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public Object next()
+        {
+          return view(iterator.next());
+        }
+
+      };
+    }
+    if (result instanceof Optional)
+    {
+      return ((Optional<?>) result).map(this::view);
+    }
+    final Object viewed = view(result);
+    return returnType.isInstance(viewed)? viewed: result;
+  }
+
+}
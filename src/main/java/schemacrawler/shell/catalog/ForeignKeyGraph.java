@@ -0,0 +1,540 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.ForeignKeyColumnReference;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.TableRelationshipType;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Foreign key graph of the tables in a loaded catalog. Tables are given
+ * integer ids, and parent and child tables are kept in compressed
+ * sparse row arrays - the parents of table i are
+ * parents[parentOffsets[i]] to parents[parentOffsets[i + 1] - 1], and
+ * the same for children. Tables that are referenced by foreign keys but
+ * were not loaded are left out.
+ */
+public final class ForeignKeyGraph
+{
+
+  /**
+   * One step along a foreign key path.
+   */
+  public static final class Step
+  {
+
+    private final Table from;
+    private final Table to;
+    private final ForeignKey foreignKey;
+    private final TableRelationshipType relationshipType;
+
+    Step(final Table from,
+         final Table to,
+         final ForeignKey foreignKey,
+         final TableRelationshipType relationshipType)
+    {
+      this.from = from;
+      this.to = to;
+      this.foreignKey = foreignKey;
+      this.relationshipType = relationshipType;
+    }
+
+    public ForeignKey getForeignKey()
+    {
+      return foreignKey;
+    }
+
+    public Table getFrom()
+    {
+      return from;
+    }
+
+    /**
+     * @return Whether the next table is a parent or child of this table
+     */
+    public TableRelationshipType getRelationshipType()
+    {
+      return relationshipType;
+    }
+
+    public Table getTo()
+    {
+      return to;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%s %s %s (%s)",
+                           from.getFullName(),
+                           relationshipType == TableRelationshipType.parent? "->"
+                                                                            : "<-",
+                           to.getFullName(),
+                           foreignKey.getName());
+    }
+
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(ForeignKeyGraph.class.getName());
+
+  /**
+   * Builds a foreign key graph for a catalog.
+   *
+   * @param catalog
+   *        Loaded catalog
+   * @return Foreign key graph
+   */
+  public static ForeignKeyGraph build(final Catalog catalog)
+  {
+    requireNonNull(catalog, "No catalog provided");
+
+    final long start = System.nanoTime();
+
+    final List<Table> tables = new ArrayList<>(catalog.getTables());
+    final Map<String, Integer> tableIds = new HashMap<>();
+    for (int i = 0; i < tables.size(); i++)
+    {
+      tableIds.put(tables.get(i).getFullName(), i);
+    }
+
+    // Collect distinct child to parent edges
+    final Set<Long> edges = new HashSet<>();
+    final List<ForeignKey> edgeForeignKeys = new ArrayList<>();
+    int[] edgeChildren = new int[16];
+    int[] edgeParents = new int[16];
+    int edgeCount = 0;
+    final int[] parentCounts = new int[tables.size()];
+    final int[] childCounts = new int[tables.size()];
+    for (final Table table: tables)
+    {
+      for (final ForeignKey foreignKey: table.getImportedForeignKeys())
+      {
+        for (final ForeignKeyColumnReference columnReference: foreignKey)
+        {
+          final Integer parentId = tableIds.get(columnReference
+            .getPrimaryKeyColumn().getParent().getFullName());
+          final Integer childId = tableIds.get(columnReference
+            .getForeignKeyColumn().getParent().getFullName());
+          if (parentId == null || childId == null
+              || !edges.add((long) childId << 32 | parentId))
+          {
+            continue;
+          }
+          if (edgeCount == edgeChildren.length)
+          {
+            edgeChildren = Arrays.copyOf(edgeChildren, edgeCount * 2);
+            edgeParents = Arrays.copyOf(edgeParents, edgeCount * 2);
+          }
+          edgeChildren[edgeCount] = childId;
+          edgeParents[edgeCount] = parentId;
+          edgeCount++;
+          edgeForeignKeys.add(foreignKey);
+          parentCounts[childId]++;
+          childCounts[parentId]++;
+        }
+      }
+    }
+
+    // Lay out edges in compressed sparse row arrays, using the counts
+    // as insertion positions
+    final int[] parentOffsets = offsets(parentCounts);
+    final int[] parents = new int[edgeCount];
+    final ForeignKey[] parentForeignKeys = new ForeignKey[edgeCount];
+    final int[] childOffsets = offsets(childCounts);
+    final int[] children = new int[edgeCount];
+    final ForeignKey[] childForeignKeys = new ForeignKey[edgeCount];
+    Arrays.fill(parentCounts, 0);
+    Arrays.fill(childCounts, 0);
+    for (int i = 0; i < edgeCount; i++)
+    {
+      final int childId = edgeChildren[i];
+      final int parentId = edgeParents[i];
+      final ForeignKey foreignKey = edgeForeignKeys.get(i);
+
+      final int parentIndex = parentOffsets[childId] + parentCounts[childId]++;
+      parents[parentIndex] = parentId;
+      parentForeignKeys[parentIndex] = foreignKey;
+
+      final int childIndex = childOffsets[parentId] + childCounts[parentId]++;
+      children[childIndex] = childId;
+      childForeignKeys[childIndex] = foreignKey;
+    }
+
+    final ForeignKeyGraph graph = new ForeignKeyGraph(tables,
+                                                      tableIds,
+                                                      parentOffsets,
+                                                      parents,
+                                                      parentForeignKeys,
+                                                      childOffsets,
+                                                      children,
+                                                      childForeignKeys);
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Built foreign key graph of %d tables and %d relationships in %d ms",
+                                tables.size(),
+                                edgeCount,
+                                (System.nanoTime() - start) / 1_000_000L));
+    return graph;
+  }
+
+  private static int[] offsets(final int[] counts)
+  {
+    final int[] offsets = new int[counts.length + 1];
+    for (int i = 0; i < counts.length; i++)
+    {
+      offsets[i + 1] = offsets[i] + counts[i];
+    }
+    return offsets;
+  }
+
+  private final List<Table> tables;
+  private final Map<String, Integer> tableIds;
+  private final int[] parentOffsets;
+  private final int[] parents;
+  private final ForeignKey[] parentForeignKeys;
+  private final int[] childOffsets;
+  private final int[] children;
+  private final ForeignKey[] childForeignKeys;
+
+  private ForeignKeyGraph(final List<Table> tables,
+                          final Map<String, Integer> tableIds,
+                          final int[] parentOffsets,
+                          final int[] parents,
+                          final ForeignKey[] parentForeignKeys,
+                          final int[] childOffsets,
+                          final int[] children,
+                          final ForeignKey[] childForeignKeys)
+  {
+    this.tables = tables;
+    this.tableIds = tableIds;
+    this.parentOffsets = parentOffsets;
+    this.parents = parents;
+    this.parentForeignKeys = parentForeignKeys;
+    this.childOffsets = childOffsets;
+    this.children = children;
+    this.childForeignKeys = childForeignKeys;
+  }
+
+  /**
+   * Finds groups of tables that are connected by foreign keys, in either
+   * direction. Tables without foreign keys are each in a group of their
+   * own.
+   *
+   * @return Groups of tables, largest first, with the tables in each
+   *         group in catalog order
+   */
+  public List<List<Table>> connectedComponents()
+  {
+    final int[] component = new int[tables.size()];
+    Arrays.fill(component, -1);
+    final int[] queue = new int[tables.size()];
+    final List<List<Table>> components = new ArrayList<>();
+    for (int startId = 0; startId < tables.size(); startId++)
+    {
+      if (component[startId] >= 0)
+      {
+        continue;
+      }
+
+      // Breadth-first search, marking tables with the component number
+      final int componentNumber = components.size();
+      int head = 0;
+      int tail = 0;
+      component[startId] = componentNumber;
+      queue[tail++] = startId;
+      while (head < tail)
+      {
+        final int id = queue[head++];
+        for (int j = parentOffsets[id]; j < parentOffsets[id + 1]; j++)
+        {
+          if (component[parents[j]] < 0)
+          {
+            component[parents[j]] = componentNumber;
+            queue[tail++] = parents[j];
+          }
+        }
+        for (int j = childOffsets[id]; j < childOffsets[id + 1]; j++)
+        {
+          if (component[children[j]] < 0)
+          {
+            component[children[j]] = componentNumber;
+            queue[tail++] = children[j];
+          }
+        }
+      }
+      components.add(new ArrayList<>(tail));
+    }
+
+    for (int id = 0; id < tables.size(); id++)
+    {
+      components.get(component[id]).add(tables.get(id));
+    }
+    // Stable sort, so groups of the same size stay in catalog order
+    components.sort((component1, component2) -> Integer
+      .compare(component2.size(), component1.size()));
+    return components;
+  }
+
+  /**
+   * Expands a set of tables with their related tables, up to a number of
+   * generations, the same way that parent and child table filter depth
+   * work in a crawl.
+   *
+   * @param tables
+   *        Starting tables
+   * @param relationshipType
+   *        Whether to add parent or child tables
+   * @param depth
+   *        Number of generations of related tables to add
+   * @return Starting tables and their related tables
+   */
+  public Set<Table> expand(final Collection<Table> tables,
+                           final TableRelationshipType relationshipType,
+                           final int depth)
+  {
+    final int[] offsets;
+    final int[] adjacent;
+    if (relationshipType == TableRelationshipType.parent)
+    {
+      offsets = parentOffsets;
+      adjacent = parents;
+    }
+    else
+    {
+      offsets = childOffsets;
+      adjacent = children;
+    }
+
+    final BitSet visited = new BitSet(this.tables.size());
+    int[] frontier = new int[tables.size()];
+    int frontierSize = 0;
+    final Set<Table> expanded = new HashSet<>(tables);
+    for (final Table table: tables)
+    {
+      final Integer id = tableIds.get(table.getFullName());
+      if (id != null && !visited.get(id))
+      {
+        visited.set(id);
+        frontier[frontierSize++] = id;
+      }
+    }
+
+    for (int generation = 0; generation < depth
+                             && frontierSize > 0; generation++)
+    {
+      int[] next = new int[16];
+      int nextSize = 0;
+      for (int i = 0; i < frontierSize; i++)
+      {
+        final int id = frontier[i];
+        for (int j = offsets[id]; j < offsets[id + 1]; j++)
+        {
+          final int relatedId = adjacent[j];
+          if (!visited.get(relatedId))
+          {
+            visited.set(relatedId);
+            if (nextSize == next.length)
+            {
+              next = Arrays.copyOf(next, nextSize * 2);
+            }
+            next[nextSize++] = relatedId;
+            expanded.add(this.tables.get(relatedId));
+          }
+        }
+      }
+      frontier = next;
+      frontierSize = nextSize;
+    }
+    return expanded;
+  }
+
+  /**
+   * Finds the shortest path between two tables, following foreign keys
+   * in either direction.
+   *
+   * @param from
+   *        Starting table
+   * @param to
+   *        Ending table
+   * @return Steps from the starting table to the ending table, which is
+   *         empty if the tables are the same, or null if there is no
+   *         path
+   */
+  public List<Step> shortestPath(final Table from, final Table to)
+  {
+    final Integer fromId = tableIds.get(from.getFullName());
+    final Integer toId = tableIds.get(to.getFullName());
+    if (fromId == null || toId == null)
+    {
+      return null;
+    }
+    if (fromId.equals(toId))
+    {
+      return Collections.emptyList();
+    }
+
+    // Breadth-first search, remembering how each table was reached
+    final int[] previous = new int[tables.size()];
+    final int[] previousEdge = new int[tables.size()];
+    Arrays.fill(previous, -1);
+    previous[fromId] = fromId;
+    final int[] queue = new int[tables.size()];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = fromId;
+    while (head < tail && previous[toId] < 0)
+    {
+      final int id = queue[head++];
+      for (int j = parentOffsets[id]; j < parentOffsets[id + 1]; j++)
+      {
+        tail = visit(id, parents[j], j, previous, previousEdge, queue, tail);
+      }
+      for (int j = childOffsets[id]; j < childOffsets[id + 1]; j++)
+      {
+        // Child edges are encoded as negative, to tell them apart
+        tail = visit(id,
+                     children[j],
+                     -j - 1,
+                     previous,
+                     previousEdge,
+                     queue,
+                     tail);
+      }
+    }
+    if (previous[toId] < 0)
+    {
+      return null;
+    }
+
+    final List<Step> path = new ArrayList<>();
+    for (int id = toId; id != fromId; id = previous[id])
+    {
+      final int edge = previousEdge[id];
+      final Table fromTable = tables.get(previous[id]);
+      final Table toTable = tables.get(id);
+      if (edge >= 0)
+      {
+        path.add(new Step(fromTable,
+                          toTable,
+                          parentForeignKeys[edge],
+                          TableRelationshipType.parent));
+      }
+      else
+      {
+        path.add(new Step(fromTable,
+                          toTable,
+                          childForeignKeys[-edge - 1],
+                          TableRelationshipType.child));
+      }
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * @return Tables in the graph, in catalog order
+   */
+  public List<Table> getTables()
+  {
+    return Collections.unmodifiableList(tables);
+  }
+
+  /**
+   * Looks up tables by name. A fully qualified name matches one table,
+   * and an unqualified name matches tables with that name in any
+   * schema. Names are matched without regard to case or quoting.
+   *
+   * @param name
+   *        Table name
+   * @return Matching tables
+   */
+  public List<Table> lookupTables(final String name)
+  {
+    final List<Table> matches = new ArrayList<>();
+    if (name == null)
+    {
+      return matches;
+    }
+    final String lookupName = name.replace("\"", "").trim();
+    for (final Table table: tables)
+    {
+      if (table.getFullName().replace("\"", "")
+        .equalsIgnoreCase(lookupName)
+          || table.getName().equalsIgnoreCase(lookupName))
+      {
+        matches.add(table);
+      }
+    }
+    return matches;
+  }
+
+  public int size()
+  {
+    return tables.size();
+  }
+
+  private int visit(final int id,
+                    final int nextId,
+                    final int edge,
+                    final int[] previous,
+                    final int[] previousEdge,
+                    final int[] queue,
+                    final int tail)
+  {
+    if (previous[nextId] >= 0)
+    {
+      return tail;
+    }
+    previous[nextId] = id;
+    previousEdge[nextId] = edge;
+    queue[tail] = nextId;
+    return tail + 1;
+  }
+
+}
@@ -0,0 +1,346 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Column;
+import schemacrawler.schema.DatabaseObject;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.ForeignKeyColumnReference;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.PartialDatabaseObject;
+import schemacrawler.schema.ReducibleCollection;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import sf.util.SchemaCrawlerLogger;
+
+/**
+ * Links foreign keys between tables that were crawled separately. The
+ * foreign keys of tables in a patch replace the foreign keys between
+ * the patch tables and the other tables, and both ends of those foreign
+ * keys are set to the tables with the same key, instead of partial
+ * tables, or tables that were replaced. So foreign keys can be followed
+ * any number of hops from any table.
+ * <p>
+ * SchemaCrawler has no API to change the foreign keys of loaded tables,
+ * so the fields of its tables, columns and column references are set
+ * directly. The other tables are changed in place. If the fields cannot
+ * be set, foreign keys are left as they were crawled.
+ * <p>
+ * Schemas that are decoded one at a time from a catalog file reference
+ * tables in other schemas by partial tables, until the other schemas
+ * are decoded, and are then linked the same way.
+ */
+final class ForeignKeyLinks
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(ForeignKeyLinks.class.getName());
+
+  /**
+   * Links the foreign keys of the patch tables to the other tables.
+   *
+   * @param tables
+   *        All tables, with the patch tables
+   * @param patchTables
+   *        Tables that were crawled separately
+   * @param removedTableKeys
+   *        Keys of tables that were replaced or removed, whose foreign
+   *        keys in the other tables are dropped
+   */
+  static void link(final Collection<Table> tables,
+                   final Collection<Table> patchTables,
+                   final Set<String> removedTableKeys)
+  {
+    final Map<String, Table> tablesByKey = new HashMap<>();
+    for (final Table table: tables)
+    {
+      tablesByKey.put(DdlMarkers.key(table), table);
+    }
+    final Set<String> patchTableKeys = new HashSet<>();
+    for (final Table patchTable: patchTables)
+    {
+      patchTableKeys.add(DdlMarkers.key(patchTable));
+    }
+
+    try
+    {
+      for (final Table table: tables)
+      {
+        if (!patchTableKeys.contains(DdlMarkers.key(table)))
+        {
+          foreignKeys(table).filter(foreignKey -> !references(foreignKey,
+                                                              removedTableKeys));
+        }
+      }
+      for (final Table patchTable: patchTables)
+      {
+        for (final ForeignKey foreignKey: patchTable.getForeignKeys())
+        {
+          for (final ForeignKeyColumnReference columnReference: foreignKey)
+          {
+            link(columnReference, tablesByKey);
+          }
+          for (final ForeignKeyColumnReference columnReference: foreignKey)
+          {
+            for (final Column column: new Column[] {
+                columnReference.getPrimaryKeyColumn(),
+                columnReference.getForeignKeyColumn() })
+            {
+              final Table table = column.getParent();
+              if (!(table instanceof PartialDatabaseObject)
+                  && !patchTableKeys.contains(DdlMarkers.key(table)))
+              {
+                add(foreignKeys(table), foreignKey);
+              }
+            }
+          }
+        }
+      }
+    }
+    catch (final ReflectiveOperationException | RuntimeException e)
+    {
+      LOGGER.log(Level.WARNING,
+                 "Cannot link foreign keys between tables crawled separately",
+                 e);
+    }
+  }
+
+  /**
+   * Links the foreign keys and synonyms of tables that were decoded
+   * separately. Foreign keys and synonyms that reference partial tables,
+   * or copies of tables, are set to the tables with the same key.
+   *
+   * @param tablesByKey
+   *        Tables that have been decoded, by key
+   * @param synonyms
+   *        Synonyms that have been decoded
+   */
+  static void link(final Map<String, Table> tablesByKey,
+                   final Collection<Synonym> synonyms)
+  {
+    try
+    {
+      for (final Table table: tablesByKey.values())
+      {
+        for (final ForeignKey foreignKey: table.getForeignKeys())
+        {
+          for (final ForeignKeyColumnReference columnReference: foreignKey)
+          {
+            link(columnReference, tablesByKey);
+          }
+        }
+      }
+      for (final Synonym synonym: synonyms)
+      {
+        final DatabaseObject referencedObject = synonym
+          .getReferencedObject();
+        if (referencedObject instanceof Table)
+        {
+          final Table table = tablesByKey
+            .get(DdlMarkers.key((Table) referencedObject));
+          if (table != null && table != referencedObject)
+          {
+            field(synonym.getClass(), "referencedObject").set(synonym,
+                                                              table);
+          }
+        }
+      }
+    }
+    catch (final ReflectiveOperationException | RuntimeException e)
+    {
+      LOGGER.log(Level.WARNING,
+                 "Cannot link foreign keys between schemas decoded separately",
+                 e);
+    }
+  }
+
+  /**
+   * Makes a partial column, the same way as SchemaCrawler does for
+   * columns of tables that are referenced, but were not crawled.
+   *
+   * @param table
+   *        Partial table
+   * @param name
+   *        Column name
+   * @return Partial column, which is added to the partial table
+   */
+  static Column partialColumn(final Table table, final String name)
+    throws ReflectiveOperationException
+  {
+    final Constructor<?> constructor = Class
+      .forName("schemacrawler.crawl.ColumnPartial")
+      .getDeclaredConstructor(Table.class, String.class);
+    constructor.setAccessible(true);
+    final Column column = (Column) constructor.newInstance(table, name);
+    final Method addColumn = table.getClass()
+      .getDeclaredMethod("addColumn", Column.class);
+    addColumn.setAccessible(true);
+    addColumn.invoke(table, column);
+    return column;
+  }
+
+  /**
+   * Makes a partial table, the same way as SchemaCrawler does for tables
+   * that are referenced, but were not crawled.
+   *
+   * @param schema
+   *        Schema of the table
+   * @param name
+   *        Table name
+   * @return Partial table
+   */
+  static Table partialTable(final Schema schema, final String name)
+    throws ReflectiveOperationException
+  {
+    final Constructor<?> constructor = Class
+      .forName("schemacrawler.crawl.TablePartial")
+      .getDeclaredConstructor(Schema.class, String.class);
+    constructor.setAccessible(true);
+    return (Table) constructor.newInstance(schema, name);
+  }
+
+  private static void add(final ReducibleCollection<? extends NamedObject> foreignKeys,
+                          final ForeignKey foreignKey)
+    throws ReflectiveOperationException
+  {
+    final Method add = foreignKeys.getClass()
+      .getDeclaredMethod("add", NamedObject.class);
+    add.setAccessible(true);
+    add.invoke(foreignKeys, foreignKey);
+  }
+
+  private static Field field(final Class<?> type, final String name)
+    throws NoSuchFieldException
+  {
+    for (Class<?> declaringType = type; declaringType != null; declaringType = declaringType
+      .getSuperclass())
+    {
+      try
+      {
+        final Field field = declaringType.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+      }
+      catch (final NoSuchFieldException e)
+      {
+        // Look in the superclass
+      }
+    }
+    throw new NoSuchFieldException(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ReducibleCollection<ForeignKey> foreignKeys(final Table table)
+    throws ReflectiveOperationException
+  {
+    return (ReducibleCollection<ForeignKey>) field(table.getClass(),
+                                                   "foreignKeys").get(table);
+  }
+
+  /**
+   * Sets both ends of a column reference to the columns of the tables
+   * with the same keys.
+   */
+  private static void link(final ForeignKeyColumnReference columnReference,
+                           final Map<String, Table> tablesByKey)
+    throws ReflectiveOperationException
+  {
+    final Optional<Column> primaryKeyColumn = lookup(columnReference
+      .getPrimaryKeyColumn(), tablesByKey);
+    if (primaryKeyColumn.isPresent())
+    {
+      field(columnReference.getClass(), "primaryKeyColumn")
+        .set(columnReference, primaryKeyColumn.get());
+    }
+    final Optional<Column> foreignKeyColumn = lookup(columnReference
+      .getForeignKeyColumn(), tablesByKey);
+    if (foreignKeyColumn.isPresent())
+    {
+      field(columnReference.getClass(), "foreignKeyColumn")
+        .set(columnReference, foreignKeyColumn.get());
+    }
+    final Column column = columnReference.getForeignKeyColumn();
+    if (!(column instanceof PartialDatabaseObject))
+    {
+      field(column.getClass(), "referencedColumn")
+        .set(column, columnReference.getPrimaryKeyColumn());
+    }
+  }
+
+  /**
+   * @return Column of the table with the same key, if that is not the
+   *         table of the column
+   */
+  private static Optional<Column> lookup(final Column column,
+                                         final Map<String, Table> tablesByKey)
+  {
+    final Table table = tablesByKey
+      .get(DdlMarkers.key(column.getParent()));
+    if (table == null || table == column.getParent())
+    {
+      return Optional.empty();
+    }
+    return table.lookupColumn(column.getName()).map(Column.class::cast);
+  }
+
+  private static boolean references(final ForeignKey foreignKey,
+                                    final Set<String> tableKeys)
+  {
+    for (final ForeignKeyColumnReference columnReference: foreignKey)
+    {
+      if (tableKeys.contains(DdlMarkers
+        .key(columnReference.getPrimaryKeyColumn().getParent()))
+          || tableKeys.contains(DdlMarkers
+            .key(columnReference.getForeignKeyColumn().getParent())))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ForeignKeyLinks()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,1355 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import schemacrawler.JvmSystemInfo;
+import schemacrawler.OperatingSystemInfo;
+import schemacrawler.SchemaCrawlerInfo;
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.ColumnDataType;
+import schemacrawler.schema.CrawlInfo;
+import schemacrawler.schema.DatabaseInfo;
+import schemacrawler.schema.JdbcDriverInfo;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.PartialDatabaseObject;
+import schemacrawler.schema.Reducer;
+import schemacrawler.schema.Reducible;
+import schemacrawler.schema.ReducibleCollection;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.SchemaReference;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+import schemacrawler.utility.NamedObjectSort;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+import sf.util.Utility;
+
+/**
+ * Catalog read from a memory-mapped catalog file, which decodes the
+ * objects in a schema only when they are first used.
+ * <p>
+ * A catalog file starts with a string table of schema and table names,
+ * and an index of sections, with the names in each section referenced
+ * by their position in the string table. The first section holds
+ * catalog-level metadata, such as database and driver information,
+ * schemas and column data types, and is decoded when the file is
+ * opened. Each of the other sections holds the
+ * objects in one schema, and is decoded the first time that anything in
+ * the schema is looked up. Sections are compressed, and are read from
+ * pages that the operating system maps into memory, and shares between
+ * processes that open the same file.
+ * <p>
+ * Foreign keys and synonyms that reference tables and columns in other
+ * schemas are written with references to the schema and table names in
+ * the string table, and the column name, so each section holds only the
+ * objects in its own schema. References are read as partial tables and
+ * columns, which are linked to the tables in the other schemas as those
+ * schemas are decoded.
+ */
+public final class MappedCatalog
+  extends BaseCatalogDecorator
+{
+
+  /**
+   * Reads a mapped section of a catalog file.
+   */
+  private static final class ByteBufferInputStream
+    extends InputStream
+  {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(final ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int available()
+    {
+      return buffer.remaining();
+    }
+
+    @Override
+    public int read()
+    {
+      return buffer.hasRemaining()? buffer.get() & 0xFF: -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length)
+    {
+      if (length == 0)
+      {
+        return 0;
+      }
+      if (!buffer.hasRemaining())
+      {
+        return -1;
+      }
+      final int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+  }
+
+  /**
+   * Catalog-level metadata of a catalog, without any tables, routines,
+   * synonyms or sequences, which is written to the catalog section of a
+   * catalog file. The metadata is taken from the catalog as it is, and
+   * the catalog is not copied.
+   */
+  private static final class CatalogMetadata
+    implements Catalog, Reducible
+  {
+
+    private static final long serialVersionUID = -8229047371683016416L;
+
+    private final String name;
+    private final String remarks;
+    private final HashMap<String, Object> attributes;
+    private final DatabaseInfo databaseInfo;
+    private final JdbcDriverInfo jdbcDriverInfo;
+    private final CrawlInfo crawlInfo;
+    private final JvmSystemInfo jvmSystemInfo;
+    private final OperatingSystemInfo operatingSystemInfo;
+    private final SchemaCrawlerInfo schemaCrawlerInfo;
+    private final ArrayList<Schema> schemas;
+    private final ArrayList<ColumnDataType> columnDataTypes;
+
+    CatalogMetadata(final Catalog catalog)
+    {
+      name = catalog.getName();
+      remarks = catalog.getRemarks();
+      attributes = new HashMap<>(catalog.getAttributes());
+      databaseInfo = catalog.getDatabaseInfo();
+      jdbcDriverInfo = catalog.getJdbcDriverInfo();
+      crawlInfo = catalog.getCrawlInfo();
+      jvmSystemInfo = catalog.getJvmSystemInfo();
+      operatingSystemInfo = catalog.getOperatingSystemInfo();
+      schemaCrawlerInfo = catalog.getSchemaCrawlerInfo();
+      schemas = new ArrayList<>(catalog.getSchemas());
+      columnDataTypes = new ArrayList<>(catalog.getColumnDataTypes());
+    }
+
+    @Override
+    public int compareTo(final NamedObject namedObject)
+    {
+      if (namedObject == null)
+      {
+        return -1;
+      }
+      return NamedObjectSort.alphabetical.compare(this, namedObject);
+    }
+
+    @Override
+    public <T> T getAttribute(final String name)
+    {
+      return getAttribute(name, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(final String name, final T defaultValue)
+    {
+      final Object value = attributes.get(name);
+      return value == null? defaultValue: (T) value;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes()
+    {
+      return Collections.unmodifiableMap(attributes);
+    }
+
+    @Override
+    public Collection<ColumnDataType> getColumnDataTypes()
+    {
+      return new ArrayList<>(columnDataTypes);
+    }
+
+    @Override
+    public Collection<ColumnDataType> getColumnDataTypes(final Schema schema)
+    {
+      final List<ColumnDataType> schemaColumnDataTypes = new ArrayList<>();
+      for (final ColumnDataType columnDataType: columnDataTypes)
+      {
+        if (columnDataType.getSchema().equals(schema))
+        {
+          schemaColumnDataTypes.add(columnDataType);
+        }
+      }
+      return schemaColumnDataTypes;
+    }
+
+    @Override
+    public CrawlInfo getCrawlInfo()
+    {
+      return crawlInfo;
+    }
+
+    @Override
+    public DatabaseInfo getDatabaseInfo()
+    {
+      return databaseInfo;
+    }
+
+    @Override
+    public String getFullName()
+    {
+      return name;
+    }
+
+    @Override
+    public JdbcDriverInfo getJdbcDriverInfo()
+    {
+      return jdbcDriverInfo;
+    }
+
+    @Override
+    public JvmSystemInfo getJvmSystemInfo()
+    {
+      return jvmSystemInfo;
+    }
+
+    @Override
+    public String getName()
+    {
+      return name;
+    }
+
+    @Override
+    public OperatingSystemInfo getOperatingSystemInfo()
+    {
+      return operatingSystemInfo;
+    }
+
+    @Override
+    public String getRemarks()
+    {
+      return remarks;
+    }
+
+    @Override
+    public Collection<Routine> getRoutines()
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Routine> getRoutines(final Schema schema)
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public SchemaCrawlerInfo getSchemaCrawlerInfo()
+    {
+      return schemaCrawlerInfo;
+    }
+
+    @Override
+    public Collection<Schema> getSchemas()
+    {
+      return new ArrayList<>(schemas);
+    }
+
+    @Override
+    public Collection<Sequence> getSequences()
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Sequence> getSequences(final Schema schema)
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Synonym> getSynonyms()
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Synonym> getSynonyms(final Schema schema)
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<ColumnDataType> getSystemColumnDataTypes()
+    {
+      return getColumnDataTypes(new SchemaReference());
+    }
+
+    @Override
+    public Collection<Table> getTables()
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Table> getTables(final Schema schema)
+    {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public boolean hasAttribute(final String name)
+    {
+      return attributes.containsKey(name);
+    }
+
+    @Override
+    public boolean hasRemarks()
+    {
+      return remarks != null && !remarks.isEmpty();
+    }
+
+    @Override
+    public <T> Optional<T> lookupAttribute(final String name)
+    {
+      return Optional.of(getAttribute(name));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <C extends ColumnDataType> Optional<C> lookupColumnDataType(final Schema schema,
+                                                                       final String name)
+    {
+      for (final ColumnDataType columnDataType: columnDataTypes)
+      {
+        if (columnDataType.getSchema().equals(schema)
+            && columnDataType.getName().equals(name))
+        {
+          return Optional.of((C) columnDataType);
+        }
+      }
+      return Optional.empty();
+    }
+
+    @Override
+    public <R extends Routine> Optional<R> lookupRoutine(final Schema schema,
+                                                         final String name)
+    {
+      return Optional.empty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends Schema> Optional<S> lookupSchema(final String name)
+    {
+      for (final Schema schema: schemas)
+      {
+        if (schema.getFullName().equals(name))
+        {
+          return Optional.of((S) schema);
+        }
+      }
+      return Optional.empty();
+    }
+
+    @Override
+    public <S extends Sequence> Optional<S> lookupSequence(final Schema schema,
+                                                           final String name)
+    {
+      return Optional.empty();
+    }
+
+    @Override
+    public <S extends Synonym> Optional<S> lookupSynonym(final Schema schema,
+                                                         final String name)
+    {
+      return Optional.empty();
+    }
+
+    @Override
+    public <C extends ColumnDataType> Optional<C> lookupSystemColumnDataType(final String name)
+    {
+      return lookupColumnDataType(new SchemaReference(), name);
+    }
+
+    @Override
+    public <T extends Table> Optional<T> lookupTable(final Schema schema,
+                                                     final String name)
+    {
+      return Optional.empty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N extends NamedObject> void reduce(final Class<N> clazz,
+                                               final Reducer<N> reducer)
+    {
+      if (reducer != null && Schema.class.isAssignableFrom(clazz))
+      {
+        reducer.reduce(new ObjectList<>((List<N>) (List<?>) schemas));
+      }
+    }
+
+    @Override
+    public void removeAttribute(final String name)
+    {
+      if (!Utility.isBlank(name))
+      {
+        attributes.remove(name);
+      }
+    }
+
+    @Override
+    public <T> void setAttribute(final String name, final T value)
+    {
+      if (!Utility.isBlank(name))
+      {
+        if (value == null)
+        {
+          attributes.remove(name);
+        }
+        else
+        {
+          attributes.put(name, value);
+        }
+      }
+    }
+
+    @Override
+    public List<String> toUniqueLookupKey()
+    {
+      return new ArrayList<>(Arrays.asList(name));
+    }
+
+  }
+
+  /**
+   * Objects in a section, which can be reduced in place.
+   */
+  private static final class ObjectList<N extends NamedObject>
+    implements ReducibleCollection<N>
+  {
+
+    private final List<N> objects;
+
+    ObjectList(final List<N> objects)
+    {
+      this.objects = objects;
+    }
+
+    @Override
+    public void filter(final Predicate<? super N> predicate)
+    {
+      if (predicate != null)
+      {
+        objects.removeIf(predicate.negate());
+      }
+    }
+
+    @Override
+    public boolean isFiltered(final NamedObject namedObject)
+    {
+      return !objects.contains(namedObject);
+    }
+
+    @Override
+    public Iterator<N> iterator()
+    {
+      return Collections.unmodifiableList(objects).iterator();
+    }
+
+  }
+
+  /**
+   * Reference to a table, or a column of a table, in another schema,
+   * which is written to a schema section instead of the table or the
+   * column. Schema and table names are referenced by their position in
+   * the string table.
+   */
+  private static final class ObjectReference
+    implements Serializable
+  {
+
+    private static final long serialVersionUID = 3398620570722398261L;
+
+    private final int schemaId;
+    private final int tableId;
+    private final String columnName;
+
+    ObjectReference(final int schemaId,
+                    final int tableId,
+                    final String columnName)
+    {
+      this.schemaId = schemaId;
+      this.tableId = tableId;
+      this.columnName = columnName;
+    }
+
+  }
+
+  /**
+   * Schema section of a catalog file, which is decoded when it is first
+   * used.
+   */
+  private static final class Section
+  {
+
+    private final String schemaName;
+    private final List<String> tableNames;
+    private final ByteBuffer buffer;
+    private List<Table> tables;
+    private List<Routine> routines;
+    private List<Synonym> synonyms;
+    private List<Sequence> sequences;
+    private Map<List<String>, NamedObject> lookup;
+
+    Section(final String schemaName,
+            final List<String> tableNames,
+            final ByteBuffer buffer)
+    {
+      this.schemaName = schemaName;
+      this.tableNames = tableNames;
+      this.buffer = buffer;
+    }
+
+    synchronized boolean isDecoded()
+    {
+      return lookup != null;
+    }
+
+    <N extends NamedObject> Optional<N> lookup(final MappedCatalog mappedCatalog,
+                                               final Schema schema,
+                                               final String name,
+                                               final Class<N> clazz)
+    {
+      final List<String> lookupKey = schema.toUniqueLookupKey();
+      lookupKey.add(name);
+      final NamedObject namedObject = decode(mappedCatalog).lookup
+        .get(lookupKey);
+      if (clazz.isInstance(namedObject))
+      {
+        return Optional.of(clazz.cast(namedObject));
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * Decodes the section, and links it to the other sections that have
+     * been decoded.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized Section decode(final MappedCatalog mappedCatalog)
+    {
+      if (lookup != null)
+      {
+        return this;
+      }
+      final long start = System.nanoTime();
+      try (
+          final ObjectInputStream in = new SectionInputStream(new InflaterInputStream(new ByteBufferInputStream(buffer
+            .duplicate())), mappedCatalog);)
+      {
+        tables = (List<Table>) in.readObject();
+        routines = (List<Routine>) in.readObject();
+        synonyms = (List<Synonym>) in.readObject();
+        sequences = (List<Sequence>) in.readObject();
+      }
+      catch (final IOException | ClassNotFoundException | ClassCastException e)
+      {
+        throw new RuntimeException(String
+          .format("Cannot decode schema %s from catalog file", schemaName), e);
+      }
+      lookup = new HashMap<>();
+      index();
+      mappedCatalog.link(this);
+      LOGGER.log(Level.FINE,
+                 new StringFormat("Decoded schema <%s>, with %d tables, in %d ms",
+                                  schemaName,
+                                  tables.size(),
+                                  (System.nanoTime() - start) / 1_000_000L));
+      return this;
+    }
+
+    synchronized <N extends NamedObject> void reduce(final List<N> objects,
+                                                     final Reducer<N> reducer)
+    {
+      reducer.reduce(new ObjectList<>(objects));
+      lookup.clear();
+      index();
+    }
+
+    private void index()
+    {
+      for (final List<? extends NamedObject> objects: Arrays
+        .asList(tables, routines, synonyms, sequences))
+      {
+        for (final NamedObject namedObject: objects)
+        {
+          lookup.put(namedObject.toUniqueLookupKey(), namedObject);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Reads the objects in a schema section. References to tables and
+   * columns in other schemas are read as partial tables and columns.
+   */
+  private static final class SectionInputStream
+    extends ObjectInputStream
+  {
+
+    private final MappedCatalog mappedCatalog;
+    private final Map<List<Integer>, Table> partialTables = new HashMap<>();
+
+    SectionInputStream(final InputStream in,
+                       final MappedCatalog mappedCatalog)
+      throws IOException
+    {
+      super(in);
+      this.mappedCatalog = mappedCatalog;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(final Object object)
+      throws IOException
+    {
+      if (!(object instanceof ObjectReference))
+      {
+        return object;
+      }
+      final ObjectReference reference = (ObjectReference) object;
+      try
+      {
+        final List<Integer> tableKey = Arrays.asList(reference.schemaId,
+                                                     reference.tableId);
+        Table table = partialTables.get(tableKey);
+        if (table == null)
+        {
+          final String schemaName = mappedCatalog.strings[reference.schemaId];
+          final Schema schema = mappedCatalog.catalog.lookupSchema(schemaName)
+            .orElseThrow(() -> new InvalidObjectException("Unknown schema "
+                                                          + schemaName));
+          table = ForeignKeyLinks
+            .partialTable(schema, mappedCatalog.strings[reference.tableId]);
+          partialTables.put(tableKey, table);
+        }
+        if (reference.columnName == null)
+        {
+          return table;
+        }
+        return ForeignKeyLinks.partialColumn(table, reference.columnName);
+      }
+      catch (final ReflectiveOperationException e)
+      {
+        throw new IOException("Cannot read reference to another schema", e);
+      }
+    }
+
+  }
+
+  /**
+   * Writes the objects in a schema section. Tables in other schemas, and
+   * their columns, are written as references, so that foreign keys and
+   * synonyms do not bring the objects in other schemas into the section.
+   */
+  private static final class SectionOutputStream
+    extends ObjectOutputStream
+  {
+
+    private final Schema schema;
+    private final Map<String, Integer> stringIds;
+    private final Map<Object, ObjectReference> references = new IdentityHashMap<>();
+
+    SectionOutputStream(final OutputStream out,
+                        final Schema schema,
+                        final Map<String, Integer> stringIds)
+      throws IOException
+    {
+      super(out);
+      this.schema = schema;
+      this.stringIds = stringIds;
+      enableReplaceObject(schema != null);
+    }
+
+    @Override
+    protected Object replaceObject(final Object object)
+    {
+      final Table table;
+      final String columnName;
+      if (object instanceof Table)
+      {
+        table = (Table) object;
+        columnName = null;
+      }
+      else if (object instanceof Column)
+      {
+        table = ((Column) object).getParent();
+        columnName = ((Column) object).getName();
+      }
+      else
+      {
+        return object;
+      }
+      if (table == null || table instanceof PartialDatabaseObject
+          || schema.equals(table.getSchema()))
+      {
+        return object;
+      }
+
+      // Tables that are not in the string table are written as they are
+      final Integer schemaId = stringIds.get(table.getSchema().getFullName());
+      final Integer tableId = stringIds.get(table.getName());
+      if (schemaId == null || tableId == null)
+      {
+        return object;
+      }
+      return references
+        .computeIfAbsent(object,
+                         key -> new ObjectReference(schemaId,
+                                                    tableId,
+                                                    columnName));
+    }
+
+  }
+
+  private static final long serialVersionUID = 1466426718240716376L;
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(MappedCatalog.class.getName());
+
+  private static final byte[] MAGIC = "SCMAPCAT".getBytes(UTF_8);
+  private static final int VERSION = 2;
+
+  /**
+   * Opens a catalog file. Only the string table, the section index and
+   * the catalog section are read.
+   *
+   * @param catalogFile
+   *        Catalog file, written by {@link #write(Catalog, Path)}
+   * @return Catalog, which decodes schemas as they are used
+   */
+  public static MappedCatalog open(final Path catalogFile)
+    throws IOException
+  {
+    requireNonNull(catalogFile, "No catalog file provided");
+
+    try (final FileChannel channel = FileChannel
+      .open(catalogFile, StandardOpenOption.READ);)
+    {
+      final long fileSize = channel.size();
+      if (fileSize < MAGIC.length + 8)
+      {
+        throw new IOException("Not a catalog file, " + catalogFile);
+      }
+      final MappedByteBuffer preamble = channel
+        .map(MapMode.READ_ONLY, 0, MAGIC.length + 8);
+      final byte[] magic = new byte[MAGIC.length];
+      preamble.get(magic);
+      if (!Arrays.equals(magic, MAGIC))
+      {
+        throw new IOException("Not a catalog file, " + catalogFile);
+      }
+      final int version = preamble.getInt();
+      if (version != VERSION)
+      {
+        throw new IOException(String
+          .format("Cannot read version %d catalog file, %s",
+                  version,
+                  catalogFile));
+      }
+      final int headerLength = preamble.getInt();
+
+      final MappedByteBuffer header = channel
+        .map(MapMode.READ_ONLY, 0, headerLength);
+      header.position(MAGIC.length + 8);
+
+      final String[] strings = new String[header.getInt()];
+      for (int i = 0; i < strings.length; i++)
+      {
+        final byte[] bytes = new byte[header.getInt()];
+        header.get(bytes);
+        strings[i] = new String(bytes, UTF_8);
+      }
+
+      ByteBuffer catalogBuffer = null;
+      final List<Section> sections = new ArrayList<>();
+      final int sectionCount = header.getInt();
+      for (int i = 0; i < sectionCount; i++)
+      {
+        final int schemaNameId = header.getInt();
+        final List<String> tableNames = new ArrayList<>();
+        final int tableCount = header.getInt();
+        for (int j = 0; j < tableCount; j++)
+        {
+          tableNames.add(strings[header.getInt()]);
+        }
+        final long offset = header.getLong();
+        final int length = header.getInt();
+        if (offset + length > fileSize)
+        {
+          throw new IOException("Truncated catalog file, " + catalogFile);
+        }
+        // Mapping does not read the section, but the mapping stays
+        // valid after the file is closed
+        final MappedByteBuffer buffer = channel
+          .map(MapMode.READ_ONLY, offset, length);
+        if (schemaNameId < 0)
+        {
+          catalogBuffer = buffer;
+        }
+        else
+        {
+          sections
+            .add(new Section(strings[schemaNameId], tableNames, buffer));
+        }
+      }
+      if (catalogBuffer == null)
+      {
+        throw new IOException("No catalog in catalog file, " + catalogFile);
+      }
+
+      final Catalog catalog;
+      try (
+          final ObjectInputStream in = new ObjectInputStream(new InflaterInputStream(new ByteBufferInputStream(catalogBuffer)));)
+      {
+        catalog = (Catalog) in.readObject();
+      }
+      catch (final ClassNotFoundException | ClassCastException e)
+      {
+        throw new IOException("Cannot read catalog file, " + catalogFile, e);
+      }
+      return new MappedCatalog(catalog, strings, sections);
+    }
+  }
+
+  /**
+   * Writes a catalog to a catalog file. The file is written to a
+   * temporary file which is moved into place, so that processes that
+   * have the previous file mapped keep reading it.
+   *
+   * @param catalog
+   *        Catalog to write
+   * @param catalogFile
+   *        Catalog file
+   * @return Number of schema sections written
+   */
+  public static int write(final Catalog catalog, final Path catalogFile)
+    throws IOException
+  {
+    requireNonNull(catalog, "No catalog provided");
+    requireNonNull(catalogFile, "No catalog file provided");
+
+    final List<String> strings = new ArrayList<>();
+    final Map<String, Integer> stringIds = new HashMap<>();
+    final Function<String, Integer> stringId = string -> stringIds
+      .computeIfAbsent(string, key -> {
+        strings.add(key);
+        return strings.size() - 1;
+      });
+
+    final Map<Schema, List<Table>> schemaTables = new LinkedHashMap<>();
+    for (final Schema schema: catalog.getSchemas())
+    {
+      final List<Table> tables = new ArrayList<>(catalog.getTables(schema));
+      if (!tables.isEmpty() || !catalog.getRoutines(schema).isEmpty()
+          || !catalog.getSynonyms(schema).isEmpty()
+          || !catalog.getSequences(schema).isEmpty())
+      {
+        stringId.apply(schema.getFullName());
+        for (final Table table: tables)
+        {
+          stringId.apply(table.getName());
+        }
+        schemaTables.put(schema, tables);
+      }
+    }
+
+    // The header size is known before the sections are written, so the
+    // sections are written first, and the header last
+    int headerLength = MAGIC.length + 8 + 4 + 4;
+    for (final String string: strings)
+    {
+      headerLength = headerLength + 4 + string.getBytes(UTF_8).length;
+    }
+    headerLength = headerLength + 20;
+    for (final List<Table> tables: schemaTables.values())
+    {
+      headerLength = headerLength + 20 + 4 * tables.size();
+    }
+
+    final Path directory = catalogFile.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    final Path tempCatalogFile = Files.createTempFile(directory,
+                                                      catalogFile
+                                                        .getFileName()
+                                                        .toString(),
+                                                      ".tmp");
+    try
+    {
+      final ByteBuffer header = ByteBuffer.allocate(headerLength);
+      header.put(MAGIC).putInt(VERSION).putInt(headerLength);
+      header.putInt(strings.size());
+      for (final String string: strings)
+      {
+        final byte[] bytes = string.getBytes(UTF_8);
+        header.putInt(bytes.length).put(bytes);
+      }
+      header.putInt(schemaTables.size() + 1);
+
+      try (final FileChannel channel = FileChannel
+        .open(tempCatalogFile, StandardOpenOption.WRITE);)
+      {
+        channel.position(headerLength);
+
+        final long catalogOffset = channel.position();
+        writeSection(channel, null, stringIds, new CatalogMetadata(catalog));
+        header.putInt(-1).putInt(0).putLong(catalogOffset)
+          .putInt((int) (channel.position() - catalogOffset));
+
+        for (final Map.Entry<Schema, List<Table>> entry: schemaTables
+          .entrySet())
+        {
+          final Schema schema = entry.getKey();
+          final List<Table> tables = entry.getValue();
+          final long offset = channel.position();
+          writeSection(channel,
+                       schema,
+                       stringIds,
+                       new ArrayList<>(tables),
+                       new ArrayList<>(catalog.getRoutines(schema)),
+                       new ArrayList<>(catalog.getSynonyms(schema)),
+                       new ArrayList<>(catalog.getSequences(schema)));
+          final long length = channel.position() - offset;
+          if (length > Integer.MAX_VALUE)
+          {
+            throw new IOException(String
+              .format("Schema %s is too large for a catalog file",
+                      schema.getFullName()));
+          }
+
+          header.putInt(stringIds.get(schema.getFullName()))
+            .putInt(tables.size());
+          for (final Table table: tables)
+          {
+            header.putInt(stringIds.get(table.getName()));
+          }
+          header.putLong(offset).putInt((int) length);
+        }
+
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining())
+        {
+          channel.write(header);
+        }
+        channel.force(true);
+      }
+
+      try
+      {
+        Files.move(tempCatalogFile,
+                   catalogFile,
+                   StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        Files.move(tempCatalogFile,
+                   catalogFile,
+                   StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists(tempCatalogFile);
+    }
+
+    return schemaTables.size();
+  }
+
+  /**
+   * Writes a section. Tables and columns in other schemas than the
+   * schema of the section are written as references, and if there is
+   * no schema, objects are written as they are.
+   */
+  private static void writeSection(final FileChannel channel,
+                                   final Schema schema,
+                                   final Map<String, Integer> stringIds,
+                                   final Object... objects)
+    throws IOException
+  {
+    // The channel is not closed with the stream
+    final OutputStream channelOut = new DeflaterOutputStream(Channels
+      .newOutputStream(channel), new Deflater(Deflater.BEST_SPEED), 65536)
+    {
+      @Override
+      public void close()
+        throws IOException
+      {
+        finish();
+        flush();
+        def.end();
+      }
+    };
+    try (final ObjectOutputStream out = new SectionOutputStream(channelOut,
+                                                                schema,
+                                                                stringIds);)
+    {
+      for (final Object object: objects)
+      {
+        out.writeObject(object);
+      }
+    }
+  }
+
+  private final String[] strings;
+  private final List<Section> sections;
+  private final Map<String, Section> sectionsBySchema;
+  private final Map<String, Table> decodedTables;
+  private final List<Synonym> decodedSynonyms;
+
+  private MappedCatalog(final Catalog catalog,
+                        final String[] strings,
+                        final List<Section> sections)
+  {
+    super(catalog);
+    this.strings = strings;
+    this.sections = sections;
+    sectionsBySchema = new HashMap<>();
+    for (final Section section: sections)
+    {
+      sectionsBySchema.put(section.schemaName, section);
+    }
+    decodedTables = new HashMap<>();
+    decodedSynonyms = new ArrayList<>();
+  }
+
+  /**
+   * @return Number of schemas that have been decoded
+   */
+  public int getDecodedSchemaCount()
+  {
+    int count = 0;
+    for (final Section section: sections)
+    {
+      if (section.isDecoded())
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Collection<Routine> getRoutines()
+  {
+    final List<Routine> routines = new ArrayList<>();
+    for (final Section section: sections)
+    {
+      routines.addAll(section.decode(this).routines);
+    }
+    return routines;
+  }
+
+  @Override
+  public Collection<Routine> getRoutines(final Schema schema)
+  {
+    return section(schema)
+      .map(section -> new ArrayList<>(section.decode(this).routines))
+      .orElseGet(ArrayList::new);
+  }
+
+  /**
+   * @return Number of schemas in the catalog file, that have tables or
+   *         other objects
+   */
+  public int getSchemaCount()
+  {
+    return sections.size();
+  }
+
+  /**
+   * @return Compressed size of the section for a schema in the catalog
+   *         file, in bytes, or 0 if the schema has no section
+   */
+  public int getSectionSize(final Schema schema)
+  {
+    return section(schema).map(section -> section.buffer.capacity())
+      .orElse(0);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences()
+  {
+    final List<Sequence> sequences = new ArrayList<>();
+    for (final Section section: sections)
+    {
+      sequences.addAll(section.decode(this).sequences);
+    }
+    return sequences;
+  }
+
+  @Override
+  public Collection<Sequence> getSequences(final Schema schema)
+  {
+    return section(schema)
+      .map(section -> new ArrayList<>(section.decode(this).sequences))
+      .orElseGet(ArrayList::new);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms()
+  {
+    final List<Synonym> synonyms = new ArrayList<>();
+    for (final Section section: sections)
+    {
+      synonyms.addAll(section.decode(this).synonyms);
+    }
+    return synonyms;
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms(final Schema schema)
+  {
+    return section(schema)
+      .map(section -> new ArrayList<>(section.decode(this).synonyms))
+      .orElseGet(ArrayList::new);
+  }
+
+  /**
+   * @return Number of tables in the catalog file, counted without
+   *         decoding any schemas
+   */
+  public int getTableCount()
+  {
+    int count = 0;
+    for (final Section section: sections)
+    {
+      count = count + section.tableNames.size();
+    }
+    return count;
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    final List<Table> tables = new ArrayList<>();
+    for (final Section section: sections)
+    {
+      tables.addAll(section.decode(this).tables);
+    }
+    return tables;
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    return section(schema)
+      .map(section -> new ArrayList<>(section.decode(this).tables))
+      .orElseGet(ArrayList::new);
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends Routine> lookupRoutine(final Schema schema,
+                                                   final String name)
+  {
+    return section(schema)
+      .flatMap(section -> section.lookup(this, schema, name, Routine.class));
+  }
+
+  @Override
+  public Optional<? extends Sequence> lookupSequence(final Schema schema,
+                                                     final String name)
+  {
+    return section(schema)
+      .flatMap(section -> section.lookup(this, schema, name, Sequence.class));
+  }
+
+  @Override
+  public Optional<? extends Synonym> lookupSynonym(final Schema schema,
+                                                   final String name)
+  {
+    return section(schema)
+      .flatMap(section -> section.lookup(this, schema, name, Synonym.class));
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    // Tables that are not in the section index are not decoded
+    return section(schema)
+      .filter(section -> section.tableNames.contains(name))
+      .flatMap(section -> section.lookup(this, schema, name, Table.class));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <N extends NamedObject> void reduce(final Class<N> clazz,
+                                             final Reducer<N> reducer)
+  {
+    if (reducer == null)
+    {
+      return;
+    }
+    if (Schema.class.isAssignableFrom(clazz))
+    {
+      super.reduce(clazz, reducer);
+      return;
+    }
+    for (final Section section: sections)
+    {
+      section.decode(this);
+      if (Table.class.isAssignableFrom(clazz))
+      {
+        section.reduce((List<N>) section.tables, reducer);
+      }
+      else if (Routine.class.isAssignableFrom(clazz))
+      {
+        section.reduce((List<N>) section.routines, reducer);
+      }
+      else if (Synonym.class.isAssignableFrom(clazz))
+      {
+        section.reduce((List<N>) section.synonyms, reducer);
+      }
+      else if (Sequence.class.isAssignableFrom(clazz))
+      {
+        section.reduce((List<N>) section.sequences, reducer);
+      }
+    }
+
+    synchronized (decodedTables)
+    {
+      decodedTables.clear();
+      decodedSynonyms.clear();
+      for (final Section section: sections)
+      {
+        addDecoded(section);
+      }
+    }
+  }
+
+  private void addDecoded(final Section section)
+  {
+    for (final Table table: section.tables)
+    {
+      decodedTables.put(DdlMarkers.key(table), table);
+    }
+    decodedSynonyms.addAll(section.synonyms);
+  }
+
+  /**
+   * Links a section that has just been decoded to the sections that
+   * were decoded before. Foreign keys and synonyms in each section
+   * reference partial tables in the other schemas, until those schemas
+   * are decoded.
+   */
+  private void link(final Section section)
+  {
+    synchronized (decodedTables)
+    {
+      addDecoded(section);
+      ForeignKeyLinks.link(decodedTables, decodedSynonyms);
+    }
+  }
+
+  private Optional<Section> section(final Schema schema)
+  {
+    if (schema == null)
+    {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(sectionsBySchema.get(schema.getFullName()));
+  }
+
+  /**
+   * Sections are mapped from a file, so a mapped catalog is written to a
+   * catalog file, rather than serialized.
+   */
+  private Object writeReplace()
+    throws ObjectStreamException
+  {
+    throw new NotSerializableException("Mapped catalogs cannot be serialized, but can be exported to a catalog file");
+  }
+
+}
@@ -0,0 +1,372 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.ColumnDataType;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.ForeignKeyColumnReference;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Reducer;
+import schemacrawler.schema.Reducible;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.View;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+import schemacrawler.utility.NamedObjectSort;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.graph.DirectedGraph;
+import sf.util.graph.GraphException;
+import sf.util.graph.SimpleTopologicalSort;
+
+/**
+ * Single catalog view over catalogs that were loaded separately, one
+ * for each schema. Database and crawl information is taken from the
+ * first catalog. Collections are merged and sorted, and lookups are
+ * delegated to the catalog that the schema was loaded into.
+ * <p>
+ * Each catalog orders its tables by foreign key dependencies within its
+ * own schema, so the merged tables are ordered by dependencies across
+ * all schemas, the same way as for a single crawl. Tables compare by the
+ * order within their own catalog, so output that sorts tables in their
+ * natural order, rather than alphabetically, is ordered within each
+ * schema only. Foreign keys to tables in other schemas reference the
+ * partial tables of the catalog that the foreign key was loaded into,
+ * and the loaded tables are found by looking them up by schema and
+ * name.
+ */
+public final class MergedCatalog
+  extends BaseCatalogDecorator
+{
+
+  private static final long serialVersionUID = -2311893924812837209L;
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(MergedCatalog.class.getName());
+
+  private static Catalog firstCatalog(final List<Catalog> catalogs)
+  {
+    requireNonNull(catalogs, "No catalogs provided");
+    if (catalogs.isEmpty())
+    {
+      throw new IllegalArgumentException("No catalogs provided");
+    }
+    return catalogs.get(0);
+  }
+
+  private final ArrayList<Catalog> catalogs;
+  private final HashMap<String, Catalog> catalogsBySchema;
+  private final ArrayList<Table> tables;
+
+  public MergedCatalog(final List<Catalog> catalogs)
+  {
+    super(firstCatalog(catalogs));
+    this.catalogs = new ArrayList<>(catalogs);
+    catalogsBySchema = new HashMap<>();
+    for (final Catalog catalog: catalogs)
+    {
+      for (final Schema schema: catalog.getSchemas())
+      {
+        // Only the first catalog that contains a schema owns it
+        catalogsBySchema.putIfAbsent(schema.getFullName(), catalog);
+      }
+    }
+    tables = sortTables(merge(Catalog::getTables));
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes()
+  {
+    // System column data types are repeated in every catalog
+    final Map<String, ColumnDataType> columnDataTypes = new LinkedHashMap<>();
+    for (final Catalog catalog: catalogs)
+    {
+      for (final ColumnDataType columnDataType: catalog.getColumnDataTypes())
+      {
+        columnDataTypes.putIfAbsent(columnDataType.getFullName(),
+                                    columnDataType);
+      }
+    }
+    return new ArrayList<>(columnDataTypes.values());
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes(final Schema schema)
+  {
+    return catalogFor(schema).getColumnDataTypes(schema);
+  }
+
+  @Override
+  public Collection<Routine> getRoutines()
+  {
+    return merge(Catalog::getRoutines);
+  }
+
+  @Override
+  public Collection<Routine> getRoutines(final Schema schema)
+  {
+    return catalogFor(schema).getRoutines(schema);
+  }
+
+  @Override
+  public Collection<Schema> getSchemas()
+  {
+    final Map<String, Schema> schemas = new LinkedHashMap<>();
+    for (final Catalog catalog: catalogs)
+    {
+      for (final Schema schema: catalog.getSchemas())
+      {
+        schemas.putIfAbsent(schema.getFullName(), schema);
+      }
+    }
+    final List<Schema> sortedSchemas = new ArrayList<>(schemas.values());
+    Collections.sort(sortedSchemas);
+    return sortedSchemas;
+  }
+
+  @Override
+  public Collection<Sequence> getSequences()
+  {
+    return merge(Catalog::getSequences);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences(final Schema schema)
+  {
+    return catalogFor(schema).getSequences(schema);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms()
+  {
+    return merge(Catalog::getSynonyms);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms(final Schema schema)
+  {
+    return catalogFor(schema).getSynonyms(schema);
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    return new ArrayList<>(tables);
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    final List<Table> schemaTables = new ArrayList<>();
+    for (final Table table: tables)
+    {
+      if (table.getSchema().equals(schema))
+      {
+        schemaTables.add(table);
+      }
+    }
+    return schemaTables;
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends ColumnDataType> lookupColumnDataType(final Schema schema,
+                                                                 final String name)
+  {
+    return catalogFor(schema).lookupColumnDataType(schema, name);
+  }
+
+  @Override
+  public Optional<? extends Routine> lookupRoutine(final Schema schema,
+                                                   final String name)
+  {
+    return catalogFor(schema).lookupRoutine(schema, name);
+  }
+
+  @Override
+  public Optional<? extends Schema> lookupSchema(final String name)
+  {
+    for (final Catalog catalog: catalogs)
+    {
+      final Optional<? extends Schema> schema = catalog.lookupSchema(name);
+      if (schema.isPresent())
+      {
+        return schema;
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<? extends Sequence> lookupSequence(final Schema schema,
+                                                     final String name)
+  {
+    return catalogFor(schema).lookupSequence(schema, name);
+  }
+
+  @Override
+  public Optional<? extends Synonym> lookupSynonym(final Schema schema,
+                                                   final String name)
+  {
+    return catalogFor(schema).lookupSynonym(schema, name);
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    return catalogFor(schema).lookupTable(schema, name);
+  }
+
+  @Override
+  public <N extends NamedObject> void reduce(final Class<N> clazz,
+                                             final Reducer<N> reducer)
+  {
+    for (final Catalog catalog: catalogs)
+    {
+      ((Reducible) catalog).reduce(clazz, reducer);
+    }
+  }
+
+  private Catalog catalogFor(final Schema schema)
+  {
+    if (schema == null)
+    {
+      return catalog;
+    }
+    return catalogsBySchema.getOrDefault(schema.getFullName(), catalog);
+  }
+
+  /**
+   * Orders tables by topologically sorting them by their foreign keys,
+   * with views after tables. If there are cycles, tables are ordered by
+   * schema, table type and name.
+   *
+   * @return Tables in dependency order
+   */
+  static ArrayList<Table> sortTables(final Collection<Table> catalogTables)
+  {
+    final ArrayList<Table> tables = new ArrayList<>(catalogTables);
+    final Map<String, Table> tablesByName = new HashMap<>();
+    for (final Table table: tables)
+    {
+      tablesByName.put(table.getFullName(), table);
+    }
+    tables.sort(Comparator.comparing(Table::getSchema)
+      .thenComparing(Table::getTableType)
+      .thenComparing(NamedObjectSort.alphabetical));
+
+    final DirectedGraph<Table> tablesGraph = new DirectedGraph<>("catalog");
+    for (final Table table: tables)
+    {
+      tablesGraph.addVertex(table);
+      for (final ForeignKey foreignKey: table.getForeignKeys())
+      {
+        for (final ForeignKeyColumnReference columnReference: foreignKey)
+        {
+          // Tables in other schemas are referenced as partial tables
+          final Table pkTable = columnReference.getPrimaryKeyColumn()
+            .getParent();
+          final Table fkTable = columnReference.getForeignKeyColumn()
+            .getParent();
+          tablesGraph.addEdge(tablesByName
+            .getOrDefault(pkTable.getFullName(), pkTable),
+                              tablesByName.getOrDefault(fkTable.getFullName(),
+                                                        fkTable));
+        }
+      }
+    }
+
+    try
+    {
+      final List<Table> sortedTables = new SimpleTopologicalSort<>(tablesGraph)
+        .topologicalSort();
+      final ArrayList<Table> orderedTables = new ArrayList<>(tables.size());
+      final List<Table> sortedViews = new ArrayList<>();
+      for (final Table table: sortedTables)
+      {
+        if (tablesByName.get(table.getFullName()) != table)
+        {
+          // Partial tables that were not loaded
+          continue;
+        }
+        if (table instanceof View)
+        {
+          sortedViews.add(table);
+        }
+        else
+        {
+          orderedTables.add(table);
+        }
+      }
+      orderedTables.addAll(sortedViews);
+      return orderedTables;
+    }
+    catch (final GraphException e)
+    {
+      LOGGER.log(Level.CONFIG, e.getMessage());
+      return tables;
+    }
+  }
+
+  private <N extends NamedObject> Collection<N> merge(final Function<Catalog, Collection<N>> collection)
+  {
+    final List<N> merged = new ArrayList<>();
+    for (final Catalog catalog: catalogs)
+    {
+      merged.addAll(collection.apply(catalog));
+    }
+    Collections.sort(merged);
+    return merged;
+  }
+
+}
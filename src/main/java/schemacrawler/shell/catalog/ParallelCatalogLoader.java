@@ -0,0 +1,227 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Schema;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.RegularExpressionInclusionRule;
+import schemacrawler.schemacrawler.SchemaCrawlerException;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
+import schemacrawler.schemacrawler.SchemaInfoLevelBuilder;
+import schemacrawler.schemacrawler.SchemaRetrievalOptions;
+import schemacrawler.tools.catalogloader.CatalogLoader;
+import schemacrawler.tools.catalogloader.CatalogLoaderRegistry;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Loads a catalog by crawling each included schema separately, on a
+ * bounded number of threads, each with its own pooled connection. The
+ * catalogs for each schema are merged into a single catalog.
+ */
+public final class ParallelCatalogLoader
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(ParallelCatalogLoader.class.getName());
+
+  private final DataSource dataSource;
+  private final Config additionalConfiguration;
+  private final SchemaRetrievalOptions schemaRetrievalOptions;
+  private final SchemaCrawlerOptions schemaCrawlerOptions;
+  private final int parallelism;
+  private final CatalogLoadProgress progress;
+
+  /**
+   * @param progress
+   *        Receives the number of schemas loaded, or null
+   */
+  public ParallelCatalogLoader(final DataSource dataSource,
+                               final Config additionalConfiguration,
+                               final SchemaRetrievalOptions schemaRetrievalOptions,
+                               final SchemaCrawlerOptions schemaCrawlerOptions,
+                               final int parallelism,
+                               final CatalogLoadProgress progress)
+  {
+    this.dataSource = requireNonNull(dataSource, "No data-source provided");
+    this.additionalConfiguration = additionalConfiguration;
+    this.schemaRetrievalOptions = requireNonNull(schemaRetrievalOptions,
+                                                 "No schema retrieval options provided");
+    this.schemaCrawlerOptions = requireNonNull(schemaCrawlerOptions,
+                                               "No SchemaCrawler options provided");
+    if (parallelism < 1)
+    {
+      throw new IllegalArgumentException("Parallelism should be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.progress = progress;
+  }
+
+  public Catalog loadCatalog()
+    throws Exception
+  {
+    final List<String> schemaNames = loadSchemaNames();
+    LOGGER.log(Level.INFO,
+               new StringFormat("Loading %d schemas, with parallelism %d",
+                                schemaNames.size(),
+                                parallelism));
+    if (schemaNames.size() <= 1)
+    {
+      return loadCatalog(schemaCrawlerOptions);
+    }
+    if (progress != null)
+    {
+      progress.setSchemaCount(schemaNames.size());
+    }
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executor = Executors
+      .newFixedThreadPool(Math.min(parallelism, schemaNames.size()),
+                          runnable -> {
+                            final Thread thread = new Thread(runnable,
+                                                             "schemacrawler-catalog-loader-"
+                                                                       + threadNumber
+                                                                         .incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                          });
+    try
+    {
+      final List<Future<Catalog>> futures = new ArrayList<>();
+      for (final String schemaName: schemaNames)
+      {
+        final SchemaCrawlerOptions schemaOptions = SchemaCrawlerOptionsBuilder
+          .builder().fromOptions(schemaCrawlerOptions)
+          .includeSchemas(new RegularExpressionInclusionRule(Pattern
+            .quote(schemaName)))
+          .toOptions();
+        final Callable<Catalog> task = () -> {
+          LOGGER.log(Level.FINE,
+                     new StringFormat("Loading schema <%s>", schemaName));
+          final Catalog catalog = loadCatalog(schemaOptions);
+          if (progress != null)
+          {
+            progress.schemaLoaded();
+          }
+          return catalog;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      // Collect in schema order, so that the merged catalog does not
+      // depend on which schema finished loading first
+      final List<Catalog> catalogs = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++)
+      {
+        try
+        {
+          catalogs.add(futures.get(i).get());
+        }
+        catch (final ExecutionException e)
+        {
+          throw new SchemaCrawlerException(String
+            .format("Cannot load schema <%s>", schemaNames.get(i)),
+                                           e.getCause());
+        }
+      }
+      return new MergedCatalog(catalogs);
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private Catalog loadCatalog(final SchemaCrawlerOptions options)
+    throws Exception
+  {
+    try (final Connection connection = dataSource.getConnection();)
+    {
+      final CatalogLoaderRegistry catalogLoaderRegistry = new CatalogLoaderRegistry();
+      final CatalogLoader catalogLoader = catalogLoaderRegistry
+        .lookupCatalogLoader(schemaRetrievalOptions.getDatabaseServerType()
+          .getDatabaseSystemIdentifier());
+
+      catalogLoader.setAdditionalConfiguration(additionalConfiguration);
+      catalogLoader.setConnection(connection);
+      catalogLoader.setSchemaRetrievalOptions(schemaRetrievalOptions);
+      catalogLoader.setSchemaCrawlerOptions(options);
+
+      final Catalog catalog = catalogLoader.loadCatalog();
+      requireNonNull(catalog, "Catalog could not be retrieved");
+      return catalog;
+    }
+  }
+
+  /**
+   * Finds the schemas matched by the schema inclusion rule, with a crawl
+   * that retrieves schemas only.
+   */
+  private List<String> loadSchemaNames()
+    throws Exception
+  {
+    final SchemaCrawlerOptions schemasOnlyOptions = SchemaCrawlerOptionsBuilder
+      .builder().fromOptions(schemaCrawlerOptions)
+      .withSchemaInfoLevel(SchemaInfoLevelBuilder.builder()
+        .withInfoLevel(InfoLevel.minimum).withoutTables().withoutRoutines()
+        .setRetrieveSequenceInformation(false)
+        .setRetrieveSynonymInformation(false)
+        .setRetrieveColumnDataTypes(false)
+        .setRetrieveUserDefinedColumnDataTypes(false))
+      .toOptions();
+
+    final List<String> schemaNames = new ArrayList<>();
+    for (final Schema schema: loadCatalog(schemasOnlyOptions).getSchemas())
+    {
+      schemaNames.add(schema.getFullName());
+    }
+    return schemaNames;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+
+/**
+ * View over one part of a catalog, with only the tables in the part,
+ * and the schemas they belong to. Routines, synonyms and sequences are
+ * left out. Unlike a filtered catalog, tables are not marked, so views
+ * of different parts can be rendered at the same time.
+ */
+public final class PartitionCatalog
+  extends BaseCatalogDecorator
+{
+
+  private static final long serialVersionUID = -4418357604587125862L;
+
+  private final Set<Table> tables;
+  private final Set<Schema> schemas;
+
+  public PartitionCatalog(final Catalog catalog,
+                          final CatalogPartition partition)
+  {
+    this(catalog,
+         requireNonNull(partition, "No catalog part provided").getTables());
+  }
+
+  public PartitionCatalog(final Catalog catalog,
+                          final Collection<Table> tables)
+  {
+    super(requireNonNull(catalog, "No catalog provided"));
+    requireNonNull(tables, "No tables provided");
+
+    this.tables = new HashSet<>(tables);
+    schemas = new HashSet<>();
+    for (final Table table: this.tables)
+    {
+      schemas.add(table.getSchema());
+    }
+  }
+
+  @Override
+  public Collection<Routine> getRoutines()
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Routine> getRoutines(final Schema schema)
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Schema> getSchemas()
+  {
+    return filter(catalog.getSchemas(), schemas);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences()
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Sequence> getSequences(final Schema schema)
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms()
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms(final Schema schema)
+  {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    return filter(catalog.getTables(), tables);
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    return filter(catalog.getTables(schema), tables);
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends Routine> lookupRoutine(final Schema schema,
+                                                   final String name)
+  {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<? extends Schema> lookupSchema(final String name)
+  {
+    return catalog.lookupSchema(name).filter(schemas::contains);
+  }
+
+  @Override
+  public Optional<? extends Sequence> lookupSequence(final Schema schema,
+                                                     final String name)
+  {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<? extends Synonym> lookupSynonym(final Schema schema,
+                                                   final String name)
+  {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    return catalog.lookupTable(schema, name).filter(tables::contains);
+  }
+
+  private <N> List<N> filter(final Collection<N> namedObjects,
+                             final Set<N> included)
+  {
+    final List<N> filtered = new ArrayList<>();
+    for (final N namedObject: namedObjects)
+    {
+      if (included.contains(namedObject))
+      {
+        filtered.add(namedObject);
+      }
+    }
+    return filtered;
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Reducer;
+import schemacrawler.schema.Reducible;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+
+/**
+ * Catalog with some tables crawled separately, either again after they
+ * changed, or in more detail than the other tables. Tables in the patch
+ * replace tables with the same key in the base catalog, and removed
+ * tables are left out. All other objects, and database and crawl
+ * information, are taken from the base catalog.
+ * <p>
+ * Foreign keys between the patch tables and the other tables are taken
+ * from the patch, and linked to the tables in this catalog at both ends,
+ * so the tables in the base catalog are changed. Tables are ordered by
+ * dependencies across the base and patch tables, the same way as for a
+ * merged catalog.
+ */
+public final class PatchedCatalog
+  extends BaseCatalogDecorator
+{
+
+  private static final long serialVersionUID = 6519367386517206185L;
+
+  private final Catalog patch;
+  private final HashSet<String> removedTableKeys;
+  private final ArrayList<Table> tables;
+
+  /**
+   * @param removedTableKeys
+   *        Keys of tables to leave out of the base catalog, unless they
+   *        are in the patch
+   */
+  public PatchedCatalog(final Catalog catalog,
+                        final Catalog patch,
+                        final Collection<String> removedTableKeys)
+  {
+    super(catalog);
+    this.patch = requireNonNull(patch, "No patch catalog provided");
+    this.removedTableKeys = new HashSet<>(requireNonNull(removedTableKeys,
+                                                         "No removed tables provided"));
+    for (final Table table: patch.getTables())
+    {
+      this.removedTableKeys.add(DdlMarkers.key(table));
+    }
+
+    final List<Table> patchedTables = new ArrayList<>();
+    for (final Table table: catalog.getTables())
+    {
+      if (!this.removedTableKeys.contains(DdlMarkers.key(table)))
+      {
+        patchedTables.add(table);
+      }
+    }
+    patchedTables.addAll(patch.getTables());
+    ForeignKeyLinks.link(patchedTables,
+                         patch.getTables(),
+                         this.removedTableKeys);
+    tables = MergedCatalog.sortTables(patchedTables);
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    return new ArrayList<>(tables);
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    final List<Table> schemaTables = new ArrayList<>();
+    for (final Table table: tables)
+    {
+      if (table.getSchema().equals(schema))
+      {
+        schemaTables.add(table);
+      }
+    }
+    return schemaTables;
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    final Optional<? extends Table> table = patch.lookupTable(schema, name);
+    if (table.isPresent())
+    {
+      return table;
+    }
+    final Optional<? extends Table> baseTable = catalog.lookupTable(schema,
+                                                                    name);
+    if (baseTable.isPresent()
+        && removedTableKeys.contains(DdlMarkers.key(baseTable.get())))
+    {
+      return Optional.empty();
+    }
+    return baseTable;
+  }
+
+  @Override
+  public <N extends NamedObject> void reduce(final Class<N> clazz,
+                                             final Reducer<N> reducer)
+  {
+    ((Reducible) catalog).reduce(clazz, reducer);
+    ((Reducible) patch).reduce(clazz, reducer);
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import java.util.Arrays;
+
+/**
+ * Growable array of object ids for an index entry. Ids are added in
+ * increasing order, so the postings are sorted without any extra work.
+ */
+final class Postings
+{
+
+  /**
+   * Intersects two sorted arrays of ids.
+   */
+  static int[] intersect(final int[] ids1, final int[] ids2)
+  {
+    final int[] intersection = new int[Math.min(ids1.length, ids2.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < ids1.length && j < ids2.length)
+    {
+      if (ids1[i] < ids2[j])
+      {
+        i++;
+      }
+      else if (ids1[i] > ids2[j])
+      {
+        j++;
+      }
+      else
+      {
+        intersection[size++] = ids1[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(intersection, size);
+  }
+
+  private int[] ids = new int[4];
+  private int size;
+
+  void add(final int id)
+  {
+    if (size > 0 && ids[size - 1] == id)
+    {
+      return;
+    }
+    if (size == ids.length)
+    {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    ids[size++] = id;
+  }
+
+  int[] toArray()
+  {
+    return Arrays.copyOf(ids, size);
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Row counts of tables, kept for a time so that repeated counts of the
+ * same tables do not scan them again. Counts that are estimated from
+ * database statistics are only used when an estimate is good enough.
+ */
+public final class RowCountCache
+{
+
+  private static final class RowCount
+  {
+
+    private final long count;
+    private final boolean estimated;
+    private final long countedAt;
+
+    RowCount(final long count, final boolean estimated, final long countedAt)
+    {
+      this.count = count;
+      this.estimated = estimated;
+      this.countedAt = countedAt;
+    }
+
+  }
+
+  private final Duration timeToLive;
+  private final Map<String, RowCount> rowCounts = new ConcurrentHashMap<>();
+
+  /**
+   * @param timeToLive
+   *        Age after which row counts are taken again, or zero for row
+   *        counts that are never taken again
+   */
+  public RowCountCache(final Duration timeToLive)
+  {
+    this.timeToLive = requireNonNull(timeToLive, "No time to live provided");
+  }
+
+  public void clear()
+  {
+    rowCounts.clear();
+  }
+
+  /**
+   * Looks up the row count of a table.
+   *
+   * @param tableName
+   *        Full name of the table
+   * @param isEstimateAllowed
+   *        Whether an estimated row count can be returned
+   * @return Row count, if it was taken and has not expired
+   */
+  public Optional<Long> lookup(final String tableName,
+                               final boolean isEstimateAllowed)
+  {
+    final RowCount rowCount = rowCounts.get(tableName);
+    if (rowCount == null || rowCount.estimated && !isEstimateAllowed)
+    {
+      return Optional.empty();
+    }
+    if (isExpired(rowCount))
+    {
+      rowCounts.remove(tableName, rowCount);
+      return Optional.empty();
+    }
+    return Optional.of(rowCount.count);
+  }
+
+  /**
+   * Saves the row count of a table. An estimate does not replace an
+   * exact count that has not expired.
+   */
+  public void put(final String tableName,
+                  final long count,
+                  final boolean estimated)
+  {
+    final RowCount rowCount = new RowCount(count,
+                                           estimated,
+                                           System.currentTimeMillis());
+    rowCounts.merge(tableName,
+                    rowCount,
+                    (oldRowCount, newRowCount) -> newRowCount.estimated
+                                                  && !oldRowCount.estimated
+                                                  && !isExpired(oldRowCount)? oldRowCount
+                                                                            : newRowCount);
+  }
+
+  public int size()
+  {
+    return rowCounts.size();
+  }
+
+  private boolean isExpired(final RowCount rowCount)
+  {
+    return !timeToLive.isZero() && System.currentTimeMillis()
+                                   - rowCount.countedAt > timeToLive
+                                     .toMillis();
+  }
+
+}
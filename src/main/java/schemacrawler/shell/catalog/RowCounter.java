@@ -0,0 +1,243 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Table;
+import schemacrawler.shell.jdbc.RowCountJdbc;
+import schemacrawler.tools.text.operation.Operation;
+import schemacrawler.utility.Identifiers;
+import schemacrawler.utility.QueryUtility;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Counts the rows in tables on a bounded number of pooled connections
+ * at a time, rather than one table after another. Row counts are kept
+ * in a row count cache, and tables are only counted again when their
+ * counts expire. If exact counts are not needed, row counts are
+ * estimated from database statistics, and only tables without
+ * statistics, or that look empty, are counted.
+ */
+public final class RowCounter
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(RowCounter.class.getName());
+
+  private final DataSource dataSource;
+  private final Identifiers identifiers;
+  private final RowCountCache rowCountCache;
+  private final int parallelism;
+  private final boolean isEstimateAllowed;
+
+  /**
+   * @param dataSource
+   *        Data-source to borrow connections from
+   * @param parallelism
+   *        Number of tables to count at a time
+   * @param isEstimateAllowed
+   *        Whether row counts can be estimated from database statistics
+   */
+  public RowCounter(final DataSource dataSource,
+                    final Identifiers identifiers,
+                    final RowCountCache rowCountCache,
+                    final int parallelism,
+                    final boolean isEstimateAllowed)
+  {
+    this.dataSource = requireNonNull(dataSource, "No data-source provided");
+    this.identifiers = identifiers == null? Identifiers.STANDARD: identifiers;
+    this.rowCountCache = requireNonNull(rowCountCache,
+                                        "No row count cache provided");
+    if (parallelism < 1)
+    {
+      throw new IllegalArgumentException("Parallelism should be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.isEstimateAllowed = isEstimateAllowed;
+  }
+
+  /**
+   * Counts the rows in tables. Tables that cannot be counted are left
+   * out, and are counted again by commands that need them.
+   *
+   * @param tables
+   *        Tables to count
+   * @return Row counts, by table key
+   */
+  public Map<String, Long> count(final Collection<Table> tables)
+    throws Exception
+  {
+    requireNonNull(tables, "No tables provided");
+
+    final long start = System.nanoTime();
+    final Map<String, Long> rowCounts = new ConcurrentHashMap<>();
+    List<Table> uncountedTables = new ArrayList<>();
+    for (final Table table: tables)
+    {
+      final String tableKey = RowCountJdbc.tableKey(table.getFullName());
+      final Optional<Long> rowCount = rowCountCache
+        .lookup(tableKey, isEstimateAllowed);
+      if (rowCount.isPresent())
+      {
+        rowCounts.put(tableKey, rowCount.get());
+      }
+      else
+      {
+        uncountedTables.add(table);
+      }
+    }
+    final int cachedCount = rowCounts.size();
+
+    if (isEstimateAllowed && !uncountedTables.isEmpty())
+    {
+      final Map<Table, Long> estimates;
+      try (final Connection connection = dataSource.getConnection();)
+      {
+        estimates = TableSizeEstimates.statistics(uncountedTables,
+                                                  connection);
+      }
+      final List<Table> unestimatedTables = new ArrayList<>();
+      for (final Table table: uncountedTables)
+      {
+        // Statistics for tables that were never analyzed show them as
+        // empty, so those are counted
+        final long estimate = estimates.getOrDefault(table, -1L);
+        if (estimate > 0)
+        {
+          final String tableKey = RowCountJdbc
+            .tableKey(table.getFullName());
+          rowCounts.put(tableKey, estimate);
+          rowCountCache.put(tableKey, estimate, true);
+        }
+        else
+        {
+          unestimatedTables.add(table);
+        }
+      }
+      uncountedTables = unestimatedTables;
+    }
+    final int estimatedCount = rowCounts.size() - cachedCount;
+
+    if (!uncountedTables.isEmpty())
+    {
+      countTables(uncountedTables, rowCounts);
+    }
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Row counts for %d of %d tables, with %d from cache, %d estimated and %d counted, in %d ms",
+                                rowCounts.size(),
+                                tables.size(),
+                                cachedCount,
+                                estimatedCount,
+                                rowCounts.size() - cachedCount
+                                                - estimatedCount,
+                                (System.nanoTime() - start) / 1_000_000L));
+    return new HashMap<>(rowCounts);
+  }
+
+  private void countTables(final List<Table> tables,
+                           final Map<String, Long> rowCounts)
+    throws Exception
+  {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executor = Executors
+      .newFixedThreadPool(Math.min(parallelism, tables.size()),
+                          runnable -> {
+                            final Thread thread = new Thread(runnable,
+                                                             "schemacrawler-count-"
+                                                                       + threadNumber
+                                                                         .incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                          });
+    try
+    {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (final Table table: tables)
+      {
+        final Callable<Void> task = () -> {
+          final long rowCount;
+          try (final Connection connection = dataSource.getConnection();)
+          {
+            rowCount = QueryUtility.executeForLong(Operation.count.getQuery(),
+                                                   connection,
+                                                   table,
+                                                   identifiers);
+          }
+          final String tableKey = RowCountJdbc.tableKey(table.getFullName());
+          rowCounts.put(tableKey, rowCount);
+          rowCountCache.put(tableKey, rowCount, false);
+          return null;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      for (int i = 0; i < futures.size(); i++)
+      {
+        try
+        {
+          futures.get(i).get();
+        }
+        catch (final ExecutionException e)
+        {
+          LOGGER.log(Level.WARNING,
+                     new StringFormat("Could not get count for table <%s>",
+                                      tables.get(i)),
+                     e.getCause());
+        }
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,260 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Column;
+import schemacrawler.schema.JavaSqlTypeGroup;
+import schemacrawler.schema.PrimaryKey;
+import schemacrawler.schema.Table;
+import schemacrawler.utility.Identifiers;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Range of the values of the primary key of a large table, so that the
+ * rows of the table can be read in chunks, at the same time. Only
+ * tables with a single column primary key of an integer type are split.
+ * The range of key values is found from the minimum and maximum, which
+ * the database reads from the primary key index, and split into ranges
+ * of equal width.
+ */
+public final class TableChunk
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(TableChunk.class.getName());
+
+  /**
+   * Splits a table into ranges of its primary key.
+   *
+   * @param table
+   *        Table to split
+   * @param estimatedRows
+   *        Estimated number of rows in the table, or -1 if there is no
+   *        estimate, in which case the width of the range of the key is
+   *        used
+   * @param chunkRows
+   *        Number of rows above which a table is split
+   * @return Chunks in key order, or an empty list if the table is not
+   *         split
+   */
+  public static List<TableChunk> chunk(final Table table,
+                                       final long estimatedRows,
+                                       final long chunkRows,
+                                       final Connection connection,
+                                       final Identifiers identifiers)
+    throws SQLException
+  {
+    requireNonNull(table, "No table provided");
+    requireNonNull(connection, "No connection provided");
+    requireNonNull(identifiers, "No identifiers provided");
+    if (chunkRows < 1)
+    {
+      throw new IllegalArgumentException("Number of rows in a chunk should be at least 1");
+    }
+
+    final Column keyColumn = integerKeyColumn(table);
+    if (keyColumn == null || estimatedRows >= 0 && estimatedRows <= chunkRows)
+    {
+      return Collections.emptyList();
+    }
+
+    final String sql = String.format("SELECT MIN(%1$s), MAX(%1$s) FROM %2$s",
+                                     identifiers.quoteName(keyColumn),
+                                     identifiers.quoteFullName(table));
+    LOGGER.log(Level.FINE,
+               new StringFormat("Finding key range of %s: %n%s",
+                                table.getFullName(),
+                                sql));
+    final long min;
+    final long max;
+    try (final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery(sql);)
+    {
+      if (!results.next())
+      {
+        return Collections.emptyList();
+      }
+      min = results.getLong(1);
+      if (results.wasNull())
+      {
+        // Empty table
+        return Collections.emptyList();
+      }
+      max = results.getLong(2);
+    }
+
+    final long span;
+    try
+    {
+      span = Math.addExact(Math.subtractExact(max, min), 1);
+    }
+    catch (final ArithmeticException e)
+    {
+      // Keys cover the whole range of a long
+      return Collections.emptyList();
+    }
+    final long rows = estimatedRows < 0? span: estimatedRows;
+    final long count = Math.min(span, (rows + chunkRows - 1) / chunkRows);
+    if (count < 2)
+    {
+      return Collections.emptyList();
+    }
+
+    final long width = (span + count - 1) / count;
+    final List<TableChunk> chunks = new ArrayList<>();
+    for (long from = min; from <= max; from = from + width)
+    {
+      final long to = max - from < width? max: from + width - 1;
+      chunks.add(new TableChunk(table,
+                                keyColumn,
+                                chunks.size() + 1,
+                                from,
+                                to,
+                                rows / count));
+      if (to == max)
+      {
+        break;
+      }
+    }
+    return chunks;
+  }
+
+  private static Column integerKeyColumn(final Table table)
+  {
+    final PrimaryKey primaryKey = table.getPrimaryKey();
+    if (primaryKey == null || primaryKey.getColumns().size() != 1)
+    {
+      return null;
+    }
+    final Column keyColumn = primaryKey.getColumns().get(0);
+    if (keyColumn.getColumnDataType().getJavaSqlType()
+      .getJavaSqlTypeGroup() != JavaSqlTypeGroup.integer)
+    {
+      return null;
+    }
+    return keyColumn;
+  }
+
+  private final Table table;
+  private final Column keyColumn;
+  private final int number;
+  private final long from;
+  private final long to;
+  private final long estimatedRows;
+
+  private TableChunk(final Table table,
+                     final Column keyColumn,
+                     final int number,
+                     final long from,
+                     final long to,
+                     final long estimatedRows)
+  {
+    this.table = table;
+    this.keyColumn = keyColumn;
+    this.number = number;
+    this.from = from;
+    this.to = to;
+    this.estimatedRows = estimatedRows;
+  }
+
+  /**
+   * SQL condition that selects the rows in the chunk.
+   */
+  public String getCondition(final Identifiers identifiers)
+  {
+    return String.format("%s BETWEEN %d AND %d",
+                         identifiers.quoteName(keyColumn),
+                         from,
+                         to);
+  }
+
+  public long getEstimatedRows()
+  {
+    return estimatedRows;
+  }
+
+  /**
+   * @return Lowest key value in the chunk
+   */
+  public long getFrom()
+  {
+    return from;
+  }
+
+  public Column getKeyColumn()
+  {
+    return keyColumn;
+  }
+
+  /**
+   * @return Chunk number, starting with 1
+   */
+  public int getNumber()
+  {
+    return number;
+  }
+
+  public Table getTable()
+  {
+    return table;
+  }
+
+  /**
+   * @return Highest key value in the chunk
+   */
+  public long getTo()
+  {
+    return to;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%s chunk %d: %s %d to %d",
+                         table.getFullName(),
+                         number,
+                         keyColumn.getName(),
+                         from,
+                         to);
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
+import schemacrawler.tools.analysis.counts.CountsUtility;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Estimates of the number of rows in tables, for scheduling work on the
+ * largest tables first, or counting rows cheaply. Row counts in the
+ * loaded catalog are used if they were retrieved. Otherwise, the
+ * statistics that PostgreSQL, Oracle, MySQL, SQL Server and DB2 keep in
+ * the data dictionary are read for all tables at once. There are no
+ * estimates for other databases, so tables are taken in catalog order.
+ */
+public final class TableSizeEstimates
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(TableSizeEstimates.class.getName());
+
+  private static final String POSTGRESQL_STATISTICS = "SELECT n.nspname, c.relname, c.reltuples "
+                                                      + "FROM pg_catalog.pg_class c "
+                                                      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                                                      + "WHERE c.relkind IN ('r', 'p', 'm')";
+  private static final String ORACLE_STATISTICS = "SELECT OWNER, TABLE_NAME, NUM_ROWS "
+                                                  + "FROM ALL_TABLES "
+                                                  + "WHERE NUM_ROWS IS NOT NULL";
+  private static final String MYSQL_STATISTICS = "SELECT TABLE_SCHEMA, TABLE_NAME, TABLE_ROWS "
+                                                 + "FROM INFORMATION_SCHEMA.TABLES "
+                                                 + "WHERE TABLE_ROWS IS NOT NULL";
+  private static final String SQLSERVER_STATISTICS = "SELECT s.name, t.name, SUM(p.rows) "
+                                                     + "FROM sys.tables t "
+                                                     + "JOIN sys.schemas s ON s.schema_id = t.schema_id "
+                                                     + "JOIN sys.partitions p ON p.object_id = t.object_id AND p.index_id IN (0, 1) "
+                                                     + "GROUP BY s.name, t.name";
+  private static final String DB2_STATISTICS = "SELECT TRIM(TABSCHEMA), TABNAME, CARD "
+                                               + "FROM SYSCAT.TABLES "
+                                               + "WHERE CARD >= 0";
+
+  /**
+   * Estimates the number of rows in tables.
+   *
+   * @param tables
+   *        Tables to estimate
+   * @param connection
+   *        Connection to read table statistics on, or null to only use
+   *        row counts in the catalog
+   * @return Estimated number of rows for each table, or -1 if there is
+   *         no estimate
+   */
+  public static Map<Table, Long> estimate(final Collection<Table> tables,
+                                          final Connection connection)
+  {
+    requireNonNull(tables, "No tables provided");
+
+    final Map<Table, Long> estimates = new HashMap<>();
+    final List<Table> uncountedTables = new ArrayList<>();
+    for (final Table table: tables)
+    {
+      if (CountsUtility.hasRowCount(table))
+      {
+        estimates.put(table, CountsUtility.getRowCount(table));
+      }
+      else
+      {
+        uncountedTables.add(table);
+      }
+    }
+    if (connection != null)
+    {
+      estimates.putAll(statistics(uncountedTables, connection));
+    }
+    else
+    {
+      for (final Table table: uncountedTables)
+      {
+        estimates.put(table, -1L);
+      }
+    }
+    return estimates;
+  }
+
+  /**
+   * Estimates the number of rows in tables from database statistics
+   * only, which may be out of date.
+   *
+   * @param tables
+   *        Tables to estimate
+   * @param connection
+   *        Connection to read table statistics on
+   * @return Estimated number of rows for each table, or -1 if there is
+   *         no estimate
+   */
+  public static Map<Table, Long> statistics(final Collection<Table> tables,
+                                            final Connection connection)
+  {
+    requireNonNull(tables, "No tables provided");
+    requireNonNull(connection, "No connection provided");
+
+    final Map<Table, Long> estimates = new HashMap<>();
+    if (tables.isEmpty())
+    {
+      return estimates;
+    }
+
+    final DatabaseMetaData metaData;
+    try
+    {
+      metaData = connection.getMetaData();
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.WARNING, "Cannot read table statistics", e);
+      for (final Table table: tables)
+      {
+        estimates.put(table, -1L);
+      }
+      return estimates;
+    }
+
+    final Map<String, Long> dictionaryStatistics = dictionaryStatistics(metaData,
+                                                                        connection);
+    for (final Table table: tables)
+    {
+      final Long dictionaryStatistic = dictionaryStatistics
+        .get(schemaKey(table.getSchema()) + "." + table.getName());
+      if (dictionaryStatistic != null && dictionaryStatistic >= 0)
+      {
+        estimates.put(table, dictionaryStatistic);
+      }
+      else
+      {
+        estimates.put(table, -1L);
+      }
+    }
+    return estimates;
+  }
+
+  /**
+   * Reads the statistics that the database keeps for all tables in a
+   * single data dictionary query, for databases that expose them.
+   *
+   * @return Estimated number of rows, by schema and table name
+   */
+  private static Map<String, Long> dictionaryStatistics(final DatabaseMetaData metaData,
+                                                        final Connection connection)
+  {
+    final Map<String, Long> dictionaryStatistics = new HashMap<>();
+    final String sql;
+    try
+    {
+      final String databaseProductName = metaData.getDatabaseProductName()
+        .toLowerCase(Locale.ENGLISH);
+      if (databaseProductName.contains("postgresql"))
+      {
+        sql = POSTGRESQL_STATISTICS;
+      }
+      else if (databaseProductName.contains("oracle"))
+      {
+        sql = ORACLE_STATISTICS;
+      }
+      else if (databaseProductName.contains("mysql")
+               || databaseProductName.contains("mariadb"))
+      {
+        sql = MYSQL_STATISTICS;
+      }
+      else if (databaseProductName.contains("microsoft sql server"))
+      {
+        sql = SQLSERVER_STATISTICS;
+      }
+      else if (databaseProductName.startsWith("db2"))
+      {
+        sql = DB2_STATISTICS;
+      }
+      else
+      {
+        LOGGER.log(Level.FINE,
+                   new StringFormat("No table statistics for %s, so tables are not estimated",
+                                    databaseProductName));
+        return dictionaryStatistics;
+      }
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.FINE, e.getMessage(), e);
+      return dictionaryStatistics;
+    }
+
+    try (final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery(sql);)
+    {
+      while (results.next())
+      {
+        // PostgreSQL has -1 for tables that were never analyzed
+        dictionaryStatistics
+          .put(results.getString(1) + "." + results.getString(2),
+               (long) results.getDouble(3));
+      }
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.WARNING, "Cannot read table statistics", e);
+    }
+    return dictionaryStatistics;
+  }
+
+  /**
+   * Schemas are keyed by schema name, or by catalog name for databases
+   * that only have catalogs, such as MySQL.
+   */
+  private static String schemaKey(final Schema schema)
+  {
+    return schema.getName() != null? schema.getName()
+                                   : schema.getCatalogName();
+  }
+
+  private TableSizeEstimates()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,230 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.catalog;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.ColumnDataType;
+import schemacrawler.schema.DatabaseInfo;
+import schemacrawler.schema.JdbcDriverInfo;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Reducer;
+import schemacrawler.schema.Reducible;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Sequence;
+import schemacrawler.schema.Synonym;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.BaseCatalogDecorator;
+import schemacrawler.schemacrawler.DatabaseObjectInfoRetrieval;
+
+/**
+ * Catalog with more detail retrieved for some kinds of database
+ * objects. Objects of the upgraded kinds are taken from the upgrade
+ * crawl, and all other objects are taken from the base catalog, which
+ * already has the requested detail for them.
+ */
+public final class UpgradedCatalog
+  extends BaseCatalogDecorator
+{
+
+  private static final long serialVersionUID = -4715502617722387149L;
+
+  private final Catalog upgrade;
+  private final EnumSet<DatabaseObjectInfoRetrieval> upgraded;
+
+  /**
+   * @param upgraded
+   *        Kinds of database objects to take from the upgrade crawl
+   */
+  public UpgradedCatalog(final Catalog catalog,
+                         final Catalog upgrade,
+                         final Set<DatabaseObjectInfoRetrieval> upgraded)
+  {
+    super(catalog);
+    this.upgrade = requireNonNull(upgrade, "No upgrade catalog provided");
+    requireNonNull(upgraded, "No upgraded database objects provided");
+    this.upgraded = upgraded.isEmpty()? EnumSet
+      .noneOf(DatabaseObjectInfoRetrieval.class): EnumSet.copyOf(upgraded);
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes()
+  {
+    return source(DatabaseObjectInfoRetrieval.base).getColumnDataTypes();
+  }
+
+  @Override
+  public Collection<ColumnDataType> getColumnDataTypes(final Schema schema)
+  {
+    return source(DatabaseObjectInfoRetrieval.other)
+      .getColumnDataTypes(schema);
+  }
+
+  @Override
+  public DatabaseInfo getDatabaseInfo()
+  {
+    return source(DatabaseObjectInfoRetrieval.database).getDatabaseInfo();
+  }
+
+  @Override
+  public JdbcDriverInfo getJdbcDriverInfo()
+  {
+    return source(DatabaseObjectInfoRetrieval.database).getJdbcDriverInfo();
+  }
+
+  @Override
+  public Collection<Routine> getRoutines()
+  {
+    return source(DatabaseObjectInfoRetrieval.routine).getRoutines();
+  }
+
+  @Override
+  public Collection<Routine> getRoutines(final Schema schema)
+  {
+    return source(DatabaseObjectInfoRetrieval.routine).getRoutines(schema);
+  }
+
+  @Override
+  public Collection<Sequence> getSequences()
+  {
+    return source(DatabaseObjectInfoRetrieval.other).getSequences();
+  }
+
+  @Override
+  public Collection<Sequence> getSequences(final Schema schema)
+  {
+    return source(DatabaseObjectInfoRetrieval.other).getSequences(schema);
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms()
+  {
+    return source(DatabaseObjectInfoRetrieval.other).getSynonyms();
+  }
+
+  @Override
+  public Collection<Synonym> getSynonyms(final Schema schema)
+  {
+    return source(DatabaseObjectInfoRetrieval.other).getSynonyms(schema);
+  }
+
+  @Override
+  public Collection<ColumnDataType> getSystemColumnDataTypes()
+  {
+    return source(DatabaseObjectInfoRetrieval.base)
+      .getSystemColumnDataTypes();
+  }
+
+  @Override
+  public Collection<Table> getTables()
+  {
+    return source(DatabaseObjectInfoRetrieval.table).getTables();
+  }
+
+  @Override
+  public Collection<Table> getTables(final Schema schema)
+  {
+    return source(DatabaseObjectInfoRetrieval.table).getTables(schema);
+  }
+
+  @Override
+  public <T> Optional<T> lookupAttribute(final String name)
+  {
+    return catalog.lookupAttribute(name);
+  }
+
+  @Override
+  public Optional<? extends ColumnDataType> lookupColumnDataType(final Schema schema,
+                                                                 final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.other)
+      .lookupColumnDataType(schema, name);
+  }
+
+  @Override
+  public Optional<? extends Routine> lookupRoutine(final Schema schema,
+                                                   final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.routine).lookupRoutine(schema,
+                                                                     name);
+  }
+
+  @Override
+  public Optional<? extends Sequence> lookupSequence(final Schema schema,
+                                                     final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.other).lookupSequence(schema,
+                                                                    name);
+  }
+
+  @Override
+  public Optional<? extends Synonym> lookupSynonym(final Schema schema,
+                                                   final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.other).lookupSynonym(schema,
+                                                                   name);
+  }
+
+  @Override
+  public Optional<? extends ColumnDataType> lookupSystemColumnDataType(final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.base)
+      .lookupSystemColumnDataType(name);
+  }
+
+  @Override
+  public Optional<? extends Table> lookupTable(final Schema schema,
+                                               final String name)
+  {
+    return source(DatabaseObjectInfoRetrieval.table).lookupTable(schema,
+                                                                 name);
+  }
+
+  @Override
+  public <N extends NamedObject> void reduce(final Class<N> clazz,
+                                             final Reducer<N> reducer)
+  {
+    ((Reducible) catalog).reduce(clazz, reducer);
+    ((Reducible) upgrade).reduce(clazz, reducer);
+  }
+
+  private Catalog source(final DatabaseObjectInfoRetrieval databaseObjectInfoRetrieval)
+  {
+    return upgraded.contains(databaseObjectInfoRetrieval)? upgrade: catalog;
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.commands;
+
+
+import java.util.List;
+import java.util.logging.Level;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.standard.ShellCommandGroup;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import schemacrawler.shell.catalog.CatalogCache;
+import schemacrawler.shell.catalog.CatalogCacheEntry;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+@ShellComponent
+@ShellCommandGroup("3. Catalog Load Commands")
+public class CatalogCacheCommands
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogCacheCommands.class.getName());
+
+  @Autowired
+  private final SchemaCrawlerShellState state;
+
+  public CatalogCacheCommands(final SchemaCrawlerShellState state)
+  {
+    this.state = state;
+  }
+
+  @ShellMethod(key = "cache evict", value = "Remove catalogs from the on-disk catalog cache", prefix = "-")
+  public AttributedString cacheEvict(@ShellOption(defaultValue = "", help = "Cache key of the catalog to remove, or all catalogs if not specified") final String key)
+  {
+    LOGGER.log(Level.INFO, new StringFormat("key=%s", key));
+
+    final int count = state.getCatalogCache().evict(key);
+    return new AttributedString(String.format("Removed %d cached catalog(s)",
+                                              count),
+                                AttributedStyle.DEFAULT
+                                  .foreground(AttributedStyle.CYAN));
+  }
+
+  @ShellMethod(key = "cache list", value = "List catalogs in the on-disk catalog cache", prefix = "-")
+  public void cacheList()
+  {
+    LOGGER.log(Level.INFO, "cache list");
+
+    final CatalogCache catalogCache = state.getCatalogCache();
+    final List<CatalogCacheEntry> entries = catalogCache.list();
+    System.out.println(String.format("Catalog cache: %s (time to live %s)",
+                                     catalogCache.getDirectory(),
+                                     catalogCache.getTimeToLive()));
+    for (final CatalogCacheEntry entry: entries)
+    {
+      System.out.println(entry);
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.commands;
+
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+
+import javax.validation.constraints.NotNull;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.Availability;
+import org.springframework.shell.standard.ShellCommandGroup;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellMethodAvailability;
+import org.springframework.shell.standard.ShellOption;
+
+import schemacrawler.shell.catalog.MappedCatalog;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+@ShellComponent
+@ShellCommandGroup("3. Catalog Load Commands")
+public class CatalogFileCommands
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogFileCommands.class.getName());
+
+  @Autowired
+  private final SchemaCrawlerShellState state;
+
+  public CatalogFileCommands(final SchemaCrawlerShellState state)
+  {
+    this.state = state;
+  }
+
+  @ShellMethod(value = "Export the loaded catalog to a catalog file, which can be imported without a database connection", prefix = "-")
+  public AttributedString exportCatalog(@NotNull @ShellOption(value = {
+                                                                        "-o",
+                                                                        "-outputfile" }, help = "Catalog file name") final String outputfile)
+  {
+    try
+    {
+      LOGGER.log(Level.INFO, new StringFormat("outputfile=%s", outputfile));
+
+      final long start = System.nanoTime();
+      final Path catalogFile = Paths.get(outputfile);
+      final int schemaCount = MappedCatalog.write(state.getCatalog(),
+                                                  catalogFile);
+
+      return new AttributedString(String
+        .format("Exported catalog to %s, with %d schemas, %d bytes, in %d ms",
+                outputfile,
+                schemaCount,
+                Files.size(catalogFile),
+                (System.nanoTime() - start) / 1_000_000L),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    catch (final Exception e)
+    {
+      throw new RuntimeException("Cannot export catalog", e);
+    }
+  }
+
+  @ShellMethod(value = "Import a catalog from a catalog file, decoding schemas only as they are used", prefix = "-")
+  public AttributedString importCatalog(@NotNull @ShellOption(value = {
+                                                                        "-i",
+                                                                        "-inputfile" }, help = "Catalog file name") final String inputfile)
+  {
+    try
+    {
+      LOGGER.log(Level.INFO, new StringFormat("inputfile=%s", inputfile));
+
+      final long start = System.nanoTime();
+      final MappedCatalog catalog = MappedCatalog.open(Paths.get(inputfile));
+      state.setCatalog(catalog);
+
+      return new AttributedString(String
+        .format("Imported catalog from %s, with %d tables in %d schemas, in %d ms",
+                inputfile,
+                catalog.getTableCount(),
+                catalog.getSchemaCount(),
+                (System.nanoTime() - start) / 1_000_000L),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    catch (final Exception e)
+    {
+      throw new RuntimeException("Cannot import catalog", e);
+    }
+  }
+
+  @ShellMethodAvailability("export-catalog")
+  public Availability isLoaded()
+  {
+    final boolean isLoaded = state.isLoaded();
+    return isLoaded? Availability.available(): Availability
+      .unavailable("there is no schema metadata loaded");
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.commands;
+
+
+import static sf.util.Utility.isBlank;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.Availability;
+import org.springframework.shell.standard.ShellCommandGroup;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellMethodAvailability;
+import org.springframework.shell.standard.ShellOption;
+
+import schemacrawler.schema.Column;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.RoutineColumn;
+import schemacrawler.schema.Table;
+import schemacrawler.shell.catalog.CatalogNameIndex;
+import schemacrawler.shell.catalog.CatalogNameIndex.ObjectType;
+import schemacrawler.shell.catalog.DefinitionIndex;
+import schemacrawler.shell.catalog.ForeignKeyGraph;
+import schemacrawler.shell.catalog.ForeignKeyGraph.Step;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+@ShellComponent
+@ShellCommandGroup("8. Catalog Query Commands")
+public class CatalogQueryCommands
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(CatalogQueryCommands.class.getName());
+
+  private static ObjectType objectType(final NamedObject object)
+  {
+    if (object instanceof Table)
+    {
+      return ObjectType.table;
+    }
+    else if (object instanceof Column)
+    {
+      return ObjectType.column;
+    }
+    else if (object instanceof Routine)
+    {
+      return ObjectType.routine;
+    }
+    else if (object instanceof RoutineColumn)
+    {
+      return ObjectType.parameter;
+    }
+    else
+    {
+      return null;
+    }
+  }
+
+  private static Table lookupTable(final ForeignKeyGraph foreignKeyGraph,
+                                   final String name)
+  {
+    final List<Table> tables = foreignKeyGraph.lookupTables(name);
+    if (tables.isEmpty())
+    {
+      throw new RuntimeException(String.format("Cannot find table <%s>",
+                                               name));
+    }
+    if (tables.size() > 1)
+    {
+      throw new RuntimeException(String
+        .format("Table name <%s> is ambiguous, and could be any of %s",
+                name,
+                tables));
+    }
+    return tables.get(0);
+  }
+
+  @Autowired
+  private final SchemaCrawlerShellState state;
+
+  public CatalogQueryCommands(final SchemaCrawlerShellState state)
+  {
+    this.state = state;
+  }
+
+  @ShellMethod(value = "Find tables, columns, routines and parameters in the loaded catalog by name", prefix = "-")
+  public AttributedString find(@NotNull @ShellOption(help = "Name, or words in the name, with * for a prefix, and dots to match parent names, such as authors.first*") final String name,
+                               @ShellOption(defaultValue = "", help = "Type of objects to find - table, column, routine or parameter") final String type,
+                               @ShellOption(defaultValue = "100", help = "Maximum number of objects to show") @Min(1) final int limit)
+  {
+    try
+    {
+      LOGGER.log(Level.INFO,
+                 new StringFormat("name=%s, type=%s, limit=%d",
+                                  name,
+                                  type,
+                                  limit));
+
+      final ObjectType objectType;
+      if (isBlank(type))
+      {
+        objectType = null;
+      }
+      else
+      {
+        objectType = ObjectType
+          .valueOf(type.trim().toLowerCase(Locale.ENGLISH));
+      }
+
+      final long start = System.nanoTime();
+      final CatalogNameIndex nameIndex = state.getNameIndex();
+      final List<NamedObject> found = nameIndex.find(name, objectType, limit);
+      final long elapsedMicros = (System.nanoTime() - start) / 1_000L;
+
+      for (final NamedObject object: found)
+      {
+        System.out.println(String.format("%-9s %s",
+                                         objectType(object),
+                                         object.getFullName()));
+      }
+
+      return new AttributedString(String
+        .format("Found %d object(s) in %,d us", found.size(), elapsedMicros),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    catch (final IllegalArgumentException e)
+    {
+      throw new RuntimeException(String.format("Cannot find objects of type <%s>",
+                                               type),
+                                 e);
+    }
+  }
+
+  @ShellMethod(key = "find-definitions", value = "Find tables and routines with definitions that contain a regular expression", prefix = "-")
+  public AttributedString findDefinitions(@NotNull @ShellOption(help = "Regular expression to find in remarks, view and routine definitions, and trigger statements") final String pattern,
+                                          @ShellOption(defaultValue = "100", help = "Maximum number of objects to show") @Min(1) final int limit)
+  {
+    try
+    {
+      LOGGER.log(Level.INFO,
+                 new StringFormat("pattern=%s, limit=%d", pattern, limit));
+
+      final Pattern compiledPattern = Pattern.compile(pattern);
+
+      final long start = System.nanoTime();
+      final DefinitionIndex definitionIndex = state.getDefinitionIndex();
+      final List<NamedObject> found = definitionIndex.search(compiledPattern,
+                                                             limit);
+      final long elapsedMicros = (System.nanoTime() - start) / 1_000L;
+
+      for (final NamedObject object: found)
+      {
+        System.out.println(String.format("%-9s %s",
+                                         objectType(object),
+                                         object.getFullName()));
+      }
+
+      return new AttributedString(String
+        .format("Found %d object(s) in %,d us", found.size(), elapsedMicros),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    catch (final PatternSyntaxException e)
+    {
+      throw new RuntimeException(String.format("Cannot find definitions matching <%s>",
+                                               pattern),
+                                 e);
+    }
+  }
+
+  @ShellMethod(value = "Show the shortest foreign key path between two tables", prefix = "-")
+  public AttributedString path(@NotNull @ShellOption(help = "Table to start from, fully qualified or by name") final String from,
+                               @NotNull @ShellOption(help = "Table to end at, fully qualified or by name") final String to)
+  {
+    LOGGER.log(Level.INFO, new StringFormat("from=%s, to=%s", from, to));
+
+    final ForeignKeyGraph foreignKeyGraph = state.getForeignKeyGraph();
+    final Table fromTable = lookupTable(foreignKeyGraph, from);
+    final Table toTable = lookupTable(foreignKeyGraph, to);
+
+    final long start = System.nanoTime();
+    final List<Step> path = foreignKeyGraph.shortestPath(fromTable, toTable);
+    final long elapsedMicros = (System.nanoTime() - start) / 1_000L;
+
+    if (path == null)
+    {
+      return new AttributedString(String
+        .format("No foreign key path from %s to %s",
+                fromTable.getFullName(),
+                toTable.getFullName()),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.RED));
+    }
+
+    for (final Step step: path)
+    {
+      System.out.println(step);
+    }
+    return new AttributedString(String
+      .format("Found path of %d foreign key(s) in %,d us",
+              path.size(),
+              elapsedMicros),
+                                AttributedStyle.DEFAULT
+                                  .foreground(AttributedStyle.CYAN));
+  }
+
+  @ShellMethodAvailability
+  public Availability isLoaded()
+  {
+    final boolean isLoaded = state.isLoaded();
+    return isLoaded? Availability.available(): Availability
+      .unavailable("there is no schema metadata loaded");
+  }
+
+}
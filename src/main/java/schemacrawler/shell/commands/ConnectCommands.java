@@ -33,11 +33,11 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.logging.Level;
 
+import javax.sql.DataSource;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
-import org.apache.commons.dbcp2.BasicDataSource;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,6 +51,8 @@ import schemacrawler.schemacrawler.DatabaseServerType;
 import schemacrawler.schemacrawler.SchemaCrawlerException;
 import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
 import schemacrawler.schemacrawler.SchemaRetrievalOptionsBuilder;
+import schemacrawler.shell.state.ConnectionPoolOptions;
+import schemacrawler.shell.state.PooledDataSource;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.tools.databaseconnector.DatabaseConfigConnectionOptions;
 import schemacrawler.tools.databaseconnector.DatabaseConnector;
@@ -115,13 +117,20 @@ public class ConnectCommands
 
       final String connectionUrl = connectionOptions.getConnectionUrl();
 
-      createDataSource(connectionUrl, user, password);
+      final PooledDataSource dataSource = createDataSource(connectionUrl,
+                                                           user,
+                                                           password);
+      state.getConnectionPoolOptions().configure(dataSource);
+      state.setDataSource(dataSource);
       loadSchemaRetrievalOptionsBuilder();
+      state.connectionEstablished();
 
       return success();
     }
-    catch (final SchemaCrawlerException | SQLException e)
+    catch (final Exception e)
     {
+      // Do not keep a connection pool that cannot connect
+      state.disconnect();
       throw new RuntimeException("Cannot connect to database", e);
     }
   }
@@ -142,13 +151,20 @@ public class ConnectCommands
       lookupDatabaseConnectorFromUrl(connectionUrl);
       loadConfig();
       loadSchemaCrawlerOptionsBuilder();
-      createDataSource(connectionUrl, user, password);
+      final PooledDataSource dataSource = createDataSource(connectionUrl,
+                                                           user,
+                                                           password);
+      state.getConnectionPoolOptions().configure(dataSource);
+      state.setDataSource(dataSource);
       loadSchemaRetrievalOptionsBuilder();
+      state.connectionEstablished();
 
       return success();
     }
-    catch (final SchemaCrawlerException | SQLException e)
+    catch (final Exception e)
     {
+      // Do not keep a connection pool that cannot connect
+      state.disconnect();
       throw new RuntimeException("Cannot connect to database", e);
     }
   }
@@ -169,6 +185,82 @@ public class ConnectCommands
     return isConnected;
   }
 
+  @ShellMethod(value = "Set connection pool options, for connections made after this", prefix = "-")
+  public void pool(@ShellOption(defaultValue = "8", help = "Maximum number of connections in the connection pool") @Min(1) final int maxtotal,
+                   @ShellOption(defaultValue = "8", help = "Maximum number of idle connections in the connection pool") @Min(0) final int maxidle,
+                   @ShellOption(defaultValue = "0", help = "Minimum number of idle connections in the connection pool") @Min(0) final int minidle,
+                   @ShellOption(defaultValue = "-1", help = "Maximum time in milliseconds to wait for a connection from the pool, or -1 to wait indefinitely") final long maxwait,
+                   @ShellOption(defaultValue = "", help = "Query used to validate connections, instead of Connection.isValid()") final String validationquery,
+                   @ShellOption(defaultValue = "-1", help = "Connection validation timeout in seconds, or -1 for no timeout") final int validationtimeout,
+                   @ShellOption(arity = 1, defaultValue = "false", help = "Whether to pool prepared statements") final boolean poolstatements,
+                   @ShellOption(defaultValue = "-1", help = "Time in milliseconds between runs of the idle connection evictor, or -1 to not evict idle connections") final long evictioninterval)
+  {
+    try
+    {
+      LOGGER
+        .log(Level.INFO,
+             new StringFormat("maxtotal=%d, maxidle=%d, minidle=%d, maxwait=%d, validationquery=%s, validationtimeout=%d, poolstatements=%b, evictioninterval=%d",
+                              maxtotal,
+                              maxidle,
+                              minidle,
+                              maxwait,
+                              validationquery,
+                              validationtimeout,
+                              poolstatements,
+                              evictioninterval));
+
+      // The pool would otherwise silently lower the minimum
+      if (minidle > maxidle)
+      {
+        throw new RuntimeException(String
+          .format("Minimum number of idle connections, %d, cannot be more than the maximum, %d",
+                  minidle,
+                  maxidle));
+      }
+
+      state.setConnectionPoolOptions(new ConnectionPoolOptions(maxtotal,
+                                                               maxidle,
+                                                               minidle,
+                                                               maxwait,
+                                                               validationquery,
+                                                               validationtimeout,
+                                                               poolstatements,
+                                                               evictioninterval));
+    }
+    catch (final Exception e)
+    {
+      throw new RuntimeException("Cannot set connection pool options", e);
+    }
+  }
+
+  @ShellMethod(value = "Show connection pool statistics", prefix = "-")
+  public void poolStats()
+  {
+    LOGGER.log(Level.INFO, "pool-stats");
+
+    final DataSource dataSource = state.getDataSource();
+    if (!(dataSource instanceof PooledDataSource))
+    {
+      System.out.println("Not connected");
+      return;
+    }
+
+    final PooledDataSource pool = (PooledDataSource) dataSource;
+    System.out.println(String.format("Active connections: %d of %d",
+                                     pool.getNumActive(),
+                                     pool.getMaxTotal()));
+    System.out.println(String.format("Idle connections: %d",
+                                     pool.getNumIdle()));
+    System.out.println(String.format("Waiting threads: %d",
+                                     pool.getNumWaiters()));
+    System.out.println(String.format("Connections borrowed: %d",
+                                     pool.getBorrowedCount()));
+    System.out.println(String.format("Mean borrow wait: %d ms",
+                                     pool.getMeanBorrowWaitTimeMillis()));
+    System.out.println(String.format("Maximum borrow wait: %d ms",
+                                     pool.getMaxBorrowWaitTimeMillis()));
+  }
+
   @ShellMethod(value = "List available SchemaCrawler database plugins", prefix = "-")
   public void servers()
     throws Exception
@@ -190,21 +282,20 @@ public class ConnectCommands
     state.sweep();
   }
 
-  private void createDataSource(final String connectionUrl,
-                                final String user,
-                                final String password)
+  private PooledDataSource createDataSource(final String connectionUrl,
+                                            final String user,
+                                            final String password)
   {
     LOGGER.log(Level.FINE, () -> "Creating data-source");
 
-    final BasicDataSource dataSource = new BasicDataSource();
+    final PooledDataSource dataSource = new PooledDataSource();
     dataSource.setUsername(user);
     dataSource.setPassword(password);
     dataSource.setUrl(connectionUrl);
     dataSource.setDefaultAutoCommit(false);
     dataSource.setInitialSize(1);
-    dataSource.setMaxTotal(1);
 
-    state.setDataSource(dataSource);
+    return dataSource;
   }
 
   private void loadConfig()
@@ -29,13 +29,26 @@ http://www.gnu.org/licenses/
 package schemacrawler.shell.commands;
 
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static sf.util.IOUtility.getFileExtension;
 import static sf.util.Utility.isBlank;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 
+import javax.sql.DataSource;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.jline.utils.AttributedString;
@@ -53,14 +66,31 @@ import schemacrawler.schemacrawler.Config;
 import schemacrawler.schemacrawler.SchemaCrawlerException;
 import schemacrawler.schemacrawler.SchemaCrawlerOptions;
 import schemacrawler.schemacrawler.SchemaRetrievalOptions;
+import schemacrawler.shell.catalog.RowCounter;
+import schemacrawler.shell.executable.OutputSink;
+import schemacrawler.shell.executable.OutputSink.Compression;
+import schemacrawler.shell.executable.ParallelCommandChain;
+import schemacrawler.shell.executable.ParallelTableDump;
+import schemacrawler.shell.executable.PartitionedDiagramRenderer;
+import schemacrawler.shell.executable.RenderCache;
+import schemacrawler.shell.jdbc.RowCountJdbc;
+import schemacrawler.shell.jdbc.SamplingJdbc;
+import schemacrawler.shell.jdbc.StreamingJdbc;
+import schemacrawler.shell.jobs.Job;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.tools.executable.CommandDaisyChain;
 import schemacrawler.tools.executable.CommandDescription;
 import schemacrawler.tools.executable.CommandRegistry;
 import schemacrawler.tools.executable.SchemaCrawlerCommand;
+import schemacrawler.tools.integration.graph.GraphOptionsBuilder;
 import schemacrawler.tools.integration.graph.GraphOutputFormat;
+import schemacrawler.tools.integration.graph.GraphvizUtility;
 import schemacrawler.tools.options.OutputOptions;
 import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.tools.text.operation.Operation;
+import schemacrawler.tools.text.schema.SchemaTextDetailType;
+import schemacrawler.tools.text.schema.SchemaTextOptionsBuilder;
+import schemacrawler.utility.ProcessExecutor;
 import sf.util.SchemaCrawlerLogger;
 import sf.util.StringFormat;
 
@@ -101,30 +131,43 @@ public class ExecuteCommands
                                                          "-outputfile" }, defaultValue = "", help = "Output file name") final String outputfile,
                                   @ShellOption(value = {
                                                          "-fmt",
-                                                         "-outputformat" }, defaultValue = "", help = "Format of the SchemaCrawler output") final String outputformat)
+                                                         "-outputformat" }, defaultValue = "", help = "Format of the SchemaCrawler output") final String outputformat,
+                                  @ShellOption(defaultValue = "auto", help = "Compression of the output file - auto compresses files ending with .gz") final Compression compression,
+                                  @ShellOption(defaultValue = "false", help = "Force the output file to storage before completing") final boolean sync,
+                                  @ShellOption(defaultValue = "1", help = "Number of tasks to run at a time, each on its own connection - chained commands, tables to count, tables with -pertable, chunks of tables with -chunkrows, and parts of diagrams with -partition") @Min(1) final int parallelism,
+                                  @ShellOption(defaultValue = "false", help = "Render the output again, even if it is in the render cache") final boolean nocache,
+                                  @ShellOption(defaultValue = "false", help = "Render diagrams in parts of tables connected by foreign keys, with an index page in the output file") final boolean partition,
+                                  @ShellOption(defaultValue = "100", help = "Number of tables above which a part of a diagram is split by schema") @Min(1) final int maxparttables,
+                                  @ShellOption(defaultValue = "false", help = "Execute the command for each table on its own, largest tables first, writing each table to its own file, with a manifest in the output file") final boolean pertable,
+                                  @ShellOption(defaultValue = "0", help = "Number of rows above which the data in a table is dumped in chunks of ranges of its integer primary key, in parallel, with -pertable - 0 to dump each table in one file") @Min(0) final long chunkrows,
+                                  @ShellOption(defaultValue = "0", help = "Number of rows to fetch from the database at a time, streaming table data with forward-only, read-only cursors - 0 uses the driver default") @Min(0) final int fetchsize,
+                                  @ShellOption(defaultValue = "0", help = "Maximum number of rows of data to output for each table - 0 for no limit") @Min(0) final int maxrows,
+                                  @ShellOption(defaultValue = "0", help = "Percentage of rows of data to sample from each table, sampled in the database where the server plugin supports table sampling - 0 for all rows") @DecimalMin("0") @DecimalMax("100") final double samplepercent,
+                                  @ShellOption(defaultValue = "0", help = "Seed for sampling rows of data, so that the same rows are sampled again") @Min(0) final int sampleseed,
+                                  @ShellOption(defaultValue = "false", help = "Use row counts estimated from database statistics, where they are available, instead of counting rows") final boolean estimatecounts,
+                                  @ShellOption(defaultValue = "false", help = "Execute in the background, as a job") final boolean async)
   {
-
-    Connection connection = null;
-    try
-    {
-      if (state.isConnected())
-      {
-        connection = state.getDataSource().getConnection();
-      }
-    }
-    catch (final SQLException e)
-    {
-      LOGGER.log(Level.FINE, e.getMessage(), e);
-      connection = null;
-    }
-
     try
     {
       LOGGER.log(Level.INFO,
-                 new StringFormat("command=%s, outputfile=%s, outputformat=%s",
+                 new StringFormat("command=%s, outputfile=%s, outputformat=%s, compression=%s, sync=%b, parallelism=%d, nocache=%b, partition=%b, maxparttables=%d, pertable=%b, chunkrows=%d, fetchsize=%d, maxrows=%d, samplepercent=%s, sampleseed=%d, estimatecounts=%b, async=%b",
                                   command,
                                   outputfile,
-                                  outputformat));
+                                  outputformat,
+                                  compression,
+                                  sync,
+                                  parallelism,
+                                  nocache,
+                                  partition,
+                                  maxparttables,
+                                  pertable,
+                                  chunkrows,
+                                  fetchsize,
+                                  maxrows,
+                                  samplepercent,
+                                  sampleseed,
+                                  estimatecounts,
+                                  async));
 
       final OutputOptionsBuilder outputOptionsBuilder = state
         .getOutputOptionsBuilder();
@@ -137,13 +180,27 @@ public class ExecuteCommands
         outputOptionsBuilder.withConsoleOutput();
       }
       outputOptionsBuilder.withOutputFormatValue(outputformat);
+      // Use the extension before ".gz" as the output format
+      if (isBlank(outputformat) && !isBlank(outputfile)
+          && OutputSink.isCompressed(Paths.get(outputfile), compression)
+          && outputfile.toLowerCase(Locale.ENGLISH).endsWith(".gz"))
+      {
+        outputOptionsBuilder.withOutputFormatValue(getFileExtension(outputfile
+          .substring(0, outputfile.length() - 3)));
+      }
 
       final SchemaCrawlerOptions schemaCrawlerOptions = state
         .getSchemaCrawlerOptionsBuilder().toOptions();
       final SchemaRetrievalOptions schemaRetrievalOptions = state
         .getSchemaRetrievalOptionsBuilder().toOptions();
       final OutputOptions outputOptions = outputOptionsBuilder.toOptions();
-      final Config additionalConfiguration = state.getAdditionalConfiguration();
+      // Copy the configuration, since it can be changed while a
+      // background job runs
+      final Config additionalConfiguration = new Config();
+      if (state.getAdditionalConfiguration() != null)
+      {
+        additionalConfiguration.putAll(state.getAdditionalConfiguration());
+      }
 
       // Output file name has to be specified for diagrams
       // (Check after output options have been built)
@@ -154,30 +211,125 @@ public class ExecuteCommands
         throw new RuntimeException("Output file has to be specified for schema diagrams");
       }
 
-      final Catalog catalog = state.getCatalog();
+      if (partition && (isBlank(outputfile) || !GraphOutputFormat
+        .isSupportedFormat(outputOptions.getOutputFormatValue())))
+      {
+        throw new RuntimeException("Output file and diagram format have to be specified for diagrams in parts");
+      }
 
-      // NOTE: The daisy chain command may change the provided output
-      // options for each chained command
-      final SchemaCrawlerCommand scCommand = new CommandDaisyChain(command);
-      scCommand.setSchemaCrawlerOptions(schemaCrawlerOptions);
-      scCommand.setOutputOptions(outputOptions);
-      scCommand.setAdditionalConfiguration(additionalConfiguration);
-      scCommand.setIdentifiers(schemaRetrievalOptions.getIdentifiers());
+      if (pertable && (isBlank(outputfile) || partition || GraphOutputFormat
+        .isSupportedFormat(outputOptions.getOutputFormatValue())))
+      {
+        throw new RuntimeException("Output file has to be specified, and diagrams cannot be output, for each table on its own");
+      }
 
-      scCommand.setConnection(connection);
-      scCommand.setCatalog(catalog);
+      if (chunkrows > 0 && !pertable)
+      {
+        throw new RuntimeException("Tables can only be dumped in chunks for each table on its own");
+      }
 
-      scCommand.execute();
+      final Catalog catalog = state.getFilteredCatalog();
+      // Table data is streamed from the database by the connections
+      // that commands are given, and is sampled before the maximum
+      // number of rows is taken
+      final boolean isSampled = samplepercent > 0 && samplepercent < 100;
+      final DataSource dataSource;
+      if (state.isConnected())
+      {
+        dataSource = SamplingJdbc
+          .sample(StreamingJdbc.stream(state.getDataSource(),
+                                       fetchsize,
+                                       isSampled? 0: maxrows),
+                  schemaRetrievalOptions.getDatabaseServerType(),
+                  samplepercent,
+                  sampleseed,
+                  maxrows);
+      }
+      else
+      {
+        dataSource = null;
+      }
 
-      final String message;
-      if (isBlank(outputfile))
+      // Diagrams in parts, and output for each table, are written to
+      // more than one file, so they are not cached
+      final String renderCacheKey;
+      if (!nocache && !partition && !pertable && !isBlank(outputfile)
+          && isRenderedFromMetadata(command,
+                                    schemaCrawlerOptions,
+                                    additionalConfiguration))
       {
-        message = "Completed";
+        renderCacheKey = RenderCache
+          .cacheKey(state.getCatalogFingerprint(),
+                    schemaCrawlerOptions,
+                    additionalConfiguration,
+                    command,
+                    String.format("%s %s compressed=%b inmemory=%b maxrows=%d samplepercent=%s sampleseed=%d",
+                                  outputOptions.getOutputFormatValue(),
+                                  outputOptions.getOutputCharset(),
+                                  OutputSink.isCompressed(Paths
+                                    .get(outputfile), compression),
+                                  state.isFilterCatalogInMemory(),
+                                  maxrows,
+                                  samplepercent,
+                                  sampleseed));
       }
       else
       {
-        message = String.format("Output sent to %s", outputfile);
+        renderCacheKey = null;
       }
+
+      if (async)
+      {
+        // Background output to the console would be mixed up with the
+        // shell
+        if (isBlank(outputfile))
+        {
+          throw new RuntimeException("Output file has to be specified to execute in the background");
+        }
+
+        final Job job = state.getJobRegistry()
+          .submit(String.format("execute -command %s -outputfile %s",
+                                command,
+                                outputfile),
+                  () -> execute(command,
+                                outputfile,
+                                dataSource,
+                                catalog,
+                                schemaCrawlerOptions,
+                                schemaRetrievalOptions,
+                                outputOptions,
+                                additionalConfiguration,
+                                compression,
+                                sync,
+                                parallelism,
+                                partition? maxparttables: 0,
+                                pertable? chunkrows: -1,
+                                estimatecounts,
+                                renderCacheKey),
+                  null,
+                  null);
+        return new AttributedString(String.format("Started job %d, executing %s",
+                                                  job.getId(),
+                                                  command),
+                                    AttributedStyle.DEFAULT
+                                      .foreground(AttributedStyle.CYAN));
+      }
+
+      final String message = execute(command,
+                                     outputfile,
+                                     dataSource,
+                                     catalog,
+                                     schemaCrawlerOptions,
+                                     schemaRetrievalOptions,
+                                     outputOptions,
+                                     additionalConfiguration,
+                                     compression,
+                                     sync,
+                                     parallelism,
+                                     partition? maxparttables: 0,
+                                     pertable? chunkrows: -1,
+                                     estimatecounts,
+                                     renderCacheKey);
       return new AttributedString(message,
                                   AttributedStyle.DEFAULT
                                     .foreground(AttributedStyle.CYAN));
@@ -190,6 +342,458 @@ public class ExecuteCommands
     {
       throw new RuntimeException("Cannot execute SchemaCrawler command", e);
     }
+  }
+
+  @ShellMethodAvailability
+  public Availability isLoaded()
+  {
+    LOGGER.log(Level.INFO, "commands");
+
+    final boolean isLoaded = state.isLoaded();
+    return isLoaded? Availability.available(): Availability
+      .unavailable("there is no schema metadata loaded");
+  }
+
+  private String execute(final String command,
+                         final String outputfile,
+                         final DataSource dataSource,
+                         final Catalog catalog,
+                         final SchemaCrawlerOptions schemaCrawlerOptions,
+                         final SchemaRetrievalOptions schemaRetrievalOptions,
+                         final OutputOptions outputOptions,
+                         final Config additionalConfiguration,
+                         final Compression compression,
+                         final boolean sync,
+                         final int parallelism,
+                         final int maxPartTables,
+                         final long chunkRows,
+                         final boolean estimateCounts,
+                         final String renderCacheKey)
+    throws Exception
+  {
+    final long start = System.nanoTime();
+
+    if (isBlank(outputfile))
+    {
+      execute(command,
+              withRowCounts(command,
+                            dataSource,
+                            catalog,
+                            schemaCrawlerOptions,
+                            schemaRetrievalOptions,
+                            additionalConfiguration,
+                            parallelism,
+                            estimateCounts),
+              catalog,
+              schemaCrawlerOptions,
+              schemaRetrievalOptions,
+              outputOptions,
+              additionalConfiguration,
+              parallelism);
+      return "Completed";
+    }
+
+    final Path outputFile = Paths.get(outputfile);
+    final RenderCache renderCache = state.getRenderCache();
+    if (renderCacheKey != null
+        && renderCache.restore(renderCacheKey, outputFile))
+    {
+      return String.format("Output sent to %s from render cache in %d ms",
+                           outputfile,
+                           (System.nanoTime() - start) / 1_000_000L);
+    }
+    // Row counts are only needed if the output is rendered again
+    final DataSource rowCountsDataSource = withRowCounts(command,
+                                                         dataSource,
+                                                         catalog,
+                                                         schemaCrawlerOptions,
+                                                         schemaRetrievalOptions,
+                                                         additionalConfiguration,
+                                                         parallelism,
+                                                         estimateCounts);
+    final String message;
+    // Diagrams are rendered in parts if there is a maximum number of
+    // tables in a part
+    if (maxPartTables > 0)
+    {
+      final PartitionedDiagramRenderer renderer = new PartitionedDiagramRenderer(command,
+                                                                                 rowCountsDataSource,
+                                                                                 catalog,
+                                                                                 schemaCrawlerOptions,
+                                                                                 schemaRetrievalOptions
+                                                                                   .getIdentifiers(),
+                                                                                 outputOptions,
+                                                                                 additionalConfiguration,
+                                                                                 maxPartTables,
+                                                                                 parallelism);
+      final int partCount = renderer.execute().size();
+      message = String.format("Output sent to %s, with a diagram in %d parts, in %d ms",
+                              outputfile,
+                              partCount,
+                              (System.nanoTime() - start) / 1_000_000L);
+    }
+    // Output for each table is written to its own file if there is a
+    // number of rows in a chunk
+    else if (chunkRows >= 0)
+    {
+      final ParallelTableDump tableDump = new ParallelTableDump(command,
+                                                                rowCountsDataSource,
+                                                                catalog,
+                                                                schemaCrawlerOptions,
+                                                                schemaRetrievalOptions
+                                                                  .getIdentifiers(),
+                                                                outputOptions,
+                                                                additionalConfiguration,
+                                                                compression,
+                                                                sync,
+                                                                parallelism,
+                                                                chunkRows);
+      final int tableCount = tableDump.execute().size();
+      message = String.format("Output sent to %s, with %d tables in their own files, in %d ms",
+                              outputfile,
+                              tableCount,
+                              (System.nanoTime() - start) / 1_000_000L);
+    }
+    // Diagrams are written to the output file by Graphviz
+    else if (GraphOutputFormat
+      .isSupportedFormat(outputOptions.getOutputFormatValue()))
+    {
+      // Output that is not cached is laid out again as well
+      message = executeDiagram(command,
+                               rowCountsDataSource,
+                               outputFile,
+                               catalog,
+                               schemaCrawlerOptions,
+                               schemaRetrievalOptions,
+                               outputOptions,
+                               additionalConfiguration,
+                               renderCacheKey == null,
+                               start);
+    }
+    else
+    {
+      message = executeToSink(command,
+                              rowCountsDataSource,
+                              outputFile,
+                              catalog,
+                              schemaCrawlerOptions,
+                              schemaRetrievalOptions,
+                              outputOptions,
+                              additionalConfiguration,
+                              compression,
+                              sync,
+                              parallelism,
+                              start);
+    }
+
+    if (renderCacheKey != null)
+    {
+      renderCache.save(renderCacheKey, outputFile);
+    }
+    return message;
+  }
+
+  /**
+   * Renders a diagram, generating the DOT graph first, which is fast,
+   * and only laying it out with Graphviz if it is not in the layout
+   * cache.
+   */
+  private String executeDiagram(final String command,
+                                final DataSource dataSource,
+                                final Path outputFile,
+                                final Catalog catalog,
+                                final SchemaCrawlerOptions schemaCrawlerOptions,
+                                final SchemaRetrievalOptions schemaRetrievalOptions,
+                                final OutputOptions outputOptions,
+                                final Config additionalConfiguration,
+                                final boolean nocache,
+                                final long start)
+    throws Exception
+  {
+    final GraphOutputFormat graphOutputFormat = GraphOutputFormat
+      .fromFormat(outputOptions.getOutputFormatValue());
+    // The DOT graph is itself the output, and is not laid out
+    if (nocache || graphOutputFormat == GraphOutputFormat.scdot)
+    {
+      execute(command,
+              dataSource,
+              catalog,
+              schemaCrawlerOptions,
+              schemaRetrievalOptions,
+              outputOptions,
+              additionalConfiguration,
+              1);
+      return String.format("Output sent to %s in %d ms",
+                           outputFile,
+                           (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    final Path dotFile = Files.createTempFile("schemacrawler", ".dot");
+    try
+    {
+      execute(command,
+              dataSource,
+              catalog,
+              schemaCrawlerOptions,
+              schemaRetrievalOptions,
+              OutputOptionsBuilder.builder(outputOptions)
+                .withOutputFormatValue(GraphOutputFormat.scdot.getFormat())
+                .withOutputFile(dotFile).toOptions(),
+              additionalConfiguration,
+              1);
+
+      final List<String> graphvizOpts = GraphOptionsBuilder
+        .newGraphOptions(additionalConfiguration).getGraphvizOpts();
+      final String layoutCacheKey = RenderCache
+        .layoutCacheKey(Files.readAllBytes(dotFile),
+                        graphOutputFormat.getFormat(),
+                        graphvizOpts);
+      final RenderCache layoutCache = state.getLayoutCache();
+      if (layoutCache.restore(layoutCacheKey, outputFile))
+      {
+        return String.format("Output sent to %s from layout cache in %d ms",
+                             outputFile,
+                             (System.nanoTime() - start) / 1_000_000L);
+      }
+
+      // Lay out the DOT graph that was already generated, unless
+      // Graphviz is not installed, and the command has to run again to
+      // lay out the diagram in Java
+      if (!layoutDiagram(dotFile, outputFile, graphOutputFormat, graphvizOpts))
+      {
+        execute(command,
+                dataSource,
+                catalog,
+                schemaCrawlerOptions,
+                schemaRetrievalOptions,
+                outputOptions,
+                additionalConfiguration,
+                1);
+      }
+      layoutCache.save(layoutCacheKey, outputFile);
+      return String.format("Output sent to %s in %d ms",
+                           outputFile,
+                           (System.nanoTime() - start) / 1_000_000L);
+    }
+    finally
+    {
+      Files.deleteIfExists(dotFile);
+    }
+  }
+
+  /**
+   * Lays out a DOT graph with Graphviz, the same way as SchemaCrawler
+   * does when it renders a diagram.
+   *
+   * @return Whether Graphviz is available
+   */
+  private boolean layoutDiagram(final Path dotFile,
+                                final Path outputFile,
+                                final GraphOutputFormat graphOutputFormat,
+                                final List<String> graphvizOpts)
+    throws Exception
+  {
+    if (!GraphvizUtility.isGraphvizAvailable())
+    {
+      return false;
+    }
+
+    final List<String> commandLine = new ArrayList<>();
+    commandLine.add("dot");
+    commandLine.addAll(graphvizOpts);
+    commandLine.add("-T");
+    commandLine.add(graphOutputFormat.getFormat());
+    commandLine.add("-o");
+    commandLine.add(outputFile.toString());
+    commandLine.add(dotFile.toString());
+    LOGGER.log(Level.INFO,
+               new StringFormat("Laying out diagram using Graphviz%n%s",
+                                commandLine));
+
+    final ProcessExecutor processExecutor = new ProcessExecutor();
+    processExecutor.setCommandLine(commandLine);
+    final Integer exitCode = processExecutor.call();
+    if (exitCode == null || exitCode != 0)
+    {
+      throw new RuntimeException(String
+        .format("Cannot lay out diagram using Graphviz, exit code %s%n%s",
+                exitCode,
+                new String(Files.readAllBytes(processExecutor
+                  .getProcessError()), UTF_8)));
+    }
+    return true;
+  }
+
+  private String executeToSink(final String command,
+                               final DataSource dataSource,
+                               final Path outputFile,
+                               final Catalog catalog,
+                               final SchemaCrawlerOptions schemaCrawlerOptions,
+                               final SchemaRetrievalOptions schemaRetrievalOptions,
+                               final OutputOptions outputOptions,
+                               final Config additionalConfiguration,
+                               final Compression compression,
+                               final boolean sync,
+                               final int parallelism,
+                               final long start)
+    throws Exception
+  {
+    final OutputSink outputSink = OutputSink.open(outputFile,
+                                                  outputOptions
+                                                    .getOutputCharset(),
+                                                  compression,
+                                                  sync);
+    try
+    {
+      execute(command,
+              dataSource,
+              catalog,
+              schemaCrawlerOptions,
+              schemaRetrievalOptions,
+              OutputOptionsBuilder.builder(outputOptions)
+                .withOutputWriter(outputSink.getWriter()).toOptions(),
+              additionalConfiguration,
+              parallelism);
+    }
+    finally
+    {
+      outputSink.close();
+    }
+    return String.format("Output sent to %s in %d ms (%s)",
+                         outputFile,
+                         (System.nanoTime() - start) / 1_000_000L,
+                         outputSink.summary());
+  }
+
+  /**
+   * Counts rows in the tables in the catalog in parallel, if any
+   * command needs row counts, and answers the row count queries of
+   * commands from the counts.
+   */
+  private DataSource withRowCounts(final String command,
+                                   final DataSource dataSource,
+                                   final Catalog catalog,
+                                   final SchemaCrawlerOptions schemaCrawlerOptions,
+                                   final SchemaRetrievalOptions schemaRetrievalOptions,
+                                   final Config additionalConfiguration,
+                                   final int parallelism,
+                                   final boolean estimateCounts)
+    throws Exception
+  {
+    if (dataSource == null)
+    {
+      return dataSource;
+    }
+
+    final boolean isCountCommand = Arrays.stream(command.split(","))
+      .map(String::trim)
+      .anyMatch(Operation.count.name()::equalsIgnoreCase);
+    if (!isCountCommand && !schemaCrawlerOptions.isNoEmptyTables()
+        && !isShowRowCounts(additionalConfiguration))
+    {
+      return dataSource;
+    }
+
+    final RowCounter rowCounter = new RowCounter(dataSource,
+                                                 schemaRetrievalOptions
+                                                   .getIdentifiers(),
+                                                 state.getRowCountCache(),
+                                                 parallelism,
+                                                 estimateCounts);
+    final Map<String, Long> rowCounts = rowCounter.count(catalog.getTables());
+    return RowCountJdbc.answerRowCounts(dataSource, rowCounts);
+  }
+
+  /**
+   * Whether the output is rendered from catalog metadata alone. Only
+   * that output is served from the render cache, since the key of the
+   * cache does not change when table data changes. Operations, queries,
+   * scripts and templates can read table data through the connection,
+   * and so can row counts that are shown, or used to leave out empty
+   * tables.
+   */
+  private boolean isRenderedFromMetadata(final String command,
+                                         final SchemaCrawlerOptions schemaCrawlerOptions,
+                                         final Config additionalConfiguration)
+  {
+    for (final String commandName: command.split(","))
+    {
+      if (Arrays.stream(SchemaTextDetailType.values())
+        .noneMatch(schemaTextDetailType -> schemaTextDetailType.name()
+          .equalsIgnoreCase(commandName.trim())))
+      {
+        return false;
+      }
+    }
+    return !schemaCrawlerOptions.isNoEmptyTables()
+           && !isShowRowCounts(additionalConfiguration);
+  }
+
+  private boolean isShowRowCounts(final Config additionalConfiguration)
+  {
+    return SchemaTextOptionsBuilder.builder()
+      .fromConfig(additionalConfiguration).toOptions().isShowRowCounts();
+  }
+
+  private void execute(final String command,
+                       final DataSource dataSource,
+                       final Catalog catalog,
+                       final SchemaCrawlerOptions schemaCrawlerOptions,
+                       final SchemaRetrievalOptions schemaRetrievalOptions,
+                       final OutputOptions outputOptions,
+                       final Config additionalConfiguration,
+                       final int parallelism)
+    throws Exception
+  {
+    // Diagrams cannot be put together from parts, and there is nothing
+    // to run in parallel for a single command
+    if (parallelism > 1 && command.contains(",")
+        && !GraphOutputFormat
+          .isSupportedFormat(outputOptions.getOutputFormatValue()))
+    {
+      final ParallelCommandChain commandChain = new ParallelCommandChain(command,
+                                                                         dataSource,
+                                                                         catalog,
+                                                                         schemaCrawlerOptions,
+                                                                         schemaRetrievalOptions
+                                                                           .getIdentifiers(),
+                                                                         outputOptions,
+                                                                         additionalConfiguration,
+                                                                         parallelism);
+      commandChain.execute();
+      return;
+    }
+
+    Connection connection = null;
+    try
+    {
+      if (dataSource != null)
+      {
+        connection = dataSource.getConnection();
+      }
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.FINE, e.getMessage(), e);
+      state.connectionFailed(e);
+      connection = null;
+    }
+
+    try
+    {
+      // NOTE: The daisy chain command may change the provided output
+      // options for each chained command
+      final SchemaCrawlerCommand scCommand = new CommandDaisyChain(command);
+      scCommand.setSchemaCrawlerOptions(schemaCrawlerOptions);
+      scCommand.setOutputOptions(outputOptions);
+      scCommand.setAdditionalConfiguration(additionalConfiguration);
+      scCommand.setIdentifiers(schemaRetrievalOptions.getIdentifiers());
+
+      scCommand.setConnection(connection);
+      scCommand.setCatalog(catalog);
+
+      scCommand.execute();
+    }
     finally
     {
       if (connection != null)
@@ -206,14 +810,4 @@ public class ExecuteCommands
     }
   }
 
-  @ShellMethodAvailability
-  public Availability isLoaded()
-  {
-    LOGGER.log(Level.INFO, "commands");
-
-    final boolean isLoaded = state.isLoaded();
-    return isLoaded? Availability.available(): Availability
-      .unavailable("there is no schema metadata loaded");
-  }
-
 }
@@ -60,15 +60,24 @@ public class FilterCommands
   @ShellMethod(value = "Filter database object metadata", prefix = "-")
   public void filter(@ShellOption(defaultValue = "false", help = "Include only tables that have rows of data") final boolean noemptytables,
                      @ShellOption(defaultValue = "0", help = "Number of generations of ancestors for the tables selected by grep") final int parents,
-                     @ShellOption(defaultValue = "0", help = "Number of generations of descendents for the tables selected by grep") final int children)
+                     @ShellOption(defaultValue = "0", help = "Number of generations of descendents for the tables selected by grep") final int children,
+                     @ShellOption(defaultValue = "false", help = "Apply limit, grep and filter options to the loaded catalog in memory, without loading it again") final boolean inmemory)
   {
     try
     {
       LOGGER.log(Level.INFO,
-                 new StringFormat("noemptytables=%b, parents=%d, children=%d",
+                 new StringFormat("noemptytables=%b, parents=%d, children=%d, inmemory=%b",
                                   noemptytables,
                                   parents,
-                                  children));
+                                  children,
+                                  inmemory));
+
+      // Row counts are only known from the database, so tables without
+      // rows can only be left out when the catalog is loaded
+      if (noemptytables && inmemory)
+      {
+        throw new RuntimeException("Tables without rows cannot be filtered out in memory");
+      }
 
       final SchemaCrawlerOptionsBuilder schemaCrawlerOptionsBuilder = state
         .getSchemaCrawlerOptionsBuilder();
@@ -76,6 +85,8 @@ public class FilterCommands
       schemaCrawlerOptionsBuilder.noEmptyTables(noemptytables);
       schemaCrawlerOptionsBuilder.parentTableFilterDepth(parents);
       schemaCrawlerOptionsBuilder.childTableFilterDepth(children);
+
+      state.setFilterCatalogInMemory(inmemory);
     }
     catch (final Exception e)
     {
@@ -0,0 +1,194 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.commands;
+
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.standard.ShellCommandGroup;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import schemacrawler.shell.jobs.Job;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+@ShellComponent
+@ShellCommandGroup("7. Job Commands")
+public class JobCommands
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(JobCommands.class.getName());
+
+  @Autowired
+  private final SchemaCrawlerShellState state;
+
+  public JobCommands(final SchemaCrawlerShellState state)
+  {
+    this.state = state;
+  }
+
+  @ShellMethod(key = {
+                       "cancel",
+                       "job-cancel" }, value = "Cancel a background job", prefix = "-")
+  public AttributedString cancel(@ShellOption(defaultValue = "0", help = "Job id, or the most recently started running job if not specified") final int id)
+  {
+    LOGGER.log(Level.INFO, new StringFormat("id=%d", id));
+
+    final Optional<Job> optionalJob;
+    if (id <= 0)
+    {
+      optionalJob = state.getJobRegistry().getRunningJob();
+    }
+    else
+    {
+      optionalJob = state.getJobRegistry().lookupJob(id);
+    }
+    if (!optionalJob.isPresent())
+    {
+      return error("No running job");
+    }
+
+    final Job job = optionalJob.get();
+    if (job.cancel())
+    {
+      return message(String.format("Cancelled job %d", job.getId()));
+    }
+    else
+    {
+      return error(String.format("Job %d is not running", job.getId()));
+    }
+  }
+
+  @ShellMethod(value = "Show the status of a background job", prefix = "-")
+  public AttributedString jobStatus(@ShellOption(defaultValue = "0", help = "Job id, or the most recently started job if not specified") final int id)
+  {
+    LOGGER.log(Level.INFO, new StringFormat("id=%d", id));
+
+    final Optional<Job> optionalJob = state.getJobRegistry().lookupJob(id);
+    if (!optionalJob.isPresent())
+    {
+      return error("No job found");
+    }
+
+    final Job job = optionalJob.get();
+    System.out.println(String.format("Job:         %d", job.getId()));
+    System.out.println(String.format("Command:     %s", job.getDescription()));
+    System.out.println(String.format("Status:      %s", job.getStatus()));
+    System.out.println(String.format("Duration:    %d ms",
+                                     job.getElapsed().toMillis()));
+    if (job.isRunning())
+    {
+      System.out.println(String.format("Progress:    %s", job.getProgress()));
+    }
+    if (job.getResult() != null)
+    {
+      System.out.println(String.format("Result:      %s", job.getResult()));
+    }
+    if (job.getFailure() != null)
+    {
+      System.out.println(String.format("Failure:     %s",
+                                       job.getFailure().getMessage()));
+    }
+
+    return message(String.format("Job %d is %s", job.getId(), job.getStatus()));
+  }
+
+  @ShellMethod(value = "List background jobs", prefix = "-")
+  public void jobs()
+  {
+    LOGGER.log(Level.INFO, "jobs");
+
+    final List<Job> jobs = state.getJobRegistry().getJobs();
+    for (final Job job: jobs)
+    {
+      System.out.println(job);
+    }
+  }
+
+  @ShellMethod(key = {
+                       "wait",
+                       "job-wait" }, value = "Wait for a background job to finish", prefix = "-")
+  public AttributedString waitForJob(@ShellOption(defaultValue = "0", help = "Job id, or the most recently started job if not specified") final int id)
+  {
+    LOGGER.log(Level.INFO, new StringFormat("id=%d", id));
+
+    final Optional<Job> optionalJob = state.getJobRegistry().lookupJob(id);
+    if (!optionalJob.isPresent())
+    {
+      return error("No job found");
+    }
+
+    final Job job = optionalJob.get();
+    try
+    {
+      return message(job.await());
+    }
+    catch (final InterruptedException e)
+    {
+      // Ctrl-C while waiting cancels the job
+      job.cancel();
+      return error(String.format("Cancelled job %d", job.getId()));
+    }
+    catch (final CancellationException e)
+    {
+      return error(e.getMessage());
+    }
+    catch (final ExecutionException e)
+    {
+      throw new RuntimeException(String.format("Job %d failed", job.getId()),
+                                 e.getCause());
+    }
+  }
+
+  private AttributedString error(final String message)
+  {
+    return new AttributedString(message,
+                                AttributedStyle.DEFAULT
+                                  .foreground(AttributedStyle.RED));
+  }
+
+  private AttributedString message(final String message)
+  {
+    return new AttributedString(message,
+                                AttributedStyle.DEFAULT
+                                  .foreground(AttributedStyle.CYAN));
+  }
+
+}
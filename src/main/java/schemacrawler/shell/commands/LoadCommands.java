@@ -30,12 +30,24 @@ package schemacrawler.shell.commands;
 
 
 import static java.util.Objects.requireNonNull;
+import static sf.util.Utility.isBlank;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 
+import javax.sql.DataSource;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,11 +60,25 @@ import org.springframework.shell.standard.ShellOption;
 
 import schemacrawler.schema.Catalog;
 import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.DatabaseObjectInfoRetrieval;
+import schemacrawler.schemacrawler.ExcludeAll;
+import schemacrawler.schemacrawler.InclusionRule;
 import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.RegularExpressionInclusionRule;
 import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
 import schemacrawler.schemacrawler.SchemaInfoLevel;
 import schemacrawler.schemacrawler.SchemaInfoLevelBuilder;
 import schemacrawler.schemacrawler.SchemaRetrievalOptions;
+import schemacrawler.shell.catalog.CatalogCache;
+import schemacrawler.shell.catalog.CatalogLoadProgress;
+import schemacrawler.shell.catalog.CatalogRefresher;
+import schemacrawler.shell.catalog.CatalogUpgrade;
+import schemacrawler.shell.catalog.DdlMarkers;
+import schemacrawler.shell.catalog.ParallelCatalogLoader;
+import schemacrawler.shell.catalog.PatchedCatalog;
+import schemacrawler.shell.jdbc.MonitoredJdbc;
+import schemacrawler.shell.jobs.Job;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.tools.catalogloader.CatalogLoader;
 import schemacrawler.tools.catalogloader.CatalogLoaderRegistry;
@@ -91,11 +117,33 @@ public class LoadCommands
   }
 
   @ShellMethod(value = "Load a catalog", prefix = "-")
-  public AttributedString loadCatalog(@ShellOption(value = "-infolevel", help = "Determine the amount of database metadata retrieved") @NotNull final InfoLevel infoLevel)
+  public AttributedString loadCatalog(@ShellOption(value = "-infolevel", help = "Determine the amount of database metadata retrieved") @NotNull final InfoLevel infoLevel,
+                                      @ShellOption(defaultValue = "false", help = "Whether to use the on-disk catalog cache") final boolean cache,
+                                      @ShellOption(defaultValue = "false", help = "Reload the catalog from the database, and replace the cached catalog") final boolean refresh,
+                                      @ShellOption(defaultValue = "1", help = "Number of schemas to load in parallel, each on its own connection") @Min(1) final int parallelism,
+                                      @ShellOption(defaultValue = "false", help = "Retrieve only the extra detail for the info level, and merge it into the loaded catalog - the whole catalog is loaded instead if tables or routines that already have detail would be crawled again") final boolean upgrade,
+                                      @ShellOption(value = "-detail-tables", defaultValue = "", help = "Regular expression to match fully qualified names of tables to load with the detail info level") final String detailTables,
+                                      @ShellOption(value = "-detail-infolevel", defaultValue = "maximum", help = "Determine the amount of database metadata retrieved for the detail tables") final InfoLevel detailInfoLevel,
+                                      @ShellOption(defaultValue = "false", help = "Load the catalog in the background, and show progress in the prompt") final boolean async)
   {
-    try (final Connection connection = state.getDataSource().getConnection();)
+    final Job job;
+    try
     {
-      LOGGER.log(Level.INFO, new StringFormat("infoLevel=%s", infoLevel));
+      LOGGER.log(Level.INFO,
+                 new StringFormat("infoLevel=%s, cache=%b, refresh=%b, parallelism=%d, upgrade=%b, detailTables=%s, detailInfoLevel=%s, async=%b",
+                                  infoLevel,
+                                  cache,
+                                  refresh,
+                                  parallelism,
+                                  upgrade,
+                                  detailTables,
+                                  detailInfoLevel,
+                                  async));
+      final boolean isTiered = !isBlank(detailTables);
+      if (isTiered && upgrade)
+      {
+        throw new RuntimeException("Cannot upgrade the catalog and load detail tables at the same time");
+      }
 
       loadOutputOptionsBuilder();
 
@@ -107,7 +155,456 @@ public class LoadCommands
       final SchemaCrawlerOptions schemaCrawlerOptions = state
         .getSchemaCrawlerOptionsBuilder().withSchemaInfoLevel(schemaInfoLevel)
         .toOptions();
+      final String detail = isTiered? String
+        .format("%s %s", detailInfoLevel, detailTables): null;
+      final SchemaCrawlerOptions detailSchemaCrawlerOptions;
+      if (isTiered)
+      {
+        detailSchemaCrawlerOptions = detailSchemaCrawlerOptions(schemaCrawlerOptions,
+                                                                new RegularExpressionInclusionRule(detailTables),
+                                                                detailInfoLevel);
+      }
+      else
+      {
+        detailSchemaCrawlerOptions = null;
+      }
+      final String cacheKey;
+      if (cache)
+      {
+        cacheKey = catalogCacheKey(infoLevel,
+                                   detail,
+                                   schemaCrawlerOptions,
+                                   schemaRetrievalOptions);
+      }
+      else
+      {
+        cacheKey = null;
+      }
 
+      final CatalogLoadProgress progress = new CatalogLoadProgress();
+      final String description = String.format("load-catalog -infolevel %s",
+                                               infoLevel);
+      final Callable<String> task = () -> loadCatalog(infoLevel,
+                                                      cacheKey,
+                                                      refresh,
+                                                      parallelism,
+                                                      upgrade,
+                                                      additionalConfiguration,
+                                                      schemaRetrievalOptions,
+                                                      schemaCrawlerOptions,
+                                                      detailSchemaCrawlerOptions,
+                                                      progress);
+      // Loads that the shell waits for do not queue behind background
+      // jobs
+      if (async)
+      {
+        job = state.getJobRegistry().submit(description,
+                                            task,
+                                            progress::toString,
+                                            progress::cancel);
+      }
+      else
+      {
+        job = state.getJobRegistry().start(description,
+                                           task,
+                                           progress::toString,
+                                           progress::cancel);
+      }
+    }
+    catch (final RuntimeException e)
+    {
+      throw e;
+    }
+    catch (final Exception e)
+    {
+      throw new RuntimeException("Cannot load catalog", e);
+    }
+
+    if (async)
+    {
+      return new AttributedString(String
+        .format("Started job %d, loading catalog", job.getId()),
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    return awaitLoad(job);
+  }
+
+  /**
+   * Waits for a catalog load job. Interrupting the wait, for example
+   * with Ctrl-C, cancels the load.
+   */
+  private AttributedString awaitLoad(final Job job)
+  {
+    try
+    {
+      return success(job.await());
+    }
+    catch (final InterruptedException | CancellationException e)
+    {
+      job.cancel();
+      LOGGER.log(Level.INFO, "Cancelled loading catalog");
+      return new AttributedString("Cancelled loading catalog",
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.RED));
+    }
+    catch (final ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException("Cannot load catalog", cause);
+    }
+  }
+
+  private String loadCatalog(final InfoLevel infoLevel,
+                             final String cacheKey,
+                             final boolean refresh,
+                             final int parallelism,
+                             final boolean upgrade,
+                             final Config additionalConfiguration,
+                             final SchemaRetrievalOptions schemaRetrievalOptions,
+                             final SchemaCrawlerOptions schemaCrawlerOptions,
+                             final SchemaCrawlerOptions detailSchemaCrawlerOptions,
+                             final CatalogLoadProgress progress)
+    throws Exception
+  {
+    final CatalogCache catalogCache = state.getCatalogCache();
+    if (cacheKey != null && !refresh)
+    {
+      final Optional<Catalog> cachedCatalog = catalogCache.load(cacheKey);
+      if (cachedCatalog.isPresent())
+      {
+        state.setCatalog(cachedCatalog.get());
+        LOGGER.log(Level.INFO, "Loaded catalog from cache");
+        state.getNameIndex();
+
+        return "Loaded catalog from cache";
+      }
+    }
+
+    final Catalog loadedCatalog = state.getCatalog();
+    final Optional<CatalogUpgrade> catalogUpgrade;
+    if (upgrade && loadedCatalog != null)
+    {
+      final Optional<CatalogUpgrade> plannedUpgrade = CatalogUpgrade
+        .plan(loadedCatalog, schemaCrawlerOptions.getSchemaInfoLevel());
+      if (!plannedUpgrade.isPresent())
+      {
+        LOGGER.log(Level.INFO,
+                   "Loading the whole catalog, since the loaded catalog does not record the detail it has");
+        catalogUpgrade = Optional.empty();
+      }
+      else if (!plannedUpgrade.get().isNeeded())
+      {
+        return "Catalog already has the detail for the info level";
+      }
+      else if (!plannedUpgrade.get().isSavingQueries())
+      {
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Loading the whole catalog, since an upgrade would run %s again",
+                                    plannedUpgrade.get()
+                                      .getRepeatedRetrievals()));
+        catalogUpgrade = Optional.empty();
+      }
+      else
+      {
+        catalogUpgrade = plannedUpgrade;
+      }
+    }
+    else
+    {
+      catalogUpgrade = Optional.empty();
+    }
+    final SchemaCrawlerOptions crawlOptions;
+    if (catalogUpgrade.isPresent())
+    {
+      LOGGER.log(Level.INFO,
+                 new StringFormat("Upgrading %s in the loaded catalog, with %s",
+                                  catalogUpgrade.get().getUpgraded(),
+                                  catalogUpgrade.get()
+                                    .getAdditionalRetrievals()));
+      crawlOptions = SchemaCrawlerOptionsBuilder.builder()
+        .fromOptions(schemaCrawlerOptions)
+        .withSchemaInfoLevel(catalogUpgrade.get().getSchemaInfoLevel())
+        .toOptions();
+    }
+    else
+    {
+      crawlOptions = schemaCrawlerOptions;
+    }
+
+    // Read DDL markers before crawling, so that changes made during the
+    // crawl are picked up by the next refresh
+    final Map<String, String> ddlMarkers = snapshotDdlMarkers(crawlOptions, progress);
+
+    final Catalog crawledCatalog;
+    if (detailSchemaCrawlerOptions != null)
+    {
+      // Detail tables are left out of the first crawl, and crawled at
+      // the detail info level in a second crawl
+      final InclusionRule tableInclusionRule = crawlOptions
+        .getTableInclusionRule();
+      final InclusionRule detailTableInclusionRule = detailSchemaCrawlerOptions
+        .getTableInclusionRule();
+      final SchemaCrawlerOptions otherTablesOptions = SchemaCrawlerOptionsBuilder
+        .builder().fromOptions(crawlOptions)
+        .includeTables(fullName -> tableInclusionRule.test(fullName)
+                                   && !detailTableInclusionRule
+                                     .test(fullName))
+        .toOptions();
+      final Catalog otherTablesCatalog = crawl(parallelism,
+                                               additionalConfiguration,
+                                               schemaRetrievalOptions,
+                                               otherTablesOptions,
+                                               progress);
+      final Catalog detailTablesCatalog = crawl(parallelism,
+                                                additionalConfiguration,
+                                                schemaRetrievalOptions,
+                                                detailSchemaCrawlerOptions,
+                                                progress);
+      // Foreign keys between the detail tables and the other tables
+      // reference partial tables in each crawl, so the patched catalog
+      // links them to the loaded tables
+      crawledCatalog = new PatchedCatalog(otherTablesCatalog,
+                                          detailTablesCatalog,
+                                          Collections.emptySet());
+      LOGGER.log(Level.INFO,
+                 new StringFormat("Loaded %d detail tables, and %d other tables",
+                                  detailTablesCatalog.getTables().size(),
+                                  otherTablesCatalog.getTables().size()));
+    }
+    else
+    {
+      crawledCatalog = crawl(parallelism,
+                             additionalConfiguration,
+                             schemaRetrievalOptions,
+                             crawlOptions,
+                             progress);
+    }
+    if (progress.isCancelled())
+    {
+      throw new CancellationException("Catalog load was cancelled");
+    }
+    final Catalog catalog;
+    if (catalogUpgrade.isPresent())
+    {
+      catalog = catalogUpgrade.get().upgrade(loadedCatalog, crawledCatalog);
+    }
+    else
+    {
+      catalog = crawledCatalog;
+      CatalogUpgrade.attach(catalog, schemaCrawlerOptions.getSchemaInfoLevel());
+    }
+    // Tables kept from the loaded catalog keep their DDL markers
+    if (ddlMarkers != null && (!catalogUpgrade.isPresent() || catalogUpgrade
+      .get().getUpgraded().contains(DatabaseObjectInfoRetrieval.table)))
+    {
+      DdlMarkers.attach(catalog, ddlMarkers);
+    }
+    state.setCatalog(catalog);
+    LOGGER.log(Level.INFO,
+               new StringFormat("Loaded catalog, %s", progress));
+    // Build the name index while still in the background
+    state.getNameIndex();
+
+    if (cacheKey != null)
+    {
+      catalogCache.save(cacheKey, catalog, catalogCacheDescription(infoLevel));
+    }
+
+    return catalogUpgrade.isPresent()? "Upgraded catalog": "Loaded catalog";
+  }
+
+  @ShellMethod(value = "Refresh the loaded catalog, by crawling again only the tables that changed since it was loaded", prefix = "-")
+  public AttributedString refreshCatalog(@ShellOption(defaultValue = "", help = "Regular expression to match fully qualified names of tables to crawl again, whether or not they changed") final String tables)
+  {
+    if (!isLoaded())
+    {
+      return new AttributedString("There is no catalog loaded to refresh",
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.RED));
+    }
+
+    try
+    {
+      LOGGER.log(Level.INFO, new StringFormat("tables=%s", tables));
+
+      final long start = System.nanoTime();
+      final SchemaRetrievalOptions schemaRetrievalOptions = state
+        .getSchemaRetrievalOptionsBuilder().toOptions();
+      final SchemaCrawlerOptions schemaCrawlerOptions = state
+        .getSchemaCrawlerOptionsBuilder().toOptions();
+      final CatalogRefresher catalogRefresher = new CatalogRefresher(state
+        .getDataSource(),
+                                                                     state
+                                                                       .getAdditionalConfiguration(),
+                                                                     schemaRetrievalOptions,
+                                                                     schemaCrawlerOptions);
+      final Catalog catalog = state.getCatalog();
+      final Catalog refreshedCatalog;
+      if (isBlank(tables))
+      {
+        refreshedCatalog = catalogRefresher.refresh(catalog);
+      }
+      else
+      {
+        refreshedCatalog = catalogRefresher
+          .refresh(catalog, new RegularExpressionInclusionRule(tables));
+      }
+      final long elapsed = (System.nanoTime() - start) / 1_000_000L;
+
+      final String message;
+      if (catalogRefresher.isBaseline())
+      {
+        message = "Catalog had no DDL markers, so recorded them for the next refresh";
+      }
+      else if (refreshedCatalog == catalog)
+      {
+        message = "Catalog is up to date";
+      }
+      else
+      {
+        state.setCatalog(refreshedCatalog);
+        state.getNameIndex();
+        message = String
+          .format("Refreshed catalog, with %d changed, %d added and %d dropped tables, in %d ms",
+                  catalogRefresher.getChangedCount(),
+                  catalogRefresher.getAddedCount(),
+                  catalogRefresher.getDroppedCount(),
+                  elapsed);
+      }
+      LOGGER.log(Level.INFO, message);
+      return new AttributedString(message,
+                                  AttributedStyle.DEFAULT
+                                    .foreground(AttributedStyle.CYAN));
+    }
+    catch (final Exception e)
+    {
+      throw new RuntimeException("Cannot refresh catalog", e);
+    }
+  }
+
+  private Catalog crawl(final int parallelism,
+                        final Config additionalConfiguration,
+                        final SchemaRetrievalOptions schemaRetrievalOptions,
+                        final SchemaCrawlerOptions crawlOptions,
+                        final CatalogLoadProgress progress)
+    throws Exception
+  {
+    if (parallelism > 1 && canLoadInParallel(crawlOptions))
+    {
+      final ParallelCatalogLoader catalogLoader = new ParallelCatalogLoader(MonitoredJdbc
+        .monitor(state.getDataSource(), progress),
+                                                                            additionalConfiguration,
+                                                                            schemaRetrievalOptions,
+                                                                            crawlOptions,
+                                                                            poolLimitedParallelism(parallelism),
+                                                                            progress);
+      return catalogLoader.loadCatalog();
+    }
+    else
+    {
+      return loadCatalog(additionalConfiguration,
+                         schemaRetrievalOptions,
+                         crawlOptions,
+                         progress);
+    }
+  }
+
+  /**
+   * Options for crawling the detail tables, with the table inclusion
+   * rule narrowed to the detail tables, at the detail info level.
+   * Routines, synonyms and sequences are retrieved with the other tables
+   * only.
+   */
+  private SchemaCrawlerOptions detailSchemaCrawlerOptions(final SchemaCrawlerOptions schemaCrawlerOptions,
+                                                          final InclusionRule detailTableInclusionRule,
+                                                          final InfoLevel detailInfoLevel)
+  {
+    final InclusionRule tableInclusionRule = schemaCrawlerOptions
+      .getTableInclusionRule();
+    return SchemaCrawlerOptionsBuilder.builder()
+      .fromOptions(schemaCrawlerOptions)
+      .withSchemaInfoLevel(SchemaInfoLevelBuilder.builder()
+        .withInfoLevel(detailInfoLevel))
+      .includeTables(fullName -> tableInclusionRule.test(fullName)
+                                 && detailTableInclusionRule.test(fullName))
+      .includeRoutines(new ExcludeAll()).includeSynonyms(new ExcludeAll())
+      .includeSequences(new ExcludeAll()).toOptions();
+  }
+
+  /**
+   * Tables related to grepped tables may be in other schemas, so
+   * filtering by ancestors or descendants needs all schemas in one
+   * crawl.
+   */
+  private boolean canLoadInParallel(final SchemaCrawlerOptions schemaCrawlerOptions)
+  {
+    if (schemaCrawlerOptions.getParentTableFilterDepth() > 0
+        || schemaCrawlerOptions.getChildTableFilterDepth() > 0)
+    {
+      LOGGER.log(Level.INFO,
+                 "Loading serially, since parent or child table filters are set");
+      return false;
+    }
+    return true;
+  }
+
+  private Properties catalogCacheDescription(final InfoLevel infoLevel)
+  {
+    final Properties description = new Properties();
+    final DataSource dataSource = state.getDataSource();
+    if (dataSource instanceof BasicDataSource)
+    {
+      description.setProperty("url", ((BasicDataSource) dataSource).getUrl());
+      description.setProperty("user",
+                              ((BasicDataSource) dataSource).getUsername());
+    }
+    description.setProperty("infolevel", infoLevel.name());
+    return description;
+  }
+
+  private String catalogCacheKey(final InfoLevel infoLevel,
+                                 final String detail,
+                                 final SchemaCrawlerOptions schemaCrawlerOptions,
+                                 final SchemaRetrievalOptions schemaRetrievalOptions)
+  {
+    final DataSource dataSource = state.getDataSource();
+    if (!(dataSource instanceof BasicDataSource))
+    {
+      throw new RuntimeException("Cannot use the catalog cache without a connection URL");
+    }
+    final BasicDataSource basicDataSource = (BasicDataSource) dataSource;
+    return CatalogCache.cacheKey(basicDataSource.getUrl(),
+                                 basicDataSource.getUsername(),
+                                 schemaCrawlerOptions,
+                                 infoLevel,
+                                 detail,
+                                 schemaRetrievalOptions);
+  }
+
+  private Catalog loadCatalog(final Config additionalConfiguration,
+                              final SchemaRetrievalOptions schemaRetrievalOptions,
+                              final SchemaCrawlerOptions schemaCrawlerOptions,
+                              final CatalogLoadProgress progress)
+    throws Exception
+  {
+    final Connection connection;
+    try
+    {
+      connection = state.getDataSource().getConnection();
+    }
+    catch (final SQLException e)
+    {
+      state.connectionFailed(e);
+      throw new RuntimeException("Cannot load catalog", e);
+    }
+
+    try
+    {
       final CatalogLoaderRegistry catalogLoaderRegistry = new CatalogLoaderRegistry();
       final CatalogLoader catalogLoader = catalogLoaderRegistry
         .lookupCatalogLoader(schemaRetrievalOptions.getDatabaseServerType()
@@ -117,21 +614,24 @@ public class LoadCommands
              new StringFormat("Catalog loader: %s", this.getClass().getName()));
 
       catalogLoader.setAdditionalConfiguration(additionalConfiguration);
-      catalogLoader.setConnection(connection);
+      catalogLoader.setConnection(MonitoredJdbc.monitor(connection, progress));
       catalogLoader.setSchemaRetrievalOptions(schemaRetrievalOptions);
       catalogLoader.setSchemaCrawlerOptions(schemaCrawlerOptions);
 
       final Catalog catalog = catalogLoader.loadCatalog();
       requireNonNull(catalog, "Catalog could not be retrieved");
-
-      state.setCatalog(catalog);
-      LOGGER.log(Level.INFO, "Loaded catalog");
-
-      return success();
+      return catalog;
     }
-    catch (final Exception e)
+    finally
     {
-      throw new RuntimeException("Cannot load catalog", e);
+      try
+      {
+        connection.close();
+      }
+      catch (final SQLException e)
+      {
+        LOGGER.log(Level.FINE, e.getMessage(), e);
+      }
     }
   }
 
@@ -144,11 +644,62 @@ public class LoadCommands
     state.setOutputOptionsBuilder(outputOptionsBuilder);
   }
 
-  private AttributedString success()
+  private int poolLimitedParallelism(final int parallelism)
+  {
+    final DataSource dataSource = state.getDataSource();
+    if (dataSource instanceof BasicDataSource)
+    {
+      final int maxTotal = ((BasicDataSource) dataSource).getMaxTotal();
+      if (maxTotal > 0 && maxTotal < parallelism)
+      {
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Limiting parallelism to the connection pool size, %d",
+                                    maxTotal));
+        return maxTotal;
+      }
+    }
+    return parallelism;
+  }
+
+  /**
+   * Reads DDL markers for the schemas to be loaded, for refreshing the
+   * catalog later, if this is turned on. Otherwise refresh-catalog
+   * records them when it is first run. The catalog can still be loaded if the markers cannot be
+   * read.
+   *
+   * @return DDL markers, or null if they were not read
+   */
+  private Map<String, String> snapshotDdlMarkers(final SchemaCrawlerOptions crawlOptions,
+                                                 final CatalogLoadProgress progress)
+  {
+    if (!state.isSnapshotDdlMarkers())
+    {
+      return null;
+    }
+    try (final Connection connection = MonitoredJdbc
+      .monitor(state.getDataSource(), progress).getConnection();)
+    {
+      return DdlMarkers.snapshot(connection,
+                                 DdlMarkers.schemas(connection,
+                                                    crawlOptions
+                                                      .getSchemaInclusionRule()));
+    }
+    catch (final SQLException e)
+    {
+      if (progress.isCancelled())
+      {
+        throw new CancellationException("Catalog load was cancelled");
+      }
+      LOGGER.log(Level.WARNING, "Cannot read DDL markers", e);
+      return null;
+    }
+  }
+
+  private AttributedString success(final String message)
   {
     if (isLoaded())
     {
-      return new AttributedString("Loaded catalog",
+      return new AttributedString(message,
                                   AttributedStyle.DEFAULT
                                     .foreground(AttributedStyle.CYAN));
     }
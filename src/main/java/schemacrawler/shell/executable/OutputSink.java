@@ -0,0 +1,372 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.executable;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Output file for SchemaCrawler commands, written through a large direct
+ * buffer to a file channel, and optionally compressed as it is written.
+ * Counts the bytes of output, and the bytes written to the file.
+ */
+public final class OutputSink
+  implements Closeable
+{
+
+  public enum Compression
+  {
+   /**
+    * Compress if the output file name ends with ".gz".
+    */
+   auto,
+   none,
+   gzip;
+  }
+
+  /**
+   * Output stream that buffers writes in a direct buffer, and writes the
+   * buffer to a file channel when it is full.
+   */
+  private static final class ChannelOutputStream
+    extends OutputStream
+  {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean sync;
+    private long bytesWritten;
+
+    ChannelOutputStream(final FileChannel channel,
+                        final int bufferSize,
+                        final boolean sync)
+    {
+      this.channel = channel;
+      buffer = ByteBuffer.allocateDirect(bufferSize);
+      this.sync = sync;
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      if (!channel.isOpen())
+      {
+        return;
+      }
+      try
+      {
+        flush();
+        if (sync)
+        {
+          channel.force(true);
+        }
+      }
+      finally
+      {
+        channel.close();
+      }
+    }
+
+    @Override
+    public void flush()
+      throws IOException
+    {
+      buffer.flip();
+      while (buffer.hasRemaining())
+      {
+        bytesWritten += channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length)
+      throws IOException
+    {
+      int position = offset;
+      int remaining = length;
+      while (remaining > 0)
+      {
+        if (!buffer.hasRemaining())
+        {
+          flush();
+        }
+        final int count = Math.min(remaining, buffer.remaining());
+        buffer.put(bytes, position, count);
+        position = position + count;
+        remaining = remaining - count;
+      }
+    }
+
+    @Override
+    public void write(final int b)
+      throws IOException
+    {
+      if (!buffer.hasRemaining())
+      {
+        flush();
+      }
+      buffer.put((byte) b);
+    }
+
+  }
+
+  private static final class CountingOutputStream
+    extends FilterOutputStream
+  {
+
+    private long count;
+
+    CountingOutputStream(final OutputStream out)
+    {
+      super(out);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length)
+      throws IOException
+    {
+      out.write(bytes, offset, length);
+      count = count + length;
+    }
+
+    @Override
+    public void write(final int b)
+      throws IOException
+    {
+      out.write(b);
+      count = count + 1;
+    }
+
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(OutputSink.class.getName());
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * Whether output to a file is compressed. With automatic compression,
+   * output is compressed if the file name ends with ".gz".
+   */
+  public static boolean isCompressed(final Path outputFile,
+                                     final Compression compression)
+  {
+    if (compression == Compression.auto)
+    {
+      return outputFile.getFileName().toString()
+        .toLowerCase(Locale.ENGLISH)
+        .endsWith(".gz");
+    }
+    else
+    {
+      return compression == Compression.gzip;
+    }
+  }
+
+  /**
+   * Opens an output file, replacing any existing file.
+   *
+   * @param sync
+   *        Whether to force the output to the storage device when the
+   *        sink is closed
+   */
+  public static OutputSink open(final Path outputFile,
+                                final Charset charset,
+                                final Compression compression,
+                                final boolean sync)
+    throws IOException
+  {
+    requireNonNull(outputFile, "No output file provided");
+    requireNonNull(charset, "No output encoding provided");
+    requireNonNull(compression, "No compression provided");
+
+    final boolean compressed = isCompressed(outputFile, compression);
+
+    final FileChannel channel = FileChannel
+      .open(outputFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    final ChannelOutputStream channelStream = new ChannelOutputStream(channel,
+                                                                      BUFFER_SIZE,
+                                                                      sync);
+    final OutputStream out;
+    if (compressed)
+    {
+      out = new GZIPOutputStream(channelStream, 64 * 1024);
+    }
+    else
+    {
+      out = channelStream;
+    }
+    final CountingOutputStream countingStream = new CountingOutputStream(out);
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Writing output to <%s>, compressed=%b, sync=%b",
+                                outputFile,
+                                compressed,
+                                sync));
+    return new OutputSink(outputFile,
+                          new OutputStreamWriter(countingStream, charset),
+                          countingStream,
+                          channelStream,
+                          compressed);
+  }
+
+  private final Path outputFile;
+  private final Writer writer;
+  private final CountingOutputStream countingStream;
+  private final ChannelOutputStream channelStream;
+  private final boolean compressed;
+  private final long start;
+  private long elapsedNanos;
+
+  private OutputSink(final Path outputFile,
+                     final Writer writer,
+                     final CountingOutputStream countingStream,
+                     final ChannelOutputStream channelStream,
+                     final boolean compressed)
+  {
+    this.outputFile = outputFile;
+    this.writer = writer;
+    this.countingStream = countingStream;
+    this.channelStream = channelStream;
+    this.compressed = compressed;
+    start = System.nanoTime();
+  }
+
+  /**
+   * Flushes and closes the output file. Closing a sink that has been
+   * closed has no effect.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (!channelStream.channel.isOpen())
+    {
+      return;
+    }
+    try
+    {
+      writer.close();
+    }
+    finally
+    {
+      channelStream.close();
+      elapsedNanos = System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Number of bytes of output, before compression.
+   */
+  public long getBytesOut()
+  {
+    return countingStream.count;
+  }
+
+  /**
+   * Number of bytes written to the output file.
+   */
+  public long getBytesWritten()
+  {
+    return channelStream.bytesWritten;
+  }
+
+  public Path getOutputFile()
+  {
+    return outputFile;
+  }
+
+  /**
+   * Writer for the output, which should not be closed by callers, since
+   * closing the sink closes the writer.
+   */
+  public Writer getWriter()
+  {
+    return writer;
+  }
+
+  public boolean isCompressed()
+  {
+    return compressed;
+  }
+
+  /**
+   * Summary of the bytes written, and the throughput, once the sink is
+   * closed.
+   */
+  public String summary()
+  {
+    final double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000D;
+    final double megabytesPerSecond = getBytesOut() / seconds
+                                      / (1024D * 1024D);
+    if (compressed)
+    {
+      return String.format("%,d bytes, compressed to %,d bytes, at %.1f MB/s",
+                           getBytesOut(),
+                           getBytesWritten(),
+                           megabytesPerSecond);
+    }
+    else
+    {
+      return String.format("%,d bytes, at %.1f MB/s",
+                           getBytesWritten(),
+                           megabytesPerSecond);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return outputFile.toString();
+  }
+
+}
@@ -0,0 +1,364 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.executable;
+
+
+import static java.util.Objects.requireNonNull;
+import static sf.util.Utility.isBlank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.SchemaCrawlerException;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.shell.jdbc.LazyConnections;
+import schemacrawler.tools.executable.CommandDaisyChain;
+import schemacrawler.tools.executable.SchemaCrawlerCommand;
+import schemacrawler.tools.options.OutputOptions;
+import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.tools.text.base.CommonTextOptionsBuilder;
+import schemacrawler.utility.Identifiers;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Executes a comma-separated chain of SchemaCrawler commands, in the
+ * same way as {@link CommandDaisyChain}, but runs the commands on a
+ * bounded number of threads. Each command writes to its own temporary
+ * file, and borrows its own pooled connection the first time it needs
+ * one. The output is put together in command order once all the
+ * commands have completed, so it does not depend on which command
+ * finished first.
+ */
+public final class ParallelCommandChain
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(ParallelCommandChain.class.getName());
+
+  private final String command;
+  private final DataSource dataSource;
+  private final Catalog catalog;
+  private final SchemaCrawlerOptions schemaCrawlerOptions;
+  private final Identifiers identifiers;
+  private final OutputOptions outputOptions;
+  private final Config additionalConfiguration;
+  private final int parallelism;
+
+  /**
+   * @param dataSource
+   *        Data-source to borrow connections from, or null if there is
+   *        no database connection
+   */
+  public ParallelCommandChain(final String command,
+                              final DataSource dataSource,
+                              final Catalog catalog,
+                              final SchemaCrawlerOptions schemaCrawlerOptions,
+                              final Identifiers identifiers,
+                              final OutputOptions outputOptions,
+                              final Config additionalConfiguration,
+                              final int parallelism)
+  {
+    this.command = requireNonNull(command, "No command provided");
+    this.dataSource = dataSource;
+    this.catalog = requireNonNull(catalog, "No catalog provided");
+    this.schemaCrawlerOptions = requireNonNull(schemaCrawlerOptions,
+                                               "No SchemaCrawler options provided");
+    this.identifiers = identifiers;
+    this.outputOptions = requireNonNull(outputOptions,
+                                        "No output options provided");
+    this.additionalConfiguration = additionalConfiguration;
+    if (parallelism < 1)
+    {
+      throw new IllegalArgumentException("Parallelism should be at least 1");
+    }
+    this.parallelism = parallelism;
+  }
+
+  public void execute()
+    throws Exception
+  {
+    final List<String> commands = new ArrayList<>();
+    for (final String chainedCommand: command.split(","))
+    {
+      if (!isBlank(chainedCommand))
+      {
+        commands.add(chainedCommand);
+      }
+    }
+    if (commands.isEmpty())
+    {
+      throw new SchemaCrawlerException("No command specified");
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Executing %d commands, with parallelism %d",
+                                commands.size(),
+                                parallelism));
+
+    final Optional<Path> outputFile = outputOptions.getOutputFile();
+    final Path partsDirectory;
+    if (outputFile.isPresent())
+    {
+      partsDirectory = Files.createTempDirectory(outputFile.get()
+        .toAbsolutePath().getParent(), "schemacrawler");
+    }
+    else
+    {
+      partsDirectory = Files.createTempDirectory("schemacrawler");
+    }
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executor = Executors
+      .newFixedThreadPool(Math.min(parallelism, commands.size()),
+                          runnable -> {
+                            final Thread thread = new Thread(runnable,
+                                                             "schemacrawler-command-"
+                                                                       + threadNumber
+                                                                         .incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                          });
+    try
+    {
+      final List<Path> parts = new ArrayList<>();
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < commands.size(); i++)
+      {
+        final String chainedCommand = commands.get(i);
+        final Path part = partsDirectory.resolve(String.format("%03d", i));
+        parts.add(part);
+
+        final Config commandConfiguration = commandConfiguration(i,
+                                                                 commands
+                                                                   .size());
+        final OutputOptions commandOutputOptions = OutputOptionsBuilder
+          .builder().fromOptions(outputOptions).withOutputFile(part)
+          .toOptions();
+        final Callable<Void> task = () -> {
+          LOGGER.log(Level.FINE,
+                     new StringFormat("Executing command <%s>",
+                                      chainedCommand));
+          execute(chainedCommand, commandOutputOptions, commandConfiguration);
+          return null;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      for (int i = 0; i < futures.size(); i++)
+      {
+        try
+        {
+          futures.get(i).get();
+        }
+        catch (final ExecutionException e)
+        {
+          throw new SchemaCrawlerException(String
+            .format("Cannot execute command <%s>", commands.get(i)),
+                                           e.getCause());
+        }
+      }
+
+      if (outputFile.isPresent())
+      {
+        concatenate(parts, outputFile.get());
+      }
+      else
+      {
+        print(parts);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+      deleteParts(partsDirectory);
+    }
+  }
+
+  /**
+   * Text options for a command, depending on its position in the
+   * chain, so that there is only one header and one footer in the
+   * combined output. Unlike a daisy chain, output is not appended,
+   * since each command writes to its own file.
+   */
+  private Config commandConfiguration(final int position, final int size)
+  {
+    final CommonTextOptionsBuilder commonTextOptionsBuilder = CommonTextOptionsBuilder
+      .builder().fromConfig(additionalConfiguration);
+    if (size > 1)
+    {
+      if (position > 0)
+      {
+        commonTextOptionsBuilder.noHeader();
+        commonTextOptionsBuilder.noInfo();
+      }
+      if (position < size - 1)
+      {
+        commonTextOptionsBuilder.noFooter();
+      }
+    }
+
+    final Config commandConfiguration = new Config();
+    if (additionalConfiguration != null)
+    {
+      commandConfiguration.putAll(additionalConfiguration);
+    }
+    commandConfiguration.putAll(commonTextOptionsBuilder.toConfig());
+    return commandConfiguration;
+  }
+
+  private void concatenate(final List<Path> parts, final Path outputFile)
+    throws IOException
+  {
+    final Path combined = Files.createTempFile(outputFile.toAbsolutePath()
+      .getParent(), "schemacrawler", ".tmp");
+    try
+    {
+      try (final OutputStream out = Files.newOutputStream(combined);)
+      {
+        for (final Path part: parts)
+        {
+          if (Files.exists(part))
+          {
+            Files.copy(part, out);
+          }
+        }
+      }
+      Files.move(combined, outputFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally
+    {
+      Files.deleteIfExists(combined);
+    }
+  }
+
+  private void deleteParts(final Path partsDirectory)
+  {
+    try
+    {
+      try (final Stream<Path> parts = Files
+        .list(partsDirectory);)
+      {
+        for (final Path part: (Iterable<Path>) parts::iterator)
+        {
+          Files.deleteIfExists(part);
+        }
+      }
+      Files.deleteIfExists(partsDirectory);
+    }
+    catch (final IOException e)
+    {
+      LOGGER.log(Level.WARNING,
+                 new StringFormat("Cannot delete temporary files in <%s>",
+                                  partsDirectory),
+                 e);
+    }
+  }
+
+  private void execute(final String chainedCommand,
+                       final OutputOptions commandOutputOptions,
+                       final Config commandConfiguration)
+    throws Exception
+  {
+    final Connection connection = dataSource == null? null: LazyConnections
+      .lazy(dataSource);
+    try
+    {
+      // A chain of one command, so the text options are used as they
+      // are
+      final SchemaCrawlerCommand scCommand = new CommandDaisyChain(chainedCommand);
+      scCommand.setSchemaCrawlerOptions(schemaCrawlerOptions);
+      scCommand.setOutputOptions(commandOutputOptions);
+      scCommand.setAdditionalConfiguration(commandConfiguration);
+      scCommand.setIdentifiers(identifiers);
+
+      scCommand.setConnection(connection);
+      scCommand.setCatalog(catalog);
+
+      scCommand.execute();
+    }
+    finally
+    {
+      if (connection != null)
+      {
+        connection.close();
+      }
+    }
+  }
+
+  private void print(final List<Path> parts)
+    throws IOException
+  {
+    try (final Writer writer = outputOptions.openNewOutputWriter();)
+    {
+      for (final Path part: parts)
+      {
+        if (!Files.exists(part))
+        {
+          continue;
+        }
+        try (final InputStream in = Files.newInputStream(part);
+            final Reader reader = new InputStreamReader(in,
+                                                        outputOptions
+                                                          .getOutputCharset());)
+        {
+          final char[] buffer = new char[8192];
+          int read;
+          while ((read = reader.read(buffer)) != -1)
+          {
+            writer.write(buffer, 0, read);
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,439 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.executable;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Writer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.SchemaCrawlerException;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.shell.catalog.PartitionCatalog;
+import schemacrawler.shell.catalog.TableChunk;
+import schemacrawler.shell.catalog.TableSizeEstimates;
+import schemacrawler.shell.executable.OutputSink.Compression;
+import schemacrawler.shell.jdbc.LazyConnections;
+import schemacrawler.tools.executable.CommandDaisyChain;
+import schemacrawler.tools.executable.SchemaCrawlerCommand;
+import schemacrawler.tools.options.OutputOptions;
+import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.tools.text.operation.Operation;
+import schemacrawler.utility.Identifiers;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Executes a command, such as a data dump, for each table on its own,
+ * writing the output for each table to its own file. Tables are
+ * executed on a bounded number of threads, each with its own pooled
+ * connection, with the largest tables first, so that a few large tables
+ * do not hold up the end of the run. Data in large tables can also be
+ * dumped in chunks of ranges of the primary key, each to its own file.
+ * A manifest lists the files in catalog order, and chunks in key order.
+ */
+public final class ParallelTableDump
+{
+
+  /**
+   * Output file for a table, or for a chunk of a table.
+   */
+  private static final class Part
+  {
+
+    private final Table table;
+    private final TableChunk chunk;
+    private final int chunkCount;
+    private final long estimatedRows;
+    private final Path file;
+    private long bytes;
+    private long millis;
+
+    Part(final Table table,
+         final TableChunk chunk,
+         final int chunkCount,
+         final long estimatedRows,
+         final Path file)
+    {
+      this.table = table;
+      this.chunk = chunk;
+      this.chunkCount = chunkCount;
+      this.estimatedRows = estimatedRows;
+      this.file = file;
+    }
+
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(ParallelTableDump.class.getName());
+
+  private final String command;
+  private final DataSource dataSource;
+  private final Catalog catalog;
+  private final SchemaCrawlerOptions schemaCrawlerOptions;
+  private final Identifiers identifiers;
+  private final OutputOptions outputOptions;
+  private final Config additionalConfiguration;
+  private final Compression compression;
+  private final boolean sync;
+  private final int parallelism;
+  private final long chunkRows;
+
+  /**
+   * @param outputOptions
+   *        Output options with the output format, and the file for the
+   *        manifest
+   * @param dataSource
+   *        Data-source to borrow connections from, or null if there is
+   *        no database connection
+   * @param compression
+   *        Compression of the manifest and table files
+   * @param chunkRows
+   *        Number of rows above which the data in a table is dumped in
+   *        chunks, or 0 to dump every table in one file
+   */
+  public ParallelTableDump(final String command,
+                           final DataSource dataSource,
+                           final Catalog catalog,
+                           final SchemaCrawlerOptions schemaCrawlerOptions,
+                           final Identifiers identifiers,
+                           final OutputOptions outputOptions,
+                           final Config additionalConfiguration,
+                           final Compression compression,
+                           final boolean sync,
+                           final int parallelism,
+                           final long chunkRows)
+  {
+    this.command = requireNonNull(command, "No command provided");
+    this.dataSource = dataSource;
+    this.catalog = requireNonNull(catalog, "No catalog provided");
+    this.schemaCrawlerOptions = requireNonNull(schemaCrawlerOptions,
+                                               "No SchemaCrawler options provided");
+    this.identifiers = identifiers == null? Identifiers.STANDARD: identifiers;
+    this.outputOptions = requireNonNull(outputOptions,
+                                        "No output options provided");
+    this.additionalConfiguration = additionalConfiguration;
+    this.compression = requireNonNull(compression,
+                                      "No compression provided");
+    this.sync = sync;
+    if (parallelism < 1)
+    {
+      throw new IllegalArgumentException("Parallelism should be at least 1");
+    }
+    this.parallelism = parallelism;
+    if (chunkRows < 0)
+    {
+      throw new IllegalArgumentException("Number of rows in a chunk should not be negative");
+    }
+    this.chunkRows = chunkRows;
+  }
+
+  /**
+   * Executes the command for each table, and writes the manifest.
+   *
+   * @return Tables, in the order of the manifest
+   */
+  public List<Table> execute()
+    throws Exception
+  {
+    final Path manifestFile = outputOptions.getOutputFile()
+      .orElseThrow(() -> new SchemaCrawlerException("No output file provided"))
+      .toAbsolutePath();
+    final boolean isCompressed = OutputSink.isCompressed(manifestFile,
+                                                         compression);
+
+    String baseName = manifestFile.getFileName().toString();
+    if (isCompressed && baseName.toLowerCase(Locale.ENGLISH).endsWith(".gz"))
+    {
+      baseName = baseName.substring(0, baseName.length() - 3);
+    }
+    final int extensionIndex = baseName.lastIndexOf('.');
+    if (extensionIndex > 0)
+    {
+      baseName = baseName.substring(0, extensionIndex);
+    }
+    final String extension = outputOptions.getOutputFormatValue()
+                             + (isCompressed? ".gz": "");
+
+    final List<Table> tables = new ArrayList<>(catalog.getTables());
+    final List<Part> parts = new ArrayList<>();
+    if (dataSource != null)
+    {
+      try (final Connection connection = dataSource.getConnection();)
+      {
+        addParts(parts, tables, connection, manifestFile, baseName, extension);
+      }
+    }
+    else
+    {
+      addParts(parts, tables, null, manifestFile, baseName, extension);
+    }
+
+    // Largest parts first, and parts of unknown size last, in manifest
+    // order
+    final List<Part> schedule = new ArrayList<>(parts);
+    Collections.sort(schedule,
+                     Comparator
+                       .comparing((final Part part) -> part.estimatedRows)
+                       .reversed());
+    LOGGER.log(Level.INFO,
+               new StringFormat("Executing <%s> for %d tables in %d parts, with parallelism %d",
+                                command,
+                                tables.size(),
+                                parts.size(),
+                                parallelism));
+
+    if (!parts.isEmpty())
+    {
+      final AtomicInteger threadNumber = new AtomicInteger();
+      final ExecutorService executor = Executors
+        .newFixedThreadPool(Math.min(parallelism, parts.size()),
+                            runnable -> {
+                              final Thread thread = new Thread(runnable,
+                                                               "schemacrawler-table-"
+                                                                         + threadNumber
+                                                                           .incrementAndGet());
+                              thread.setDaemon(true);
+                              return thread;
+                            });
+      try
+      {
+        // Tasks are taken from the queue in the order they are
+        // submitted, so a thread that becomes free takes the largest
+        // part that is left
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (final Part part: schedule)
+        {
+          final Callable<Void> task = () -> {
+            final long start = System.nanoTime();
+            part.bytes = execute(part);
+            part.millis = (System.nanoTime() - start) / 1_000_000L;
+            return null;
+          };
+          futures.add(executor.submit(task));
+        }
+
+        for (int i = 0; i < futures.size(); i++)
+        {
+          try
+          {
+            futures.get(i).get();
+          }
+          catch (final ExecutionException e)
+          {
+            final Part part = schedule.get(i);
+            throw new SchemaCrawlerException(String
+              .format("Cannot execute <%s> for %s",
+                      command,
+                      part.chunk == null? "table " + part.table
+                        .getFullName(): part.chunk),
+                                             e.getCause());
+          }
+        }
+      }
+      finally
+      {
+        executor.shutdownNow();
+      }
+    }
+
+    try (final OutputSink manifest = OutputSink
+      .open(manifestFile, outputOptions.getOutputCharset(), compression, sync);)
+    {
+      final Writer writer = manifest.getWriter();
+      writer.write(String
+        .format("file\ttable\testimated rows\tbytes\tms\tchunk\tkey range%n"));
+      for (final Part part: parts)
+      {
+        writer.write(String.format("%s\t%s\t%d\t%d\t%d\t%d/%d\t%s%n",
+                                   part.file.getFileName(),
+                                   part.table.getFullName(),
+                                   part.estimatedRows,
+                                   part.bytes,
+                                   part.millis,
+                                   part.chunk == null? 1: part.chunk
+                                     .getNumber(),
+                                   part.chunkCount,
+                                   part.chunk == null? "": String
+                                     .format("%s %d to %d",
+                                             part.chunk.getKeyColumn()
+                                               .getName(),
+                                             part.chunk.getFrom(),
+                                             part.chunk.getTo())));
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * Adds parts for tables, splitting the data in large tables into
+   * chunks.
+   */
+  private void addParts(final List<Part> parts,
+                        final List<Table> tables,
+                        final Connection connection,
+                        final Path manifestFile,
+                        final String baseName,
+                        final String extension)
+    throws Exception
+  {
+    final Map<Table, Long> estimates = TableSizeEstimates
+      .estimate(tables, connection);
+    // Only data is dumped in chunks, since other output for a table
+    // cannot be split
+    final boolean isChunked = chunkRows > 0 && connection != null
+                              && (command.equals(Operation.dump.name())
+                                  || command
+                                    .equals(Operation.quickdump.name()));
+    for (int i = 0; i < tables.size(); i++)
+    {
+      final Table table = tables.get(i);
+      final long estimatedRows = estimates.get(table);
+      final List<TableChunk> chunks = isChunked? TableChunk
+        .chunk(table, estimatedRows, chunkRows, connection, identifiers): Collections
+          .emptyList();
+      if (chunks.isEmpty())
+      {
+        final String fileName = String.format("%s-%05d.%s",
+                                              baseName,
+                                              i + 1,
+                                              extension);
+        parts.add(new Part(table,
+                           null,
+                           1,
+                           estimatedRows,
+                           manifestFile.resolveSibling(fileName)));
+        continue;
+      }
+      for (final TableChunk chunk: chunks)
+      {
+        final String fileName = String.format("%s-%05d-%03d.%s",
+                                              baseName,
+                                              i + 1,
+                                              chunk.getNumber(),
+                                              extension);
+        parts.add(new Part(table,
+                           chunk,
+                           chunks.size(),
+                           chunk.getEstimatedRows(),
+                           manifestFile.resolveSibling(fileName)));
+      }
+    }
+  }
+
+  /**
+   * Executes the command for a table, or a chunk of a table.
+   *
+   * @return Number of bytes of output
+   */
+  private long execute(final Part part)
+    throws Exception
+  {
+    LOGGER.log(Level.FINE,
+               new StringFormat("Executing <%s> for %s",
+                                command,
+                                part.chunk == null? part.table.getFullName()
+                                                  : part.chunk));
+
+    // Chunks are dumped with a query that selects a range of keys
+    final String partCommand;
+    final Config partConfiguration = new Config();
+    if (additionalConfiguration != null)
+    {
+      partConfiguration.putAll(additionalConfiguration);
+    }
+    if (part.chunk != null)
+    {
+      partCommand = command + "_chunk";
+      final String columns = command.equals(Operation.dump.name())? "${columns}"
+                                                                 : "*";
+      partConfiguration.put(partCommand,
+                            String.format("SELECT %s FROM ${table} WHERE %s ORDER BY %s",
+                                          columns,
+                                          part.chunk.getCondition(identifiers),
+                                          identifiers.quoteName(part.chunk
+                                            .getKeyColumn())));
+    }
+    else
+    {
+      partCommand = command;
+    }
+
+    final Connection connection = dataSource == null? null: LazyConnections
+      .lazy(dataSource);
+    final OutputSink outputSink = OutputSink
+      .open(part.file, outputOptions.getOutputCharset(), compression, sync);
+    try
+    {
+      final SchemaCrawlerCommand scCommand = new CommandDaisyChain(partCommand);
+      scCommand.setSchemaCrawlerOptions(schemaCrawlerOptions);
+      scCommand.setOutputOptions(OutputOptionsBuilder.builder(outputOptions)
+        .withOutputWriter(outputSink.getWriter()).toOptions());
+      scCommand.setAdditionalConfiguration(partConfiguration);
+      scCommand.setIdentifiers(identifiers);
+
+      scCommand.setConnection(connection);
+      scCommand
+        .setCatalog(new PartitionCatalog(catalog,
+                                         Collections.singletonList(part.table)));
+
+      scCommand.execute();
+    }
+    finally
+    {
+      outputSink.close();
+      if (connection != null)
+      {
+        connection.close();
+      }
+    }
+    return outputSink.getBytesOut();
+  }
+
+}
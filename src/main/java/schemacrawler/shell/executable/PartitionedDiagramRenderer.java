@@ -0,0 +1,300 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.executable;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.SchemaCrawlerException;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.shell.catalog.CatalogPartition;
+import schemacrawler.shell.catalog.ForeignKeyGraph;
+import schemacrawler.shell.catalog.PartitionCatalog;
+import schemacrawler.shell.jdbc.LazyConnections;
+import schemacrawler.tools.executable.CommandDaisyChain;
+import schemacrawler.tools.executable.SchemaCrawlerCommand;
+import schemacrawler.tools.options.OutputOptions;
+import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.utility.Identifiers;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Renders a diagram of a large catalog in parts, since diagram layout
+ * time grows faster than the number of tables. Tables are partitioned
+ * into groups connected by foreign keys, each part is rendered to its
+ * own file on a bounded number of threads, and an HTML index page links
+ * to the parts. Foreign keys between tables in different parts, which
+ * are only there when a large group is split, are drawn to tables that
+ * are not shown in detail.
+ */
+public final class PartitionedDiagramRenderer
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(PartitionedDiagramRenderer.class.getName());
+
+  private static String escapeHtml(final String text)
+  {
+    return text.replace("&", "&amp;").replace("<", "&lt;")
+      .replace(">", "&gt;").replace("\"", "&quot;");
+  }
+
+  private final String command;
+  private final DataSource dataSource;
+  private final Catalog catalog;
+  private final SchemaCrawlerOptions schemaCrawlerOptions;
+  private final Identifiers identifiers;
+  private final OutputOptions outputOptions;
+  private final Config additionalConfiguration;
+  private final int maxTables;
+  private final int parallelism;
+
+  /**
+   * @param outputOptions
+   *        Output options with the diagram format, and the file for the
+   *        index page
+   * @param dataSource
+   *        Data-source to borrow connections from, or null if there is
+   *        no database connection
+   * @param maxTables
+   *        Number of tables above which a group of connected tables is
+   *        split
+   */
+  public PartitionedDiagramRenderer(final String command,
+                                    final DataSource dataSource,
+                                    final Catalog catalog,
+                                    final SchemaCrawlerOptions schemaCrawlerOptions,
+                                    final Identifiers identifiers,
+                                    final OutputOptions outputOptions,
+                                    final Config additionalConfiguration,
+                                    final int maxTables,
+                                    final int parallelism)
+  {
+    this.command = requireNonNull(command, "No command provided");
+    this.dataSource = dataSource;
+    this.catalog = requireNonNull(catalog, "No catalog provided");
+    this.schemaCrawlerOptions = requireNonNull(schemaCrawlerOptions,
+                                               "No SchemaCrawler options provided");
+    this.identifiers = identifiers;
+    this.outputOptions = requireNonNull(outputOptions,
+                                        "No output options provided");
+    this.additionalConfiguration = additionalConfiguration;
+    if (maxTables < 1)
+    {
+      throw new IllegalArgumentException("Maximum number of tables in a part should be at least 1");
+    }
+    this.maxTables = maxTables;
+    if (parallelism < 1)
+    {
+      throw new IllegalArgumentException("Parallelism should be at least 1");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Renders the parts, and writes the index page.
+   *
+   * @return Parts that were rendered
+   */
+  public List<CatalogPartition> execute()
+    throws Exception
+  {
+    final Path indexFile = outputOptions.getOutputFile()
+      .orElseThrow(() -> new SchemaCrawlerException("No output file provided"))
+      .toAbsolutePath();
+    final String outputFormat = outputOptions.getOutputFormatValue();
+
+    // Build the graph from the catalog that is shown, which may be
+    // filtered
+    final List<CatalogPartition> partitions = CatalogPartition
+      .partition(ForeignKeyGraph.build(catalog), maxTables);
+    LOGGER.log(Level.INFO,
+               new StringFormat("Rendering %d tables in %d parts, with parallelism %d",
+                                catalog.getTables().size(),
+                                partitions.size(),
+                                parallelism));
+    if (partitions.isEmpty())
+    {
+      writeIndex(indexFile, partitions, new ArrayList<>());
+      return partitions;
+    }
+
+    final String indexFileName = indexFile.getFileName().toString();
+    final int extensionIndex = indexFileName.lastIndexOf('.');
+    final String baseName = extensionIndex > 0? indexFileName
+      .substring(0, extensionIndex): indexFileName;
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executor = Executors
+      .newFixedThreadPool(Math.min(parallelism, partitions.size()),
+                          runnable -> {
+                            final Thread thread = new Thread(runnable,
+                                                             "schemacrawler-diagram-"
+                                                                       + threadNumber
+                                                                         .incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                          });
+    try
+    {
+      final List<Path> partFiles = new ArrayList<>();
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (final CatalogPartition partition: partitions)
+      {
+        final Path partFile = indexFile
+          .resolveSibling(String.format("%s-%03d.%s",
+                                        baseName,
+                                        partition.getNumber(),
+                                        outputFormat));
+        partFiles.add(partFile);
+
+        final OutputOptions partOutputOptions = OutputOptionsBuilder
+          .builder(outputOptions).withOutputFile(partFile).toOptions();
+        final Callable<Void> task = () -> {
+          LOGGER.log(Level.FINE,
+                     new StringFormat("Rendering diagram %s", partition));
+          render(new PartitionCatalog(catalog, partition), partOutputOptions);
+          return null;
+        };
+        futures.add(executor.submit(task));
+      }
+
+      for (int i = 0; i < futures.size(); i++)
+      {
+        try
+        {
+          futures.get(i).get();
+        }
+        catch (final ExecutionException e)
+        {
+          throw new SchemaCrawlerException(String
+            .format("Cannot render diagram %s", partitions.get(i)),
+                                           e.getCause());
+        }
+      }
+
+      writeIndex(indexFile, partitions, partFiles);
+      return partitions;
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private void render(final Catalog partitionCatalog,
+                      final OutputOptions partOutputOptions)
+    throws Exception
+  {
+    final Connection connection = dataSource == null? null: LazyConnections
+      .lazy(dataSource);
+    try
+    {
+      final SchemaCrawlerCommand scCommand = new CommandDaisyChain(command);
+      scCommand.setSchemaCrawlerOptions(schemaCrawlerOptions);
+      scCommand.setOutputOptions(partOutputOptions);
+      scCommand.setAdditionalConfiguration(additionalConfiguration);
+      scCommand.setIdentifiers(identifiers);
+
+      scCommand.setConnection(connection);
+      scCommand.setCatalog(partitionCatalog);
+
+      scCommand.execute();
+    }
+    finally
+    {
+      if (connection != null)
+      {
+        connection.close();
+      }
+    }
+  }
+
+  private void writeIndex(final Path indexFile,
+                          final List<CatalogPartition> partitions,
+                          final List<Path> partFiles)
+    throws IOException
+  {
+    try (final Writer writer = Files
+      .newBufferedWriter(indexFile, outputOptions.getOutputCharset());)
+    {
+      final String title = escapeHtml(String
+        .format("SchemaCrawler diagram in %d parts", partitions.size()));
+      writer.write(String
+        .format("<!DOCTYPE html>%n<html>%n<head>%n<meta charset=\"%s\">%n<title>%s</title>%n</head>%n<body>%n",
+                outputOptions.getOutputCharset().name(),
+                title));
+      writer.write(String.format("<h1>%s</h1>%n<ol>%n", title));
+      for (int i = 0; i < partitions.size(); i++)
+      {
+        final CatalogPartition partition = partitions.get(i);
+        final String partFileName = partFiles.get(i).getFileName()
+          .toString();
+        writer.write(String.format("<li><a href=\"%s\">%s</a> - %d tables%n",
+                                   escapeHtml(partFileName),
+                                   escapeHtml(partition.getDescription()),
+                                   partition.getTables().size()));
+        final StringBuilder tableNames = new StringBuilder();
+        for (final Table table: partition.getTables())
+        {
+          if (tableNames.length() > 0)
+          {
+            tableNames.append(", ");
+          }
+          tableNames.append(table.getFullName());
+        }
+        writer.write(String.format("<br><small>%s</small></li>%n",
+                                   escapeHtml(tableNames.toString())));
+      }
+      writer.write(String.format("</ol>%n</body>%n</html>%n"));
+    }
+  }
+
+}
@@ -0,0 +1,380 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.executable;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import sf.util.ObjectToString;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * On-disk cache of rendered output files. Output is keyed by a hash of
+ * everything that affects the output - either the catalog fingerprint
+ * and options, or for diagram layouts, the generated DOT graph.
+ * A cache hit copies the cached output to the output file, so that
+ * later changes to the output file do not change the cached output.
+ * The size of the cache is bounded, and the least recently used output
+ * is evicted first.
+ */
+public final class RenderCache
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(RenderCache.class.getName());
+
+  private static final String OUTPUT_EXTENSION = ".output";
+
+  /**
+   * Computes the cache key for rendered output. Object identity hash
+   * codes in the string representation of the options are ignored, so
+   * that equivalent options produce the same key.
+   *
+   * @param catalogFingerprint
+   *        Fingerprint of the loaded catalog
+   * @param outputDescription
+   *        Output format, encoding, compression, and any other output
+   *        settings
+   * @return Hexadecimal SHA-256 hash
+   */
+  public static String cacheKey(final String catalogFingerprint,
+                                final SchemaCrawlerOptions schemaCrawlerOptions,
+                                final Config additionalConfiguration,
+                                final String command,
+                                final String outputDescription)
+  {
+    final StringBuilder buffer = new StringBuilder(4096);
+    buffer.append(catalogFingerprint).append('\n');
+    buffer.append(command).append('\n');
+    buffer.append(outputDescription).append('\n');
+    if (additionalConfiguration != null)
+    {
+      for (final Map.Entry<String, String> entry: new TreeMap<>(additionalConfiguration)
+        .entrySet())
+      {
+        buffer.append(entry.getKey()).append('=').append(entry.getValue())
+          .append('\n');
+      }
+    }
+    buffer.append(ObjectToString.toString(schemaCrawlerOptions));
+    final String fingerprint = buffer.toString()
+      .replaceAll("@[0-9a-fA-F]+", "").replaceAll("\\r?\\n", "\n");
+    return sha256(fingerprint.getBytes(UTF_8));
+  }
+
+  /**
+   * Computes the cache key for a diagram laid out by Graphviz.
+   *
+   * @param dot
+   *        Generated DOT graph
+   * @param outputFormat
+   *        Diagram output format
+   * @param graphvizOpts
+   *        Graphviz command-line options
+   * @return Hexadecimal SHA-256 hash
+   */
+  public static String layoutCacheKey(final byte[] dot,
+                                      final String outputFormat,
+                                      final List<String> graphvizOpts)
+  {
+    final StringBuilder buffer = new StringBuilder(1024);
+    buffer.append(outputFormat).append('\n');
+    buffer.append(graphvizOpts).append('\n');
+    final byte[] header = buffer.toString().getBytes(UTF_8);
+
+    final byte[] layout = new byte[header.length + dot.length];
+    System.arraycopy(header, 0, layout, 0, header.length);
+    System.arraycopy(dot, 0, layout, header.length, dot.length);
+    return sha256(layout);
+  }
+
+  private static String sha256(final byte[] bytes)
+  {
+    try
+    {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final byte[] hash = digest.digest(bytes);
+      final StringBuilder key = new StringBuilder(hash.length * 2);
+      for (final byte b: hash)
+      {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException("Cannot compute render cache key", e);
+    }
+  }
+
+  private final Path directory;
+  private final long maxSize;
+
+  /**
+   * @param directory
+   *        Cache directory, created if it does not exist
+   * @param maxSize
+   *        Maximum size of the cache, in bytes
+   */
+  public RenderCache(final Path directory, final long maxSize)
+  {
+    this.directory = requireNonNull(directory, "No cache directory provided")
+      .toAbsolutePath().normalize();
+    this.maxSize = maxSize;
+  }
+
+  public Path getDirectory()
+  {
+    return directory;
+  }
+
+  public long getMaxSize()
+  {
+    return maxSize;
+  }
+
+  /**
+   * Copies cached output to the output file, replacing the output file.
+   *
+   * @param key
+   *        Cache key
+   * @param outputFile
+   *        Output file
+   * @return Whether there was cached output for the key
+   */
+  public boolean restore(final String key, final Path outputFile)
+  {
+    requireNonNull(key, "No cache key provided");
+    requireNonNull(outputFile, "No output file provided");
+
+    final Path cachedFile = cachedFile(key);
+    if (!Files.isRegularFile(cachedFile))
+    {
+      LOGGER.log(Level.INFO, new StringFormat("Render cache miss <%s>", key));
+      return false;
+    }
+
+    final Path absoluteOutputFile = outputFile.toAbsolutePath();
+    try
+    {
+      final Path tempOutputFile = absoluteOutputFile
+        .resolveSibling(absoluteOutputFile.getFileName() + "." + key
+                        + ".tmp");
+      try
+      {
+        Files.copy(cachedFile,
+                   tempOutputFile,
+                   StandardCopyOption.REPLACE_EXISTING);
+        moveIntoPlace(tempOutputFile, absoluteOutputFile);
+      }
+      finally
+      {
+        Files.deleteIfExists(tempOutputFile);
+      }
+
+      // Mark as recently used
+      Files.setLastModifiedTime(cachedFile,
+                                FileTime.fromMillis(System.currentTimeMillis()));
+      LOGGER.log(Level.INFO, new StringFormat("Render cache hit <%s>", key));
+      return true;
+    }
+    catch (final IOException e)
+    {
+      // For example, the output was evicted while restoring it
+      LOGGER.log(Level.WARNING,
+                 new StringFormat("Cannot restore cached output <%s>", key),
+                 e);
+      return false;
+    }
+  }
+
+  /**
+   * Copies rendered output into the cache, and evicts the least
+   * recently used output if the cache is larger than its maximum size.
+   *
+   * @param key
+   *        Cache key
+   * @param outputFile
+   *        Rendered output file
+   */
+  public void save(final String key, final Path outputFile)
+  {
+    requireNonNull(key, "No cache key provided");
+    requireNonNull(outputFile, "No output file provided");
+
+    try
+    {
+      if (Files.size(outputFile) > maxSize)
+      {
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Output is too large to cache <%s>",
+                                    outputFile));
+        return;
+      }
+
+      Files.createDirectories(directory);
+      final Path tempCachedFile = Files.createTempFile(directory, key, ".tmp");
+      try
+      {
+        Files.copy(outputFile,
+                   tempCachedFile,
+                   StandardCopyOption.REPLACE_EXISTING);
+        moveIntoPlace(tempCachedFile, cachedFile(key));
+      }
+      finally
+      {
+        Files.deleteIfExists(tempCachedFile);
+      }
+      LOGGER.log(Level.INFO, new StringFormat("Cached output <%s>", key));
+
+      evict();
+    }
+    catch (final IOException e)
+    {
+      // Output that cannot be cached is not an error for the command
+      LOGGER.log(Level.WARNING,
+                 new StringFormat("Cannot cache output <%s>", key),
+                 e);
+    }
+  }
+
+  /**
+   * Total size of the cached output, in bytes.
+   */
+  public long size()
+  {
+    long size = 0;
+    for (final Path cachedFile: list())
+    {
+      try
+      {
+        size = size + Files.size(cachedFile);
+      }
+      catch (final IOException e)
+      {
+        LOGGER.log(Level.FINE, e.getMessage(), e);
+      }
+    }
+    return size;
+  }
+
+  private Path cachedFile(final String key)
+  {
+    return directory.resolve(key + OUTPUT_EXTENSION);
+  }
+
+  private void evict()
+    throws IOException
+  {
+    final List<Path> cachedFiles = list();
+    final List<FileTime> lastUsed = new ArrayList<>();
+    long size = 0;
+    for (final Path cachedFile: cachedFiles)
+    {
+      lastUsed.add(Files.getLastModifiedTime(cachedFile));
+      size = size + Files.size(cachedFile);
+    }
+
+    while (size > maxSize && !cachedFiles.isEmpty())
+    {
+      int leastRecentlyUsed = 0;
+      for (int i = 1; i < cachedFiles.size(); i++)
+      {
+        if (lastUsed.get(i).compareTo(lastUsed.get(leastRecentlyUsed)) < 0)
+        {
+          leastRecentlyUsed = i;
+        }
+      }
+      final Path cachedFile = cachedFiles.remove(leastRecentlyUsed);
+      lastUsed.remove(leastRecentlyUsed);
+      size = size - Files.size(cachedFile);
+      Files.deleteIfExists(cachedFile);
+      LOGGER.log(Level.INFO,
+                 new StringFormat("Evicted cached output <%s>", cachedFile));
+    }
+  }
+
+  private List<Path> list()
+  {
+    final List<Path> cachedFiles = new ArrayList<>();
+    if (!Files.isDirectory(directory))
+    {
+      return cachedFiles;
+    }
+    try (final DirectoryStream<Path> outputFiles = Files
+      .newDirectoryStream(directory, "*" + OUTPUT_EXTENSION))
+    {
+      for (final Path outputFile: outputFiles)
+      {
+        cachedFiles.add(outputFile);
+      }
+    }
+    catch (final IOException e)
+    {
+      throw new RuntimeException("Cannot list render cache", e);
+    }
+    return cachedFiles;
+  }
+
+  private void moveIntoPlace(final Path source, final Path target)
+    throws IOException
+  {
+    try
+    {
+      Files.move(source,
+                 target,
+                 StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (final AtomicMoveNotSupportedException e)
+    {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+}
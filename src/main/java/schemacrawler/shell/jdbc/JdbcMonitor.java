@@ -0,0 +1,67 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Receives notifications of JDBC activity on monitored connections, and
+ * can stop further activity.
+ */
+public interface JdbcMonitor
+{
+
+  /**
+   * Called before every call on a monitored JDBC object, other than
+   * close and cancel.
+   *
+   * @throws SQLException
+   *         To stop the call, for example, if the work was cancelled
+   */
+  void checkCancelled()
+    throws SQLException;
+
+  /**
+   * Called when a metadata result set is requested, or a query is run.
+   *
+   * @param name
+   *        Name of the DatabaseMetaData method, or the Statement
+   *        method
+   */
+  void retrieving(String name);
+
+  void rowRetrieved();
+
+  void statementClosed(Statement statement);
+
+  void statementOpened(Statement statement);
+
+}
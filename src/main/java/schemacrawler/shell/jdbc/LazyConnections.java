@@ -0,0 +1,102 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+/**
+ * Connections that are only borrowed from a data-source the first time
+ * they are used, so that callers that may or may not need a connection
+ * do not hold one from a pool for nothing.
+ */
+public final class LazyConnections
+{
+
+  public static Connection lazy(final DataSource dataSource)
+  {
+    requireNonNull(dataSource, "No data-source provided");
+    final Connection[] borrowed = new Connection[1];
+    return (Connection) Proxy
+      .newProxyInstance(LazyConnections.class.getClassLoader(),
+                        new Class<?>[] { Connection.class },
+                        (proxy, method, args) -> {
+                          final String methodName = method.getName();
+                          synchronized (borrowed)
+                          {
+                            if (method.getDeclaringClass() == Object.class)
+                            {
+                              if (methodName.equals("equals"))
+                              {
+                                return proxy == args[0];
+                              }
+                              if (methodName.equals("hashCode"))
+                              {
+                                return System.identityHashCode(proxy);
+                              }
+                              return "LazyConnection@"
+                                     + Integer.toHexString(System
+                                       .identityHashCode(proxy));
+                            }
+                            if (borrowed[0] == null)
+                            {
+                              if (methodName.equals("close"))
+                              {
+                                return null;
+                              }
+                              if (methodName.equals("isClosed"))
+                              {
+                                return false;
+                              }
+                              borrowed[0] = dataSource.getConnection();
+                            }
+                            try
+                            {
+                              return method.invoke(borrowed[0], args);
+                            }
+                            catch (final InvocationTargetException e)
+                            {
+                              throw e.getCause();
+                            }
+                          }
+                        });
+  }
+
+  private LazyConnections()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps JDBC objects in proxies that report activity to a monitor. All
+ * connections, metadata, statements and result sets obtained from a
+ * monitored object are also monitored.
+ */
+public final class MonitoredJdbc
+{
+
+  private static final class MonitoringHandler
+    implements InvocationHandler
+  {
+
+    private final Object target;
+    private final JdbcMonitor monitor;
+    private final Statement statement;
+
+    MonitoringHandler(final Object target,
+                      final JdbcMonitor monitor,
+                      final Statement statement)
+    {
+      this.target = target;
+      this.monitor = monitor;
+      this.statement = statement;
+    }
+
+    @Override
+    public Object invoke(final Object proxy,
+                         final Method method,
+                         final Object[] args)
+      throws Throwable
+    {
+      final String methodName = method.getName();
+      if (method.getDeclaringClass() == Object.class)
+      {
+        return invokeTarget(method, args);
+      }
+
+      final boolean isClose = methodName.equals("close");
+      if (!isClose && !methodName.equals("cancel")
+          && !methodName.equals("isClosed"))
+      {
+        monitor.checkCancelled();
+      }
+
+      if (target instanceof DatabaseMetaData
+          && ResultSet.class.isAssignableFrom(method.getReturnType()))
+      {
+        monitor.retrieving(methodName);
+        final ResultSet resultSet = (ResultSet) invokeTarget(method, args);
+        return wrapResultSet(resultSet, metadataStatement(resultSet));
+      }
+      if (target instanceof Statement
+          && (methodName.startsWith("execute")
+              || methodName.equals("getResultSet")))
+      {
+        if (methodName.startsWith("execute"))
+        {
+          monitor.retrieving(methodName);
+        }
+        final Object result = invokeTarget(method, args);
+        if (result instanceof ResultSet)
+        {
+          return wrapResultSet((ResultSet) result, null);
+        }
+        return result;
+      }
+
+      final Object result = invokeTarget(method, args);
+
+      if (isClose && target instanceof Statement)
+      {
+        monitor.statementClosed((Statement) target);
+      }
+      else if (isClose && target instanceof ResultSet && statement != null)
+      {
+        monitor.statementClosed(statement);
+      }
+      else if (target instanceof ResultSet && methodName.equals("next")
+               && Boolean.TRUE.equals(result))
+      {
+        monitor.rowRetrieved();
+      }
+      else if (result instanceof Statement)
+      {
+        monitor.statementOpened((Statement) result);
+        return wrap(result, method.getReturnType(), monitor, null);
+      }
+      else if (result instanceof DatabaseMetaData)
+      {
+        return wrap(result, DatabaseMetaData.class, monitor, null);
+      }
+      return result;
+    }
+
+    private Object invokeTarget(final Method method, final Object[] args)
+      throws Throwable
+    {
+      try
+      {
+        return method.invoke(target, args);
+      }
+      catch (final InvocationTargetException e)
+      {
+        throw e.getCause();
+      }
+    }
+
+    /**
+     * Metadata result sets may be backed by a statement, which can be
+     * cancelled while the result set is open.
+     */
+    private Statement metadataStatement(final ResultSet resultSet)
+    {
+      if (resultSet == null)
+      {
+        return null;
+      }
+      try
+      {
+        final Statement metadataStatement = resultSet.getStatement();
+        if (metadataStatement != null)
+        {
+          monitor.statementOpened(metadataStatement);
+        }
+        return metadataStatement;
+      }
+      catch (final Exception e)
+      {
+        // Not all drivers expose the statement
+        return null;
+      }
+    }
+
+    private Object wrapResultSet(final ResultSet resultSet,
+                                 final Statement resultSetStatement)
+    {
+      if (resultSet == null)
+      {
+        return null;
+      }
+      return wrap(resultSet, ResultSet.class, monitor, resultSetStatement);
+    }
+
+  }
+
+  public static Connection monitor(final Connection connection,
+                                   final JdbcMonitor monitor)
+  {
+    return (Connection) wrap(requireNonNull(connection,
+                                            "No connection provided"),
+                             Connection.class,
+                             requireNonNull(monitor, "No monitor provided"),
+                             null);
+  }
+
+  public static DataSource monitor(final DataSource dataSource,
+                                   final JdbcMonitor monitor)
+  {
+    requireNonNull(dataSource, "No data-source provided");
+    requireNonNull(monitor, "No monitor provided");
+    return (DataSource) Proxy
+      .newProxyInstance(MonitoredJdbc.class.getClassLoader(),
+                        new Class<?>[] { DataSource.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(dataSource, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Connection)
+                          {
+                            final Connection connection = (Connection) result;
+                            try
+                            {
+                              monitor.checkCancelled();
+                            }
+                            catch (final SQLException | RuntimeException e)
+                            {
+                              // Return the connection to the pool, since
+                              // the caller never gets it
+                              connection.close();
+                              throw e;
+                            }
+                            return monitor(connection, monitor);
+                          }
+                          return result;
+                        });
+  }
+
+  private static Object wrap(final Object target,
+                             final Class<?> type,
+                             final JdbcMonitor monitor,
+                             final Statement statement)
+  {
+    return Proxy.newProxyInstance(MonitoredJdbc.class.getClassLoader(),
+                                  new Class<?>[] { type },
+                                  new MonitoringHandler(target,
+                                                        monitor,
+                                                        statement));
+  }
+
+  private MonitoredJdbc()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,312 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps connections so that queries for the number of rows in a table,
+ * which SchemaCrawler commands run one table after another, are answered
+ * from row counts that have already been taken. Other queries, and
+ * counts of tables that were not counted, go to the database.
+ */
+public final class RowCountJdbc
+{
+
+  private static final class RowCountStatementHandler
+    implements InvocationHandler
+  {
+
+    private final Statement statement;
+    private final Map<String, Long> rowCounts;
+    private ResultSet rowCountResult;
+
+    RowCountStatementHandler(final Statement statement,
+                             final Map<String, Long> rowCounts)
+    {
+      this.statement = statement;
+      this.rowCounts = rowCounts;
+    }
+
+    @Override
+    public Object invoke(final Object proxy,
+                         final Method method,
+                         final Object[] args)
+      throws Throwable
+    {
+      final String methodName = method.getName();
+      final boolean isQuery = args != null && args.length == 1
+                              && args[0] instanceof String;
+      if (isQuery && methodName.equals("execute"))
+      {
+        rowCountResult = rowCountResult((String) args[0]);
+        if (rowCountResult != null)
+        {
+          return true;
+        }
+      }
+      else if (isQuery && methodName.equals("executeQuery"))
+      {
+        rowCountResult = rowCountResult((String) args[0]);
+        if (rowCountResult != null)
+        {
+          return rowCountResult;
+        }
+      }
+      else if (rowCountResult != null)
+      {
+        if (methodName.equals("getResultSet"))
+        {
+          return rowCountResult;
+        }
+        if (methodName.equals("getUpdateCount"))
+        {
+          return -1;
+        }
+        if (methodName.equals("getMoreResults"))
+        {
+          rowCountResult = null;
+          return false;
+        }
+      }
+
+      try
+      {
+        return method.invoke(statement, args);
+      }
+      catch (final InvocationTargetException e)
+      {
+        throw e.getCause();
+      }
+    }
+
+    private ResultSet rowCountResult(final String sql)
+      throws SQLException
+    {
+      final Matcher matcher = COUNT_QUERY.matcher(sql);
+      if (!matcher.matches())
+      {
+        return null;
+      }
+      final Long rowCount = rowCounts.get(tableKey(matcher.group(1)));
+      if (rowCount == null)
+      {
+        return null;
+      }
+
+      return rowCountResultSet(rowCount);
+    }
+
+  }
+
+  private static final Pattern COUNT_QUERY = Pattern
+    .compile("\\s*SELECT\\s+COUNT\\(\\*\\)\\s+FROM\\s+(.+?)\\s*;?\\s*",
+             Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  public static Connection answerRowCounts(final Connection connection,
+                                           final Map<String, Long> rowCounts)
+  {
+    requireNonNull(connection, "No connection provided");
+    requireNonNull(rowCounts, "No row counts provided");
+    return (Connection) Proxy
+      .newProxyInstance(RowCountJdbc.class.getClassLoader(),
+                        new Class<?>[] { Connection.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(connection, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Statement
+                              && method.getReturnType() == Statement.class)
+                          {
+                            return Proxy
+                              .newProxyInstance(RowCountJdbc.class
+                                .getClassLoader(),
+                                                new Class<?>[] { Statement.class },
+                                                new RowCountStatementHandler((Statement) result,
+                                                                             rowCounts));
+                          }
+                          return result;
+                        });
+  }
+
+  /**
+   * Wraps a data-source, so that all connections from it answer
+   * queries for row counts.
+   *
+   * @param rowCounts
+   *        Row counts, by table key
+   */
+  public static DataSource answerRowCounts(final DataSource dataSource,
+                                           final Map<String, Long> rowCounts)
+  {
+    requireNonNull(dataSource, "No data-source provided");
+    requireNonNull(rowCounts, "No row counts provided");
+    if (rowCounts.isEmpty())
+    {
+      return dataSource;
+    }
+    return (DataSource) Proxy
+      .newProxyInstance(RowCountJdbc.class.getClassLoader(),
+                        new Class<?>[] { DataSource.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(dataSource, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Connection)
+                          {
+                            return answerRowCounts((Connection) result,
+                                                   rowCounts);
+                          }
+                          return result;
+                        });
+  }
+
+  /**
+   * Result set with a single row, that has the row count in its only
+   * column.
+   */
+  private static ResultSet rowCountResultSet(final long rowCount)
+  {
+    final ResultSetMetaData metaData = (ResultSetMetaData) Proxy
+      .newProxyInstance(RowCountJdbc.class.getClassLoader(),
+                        new Class<?>[] { ResultSetMetaData.class },
+                        (proxy, method, args) -> {
+                          switch (method.getName())
+                          {
+                            case "getColumnCount":
+                              return 1;
+                            case "getColumnName":
+                            case "getColumnLabel":
+                              return "ROW_COUNT";
+                            case "getColumnType":
+                              return Types.BIGINT;
+                            case "getColumnTypeName":
+                              return "BIGINT";
+                            case "getColumnClassName":
+                              return Long.class.getName();
+                            default:
+                              throw new SQLFeatureNotSupportedException(method
+                                .getName());
+                          }
+                        });
+    final int[] row = new int[1];
+    final boolean[] closed = new boolean[1];
+    return (ResultSet) Proxy
+      .newProxyInstance(RowCountJdbc.class.getClassLoader(),
+                        new Class<?>[] { ResultSet.class },
+                        (proxy, method, args) -> {
+                          switch (method.getName())
+                          {
+                            case "next":
+                              row[0]++;
+                              return row[0] == 1;
+                            case "getLong":
+                              return rowCount;
+                            case "getInt":
+                              return (int) rowCount;
+                            case "getObject":
+                              return rowCount;
+                            case "getString":
+                              return String.valueOf(rowCount);
+                            case "wasNull":
+                              return false;
+                            case "getMetaData":
+                              return metaData;
+                            case "getWarnings":
+                              return null;
+                            case "clearWarnings":
+                              return null;
+                            case "close":
+                              closed[0] = true;
+                              return null;
+                            case "isClosed":
+                              return closed[0];
+                            case "hashCode":
+                              return System.identityHashCode(proxy);
+                            case "equals":
+                              return proxy == args[0];
+                            case "toString":
+                              return "RowCount@" + rowCount;
+                            default:
+                              throw new SQLFeatureNotSupportedException(method
+                                .getName());
+                          }
+                        });
+  }
+
+  /**
+   * Key for the row count of a table, which is its full name without
+   * identifier quotes, so that names match however they were quoted in
+   * a query.
+   *
+   * @param tableName
+   *        Full name of a table, quoted or not
+   * @return Table key
+   */
+  public static String tableKey(final String tableName)
+  {
+    return tableName.replaceAll("[\"`\\[\\]]", "");
+  }
+
+  private RowCountJdbc()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,362 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import schemacrawler.schemacrawler.DatabaseServerType;
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Wraps connections so that queries for table data return a sample of
+ * the rows in each table, rather than all of them. Where the database
+ * server supports table sampling, the query is rewritten to sample the
+ * table in the database, so that the rest of the rows are never read.
+ * Otherwise, rows are sampled as they are read. Either way, the same
+ * seed samples the same rows again, as long as the table data has not
+ * changed. Queries for row counts are not sampled.
+ */
+public final class SamplingJdbc
+{
+
+  private static final class SamplingStatementHandler
+    implements InvocationHandler
+  {
+
+    private final Statement statement;
+    private final String tableSample;
+    private final double samplePercent;
+    private final int seed;
+    private final int maxRows;
+    private long resultSeed;
+    private boolean isSampledResult;
+
+    SamplingStatementHandler(final Statement statement,
+                             final String tableSample,
+                             final double samplePercent,
+                             final int seed,
+                             final int maxRows)
+    {
+      this.statement = statement;
+      this.tableSample = tableSample;
+      this.samplePercent = samplePercent;
+      this.seed = seed;
+      this.maxRows = maxRows;
+    }
+
+    @Override
+    public Object invoke(final Object proxy,
+                         final Method method,
+                         final Object[] args)
+      throws Throwable
+    {
+      final String methodName = method.getName();
+      final boolean isQuery = args != null && args.length == 1
+                              && args[0] instanceof String;
+      if (isQuery && (methodName.equals("execute")
+                      || methodName.equals("executeQuery")))
+      {
+        isSampledResult = false;
+        final String sql = (String) args[0];
+        final Matcher matcher = DATA_QUERY.matcher(sql);
+        if (matcher.matches())
+        {
+          if (tableSample != null)
+          {
+            // The database samples the table, and limits the number of
+            // rows in the sample
+            if (maxRows > 0)
+            {
+              statement.setMaxRows(maxRows);
+            }
+            args[0] = matcher.group(1) + matcher.group(2) + " " + tableSample
+                      + nullToEmpty(matcher.group(3))
+                      + nullToEmpty(matcher.group(4));
+            LOGGER.log(Level.FINE,
+                       new StringFormat("Sampling table with <%s>", args[0]));
+          }
+          else
+          {
+            isSampledResult = true;
+            resultSeed = 31L * seed + sql.hashCode();
+          }
+        }
+      }
+      else if (methodName.equals("getMoreResults"))
+      {
+        isSampledResult = false;
+      }
+
+      final Object result;
+      try
+      {
+        result = method.invoke(statement, args);
+      }
+      catch (final InvocationTargetException e)
+      {
+        throw e.getCause();
+      }
+      if (isSampledResult && result instanceof ResultSet)
+      {
+        return sample((ResultSet) result);
+      }
+      return result;
+    }
+
+    private ResultSet sample(final ResultSet results)
+    {
+      final Random random = new Random(resultSeed);
+      final InvocationHandler handler = new InvocationHandler()
+      {
+
+        private int rowCount;
+
+        @Override
+        public Object invoke(final Object proxy,
+                             final Method method,
+                             final Object[] args)
+          throws Throwable
+        {
+          if (method.getName().equals("next") && args == null)
+          {
+            if (maxRows > 0 && rowCount >= maxRows)
+            {
+              return false;
+            }
+            while (results.next())
+            {
+              if (random.nextDouble() * 100 < samplePercent)
+              {
+                rowCount++;
+                return true;
+              }
+            }
+            return false;
+          }
+
+          try
+          {
+            return method.invoke(results, args);
+          }
+          catch (final InvocationTargetException e)
+          {
+            throw e.getCause();
+          }
+        }
+      };
+      return (ResultSet) Proxy
+        .newProxyInstance(SamplingJdbc.class.getClassLoader(),
+                          new Class<?>[] { ResultSet.class },
+                          handler);
+    }
+
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(SamplingJdbc.class.getName());
+
+  /**
+   * Queries for table data, optionally restricted or ordered, as
+   * SchemaCrawler runs for dump and quickdump, in four parts - the
+   * select list, the table name, and the where and order by clauses.
+   */
+  private static final Pattern DATA_QUERY = Pattern
+    .compile("\\s*(SELECT\\s+(?!COUNT\\s*\\(\\s*\\*\\s*\\)).+?\\s+FROM\\s+)((?:\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\]|[^\\s\"`\\[;])+)(\\s+WHERE\\s+.+?)?(\\s+ORDER\\s+BY\\s+.+?)?\\s*;?\\s*",
+             Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  /**
+   * Wraps a connection, so that queries for table data return a sample
+   * of the rows.
+   *
+   * @param databaseServerType
+   *        Database server type, from the server plugin, which decides
+   *        whether tables are sampled in the database
+   * @param samplePercent
+   *        Percentage of rows to sample, or 0 for all rows
+   * @param seed
+   *        Seed for sampling
+   * @param maxRows
+   *        Maximum number of rows in a sample, or 0 for no limit
+   */
+  public static Connection sample(final Connection connection,
+                                  final DatabaseServerType databaseServerType,
+                                  final double samplePercent,
+                                  final int seed,
+                                  final int maxRows)
+  {
+    requireNonNull(connection, "No connection provided");
+    if (samplePercent <= 0 || samplePercent >= 100)
+    {
+      return connection;
+    }
+    final String tableSample = tableSample(databaseServerType,
+                                           samplePercent,
+                                           seed);
+    return (Connection) Proxy
+      .newProxyInstance(SamplingJdbc.class.getClassLoader(),
+                        new Class<?>[] { Connection.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(connection, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Statement
+                              && method.getReturnType() == Statement.class)
+                          {
+                            return Proxy
+                              .newProxyInstance(SamplingJdbc.class
+                                .getClassLoader(),
+                                                new Class<?>[] { Statement.class },
+                                                new SamplingStatementHandler((Statement) result,
+                                                                             tableSample,
+                                                                             samplePercent,
+                                                                             seed,
+                                                                             maxRows));
+                          }
+                          return result;
+                        });
+  }
+
+  public static DataSource sample(final DataSource dataSource,
+                                  final DatabaseServerType databaseServerType,
+                                  final double samplePercent,
+                                  final int seed,
+                                  final int maxRows)
+  {
+    requireNonNull(dataSource, "No data-source provided");
+    if (samplePercent <= 0 || samplePercent >= 100)
+    {
+      return dataSource;
+    }
+    LOGGER.log(Level.INFO,
+               new StringFormat("Sampling %s%% of rows of data, with seed %d, %s",
+                                samplePercent,
+                                seed,
+                                isTableSampleSupported(databaseServerType)? "in the database"
+                                                                          : "as they are read"));
+    return (DataSource) Proxy
+      .newProxyInstance(SamplingJdbc.class.getClassLoader(),
+                        new Class<?>[] { DataSource.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(dataSource, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Connection)
+                          {
+                            return sample((Connection) result,
+                                          databaseServerType,
+                                          samplePercent,
+                                          seed,
+                                          maxRows);
+                          }
+                          return result;
+                        });
+  }
+
+  /**
+   * Whether tables are sampled in the database, for a database server
+   * type.
+   */
+  public static boolean isTableSampleSupported(final DatabaseServerType databaseServerType)
+  {
+    return tableSample(databaseServerType, 1, 0) != null;
+  }
+
+  private static String nullToEmpty(final String value)
+  {
+    return value == null? "": value;
+  }
+
+  /**
+   * Table sampling clause, which follows the table name, or null if
+   * the database server does not support repeatable table sampling.
+   */
+  private static String tableSample(final DatabaseServerType databaseServerType,
+                                    final double samplePercent,
+                                    final int seed)
+  {
+    if (databaseServerType == null)
+    {
+      return null;
+    }
+    final String percent = BigDecimal.valueOf(samplePercent)
+      .stripTrailingZeros().toPlainString();
+    switch (String.valueOf(databaseServerType.getDatabaseSystemIdentifier()))
+    {
+      case "postgresql":
+      case "db2":
+        return String.format("TABLESAMPLE BERNOULLI (%s) REPEATABLE (%d)",
+                             percent,
+                             seed);
+      case "sqlserver":
+        return String.format("TABLESAMPLE (%s PERCENT) REPEATABLE (%d)",
+                             percent,
+                             seed);
+      case "oracle":
+        return String.format("SAMPLE (%s) SEED (%d)", percent, seed);
+      default:
+        return null;
+    }
+  }
+
+  private SamplingJdbc()
+  {
+    // Prevent instantiation
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jdbc;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+import sf.util.SchemaCrawlerLogger;
+
+/**
+ * Wraps connections so that the statements they create stream rows
+ * from the database, with forward-only, read-only cursors that fetch a
+ * given number of rows at a time, rather than letting the driver hold
+ * the entire result set in memory. Some drivers, such as the PostgreSQL
+ * driver, only use the fetch size outside of auto-commit mode, so
+ * auto-commit is turned off while rows are streamed, and restored when
+ * the connection is closed.
+ */
+public final class StreamingJdbc
+{
+
+  private static final class StreamingHandler
+    implements InvocationHandler
+  {
+
+    private final Connection connection;
+    private final int fetchSize;
+    private final int maxRows;
+    private boolean restoreAutoCommit;
+
+    StreamingHandler(final Connection connection,
+                     final int fetchSize,
+                     final int maxRows)
+    {
+      this.connection = connection;
+      this.fetchSize = fetchSize;
+      this.maxRows = maxRows;
+    }
+
+    @Override
+    public Object invoke(final Object proxy,
+                         final Method method,
+                         final Object[] args)
+      throws Throwable
+    {
+      final String methodName = method.getName();
+      final int argCount = args == null? 0: args.length;
+      if (methodName.equals("createStatement") && argCount == 0)
+      {
+        return configure(connection
+          .createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                           ResultSet.CONCUR_READ_ONLY));
+      }
+      if (methodName.equals("prepareStatement") && argCount == 1)
+      {
+        return configure(connection
+          .prepareStatement((String) args[0],
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY));
+      }
+      if (methodName.equals("close"))
+      {
+        endStreaming();
+      }
+
+      try
+      {
+        return method.invoke(connection, args);
+      }
+      catch (final InvocationTargetException e)
+      {
+        throw e.getCause();
+      }
+    }
+
+    private Statement configure(final Statement statement)
+      throws SQLException
+    {
+      if (fetchSize > 0)
+      {
+        if (!restoreAutoCommit && connection.getAutoCommit())
+        {
+          connection.setAutoCommit(false);
+          restoreAutoCommit = true;
+        }
+        statement.setFetchSize(fetchSize);
+      }
+      if (maxRows > 0)
+      {
+        statement.setMaxRows(maxRows);
+      }
+      return statement;
+    }
+
+    /**
+     * Connections are returned to a pool when they are closed, so they
+     * are put back into auto-commit mode. Nothing has been written, so
+     * the streaming transaction is rolled back.
+     */
+    private void endStreaming()
+    {
+      if (!restoreAutoCommit)
+      {
+        return;
+      }
+      restoreAutoCommit = false;
+      try
+      {
+        if (!connection.isClosed())
+        {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+      }
+      catch (final SQLException e)
+      {
+        LOGGER.log(Level.WARNING, "Cannot restore auto-commit mode", e);
+      }
+    }
+
+  }
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(StreamingJdbc.class.getName());
+
+  public static Connection stream(final Connection connection,
+                                  final int fetchSize,
+                                  final int maxRows)
+  {
+    requireNonNull(connection, "No connection provided");
+    if (fetchSize <= 0 && maxRows <= 0)
+    {
+      return connection;
+    }
+    return (Connection) Proxy
+      .newProxyInstance(StreamingJdbc.class.getClassLoader(),
+                        new Class<?>[] { Connection.class },
+                        new StreamingHandler(connection, fetchSize, maxRows));
+  }
+
+  public static DataSource stream(final DataSource dataSource,
+                                  final int fetchSize,
+                                  final int maxRows)
+  {
+    requireNonNull(dataSource, "No data-source provided");
+    if (fetchSize <= 0 && maxRows <= 0)
+    {
+      return dataSource;
+    }
+    return (DataSource) Proxy
+      .newProxyInstance(StreamingJdbc.class.getClassLoader(),
+                        new Class<?>[] { DataSource.class },
+                        (proxy, method, args) -> {
+                          final Object result;
+                          try
+                          {
+                            result = method.invoke(dataSource, args);
+                          }
+                          catch (final InvocationTargetException e)
+                          {
+                            throw e.getCause();
+                          }
+                          if (result instanceof Connection)
+                          {
+                            return stream((Connection) result,
+                                          fetchSize,
+                                          maxRows);
+                          }
+                          return result;
+                        });
+  }
+
+  private StreamingJdbc()
+  {
+    // Prevent instantiation
+  }
+
+}
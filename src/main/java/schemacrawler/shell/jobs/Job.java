@@ -0,0 +1,298 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jobs;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A shell command running in the background.
+ */
+public final class Job
+{
+
+  public enum Status
+  {
+   queued,
+   running,
+   completed,
+   failed,
+   cancelled;
+  }
+
+  private final int id;
+  private final String description;
+  private final Supplier<String> progress;
+  private final Runnable cancellation;
+  private final Instant submitted;
+  private volatile Instant started;
+  private final CountDownLatch done;
+  private volatile Status status;
+  private volatile Instant finished;
+  private volatile String result;
+  private volatile Throwable failure;
+  private volatile Future<?> future;
+
+  Job(final int id,
+      final String description,
+      final Supplier<String> progress,
+      final Runnable cancellation)
+  {
+    this.id = id;
+    this.description = requireNonNull(description, "No description provided");
+    this.progress = progress;
+    this.cancellation = cancellation;
+    submitted = Instant.now();
+    done = new CountDownLatch(1);
+    status = Status.queued;
+  }
+
+  /**
+   * Waits for the job to finish.
+   *
+   * @return Result message of the job
+   * @throws InterruptedException
+   *         If the wait was interrupted, in which case the job keeps
+   *         running
+   * @throws ExecutionException
+   *         If the job failed
+   * @throws CancellationException
+   *         If the job was cancelled
+   */
+  public String await()
+    throws InterruptedException, ExecutionException
+  {
+    done.await();
+    switch (status)
+    {
+      case failed:
+        throw new ExecutionException(failure);
+      case cancelled:
+        throw new CancellationException(String.format("Job %d was cancelled",
+                                                      id));
+      default:
+        return result;
+    }
+  }
+
+  /**
+   * Cancels a running job, by first running its cancellation action,
+   * and then interrupting it. Anyone waiting for the job is released
+   * straight away, while the job winds down in the background.
+   *
+   * @return Whether the job was running
+   */
+  public boolean cancel()
+  {
+    synchronized (this)
+    {
+      if (!isRunning())
+      {
+        return false;
+      }
+      status = Status.cancelled;
+    }
+    if (cancellation != null)
+    {
+      cancellation.run();
+    }
+    if (future != null)
+    {
+      future.cancel(true);
+    }
+    finish();
+    return true;
+  }
+
+  public String getDescription()
+  {
+    return description;
+  }
+
+  /**
+   * @return Time that the job has been running, or ran for, not counting
+   *         any time waiting in the queue
+   */
+  public Duration getElapsed()
+  {
+    final Instant start = started;
+    if (start == null)
+    {
+      return Duration.ZERO;
+    }
+    final Instant end = finished == null? Instant.now(): finished;
+    return Duration.between(start, end);
+  }
+
+  public Throwable getFailure()
+  {
+    return failure;
+  }
+
+  public int getId()
+  {
+    return id;
+  }
+
+  /**
+   * @return Description of the progress of a running job, or an empty
+   *         string if progress is not known
+   */
+  public String getProgress()
+  {
+    if (progress == null || !isRunning())
+    {
+      return "";
+    }
+    final String progressText = progress.get();
+    return progressText == null? "": progressText;
+  }
+
+  public String getResult()
+  {
+    return result;
+  }
+
+  public Status getStatus()
+  {
+    return status;
+  }
+
+  public Instant getSubmitted()
+  {
+    return submitted;
+  }
+
+  /**
+   * @return Whether the job is queued or running, and has not finished
+   */
+  public boolean isRunning()
+  {
+    return status == Status.queued || status == Status.running;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append(String.format("[%d] %-9s %s (%ds)",
+                                id,
+                                status,
+                                description,
+                                getElapsed().getSeconds()));
+    final String progressText = getProgress();
+    if (!progressText.isEmpty())
+    {
+      buffer.append(" - ").append(progressText);
+    }
+    else if (status == Status.completed && result != null)
+    {
+      buffer.append(" - ").append(result);
+    }
+    else if (status == Status.failed && failure != null)
+    {
+      buffer.append(" - ").append(failure.getMessage());
+    }
+    return buffer.toString();
+  }
+
+  void completed(final String result)
+  {
+    synchronized (this)
+    {
+      if (isRunning())
+      {
+        this.result = result;
+        status = Status.completed;
+      }
+    }
+    finish();
+  }
+
+  void failed(final Throwable failure)
+  {
+    synchronized (this)
+    {
+      if (isRunning())
+      {
+        this.failure = failure;
+        status = Status.failed;
+      }
+    }
+    finish();
+  }
+
+  void setFuture(final Future<?> future)
+  {
+    this.future = future;
+    if (status == Status.cancelled)
+    {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Marks a queued job as running.
+   *
+   * @return Whether the job should run, which is false if it was
+   *         cancelled while queued
+   */
+  synchronized boolean started()
+  {
+    if (status != Status.queued)
+    {
+      return false;
+    }
+    started = Instant.now();
+    status = Status.running;
+    return true;
+  }
+
+  private synchronized void finish()
+  {
+    if (finished == null)
+    {
+      finished = Instant.now();
+      if (started == null)
+      {
+        started = finished;
+      }
+    }
+    done.countDown();
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.jobs;
+
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import sf.util.SchemaCrawlerLogger;
+import sf.util.StringFormat;
+
+/**
+ * Runs shell commands as background jobs, and keeps track of them for
+ * the rest of the session.
+ */
+public final class JobRegistry
+{
+
+  private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
+    .getLogger(JobRegistry.class.getName());
+
+  private final AtomicInteger jobIds;
+  private final TreeMap<Integer, Job> jobs;
+  private int maxConcurrentJobs;
+  private ThreadPoolExecutor executor;
+  private ExecutorService foregroundExecutor;
+
+  public JobRegistry()
+  {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a job registry that runs a limited number of jobs at a time.
+   * Other jobs wait in a queue.
+   *
+   * @param maxConcurrentJobs
+   *        Maximum number of jobs to run at a time
+   */
+  public JobRegistry(final int maxConcurrentJobs)
+  {
+    jobIds = new AtomicInteger();
+    jobs = new TreeMap<>();
+    setMaxConcurrentJobs(maxConcurrentJobs);
+  }
+
+  public void cancelAll()
+  {
+    for (final Job job: getJobs())
+    {
+      job.cancel();
+    }
+  }
+
+  /**
+   * Cancels all running jobs, and forgets about all jobs.
+   */
+  public void clear()
+  {
+    cancelAll();
+    synchronized (this)
+    {
+      jobs.clear();
+    }
+  }
+
+  public synchronized int getMaxConcurrentJobs()
+  {
+    return maxConcurrentJobs;
+  }
+
+  public synchronized List<Job> getJobs()
+  {
+    return new ArrayList<>(jobs.values());
+  }
+
+  /**
+   * @return The most recently started job that is still running
+   */
+  public synchronized Optional<Job> getRunningJob()
+  {
+    Job runningJob = null;
+    for (final Job job: jobs.values())
+    {
+      if (job.isRunning())
+      {
+        runningJob = job;
+      }
+    }
+    return Optional.ofNullable(runningJob);
+  }
+
+  /**
+   * Looks up a job.
+   *
+   * @param id
+   *        Job id, or 0 for the most recently started job
+   * @return Job, if it exists
+   */
+  public synchronized Optional<Job> lookupJob(final int id)
+  {
+    if (id <= 0)
+    {
+      if (jobs.isEmpty())
+      {
+        return Optional.empty();
+      }
+      return Optional.of(jobs.lastEntry().getValue());
+    }
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  public synchronized void setMaxConcurrentJobs(final int maxConcurrentJobs)
+  {
+    this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+    if (executor != null)
+    {
+      // Order matters, since the core size cannot exceed the maximum
+      if (this.maxConcurrentJobs > executor.getMaximumPoolSize())
+      {
+        executor.setMaximumPoolSize(this.maxConcurrentJobs);
+        executor.setCorePoolSize(this.maxConcurrentJobs);
+      }
+      else
+      {
+        executor.setCorePoolSize(this.maxConcurrentJobs);
+        executor.setMaximumPoolSize(this.maxConcurrentJobs);
+      }
+    }
+  }
+
+  /**
+   * Starts a job right away on a thread of its own, without waiting for
+   * other jobs to finish. This is for commands that the shell waits for,
+   * which should not queue behind background jobs.
+   *
+   * @param description
+   *        Description of the job, usually the command
+   * @param task
+   *        Work to do, which returns a result message
+   * @param progress
+   *        Supplies a description of the progress of the job, or null
+   * @param cancellation
+   *        Action to stop the work, which is run before the job is
+   *        interrupted, or null
+   * @return Started job
+   */
+  public synchronized Job start(final String description,
+                                final Callable<String> task,
+                                final Supplier<String> progress,
+                                final Runnable cancellation)
+  {
+    if (foregroundExecutor == null)
+    {
+      foregroundExecutor = Executors
+        .newCachedThreadPool(threadFactory("schemacrawler-foreground-job-"));
+    }
+    return submit(foregroundExecutor,
+                  description,
+                  task,
+                  progress,
+                  cancellation);
+  }
+
+  /**
+   * Starts a job in the background, or queues it if the maximum number
+   * of jobs are already running.
+   *
+   * @param description
+   *        Description of the job, usually the command
+   * @param task
+   *        Work to do, which returns a result message
+   * @param progress
+   *        Supplies a description of the progress of the job, or null
+   * @param cancellation
+   *        Action to stop the work, which is run before the job is
+   *        interrupted, or null
+   * @return Started job
+   */
+  public synchronized Job submit(final String description,
+                                 final Callable<String> task,
+                                 final Supplier<String> progress,
+                                 final Runnable cancellation)
+  {
+    if (executor == null)
+    {
+      executor = new ThreadPoolExecutor(maxConcurrentJobs,
+                                        maxConcurrentJobs,
+                                        60L,
+                                        TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<>(),
+                                        threadFactory("schemacrawler-job-"));
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return submit(executor, description, task, progress, cancellation);
+  }
+
+  private Job submit(final ExecutorService jobExecutor,
+                     final String description,
+                     final Callable<String> task,
+                     final Supplier<String> progress,
+                     final Runnable cancellation)
+  {
+    requireNonNull(task, "No task provided");
+
+    final Job job = new Job(jobIds.incrementAndGet(),
+                            description,
+                            progress,
+                            cancellation);
+    jobs.put(job.getId(), job);
+
+    job.setFuture(jobExecutor.submit(() -> {
+      if (!job.started())
+      {
+        // Cancelled while queued
+        return;
+      }
+      try
+      {
+        job.completed(task.call());
+        LOGGER.log(Level.INFO,
+                   new StringFormat("Job %d completed in %d ms - %s",
+                                    job.getId(),
+                                    job.getElapsed().toMillis(),
+                                    job.getResult()));
+      }
+      catch (final Throwable e)
+      {
+        if (job.isRunning())
+        {
+          LOGGER.log(Level.WARNING,
+                     new StringFormat("Job %d failed", job.getId()),
+                     e);
+        }
+        job.failed(e);
+      }
+    }));
+
+    LOGGER.log(Level.INFO,
+               new StringFormat("Submitted job %d, %s",
+                                job.getId(),
+                                description));
+    return job;
+  }
+
+  private ThreadFactory threadFactory(final String threadNamePrefix)
+  {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable,
+                                       threadNamePrefix
+                                                 + threadNumber
+                                                   .incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+}
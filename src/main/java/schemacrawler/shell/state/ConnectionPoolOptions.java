@@ -0,0 +1,139 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+package schemacrawler.shell.state;
+
+
+import static sf.util.Utility.isBlank;
+
+/**
+ * Options for the connection pools of connections made from the shell.
+ * The defaults are the same as those of the commons-dbcp2 pool.
+ */
+public final class ConnectionPoolOptions
+{
+
+  private final int maxTotal;
+  private final int maxIdle;
+  private final int minIdle;
+  private final long maxWaitMillis;
+  private final String validationQuery;
+  private final int validationQueryTimeoutSeconds;
+  private final boolean poolPreparedStatements;
+  private final long timeBetweenEvictionRunsMillis;
+
+  public ConnectionPoolOptions()
+  {
+    this(8, 8, 0, -1, "", -1, false, -1);
+  }
+
+  public ConnectionPoolOptions(final int maxTotal,
+                               final int maxIdle,
+                               final int minIdle,
+                               final long maxWaitMillis,
+                               final String validationQuery,
+                               final int validationQueryTimeoutSeconds,
+                               final boolean poolPreparedStatements,
+                               final long timeBetweenEvictionRunsMillis)
+  {
+    this.maxTotal = maxTotal;
+    this.maxIdle = maxIdle;
+    this.minIdle = minIdle;
+    this.maxWaitMillis = maxWaitMillis;
+    this.validationQuery = validationQuery;
+    this.validationQueryTimeoutSeconds = validationQueryTimeoutSeconds;
+    this.poolPreparedStatements = poolPreparedStatements;
+    this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+  }
+
+  /**
+   * Configures a connection pool that has not been used yet.
+   *
+   * @param dataSource
+   *        Connection pool
+   */
+  public void configure(final PooledDataSource dataSource)
+  {
+    dataSource.setMaxTotal(maxTotal);
+    dataSource.setMaxIdle(maxIdle);
+    dataSource.setMinIdle(minIdle);
+    dataSource.setMaxWaitMillis(maxWaitMillis);
+    // A blank validation query makes the pool use Connection.isValid()
+    if (!isBlank(validationQuery))
+    {
+      dataSource.setValidationQuery(validationQuery);
+    }
+    dataSource.setValidationQueryTimeout(validationQueryTimeoutSeconds);
+    dataSource.setPoolPreparedStatements(poolPreparedStatements);
+    dataSource.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+    if (timeBetweenEvictionRunsMillis > 0)
+    {
+      dataSource.setTestWhileIdle(true);
+    }
+  }
+
+  public int getMaxIdle()
+  {
+    return maxIdle;
+  }
+
+  public int getMaxTotal()
+  {
+    return maxTotal;
+  }
+
+  public long getMaxWaitMillis()
+  {
+    return maxWaitMillis;
+  }
+
+  public int getMinIdle()
+  {
+    return minIdle;
+  }
+
+  public long getTimeBetweenEvictionRunsMillis()
+  {
+    return timeBetweenEvictionRunsMillis;
+  }
+
+  public String getValidationQuery()
+  {
+    return validationQuery;
+  }
+
+  public int getValidationQueryTimeoutSeconds()
+  {
+    return validationQueryTimeoutSeconds;
+  }
+
+  public boolean isPoolPreparedStatements()
+  {
+    return poolPreparedStatements;
+  }
+
+}
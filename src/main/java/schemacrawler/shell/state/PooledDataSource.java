@@ -0,0 +1,84 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.state;
+
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * Connection pool for the shell, which also exposes pool statistics
+ * that are not available from the base data-source.
+ */
+public class PooledDataSource
+  extends BasicDataSource
+{
+
+  public long getBorrowedCount()
+  {
+    final GenericObjectPool<PoolableConnection> connectionPool = getConnectionPool();
+    if (connectionPool == null)
+    {
+      return 0;
+    }
+    return connectionPool.getBorrowedCount();
+  }
+
+  public long getMaxBorrowWaitTimeMillis()
+  {
+    final GenericObjectPool<PoolableConnection> connectionPool = getConnectionPool();
+    if (connectionPool == null)
+    {
+      return 0;
+    }
+    return connectionPool.getMaxBorrowWaitTimeMillis();
+  }
+
+  public long getMeanBorrowWaitTimeMillis()
+  {
+    final GenericObjectPool<PoolableConnection> connectionPool = getConnectionPool();
+    if (connectionPool == null)
+    {
+      return 0;
+    }
+    return connectionPool.getMeanBorrowWaitTimeMillis();
+  }
+
+  public int getNumWaiters()
+  {
+    final GenericObjectPool<PoolableConnection> connectionPool = getConnectionPool();
+    if (connectionPool == null)
+    {
+      return 0;
+    }
+    return connectionPool.getNumWaiters();
+  }
+
+}
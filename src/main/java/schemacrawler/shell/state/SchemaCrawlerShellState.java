@@ -29,19 +29,39 @@ http://www.gnu.org/licenses/
 package schemacrawler.shell.state;
 
 
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import schemacrawler.schema.Catalog;
 import schemacrawler.schemacrawler.Config;
+import schemacrawler.schemacrawler.SchemaCrawlerOptions;
 import schemacrawler.schemacrawler.SchemaCrawlerOptionsBuilder;
 import schemacrawler.schemacrawler.SchemaRetrievalOptionsBuilder;
+import schemacrawler.shell.catalog.CatalogCache;
+import schemacrawler.shell.catalog.CatalogFingerprint;
+import schemacrawler.shell.catalog.CatalogNameIndex;
+import schemacrawler.shell.catalog.DefinitionIndex;
+import schemacrawler.shell.catalog.FilteredCatalog;
+import schemacrawler.shell.catalog.ForeignKeyGraph;
+import schemacrawler.shell.catalog.RowCountCache;
+import schemacrawler.shell.executable.RenderCache;
+import schemacrawler.shell.jobs.JobRegistry;
 import schemacrawler.tools.options.OutputOptionsBuilder;
+import sf.util.ObjectToString;
 import sf.util.SchemaCrawlerLogger;
 
 @Component("state")
@@ -51,15 +71,83 @@ public class SchemaCrawlerShellState
   private static final SchemaCrawlerLogger LOGGER = SchemaCrawlerLogger
     .getLogger(SchemaCrawlerShellState.class.getName());
 
-  private Catalog catalog;
-  private DataSource dataSource;
+  private static final int CONNECTION_VALIDATION_TIMEOUT_SECONDS = 5;
+
+  private volatile Catalog catalog;
+  private volatile DataSource dataSource;
+  private volatile boolean connected;
+  private long connectionCheckInterval = 60;
+  private ScheduledExecutorService connectionChecker;
+  private ScheduledFuture<?> connectionCheck;
   private Config additionalConfiguration;
   private SchemaCrawlerOptionsBuilder schemaCrawlerOptionsBuilder;
   private SchemaRetrievalOptionsBuilder schemaRetrievalOptionsBuilder;
   private OutputOptionsBuilder outputOptionsBuilder;
+  private String catalogCacheDirectory = Paths
+    .get(System.getProperty("user.home"), ".schemacrawler", "catalog-cache")
+    .toString();
+  private long catalogCacheTimeToLive = 86400;
+  private CatalogCache catalogCache;
+  private String renderCacheDirectory = Paths
+    .get(System.getProperty("user.home"), ".schemacrawler", "render-cache")
+    .toString();
+  private long renderCacheMaxSize = 256L * 1024 * 1024;
+  private RenderCache renderCache;
+  private String layoutCacheDirectory = Paths
+    .get(System.getProperty("user.home"), ".schemacrawler", "layout-cache")
+    .toString();
+  private long layoutCacheMaxSize = 256L * 1024 * 1024;
+  private RenderCache layoutCache;
+  private long rowCountCacheTimeToLive = 300;
+  private RowCountCache rowCountCache;
+  private final JobRegistry jobRegistry = new JobRegistry();
+  private volatile ConnectionPoolOptions connectionPoolOptions = new ConnectionPoolOptions();
+  private boolean filterCatalogInMemory;
+  private boolean snapshotDdlMarkers = false;
+  private CatalogNameIndex nameIndex;
+  private DefinitionIndex definitionIndex;
+  private ForeignKeyGraph foreignKeyGraph;
+  private String catalogFingerprint;
+  private String filteredCatalogKey;
+  private Catalog filteredCatalog;
+
+  /**
+   * Marks the current data-source as connected, and starts periodic
+   * revalidation of the connection in the background.
+   */
+  public synchronized void connectionEstablished()
+  {
+    if (dataSource == null)
+    {
+      return;
+    }
+    connected = true;
+    scheduleConnectionCheck(connectionCheckInterval);
+  }
+
+  /**
+   * Marks the current data-source as not connected, and schedules an
+   * immediate revalidation in the background, so that the status
+   * recovers if the failure was transient.
+   *
+   * @param e
+   *        Cause of the connection failure
+   */
+  public synchronized void connectionFailed(final Throwable e)
+  {
+    LOGGER.log(Level.WARNING, "Connection failure", e);
+    connected = false;
+    if (dataSource != null)
+    {
+      scheduleConnectionCheck(0);
+    }
+  }
 
-  public void disconnect()
+  public synchronized void disconnect()
   {
+    connected = false;
+    cancelConnectionCheck();
+
     if (dataSource instanceof AutoCloseable)
     {
       try
@@ -84,6 +172,98 @@ public class SchemaCrawlerShellState
     return catalog;
   }
 
+  /**
+   * Gets the loaded catalog for executing commands. If filters are
+   * applied in memory, this is a view of the loaded catalog with the
+   * current limit, grep and filter options applied. The view is reused
+   * for as long as the loaded catalog and the options stay the same.
+   *
+   * @return Loaded catalog, or a filtered view of it
+   */
+  public synchronized Catalog getFilteredCatalog()
+  {
+    final Catalog catalog = this.catalog;
+    if (catalog == null || !filterCatalogInMemory)
+    {
+      return catalog;
+    }
+    final SchemaCrawlerOptions options = getSchemaCrawlerOptionsBuilder()
+      .toOptions();
+    final String key = ObjectToString.toString(options)
+      .replaceAll("@[0-9a-fA-F]+", "");
+    if (filteredCatalog != null && key.equals(filteredCatalogKey))
+    {
+      return filteredCatalog;
+    }
+    final DefinitionIndex definitionIndex;
+    if (options.isGrepDefinitions())
+    {
+      definitionIndex = getDefinitionIndex();
+    }
+    else
+    {
+      definitionIndex = null;
+    }
+    final ForeignKeyGraph foreignKeyGraph;
+    if (options.getParentTableFilterDepth() > 0
+        || options.getChildTableFilterDepth() > 0)
+    {
+      foreignKeyGraph = getForeignKeyGraph();
+    }
+    else
+    {
+      foreignKeyGraph = null;
+    }
+    filteredCatalog = new FilteredCatalog(catalog,
+                                          options,
+                                          definitionIndex,
+                                          foreignKeyGraph);
+    filteredCatalogKey = key;
+    return filteredCatalog;
+  }
+
+  /**
+   * On-disk catalog cache, which persists across sweeps and shell
+   * sessions.
+   *
+   * @return Catalog cache
+   */
+  public synchronized CatalogCache getCatalogCache()
+  {
+    if (catalogCache == null)
+    {
+      catalogCache = new CatalogCache(Paths.get(catalogCacheDirectory),
+                                      Duration
+                                        .ofSeconds(catalogCacheTimeToLive));
+    }
+    return catalogCache;
+  }
+
+  /**
+   * Fingerprint of the loaded catalog, which is computed the first time
+   * it is needed after a catalog is loaded.
+   *
+   * @return Catalog fingerprint, or null if no catalog is loaded
+   */
+  public synchronized String getCatalogFingerprint()
+  {
+    final Catalog catalog = this.catalog;
+    if (catalog == null)
+    {
+      return null;
+    }
+    if (catalogFingerprint == null)
+    {
+      catalogFingerprint = CatalogFingerprint.fingerprint(catalog);
+    }
+    return catalogFingerprint;
+  }
+
+  public JobRegistry getJobRegistry()
+  {
+    return jobRegistry;
+  }
+
   public DataSource getDataSource()
   {
     return dataSource;
@@ -104,22 +284,141 @@ public class SchemaCrawlerShellState
     return schemaRetrievalOptionsBuilder;
   }
 
+  /**
+   * @return Options for connection pools, which are kept when the shell
+   *         disconnects
+   */
+  public ConnectionPoolOptions getConnectionPoolOptions()
+  {
+    return connectionPoolOptions;
+  }
+
+  public long getConnectionCheckInterval()
+  {
+    return connectionCheckInterval;
+  }
+
+  /**
+   * Connection status, as of the last connect, disconnect or failure
+   * event, or background revalidation. Does not access the database.
+   *
+   * @return Whether there is a database connection
+   */
   public boolean isConnected()
   {
-    try (final Connection connection = dataSource.getConnection();)
+    return connected && dataSource != null;
+  }
+
+  /**
+   * Trigram index of definitions in the loaded catalog, which is built
+   * the first time definitions are searched after a catalog is loaded.
+   *
+   * @return Definition index, or null if no catalog is loaded
+   */
+  public synchronized DefinitionIndex getDefinitionIndex()
+  {
+    final Catalog catalog = this.catalog;
+    if (catalog == null)
     {
-      LOGGER
-        .log(Level.INFO,
-             "Connected to: "
-                         + connection.getMetaData().getDatabaseProductName());
+      return null;
     }
-    catch (final NullPointerException | SQLException e)
+    if (definitionIndex == null)
     {
-      LOGGER.log(Level.WARNING, e.getMessage(), e);
-      return false;
+      definitionIndex = DefinitionIndex.build(catalog);
     }
+    return definitionIndex;
+  }
+
+  /**
+   * Foreign key graph of the loaded catalog, which is built the first
+   * time it is needed after a catalog is loaded.
+   *
+   * @return Foreign key graph, or null if no catalog is loaded
+   */
+  public synchronized ForeignKeyGraph getForeignKeyGraph()
+  {
+    final Catalog catalog = this.catalog;
+    if (catalog == null)
+    {
+      return null;
+    }
+    if (foreignKeyGraph == null)
+    {
+      foreignKeyGraph = ForeignKeyGraph.build(catalog);
+    }
+    return foreignKeyGraph;
+  }
+
+  /**
+   * Name index of the loaded catalog, which is built the first time it
+   * is needed after a catalog is loaded.
+   *
+   * @return Name index, or null if no catalog is loaded
+   */
+  public synchronized CatalogNameIndex getNameIndex()
+  {
+    final Catalog catalog = this.catalog;
+    if (catalog == null)
+    {
+      return null;
+    }
+    if (nameIndex == null)
+    {
+      nameIndex = CatalogNameIndex.build(catalog);
+    }
+    return nameIndex;
+  }
+
+  /**
+   * On-disk cache of diagrams laid out by Graphviz, which persists
+   * across sweeps and shell sessions.
+   *
+   * @return Layout cache
+   */
+  public synchronized RenderCache getLayoutCache()
+  {
+    if (layoutCache == null)
+    {
+      layoutCache = new RenderCache(Paths.get(layoutCacheDirectory),
+                                    layoutCacheMaxSize);
+    }
+    return layoutCache;
+  }
+
+  /**
+   * On-disk cache of rendered output, which persists across sweeps and
+   * shell sessions.
+   *
+   * @return Render cache
+   */
+  public synchronized RenderCache getRenderCache()
+  {
+    if (renderCache == null)
+    {
+      renderCache = new RenderCache(Paths.get(renderCacheDirectory),
+                                    renderCacheMaxSize);
+    }
+    return renderCache;
+  }
+
+  /**
+   * In-memory cache of table row counts, for the connected database.
+   *
+   * @return Row count cache
+   */
+  public synchronized RowCountCache getRowCountCache()
+  {
+    if (rowCountCache == null)
+    {
+      rowCountCache = new RowCountCache(Duration
+        .ofSeconds(rowCountCacheTimeToLive));
+    }
+    return rowCountCache;
+  }
 
-    return true;
+  public boolean isFilterCatalogInMemory()
+  {
+    return filterCatalogInMemory;
   }
 
   public boolean isLoaded()
@@ -127,19 +426,145 @@ public class SchemaCrawlerShellState
     return catalog != null;
   }
 
+  public synchronized boolean isSnapshotDdlMarkers()
+  {
+    return snapshotDdlMarkers;
+  }
+
   public void setAdditionalConfiguration(final Config additionalConfiguration)
   {
     this.additionalConfiguration = additionalConfiguration;
   }
 
-  public void setCatalog(final Catalog catalog)
+  /**
+   * Sets the interval between background revalidations of the database
+   * connection. A value of zero or less turns off revalidation.
+   *
+   * @param connectionCheckInterval
+   *        Interval, in seconds
+   */
+  @Value("${schemacrawler.shell.connection-check-interval:60}")
+  public synchronized void setConnectionCheckInterval(final long connectionCheckInterval)
+  {
+    this.connectionCheckInterval = connectionCheckInterval;
+    if (connected)
+    {
+      scheduleConnectionCheck(connectionCheckInterval);
+    }
+  }
+
+  @Value("${schemacrawler.shell.catalog-cache-directory:${user.home}/.schemacrawler/catalog-cache}")
+  public synchronized void setCatalogCacheDirectory(final String catalogCacheDirectory)
+  {
+    this.catalogCacheDirectory = catalogCacheDirectory;
+    catalogCache = null;
+  }
+
+  /**
+   * Sets the age after which cached catalogs are reloaded from the
+   * database. A value of zero or less means that cached catalogs never
+   * expire.
+   *
+   * @param catalogCacheTimeToLive
+   *        Time to live, in seconds
+   */
+  @Value("${schemacrawler.shell.catalog-cache-ttl:86400}")
+  public synchronized void setCatalogCacheTimeToLive(final long catalogCacheTimeToLive)
+  {
+    this.catalogCacheTimeToLive = Math.max(0, catalogCacheTimeToLive);
+    catalogCache = null;
+  }
+
+  @Value("${schemacrawler.shell.layout-cache-directory:${user.home}/.schemacrawler/layout-cache}")
+  public synchronized void setLayoutCacheDirectory(final String layoutCacheDirectory)
+  {
+    this.layoutCacheDirectory = layoutCacheDirectory;
+    layoutCache = null;
+  }
+
+  /**
+   * Sets the size of the layout cache, above which the least recently
+   * used diagram is evicted.
+   *
+   * @param layoutCacheMaxSize
+   *        Maximum size, in bytes
+   */
+  @Value("${schemacrawler.shell.layout-cache-max-size:268435456}")
+  public synchronized void setLayoutCacheMaxSize(final long layoutCacheMaxSize)
+  {
+    this.layoutCacheMaxSize = Math.max(0, layoutCacheMaxSize);
+    layoutCache = null;
+  }
+
+  @Value("${schemacrawler.shell.render-cache-directory:${user.home}/.schemacrawler/render-cache}")
+  public synchronized void setRenderCacheDirectory(final String renderCacheDirectory)
+  {
+    this.renderCacheDirectory = renderCacheDirectory;
+    renderCache = null;
+  }
+
+  /**
+   * Sets the size of the render cache, above which the least recently
+   * used output is evicted.
+   *
+   * @param renderCacheMaxSize
+   *        Maximum size, in bytes
+   */
+  @Value("${schemacrawler.shell.render-cache-max-size:268435456}")
+  public synchronized void setRenderCacheMaxSize(final long renderCacheMaxSize)
+  {
+    this.renderCacheMaxSize = Math.max(0, renderCacheMaxSize);
+    renderCache = null;
+  }
+
+  /**
+   * Sets the number of background jobs that can run at a time.
+   *
+   * @param maxConcurrentJobs
+   *        Maximum number of jobs, or 0 for the number of processors
+   */
+  @Value("${schemacrawler.shell.max-concurrent-jobs:0}")
+  public void setMaxConcurrentJobs(final int maxConcurrentJobs)
+  {
+    if (maxConcurrentJobs > 0)
+    {
+      jobRegistry.setMaxConcurrentJobs(maxConcurrentJobs);
+    }
+    else
+    {
+      jobRegistry.setMaxConcurrentJobs(Runtime.getRuntime()
+        .availableProcessors());
+    }
+  }
+
+  public void setFilterCatalogInMemory(final boolean filterCatalogInMemory)
+  {
+    this.filterCatalogInMemory = filterCatalogInMemory;
+  }
+
+  public synchronized void setCatalog(final Catalog catalog)
   {
     this.catalog = catalog;
+    nameIndex = null;
+    definitionIndex = null;
+    foreignKeyGraph = null;
+    catalogFingerprint = null;
+    filteredCatalog = null;
+    filteredCatalogKey = null;
   }
 
-  public void setDataSource(final DataSource dataSource)
+  public void setConnectionPoolOptions(final ConnectionPoolOptions connectionPoolOptions)
   {
+    this.connectionPoolOptions = requireNonNull(connectionPoolOptions,
+                                                "No connection pool options provided");
+  }
+
+  public synchronized void setDataSource(final DataSource dataSource)
+  {
+    cancelConnectionCheck();
+    connected = false;
     this.dataSource = dataSource;
+    rowCountCache = null;
   }
 
   public void setOutputOptionsBuilder(final OutputOptionsBuilder outputOptionsBuilder)
@@ -147,6 +572,21 @@ public class SchemaCrawlerShellState
     this.outputOptionsBuilder = outputOptionsBuilder;
   }
 
+  /**
+   * Sets the age after which table row counts are counted again. A
+   * value of zero or less means that row counts never expire, for as
+   * long as the connection is open.
+   *
+   * @param rowCountCacheTimeToLive
+   *        Time to live, in seconds
+   */
+  @Value("${schemacrawler.shell.row-count-cache-ttl:300}")
+  public synchronized void setRowCountCacheTimeToLive(final long rowCountCacheTimeToLive)
+  {
+    this.rowCountCacheTimeToLive = Math.max(0, rowCountCacheTimeToLive);
+    rowCountCache = null;
+  }
+
   public void setSchemaCrawlerOptionsBuilder(final SchemaCrawlerOptionsBuilder schemaCrawlerOptionsBuilder)
   {
     this.schemaCrawlerOptionsBuilder = schemaCrawlerOptionsBuilder;
@@ -157,9 +597,25 @@ public class SchemaCrawlerShellState
     this.schemaRetrievalOptionsBuilder = schemaRetrievalOptionsBuilder;
   }
 
+  /**
+   * Sets whether DDL markers are read when a catalog is loaded. If not,
+   * refresh-catalog records them the first time that it is run.
+   *
+   * @param snapshotDdlMarkers
+   *        Whether to read DDL markers on load
+   */
+  @Value("${schemacrawler.shell.snapshot-ddl-markers:false}")
+  public synchronized void setSnapshotDdlMarkers(final boolean snapshotDdlMarkers)
+  {
+    this.snapshotDdlMarkers = snapshotDdlMarkers;
+  }
+
   public void sweep()
   {
-    catalog = null;
+    jobRegistry.clear();
+
+    setCatalog(null);
+    filterCatalogInMemory = false;
     additionalConfiguration = null;
     schemaCrawlerOptionsBuilder = null;
     schemaRetrievalOptionsBuilder = null;
@@ -168,4 +624,86 @@ public class SchemaCrawlerShellState
     disconnect();
   }
 
+  /**
+   * Checks the database connection, and updates the connection status.
+   * This accesses the database, so it is only called from the
+   * background connection checker.
+   */
+  private void validateConnection()
+  {
+    final DataSource dataSource = this.dataSource;
+    if (dataSource == null)
+    {
+      return;
+    }
+
+    boolean isValid;
+    try (final Connection connection = dataSource.getConnection();)
+    {
+      isValid = connection.isValid(CONNECTION_VALIDATION_TIMEOUT_SECONDS);
+    }
+    catch (final SQLException e)
+    {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      isValid = false;
+    }
+
+    synchronized (this)
+    {
+      // Ignore the result if the data-source changed while validating
+      if (dataSource != this.dataSource)
+      {
+        return;
+      }
+      if (connected != isValid)
+      {
+        LOGGER.log(Level.INFO,
+                   isValid? "Connection restored": "Connection lost");
+      }
+      connected = isValid;
+    }
+  }
+
+  private void cancelConnectionCheck()
+  {
+    if (connectionCheck != null)
+    {
+      connectionCheck.cancel(false);
+      connectionCheck = null;
+    }
+  }
+
+  private void scheduleConnectionCheck(final long initialDelay)
+  {
+    cancelConnectionCheck();
+    if (connectionCheckInterval <= 0 && initialDelay > 0)
+    {
+      return;
+    }
+
+    if (connectionChecker == null)
+    {
+      connectionChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable,
+                                         "schemacrawler-connection-check");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if (connectionCheckInterval > 0)
+    {
+      connectionCheck = connectionChecker
+        .scheduleWithFixedDelay(this::validateConnection,
+                                initialDelay,
+                                connectionCheckInterval,
+                                TimeUnit.SECONDS);
+    }
+    else
+    {
+      connectionCheck = connectionChecker.schedule(this::validateConnection,
+                                                   initialDelay,
+                                                   TimeUnit.SECONDS);
+    }
+  }
+
 }
@@ -0,0 +1,185 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.test.functional;
+
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.shell.ConfigurableCommandRegistry;
+import org.springframework.shell.MethodTarget;
+import org.springframework.shell.standard.StandardMethodTargetRegistrar;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.shell.commands.CatalogCacheCommands;
+import schemacrawler.shell.commands.ConnectCommands;
+import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
+import schemacrawler.shell.test.TestSchemaCrawlerShellState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {
+                                  TestSchemaCrawlerShellState.class,
+                                  CatalogCacheCommands.class })
+public class CatalogCacheCommandsTest
+  extends BaseSchemaCrawlerShellTest
+{
+
+  private static final Class<?> COMMANDS_CLASS_UNDER_TEST = CatalogCacheCommands.class;
+
+  @Rule
+  public TemporaryFolder cacheDirectory = new TemporaryFolder();
+
+  private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
+  @Autowired
+  private SchemaCrawlerShellState state;
+  @Autowired
+  private ApplicationContext context;
+
+  @Test
+  public void cacheEvict()
+  {
+    final String command = "cache evict";
+    final String commandMethod = "cacheEvict";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("3. Catalog Load Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Remove catalogs from the on-disk catalog cache"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.minimum, true, false, 1, false, "", InfoLevel.maximum, false);
+    loadCommands.loadCatalog(InfoLevel.standard, true, false, 1, false, "", InfoLevel.maximum, false);
+    assertThat(state.getCatalogCache().list().size(), is(2));
+
+    final String key = state.getCatalogCache().list().get(0).getKey();
+    assertThat(invoke(commandTarget, key).toString(),
+               is("Removed 1 cached catalog(s)"));
+    assertThat(state.getCatalogCache().list().size(), is(1));
+
+    assertThat(invoke(commandTarget, "").toString(),
+               is("Removed 1 cached catalog(s)"));
+    assertThat(state.getCatalogCache().list().size(), is(0));
+  }
+
+  @Test
+  public void cacheList()
+  {
+    final String command = "cache list";
+    final String commandMethod = "cacheList";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("3. Catalog Load Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("List catalogs in the on-disk catalog cache"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST, commandMethod)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget), nullValue());
+    assertThat(state.getCatalogCache().list().size(), is(0));
+  }
+
+  @Test
+  public void loadCatalogFromCache()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, true, false, 1, false, "", InfoLevel.maximum, false).toString(),
+               is("Loaded catalog"));
+    assertThat(state.getCatalogCache().list().size(), is(1));
+    assertThat(state.getCatalogCache().list().get(0).getInfoLevel(),
+               is("standard"));
+
+    state.setCatalog(null);
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, true, false, 1, false, "", InfoLevel.maximum, false).toString(),
+               is("Loaded catalog from cache"));
+    assertThat(state.getCatalog().getTables().size(), is(19));
+
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, true, true, 1, false, "", InfoLevel.maximum, false).toString(),
+               is("Loaded catalog"));
+    assertThat(state.getCatalogCache().list().size(), is(1));
+
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false).toString(),
+               startsWith("Loaded catalog"));
+    assertThat(state.getCatalogCache().list().size(), is(1));
+  }
+
+  @Before
+  public void setup()
+    throws IOException, SQLException
+  {
+    final StandardMethodTargetRegistrar registrar = new StandardMethodTargetRegistrar();
+    registrar.setApplicationContext(context);
+    registrar.register(registry);
+
+    state.setCatalogCacheDirectory(cacheDirectory.getRoot().toString());
+
+    // Create a connection
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+  }
+
+  @After
+  public void sweep()
+  {
+    state.sweep();
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.test.functional;
+
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.shell.ConfigurableCommandRegistry;
+import org.springframework.shell.MethodTarget;
+import org.springframework.shell.standard.StandardMethodTargetRegistrar;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.PartialDatabaseObject;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.shell.catalog.CatalogFingerprint;
+import schemacrawler.shell.catalog.MappedCatalog;
+import schemacrawler.shell.commands.CatalogFileCommands;
+import schemacrawler.shell.commands.ConnectCommands;
+import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
+import schemacrawler.shell.test.TestSchemaCrawlerShellState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {
+                                  TestSchemaCrawlerShellState.class,
+                                  CatalogFileCommands.class })
+public class CatalogFileCommandsTest
+  extends BaseSchemaCrawlerShellTest
+{
+
+  private static final Class<?> COMMANDS_CLASS_UNDER_TEST = CatalogFileCommands.class;
+
+  @Rule
+  public TemporaryFolder catalogDirectory = new TemporaryFolder();
+
+  private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
+  @Autowired
+  private SchemaCrawlerShellState state;
+  @Autowired
+  private ApplicationContext context;
+
+  @Test
+  public void crossSchemaForeignKey()
+    throws SQLException
+  {
+    final Path catalogFile = catalogDirectory.getRoot().toPath()
+      .resolve("schemacrawler.catalog");
+    new CatalogFileCommands(state).exportCatalog(catalogFile.toString());
+    new CatalogFileCommands(state).importCatalog(catalogFile.toString());
+    final int salesSectionSize = salesSectionSize((MappedCatalog) state
+      .getCatalog());
+
+    executeDdl("CREATE TABLE \"PUBLISHER SALES\".AUTHOR_SALES (AUTHORID INTEGER, FOREIGN KEY (AUTHORID) REFERENCES BOOKS.AUTHORS (ID))");
+    try
+    {
+      new LoadCommands(state)
+        .loadCatalog(InfoLevel.maximum, false, false, 1, false, "", InfoLevel.maximum, false);
+      final Catalog loadedCatalog = state.getCatalog();
+      new CatalogFileCommands(state).exportCatalog(catalogFile.toString());
+      new CatalogFileCommands(state).importCatalog(catalogFile.toString());
+      final MappedCatalog catalog = (MappedCatalog) state.getCatalog();
+
+      // The foreign key does not bring the other schema into the section
+      final Schema booksSchema = catalog.lookupSchema("PUBLIC.BOOKS").get();
+      final Schema salesSchema = catalog
+        .lookupSchema("PUBLIC.\"PUBLISHER SALES\"").get();
+      assertThat(salesSectionSize(catalog) - salesSectionSize,
+                 lessThan(catalog.getSectionSize(booksSchema) / 4));
+
+      // Looking up a table only decodes its own schema, and references
+      // to other schemas are partial until they are decoded
+      final Table table = catalog.lookupTable(salesSchema, "AUTHOR_SALES")
+        .get();
+      assertThat(catalog.getDecodedSchemaCount(), is(1));
+      assertThat(table.getForeignKeys().size(), is(1));
+      final ForeignKey foreignKey = table.getForeignKeys().iterator().next();
+      final Column pkColumn = foreignKey.getColumnReferences().get(0)
+        .getPrimaryKeyColumn();
+      assertThat(pkColumn.getFullName(), is("PUBLIC.BOOKS.AUTHORS.ID"));
+      assertThat(pkColumn.getParent(), instanceOf(PartialDatabaseObject.class));
+
+      final Table authors = catalog.lookupTable(booksSchema, "AUTHORS").get();
+      assertThat(catalog.getDecodedSchemaCount(), is(2));
+      assertThat(foreignKey.getColumnReferences().get(0).getPrimaryKeyColumn()
+        .getParent(), is(sameInstance(authors)));
+
+      assertThat(CatalogFingerprint.fingerprint(catalog),
+                 is(CatalogFingerprint.fingerprint(loadedCatalog)));
+    }
+    finally
+    {
+      executeDdl("DROP TABLE \"PUBLISHER SALES\".AUTHOR_SALES");
+    }
+  }
+
+  @Test
+  public void exportCatalog()
+  {
+    final String command = "export-catalog";
+    final String commandMethod = "exportCatalog";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("3. Catalog Load Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Export the loaded catalog to a catalog file, which can be imported without a database connection"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    final Path catalogFile = catalogDirectory.getRoot().toPath()
+      .resolve("schemacrawler.catalog");
+    assertThat(invoke(commandTarget, catalogFile.toString()).toString(),
+               startsWith(String.format("Exported catalog to %s, with ",
+                                        catalogFile)));
+    assertThat(catalogFile.toFile().isFile(), is(true));
+  }
+
+  @Test
+  public void importCatalog()
+  {
+    final String command = "import-catalog";
+    final String commandMethod = "importCatalog";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("3. Catalog Load Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Import a catalog from a catalog file, decoding schemas only as they are used"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    final Catalog loadedCatalog = state.getCatalog();
+    final Path catalogFile = catalogDirectory.getRoot().toPath()
+      .resolve("schemacrawler.catalog");
+    new CatalogFileCommands(state).exportCatalog(catalogFile.toString());
+
+    state.setCatalog(null);
+    assertThat(invoke(commandTarget, catalogFile.toString()).toString(),
+               startsWith(String
+                 .format("Imported catalog from %s, with 19 tables in ",
+                         catalogFile)));
+    final MappedCatalog catalog = (MappedCatalog) state.getCatalog();
+    assertThat(catalog.getDecodedSchemaCount(), is(0));
+
+    // Looking up a table only decodes its own schema
+    final Schema schema = catalog.lookupSchema("PUBLIC.BOOKS").get();
+    final Table table = catalog.lookupTable(schema, "AUTHORS").get();
+    assertThat(table.getFullName(), is("PUBLIC.BOOKS.AUTHORS"));
+    assertThat(table.getColumns().size(),
+               is(loadedCatalog.lookupTable(schema, "AUTHORS").get()
+                 .getColumns().size()));
+    assertThat(catalog.lookupTable(schema, "NO_SUCH_TABLE").isPresent(),
+               is(false));
+    assertThat(catalog.getDecodedSchemaCount(), is(1));
+
+    // Imported metadata is the same as the loaded metadata
+    assertThat(tableNames(catalog), is(tableNames(loadedCatalog)));
+    assertThat(CatalogFingerprint.fingerprint(catalog),
+               is(CatalogFingerprint.fingerprint(loadedCatalog)));
+    assertThat(catalog.getDecodedSchemaCount(), is(catalog.getSchemaCount()));
+  }
+
+  @Before
+  public void setup()
+    throws SQLException
+  {
+    final StandardMethodTargetRegistrar registrar = new StandardMethodTargetRegistrar();
+    registrar.setApplicationContext(context);
+    registrar.register(registry);
+
+    // Create a connection, and load a catalog
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.maximum, false, false, 1, false, "", InfoLevel.maximum, false);
+  }
+
+  @After
+  public void sweep()
+  {
+    state.sweep();
+  }
+
+  private void executeDdl(final String ddl)
+    throws SQLException
+  {
+    try (final Connection connection = state.getDataSource().getConnection();
+        final Statement statement = connection.createStatement();)
+    {
+      statement.execute(ddl);
+    }
+  }
+
+  private int salesSectionSize(final MappedCatalog catalog)
+  {
+    return catalog
+      .getSectionSize(catalog.lookupSchema("PUBLIC.\"PUBLISHER SALES\"").get());
+  }
+
+  private List<String> tableNames(final Catalog catalog)
+  {
+    return catalog.getTables().stream().map(Table::getFullName)
+      .collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,379 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.test.functional;
+
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.shell.ConfigurableCommandRegistry;
+import org.springframework.shell.MethodTarget;
+import org.springframework.shell.standard.StandardMethodTargetRegistrar;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.NamedObject;
+import schemacrawler.schema.Routine;
+import schemacrawler.schema.RoutineColumn;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.TableRelationshipType;
+import schemacrawler.schema.Trigger;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.RegularExpressionInclusionRule;
+import schemacrawler.shell.catalog.CatalogNameIndex;
+import schemacrawler.shell.catalog.CatalogNameIndex.ObjectType;
+import schemacrawler.shell.catalog.DefinitionIndex;
+import schemacrawler.shell.catalog.FilteredCatalog;
+import schemacrawler.shell.catalog.ForeignKeyGraph;
+import schemacrawler.shell.catalog.ForeignKeyGraph.Step;
+import schemacrawler.shell.commands.CatalogQueryCommands;
+import schemacrawler.shell.commands.ConnectCommands;
+import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
+import schemacrawler.shell.test.TestSchemaCrawlerShellState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {
+                                  TestSchemaCrawlerShellState.class,
+                                  CatalogQueryCommands.class })
+public class CatalogQueryCommandsTest
+  extends BaseSchemaCrawlerShellTest
+{
+
+  private static final Class<?> COMMANDS_CLASS_UNDER_TEST = CatalogQueryCommands.class;
+
+  private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
+  @Autowired
+  private SchemaCrawlerShellState state;
+  @Autowired
+  private ApplicationContext context;
+
+  @Test
+  public void find()
+  {
+    final String command = "find";
+    final String commandMethod = "find";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("8. Catalog Query Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Find tables, columns, routines and parameters in the loaded catalog by name"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class,
+                             String.class,
+                             int.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget, "authors", "table", 100).toString(),
+               startsWith("Found 1 object(s)"));
+    assertThat(invoke(commandTarget, "nosuchname", "", 100).toString(),
+               startsWith("Found 0 object(s)"));
+  }
+
+  @Test
+  public void findDefinitions()
+  {
+    final String command = "find-definitions";
+    final String commandMethod = "findDefinitions";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("8. Catalog Query Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Find tables and routines with definitions that contain a regular expression"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class,
+                             int.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget, "book authors", 100).toString(),
+               startsWith("Found 1 object(s)"));
+    assertThat(invoke(commandTarget, "no such definition", 100).toString(),
+               startsWith("Found 0 object(s)"));
+  }
+
+  @Test
+  public void foreignKeyGraph()
+  {
+    final ForeignKeyGraph foreignKeyGraph = state.getForeignKeyGraph();
+    assertThat(foreignKeyGraph.size(),
+               is(state.getCatalog().getTables().size()));
+
+    final Table authors = foreignKeyGraph.lookupTables("PUBLIC.BOOKS.AUTHORS")
+      .get(0);
+    assertThat(names(new ArrayList<>(foreignKeyGraph
+      .expand(Arrays.asList(authors), TableRelationshipType.child, 0))),
+               is("PUBLIC.BOOKS.AUTHORS"));
+
+    // Depth expansion matches the relationships of the tables
+    for (final Table table: foreignKeyGraph.getTables())
+    {
+      final Set<Table> expected = new HashSet<>(table
+        .getRelatedTables(TableRelationshipType.child));
+      expected.add(table);
+      assertThat(foreignKeyGraph.expand(Arrays.asList(table),
+                                        TableRelationshipType.child,
+                                        1),
+                 is(expected));
+    }
+
+    final List<Step> path = foreignKeyGraph.shortestPath(authors,
+                                                         foreignKeyGraph
+                                                           .lookupTables("PUBLIC.BOOKS.BOOKS")
+                                                           .get(0));
+    assertThat(path.size(), is(2));
+    assertThat(path.get(0).getTo().getFullName(),
+               is("PUBLIC.BOOKS.BOOKAUTHORS"));
+    assertThat(path.get(0).getRelationshipType(),
+               is(TableRelationshipType.child));
+    assertThat(path.get(1).getTo().getFullName(), is("PUBLIC.BOOKS.BOOKS"));
+    assertThat(path.get(1).getRelationshipType(),
+               is(TableRelationshipType.parent));
+
+    // Publishers are not related to books by a foreign key
+    assertThat(foreignKeyGraph
+      .shortestPath(authors,
+                    foreignKeyGraph.lookupTables("PUBLIC.BOOKS.PUBLISHERS")
+                      .get(0)),
+               is(nullValue()));
+  }
+
+  @Test
+  public void grepDefinitionsInMemory()
+  {
+    final DefinitionIndex definitionIndex = state.getDefinitionIndex();
+    assertThat(names(definitionIndex.search(Pattern.compile("book authors"),
+                                            100)),
+               is("PUBLIC.BOOKS.AUTHORS"));
+    assertThat(names(definitionIndex
+      .search(Pattern.compile("(?i)CONTACT\\s+DETAILS"), 100)),
+               is("PUBLIC.BOOKS.AUTHORS"));
+    assertThat(definitionIndex.candidates(Pattern.compile(".*zzz.*")).get()
+      .isEmpty(), is(true));
+    assertThat(definitionIndex.candidates(Pattern.compile("a|b")).isPresent(),
+               is(false));
+
+    state.getSchemaCrawlerOptionsBuilder()
+      .includeGreppedDefinitions(new RegularExpressionInclusionRule(".*book publisher.*"));
+    state.setFilterCatalogInMemory(true);
+    final Catalog filteredCatalog = state.getFilteredCatalog();
+    assertThat(names(new ArrayList<>(filteredCatalog.getTables())),
+               is("PUBLIC.BOOKS.BOOKS, PUBLIC.BOOKS.PUBLISHERS"));
+
+    // Same tables as without the definition index
+    final Catalog unindexedCatalog = new FilteredCatalog(state.getCatalog(),
+                                                         state
+                                                           .getSchemaCrawlerOptionsBuilder()
+                                                           .toOptions());
+    assertThat(names(new ArrayList<>(unindexedCatalog.getTables())),
+               is("PUBLIC.BOOKS.BOOKS, PUBLIC.BOOKS.PUBLISHERS"));
+  }
+
+  @Test
+  public void grepDefinitionsInMemoryEscapes()
+  {
+    final DefinitionIndex definitionIndex = state.getDefinitionIndex();
+    final List<String> regexes = Arrays
+      .asList("\\x62ook authors",
+              "\\x{62}ook authors",
+              "\\u0062ook authors",
+              "\\0142ook authors",
+              "\\cJ?along with",
+              "\\pLook authors",
+              "\\p{Alpha}ook publisher",
+              "(?<w>o)\\k<w>k authors",
+              "(o)\\1k authors",
+              "\\(Usually the blurb",
+              "[\\Q]\\E]*internal\\) id",
+              "(\\Q(\\E)?Usually\\b");
+    for (final String regex: regexes)
+    {
+      final Pattern pattern = Pattern.compile(regex);
+      final List<NamedObject> matches = new ArrayList<>();
+      for (final NamedObject object: definitionIndex.getObjects())
+      {
+        for (final String text: definitionTexts(object))
+        {
+          if (text != null && pattern.matcher(text).find())
+          {
+            matches.add(object);
+            break;
+          }
+        }
+      }
+      assertThat(regex, matches.isEmpty(), is(false));
+      assertThat(regex,
+                 names(definitionIndex.search(pattern, Integer.MAX_VALUE)),
+                 is(names(matches)));
+    }
+  }
+
+  @Test
+  public void nameIndex()
+  {
+    final CatalogNameIndex nameIndex = state.getNameIndex();
+    assertThat(nameIndex.size() > 19, is(true));
+
+    assertThat(names(nameIndex.find("authors", ObjectType.table, 100)),
+               is("PUBLIC.BOOKS.AUTHORS"));
+    assertThat(names(nameIndex.find("AUTHORS.FIRST*", null, 100)),
+               is("PUBLIC.BOOKS.AUTHORS.FIRSTNAME"));
+    assertThat(names(nameIndex.find("books.authors.id", null, 100)),
+               is("PUBLIC.BOOKS.AUTHORS.ID"));
+    assertThat(nameIndex.find("id", ObjectType.column, 2).size(), is(2));
+    assertThat(nameIndex.lookup("Authors").length, is(1));
+  }
+
+  @Test
+  public void path()
+  {
+    final String command = "path";
+    final String commandMethod = "path";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("8. Catalog Query Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Show the shortest foreign key path between two tables"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             String.class,
+                             String.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget,
+                      "PUBLIC.BOOKS.AUTHORS",
+                      "PUBLIC.BOOKS.BOOKS").toString(),
+               startsWith("Found path of 2 foreign key(s)"));
+    assertThat(invoke(commandTarget,
+                      "PUBLIC.BOOKS.AUTHORS",
+                      "PUBLIC.BOOKS.AUTHORS").toString(),
+               startsWith("Found path of 0 foreign key(s)"));
+    assertThat(invoke(commandTarget,
+                      "PUBLIC.BOOKS.AUTHORS",
+                      "PUBLIC.BOOKS.PUBLISHERS").toString(),
+               startsWith("No foreign key path"));
+  }
+
+  @Before
+  public void setup()
+    throws SQLException
+  {
+    final StandardMethodTargetRegistrar registrar = new StandardMethodTargetRegistrar();
+    registrar.setApplicationContext(context);
+    registrar.register(registry);
+
+    // Create a connection
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+
+    // Load schema
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+  }
+
+  @After
+  public void sweep()
+  {
+    state.sweep();
+  }
+
+  private List<String> definitionTexts(final NamedObject object)
+  {
+    final List<String> texts = new ArrayList<>();
+    if (object instanceof Table)
+    {
+      final Table table = (Table) object;
+      texts.add(table.getRemarks());
+      texts.add(table.getDefinition());
+      for (final Column column: table.getColumns())
+      {
+        texts.add(column.getRemarks());
+      }
+      for (final Trigger trigger: table.getTriggers())
+      {
+        texts.add(trigger.getActionStatement());
+      }
+    }
+    else if (object instanceof Routine)
+    {
+      final Routine routine = (Routine) object;
+      texts.add(routine.getRemarks());
+      texts.add(routine.getDefinition());
+      for (final RoutineColumn<?> parameter: routine.getColumns())
+      {
+        texts.add(parameter.getRemarks());
+      }
+    }
+    return texts;
+  }
+
+  private String names(final List<? extends NamedObject> objects)
+  {
+    final StringBuilder buffer = new StringBuilder();
+    for (final NamedObject object: objects)
+    {
+      if (buffer.length() > 0)
+      {
+        buffer.append(", ");
+      }
+      buffer.append(object.getFullName());
+    }
+    return buffer.toString();
+  }
+
+}
@@ -32,8 +32,10 @@ package schemacrawler.shell.test.functional;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.springframework.util.ReflectionUtils.findMethod;
 import static schemacrawler.test.utility.FileHasContent.classpathResource;
 import static schemacrawler.test.utility.FileHasContent.hasNoContent;
@@ -62,6 +64,8 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import schemacrawler.shell.commands.ConnectCommands;
+import schemacrawler.shell.state.ConnectionPoolOptions;
+import schemacrawler.shell.state.PooledDataSource;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
 import schemacrawler.shell.test.TestSchemaCrawlerShellState;
@@ -97,6 +101,12 @@ public class ConnectCommandsTest
     System.setErr(new PrintStream(new FileOutputStream(FileDescriptor.err)));
   }
 
+  @After
+  public void resetPoolOptions()
+  {
+    state.setConnectionPoolOptions(new ConnectionPoolOptions());
+  }
+
   @Test
   public void connect()
     throws SQLException
@@ -165,6 +175,154 @@ public class ConnectCommandsTest
     assertConnection();
   }
 
+  @Test
+  public void connectFailure()
+  {
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    try
+    {
+      connectCommands
+        .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "not-the-password");
+      fail("Connected with an incorrect password");
+    }
+    catch (final RuntimeException e)
+    {
+      assertThat(e.getMessage(), is("Cannot connect to database"));
+    }
+
+    assertThat(state.isConnected(), is(false));
+    assertThat(state.getDataSource(), nullValue());
+  }
+
+  @Test
+  public void connectionRevalidation()
+    throws Exception
+  {
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+    assertThat(state.isConnected(), is(true));
+
+    // A failure marks the connection as lost, until it is validated
+    // again in the background
+    state.connectionFailed(new SQLException("Test failure"));
+    assertThat(state.getDataSource(), notNullValue());
+    for (int i = 0; i < 100 && !state.isConnected(); i++)
+    {
+      Thread.sleep(100);
+    }
+    assertThat(state.isConnected(), is(true));
+
+    state.disconnect();
+    assertThat(state.isConnected(), is(false));
+  }
+
+  @Test
+  public void disconnect()
+    throws SQLException
+  {
+    final String command = "disconnect";
+    final String commandMethod = "disconnect";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("1. Database Connection Commands"));
+    assertThat(commandTarget.getHelp(), is("Disconnect from a database"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST, commandMethod)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+    assertThat(state.isConnected(), is(true));
+
+    invoke(commandTarget);
+
+    assertThat(state.isConnected(), is(false));
+    assertThat(state.getDataSource(), nullValue());
+  }
+
+  @Test
+  public void pool()
+  {
+    final String command = "pool";
+    final String commandMethod = "pool";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("1. Database Connection Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Set connection pool options, for connections made after this"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             int.class,
+                             int.class,
+                             int.class,
+                             long.class,
+                             String.class,
+                             int.class,
+                             boolean.class,
+                             long.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    invoke(commandTarget, 4, 2, 1, 1000L, "", 5, false, -1L);
+    assertThat(state.getConnectionPoolOptions().getMaxTotal(), is(4));
+
+    // The pool would otherwise silently lower the minimum
+    try
+    {
+      invoke(commandTarget, 8, 2, 4, -1L, "", -1, false, -1L);
+      fail("Set more minimum than maximum idle connections");
+    }
+    catch (final RuntimeException e)
+    {
+      assertThat(e.getCause().getMessage(),
+                 is("Minimum number of idle connections, 4, cannot be more than the maximum, 2"));
+    }
+    assertThat(state.getConnectionPoolOptions().getMaxTotal(), is(4));
+
+    // Pool options are kept when the shell disconnects
+    state.sweep();
+    assertThat(state.getConnectionPoolOptions().getMaxTotal(), is(4));
+  }
+
+  @Test
+  public void poolStats()
+    throws SQLException
+  {
+    final String command = "pool-stats";
+    final String commandMethod = "poolStats";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("1. Database Connection Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Show connection pool statistics"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST, commandMethod)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands.pool(4, 2, 1, 1000, "", 5, true, -1);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+    assertConnection();
+
+    assertThat(state.getDataSource(), is(instanceOf(PooledDataSource.class)));
+    final PooledDataSource dataSource = (PooledDataSource) state
+      .getDataSource();
+    assertThat(dataSource.getMaxTotal(), is(4));
+    assertThat(dataSource.getMaxIdle(), is(2));
+    assertThat(dataSource.getMinIdle(), is(1));
+    assertThat(dataSource.isPoolPreparedStatements(), is(true));
+    assertThat(dataSource.getMaxWaitMillis(), is(1000L));
+
+    final Object returnValue = invoke(commandTarget);
+    assertThat(returnValue, nullValue());
+  }
+
   @Test
   public void servers()
     throws Exception
@@ -29,11 +29,16 @@ http://www.gnu.org/licenses/
 package schemacrawler.shell.test.functional;
 
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.StringContains.containsString;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
 import static org.springframework.util.ReflectionUtils.findMethod;
 import static schemacrawler.test.utility.FileHasContent.classpathResource;
 import static schemacrawler.test.utility.FileHasContent.hasNoContent;
@@ -43,14 +48,27 @@ import static schemacrawler.test.utility.FileHasContent.outputOf;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import org.jline.utils.AttributedString;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -60,16 +78,22 @@ import org.springframework.shell.standard.StandardMethodTargetRegistrar;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import schemacrawler.schemacrawler.Config;
 import schemacrawler.schemacrawler.InfoLevel;
 import schemacrawler.schemacrawler.SchemaCrawlerException;
 import schemacrawler.shell.commands.ConnectCommands;
 import schemacrawler.shell.commands.ExecuteCommands;
 import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.executable.OutputSink.Compression;
+import schemacrawler.shell.executable.RenderCache;
+import schemacrawler.shell.jobs.Job;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
 import schemacrawler.shell.test.TestSchemaCrawlerShellState;
 import schemacrawler.test.utility.TestName;
 import schemacrawler.test.utility.TestOutputStream;
+import schemacrawler.tools.integration.graph.GraphOptionsBuilder;
+import schemacrawler.tools.integration.graph.GraphvizUtility;
 import schemacrawler.tools.options.OutputOptions;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -80,10 +104,164 @@ public class ExecuteCommandsTest
   extends BaseSchemaCrawlerShellTest
 {
 
+  /**
+   * Options of the execute command, with the same defaults as the
+   * command, so that each test sets only the options that it uses.
+   */
+  private static final class ExecuteOptions
+  {
+
+    private final String command;
+    private String outputfile = "";
+    private String outputformat = "";
+    private Compression compression = Compression.auto;
+    private boolean sync;
+    private int parallelism = 1;
+    private boolean nocache;
+    private boolean partition;
+    private int maxparttables = 100;
+    private boolean pertable;
+    private long chunkrows;
+    private int fetchsize;
+    private int maxrows;
+    private double samplepercent;
+    private int sampleseed;
+    private boolean estimatecounts;
+    private boolean async;
+
+    ExecuteOptions(final String command)
+    {
+      this.command = command;
+    }
+
+    ExecuteOptions async()
+    {
+      async = true;
+      return this;
+    }
+
+    ExecuteOptions chunkrows(final long chunkrows)
+    {
+      this.chunkrows = chunkrows;
+      return this;
+    }
+
+    ExecuteOptions compression(final Compression compression)
+    {
+      this.compression = compression;
+      return this;
+    }
+
+    ExecuteOptions estimatecounts()
+    {
+      estimatecounts = true;
+      return this;
+    }
+
+    ExecuteOptions fetchsize(final int fetchsize)
+    {
+      this.fetchsize = fetchsize;
+      return this;
+    }
+
+    ExecuteOptions maxparttables(final int maxparttables)
+    {
+      this.maxparttables = maxparttables;
+      return this;
+    }
+
+    ExecuteOptions maxrows(final int maxrows)
+    {
+      this.maxrows = maxrows;
+      return this;
+    }
+
+    ExecuteOptions nocache()
+    {
+      nocache = true;
+      return this;
+    }
+
+    ExecuteOptions outputfile(final String outputfile)
+    {
+      this.outputfile = outputfile;
+      return this;
+    }
+
+    ExecuteOptions outputformat(final String outputformat)
+    {
+      this.outputformat = outputformat;
+      return this;
+    }
+
+    ExecuteOptions parallelism(final int parallelism)
+    {
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    ExecuteOptions partition()
+    {
+      partition = true;
+      return this;
+    }
+
+    ExecuteOptions pertable()
+    {
+      pertable = true;
+      return this;
+    }
+
+    ExecuteOptions samplepercent(final double samplepercent)
+    {
+      this.samplepercent = samplepercent;
+      return this;
+    }
+
+    ExecuteOptions sampleseed(final int sampleseed)
+    {
+      this.sampleseed = sampleseed;
+      return this;
+    }
+
+    ExecuteOptions sync()
+    {
+      sync = true;
+      return this;
+    }
+
+    Object[] toArguments()
+    {
+      return new Object[] {
+                            command,
+                            outputfile,
+                            outputformat,
+                            compression,
+                            sync,
+                            parallelism,
+                            nocache,
+                            partition,
+                            maxparttables,
+                            pertable,
+                            chunkrows,
+                            fetchsize,
+                            maxrows,
+                            samplepercent,
+                            sampleseed,
+                            estimatecounts,
+                            async };
+    }
+
+  }
+
   private static final Class<?> COMMANDS_CLASS_UNDER_TEST = ExecuteCommands.class;
 
   @Rule
   public TestName testName = new TestName();
+  @Rule
+  public TemporaryFolder renderCacheDirectory = new TemporaryFolder();
+  @Rule
+  public TemporaryFolder layoutCacheDirectory = new TemporaryFolder();
 
   private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
   @Autowired
@@ -142,7 +320,21 @@ public class ExecuteCommandsTest
                              commandMethod,
                              String.class,
                              String.class,
-                             String.class)));
+                             String.class,
+                             Compression.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             long.class,
+                             int.class,
+                             int.class,
+                             double.class,
+                             int.class,
+                             boolean.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     // Check state before invoking command
@@ -150,7 +342,8 @@ public class ExecuteCommandsTest
       .toOptions();
     assertThat(preOutputOptions.getOutputFormatValue(), is("text"));
 
-    final Object returnValue = invoke(commandTarget, "schema", "", "text");
+    final Object returnValue = execute(command("schema")
+      .outputformat("text"));
 
     // Check state after invoking command
     final OutputOptions postOutputOptions = state.getOutputOptionsBuilder()
@@ -167,10 +360,599 @@ public class ExecuteCommandsTest
     assertThat(outputOf(err), hasNoContent());
   }
 
+  @Test
+  public void executeAsync()
+    throws Exception
+  {
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    final Object returnValue = execute(command("schema")
+      .outputfile(outputFile.toString())
+      .outputformat("text")
+      .async());
+    assertThat(returnValue.toString(), startsWith("Started job"));
+
+    final Job job = state.getJobRegistry().lookupJob(0).get();
+    assertThat(job.await(),
+               startsWith(String.format("Output sent to %s", outputFile)));
+    assertThat(job.getStatus(), is(Job.Status.completed));
+    assertThat(Files.size(outputFile) > 0, is(true));
+
+    Files.delete(outputFile);
+  }
+
+  @Test
+  public void executeChunked()
+    throws Exception
+  {
+    final Path outputDirectory = Files.createTempDirectory("schemacrawler");
+    final Path manifestFile = outputDirectory.resolve("dump.txt");
+    final Object returnValue = execute(command("dump")
+      .outputfile(manifestFile.toString())
+      .outputformat("text")
+      .parallelism(4)
+      .pertable()
+      .chunkrows(5L));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s", manifestFile)));
+
+    // Authors, with keys from 1 to 20, are dumped in chunks, in key
+    // order
+    final List<String[]> chunks = Files.readAllLines(manifestFile).stream()
+      .map(line -> line.split("\t"))
+      .filter(fields -> fields[1].equals("PUBLIC.BOOKS.AUTHORS"))
+      .collect(Collectors.toList());
+    assertThat(chunks.size(), is(4));
+    final List<String> keys = new ArrayList<>();
+    for (final String[] chunk: chunks)
+    {
+      assertThat(chunk[6], startsWith("ID "));
+      for (final String line: Files
+        .readAllLines(outputDirectory.resolve(chunk[0])))
+      {
+        if (line.matches("\\d+\t.*"))
+        {
+          keys.add(line.substring(0, line.indexOf('\t')));
+        }
+      }
+    }
+    final List<String> expectedKeys = new ArrayList<>();
+    for (int key = 1; key <= 20; key++)
+    {
+      expectedKeys.add(String.valueOf(key));
+    }
+    assertThat(keys, is(expectedKeys));
+
+    try (final Stream<Path> files = Files.list(outputDirectory);)
+    {
+      for (final Path file: files.collect(Collectors.toList()))
+      {
+        Files.delete(file);
+      }
+    }
+    Files.delete(outputDirectory);
+  }
+
+  @Test
+  public void executeCompressed()
+    throws Exception
+  {
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    final Object returnValue = execute(command("details")
+      .outputfile(outputFile.toString()));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s", outputFile)));
+    assertThat(returnValue.toString(),
+               containsString(String.format("(%,d bytes, at",
+                                            Files.size(outputFile))));
+
+    final Path compressedOutputFile = Files.createTempFile("schemacrawler",
+                                                           ".txt.gz");
+    final Object compressedReturnValue = execute(command("details")
+      .outputfile(compressedOutputFile
+                                                  .toString())
+      .sync());
+    assertThat(compressedReturnValue.toString(),
+               containsString(String.format("compressed to %,d bytes",
+                                            Files.size(compressedOutputFile))));
+    assertThat(Files.size(compressedOutputFile) < Files.size(outputFile),
+               is(true));
+
+    final Path uncompressedOutputFile = Files.createTempFile("schemacrawler",
+                                                             ".txt");
+    try (
+        final InputStream in = new GZIPInputStream(Files
+          .newInputStream(compressedOutputFile));)
+    {
+      Files.copy(in, uncompressedOutputFile, REPLACE_EXISTING);
+    }
+    assertThat(withoutTimestamps(uncompressedOutputFile),
+               is(withoutTimestamps(outputFile)));
+
+    Files.delete(outputFile);
+    Files.delete(compressedOutputFile);
+    Files.delete(uncompressedOutputFile);
+  }
+
+  @Test
+  public void executeParallel()
+    throws Exception
+  {
+    final Path serialOutputFile = Files.createTempFile("schemacrawler",
+                                                       ".txt");
+    execute(command("brief,count,details")
+      .outputfile(serialOutputFile.toString())
+      .outputformat("text"));
+
+    final Path parallelOutputFile = Files.createTempFile("schemacrawler",
+                                                         ".txt");
+    final Object returnValue = execute(command("brief,count,details")
+      .outputfile(parallelOutputFile.toString())
+      .outputformat("text")
+      .parallelism(3)
+      .nocache());
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s",
+                                        parallelOutputFile)));
+
+    assertThat(Files.size(parallelOutputFile) > 0, is(true));
+    // Output is in command order, with a single header and footer,
+    // apart from the crawl timestamps
+    assertThat(withoutTimestamps(parallelOutputFile),
+               is(withoutTimestamps(serialOutputFile)));
+
+    Files.delete(serialOutputFile);
+    Files.delete(parallelOutputFile);
+  }
+
+  @Test
+  public void executeLayoutCacheMiss()
+    throws Exception
+  {
+    // Diagrams are laid out by Graphviz from the DOT graph that is
+    // generated to look up the layout cache
+    assumeTrue(GraphvizUtility.isGraphvizAvailable());
+
+
+    final Path outputFile = Files.createTempFile("schemacrawler", ".svg");
+    final Object returnValue = execute(command("schema")
+      .outputfile(outputFile.toString())
+      .outputformat("svg"));
+    assertThat(returnValue.toString(),
+               not(containsString("from layout cache")));
+    assertThat(Files.size(outputFile) > 0, is(true));
+
+    // Render again, without the rendered output
+    state.setRenderCacheDirectory(renderCacheDirectory.newFolder()
+      .toString());
+    final Path cachedOutputFile = Files.createTempFile("schemacrawler",
+                                                       ".svg");
+    final Object cachedReturnValue = execute(command("schema")
+      .outputfile(cachedOutputFile.toString())
+      .outputformat("svg"));
+    assertThat(cachedReturnValue.toString(),
+               containsString("from layout cache"));
+    assertThat(Files.readAllBytes(cachedOutputFile),
+               is(Files.readAllBytes(outputFile)));
+
+    Files.delete(outputFile);
+    Files.delete(cachedOutputFile);
+  }
+
+  @Test
+  public void executeLayoutCache()
+    throws Exception
+  {
+    // Generate the DOT graph, and cache a diagram for it, without
+    // needing Graphviz
+    final Path dotFile = Files.createTempFile("schemacrawler", ".scdot");
+    execute(command("schema")
+      .outputfile(dotFile.toString())
+      .outputformat("scdot"));
+    final Config config = new Config();
+    if (state.getAdditionalConfiguration() != null)
+    {
+      config.putAll(state.getAdditionalConfiguration());
+    }
+    final String layoutCacheKey = RenderCache
+      .layoutCacheKey(Files.readAllBytes(dotFile),
+                      "svg",
+                      GraphOptionsBuilder.newGraphOptions(config)
+                        .getGraphvizOpts());
+    final Path cachedDiagram = Files.createTempFile("schemacrawler", ".svg");
+    Files.write(cachedDiagram, Arrays.asList("<svg/>"));
+    state.getLayoutCache().save(layoutCacheKey, cachedDiagram);
+
+    final Path outputFile = Files.createTempFile("schemacrawler", ".svg");
+    final Object returnValue = execute(command("schema")
+      .outputfile(outputFile.toString())
+      .outputformat("svg"));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s from layout cache",
+                                        outputFile)));
+    assertThat(Files.readAllLines(outputFile), is(Arrays.asList("<svg/>")));
+
+    Files.delete(dotFile);
+    Files.delete(cachedDiagram);
+    Files.delete(outputFile);
+  }
+
+  @Test
+  public void executePartitioned()
+    throws Exception
+  {
+    final Path outputDirectory = Files.createTempDirectory("schemacrawler");
+    final Path indexFile = outputDirectory.resolve("diagram.html");
+    final Object returnValue = execute(command("schema")
+      .outputfile(indexFile.toString())
+      .outputformat("scdot")
+      .parallelism(2)
+      .partition()
+      .maxparttables(5));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s, with a diagram in",
+                                        indexFile)));
+
+    final List<String> index = Files.readAllLines(indexFile);
+    final List<Path> partFiles = Files.list(outputDirectory)
+      .filter(path -> path.getFileName().toString().endsWith(".scdot"))
+      .sorted().collect(Collectors.toList());
+    assertThat(partFiles.size() > 1, is(true));
+    for (final Path partFile: partFiles)
+    {
+      assertThat(index.stream().anyMatch(line -> line
+        .contains(partFile.getFileName().toString())), is(true));
+      assertThat(Files.readAllLines(partFile).stream()
+        .anyMatch(line -> line.startsWith("digraph")), is(true));
+      Files.delete(partFile);
+    }
+
+    // Tables connected by foreign keys are in the same part
+    assertThat(index.stream()
+      .anyMatch(line -> line.contains("PUBLIC.BOOKS.AUTHORS")
+                        && line.contains("PUBLIC.BOOKS.BOOKAUTHORS")
+                        && line.contains("PUBLIC.BOOKS.BOOKS")),
+               is(true));
+    // Small groups of connected tables are packed into a part
+    assertThat(index.stream()
+      .anyMatch(line -> line.contains("PUBLIC.BOOKS.PUBLISHERS")
+                        && line.split(", ").length == 5),
+               is(true));
+
+    Files.delete(indexFile);
+    Files.delete(outputDirectory);
+  }
+
+  @Test
+  public void executePerTable()
+    throws Exception
+  {
+    final Path outputDirectory = Files.createTempDirectory("schemacrawler");
+    final Path manifestFile = outputDirectory.resolve("dump.txt");
+    final Object returnValue = execute(command("dump")
+      .outputfile(manifestFile.toString())
+      .outputformat("text")
+      .parallelism(3)
+      .pertable());
+    final int tableCount = state.getFilteredCatalog().getTables().size();
+    assertThat(returnValue.toString(),
+               startsWith(String
+                 .format("Output sent to %s, with %d tables in their own files",
+                         manifestFile,
+                         tableCount)));
+
+    final List<String> manifest = Files.readAllLines(manifestFile);
+    assertThat(manifest.size(), is(tableCount + 1));
+    assertThat(manifest.get(0), startsWith("file\ttable"));
+    for (final String line: manifest.subList(1, manifest.size()))
+    {
+      final String[] fields = line.split("\t");
+      final Path tableFile = outputDirectory.resolve(fields[0]);
+      assertThat(fields[0], startsWith("dump-"));
+      assertThat(Files.size(tableFile), is(Long.parseLong(fields[3])));
+      // Each file has the data for its own table only
+      assertThat(new String(Files.readAllBytes(tableFile), UTF_8),
+                 containsString(String.format("%n%s ", fields[1])));
+      Files.delete(tableFile);
+    }
+
+    Files.delete(manifestFile);
+    Files.delete(outputDirectory);
+  }
+
+  @Test
+  public void executeRenderCache()
+    throws Exception
+  {
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    final Object returnValue = execute(command("schema")
+      .outputfile(outputFile.toString())
+      .outputformat("text"));
+    assertThat(returnValue.toString(),
+               not(containsString("from render cache")));
+
+    // Same catalog, options and command
+    final Path cachedOutputFile = Files.createTempFile("schemacrawler",
+                                                       ".txt");
+    final Object cachedReturnValue = execute(command("schema")
+      .outputfile(cachedOutputFile.toString())
+      .outputformat("text"));
+    assertThat(cachedReturnValue.toString(),
+               startsWith(String.format("Output sent to %s from render cache",
+                                        cachedOutputFile)));
+    assertThat(Files.readAllLines(cachedOutputFile),
+               is(Files.readAllLines(outputFile)));
+
+    // Cached output is copied, so changing the output file does not
+    // change the cached output
+    Files.write(cachedOutputFile,
+                "changed".getBytes(UTF_8),
+                StandardOpenOption.APPEND);
+    final Path restoredOutputFile = Files.createTempFile("schemacrawler",
+                                                         ".txt");
+    execute(command("schema")
+      .outputfile(restoredOutputFile.toString())
+      .outputformat("text"));
+    assertThat(Files.readAllLines(restoredOutputFile),
+               is(Files.readAllLines(outputFile)));
+    Files.delete(restoredOutputFile);
+
+    // Output that reads table data is never served from the cache
+    for (int i = 0; i < 2; i++)
+    {
+      final Object dumpReturnValue = execute(command("dump")
+        .outputfile(cachedOutputFile.toString())
+        .outputformat("text"));
+      assertThat(dumpReturnValue.toString(),
+                 not(containsString("from render cache")));
+    }
+
+    final Object uncachedReturnValue = execute(command("schema")
+      .outputfile(cachedOutputFile.toString())
+      .outputformat("text")
+      .nocache());
+    assertThat(uncachedReturnValue.toString(),
+               not(containsString("from render cache")));
+
+    // Cached output is evicted when there is not enough room
+    try
+    {
+      state.setRenderCacheMaxSize(Files.size(outputFile));
+      execute(command("brief")
+        .outputfile(outputFile.toString())
+        .outputformat("text"));
+      final RenderCache renderCache = state.getRenderCache();
+      assertThat(renderCache.size() <= renderCache.getMaxSize(), is(true));
+
+      final Object evictedReturnValue = execute(command("schema")
+        .outputfile(cachedOutputFile.toString())
+        .outputformat("text"));
+      assertThat(evictedReturnValue.toString(),
+                 not(containsString("from render cache")));
+    }
+    finally
+    {
+      state.setRenderCacheMaxSize(256L * 1024 * 1024);
+    }
+
+    Files.delete(outputFile);
+    Files.delete(cachedOutputFile);
+  }
+
+  @Test
+  public void executeRenderCacheMissOnPrivilegeChange()
+    throws Exception
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.maximum, false, false, 1, false, "", InfoLevel.maximum, false);
+
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    execute(command("details")
+      .outputfile(outputFile.toString())
+      .outputformat("text"));
+    assertThat(execute(command("details")
+      .outputfile(outputFile.toString())
+      .outputformat("text")).toString(), containsString("from render cache"));
+
+    // Only a privilege changes, so the output has to be rendered again
+    try
+    {
+      executeDdl("CREATE ROLE RENDER_CACHE_TEST",
+                 "GRANT SELECT ON TABLE BOOKS.AUTHORS TO RENDER_CACHE_TEST");
+      loadCommands.loadCatalog(InfoLevel.maximum, false, false, 1, false, "", InfoLevel.maximum, false);
+      final Object returnValue = execute(command("details")
+        .outputfile(outputFile.toString())
+        .outputformat("text"));
+      assertThat(returnValue.toString(),
+                 not(containsString("from render cache")));
+      assertThat(Files.readAllLines(outputFile).stream()
+        .anyMatch(line -> line.contains("RENDER_CACHE_TEST")), is(true));
+    }
+    finally
+    {
+      executeDdl("DROP ROLE RENDER_CACHE_TEST");
+    }
+
+    Files.delete(outputFile);
+  }
+
+  @Test
+  public void executeRowCounts()
+    throws Exception
+  {
+    final int tableCount = state.getFilteredCatalog().getTables().size();
+
+    state.getRowCountCache().clear();
+    final Path serialOutputFile = Files.createTempFile("schemacrawler",
+                                                       ".txt");
+    execute(command("count")
+      .outputfile(serialOutputFile.toString())
+      .outputformat("text")
+      .nocache());
+    assertThat(state.getRowCountCache().size(), is(tableCount));
+
+    state.getRowCountCache().clear();
+    final Path parallelOutputFile = Files.createTempFile("schemacrawler",
+                                                         ".txt");
+    final Object returnValue = execute(command("count")
+      .outputfile(parallelOutputFile.toString())
+      .outputformat("text")
+      .parallelism(4)
+      .nocache());
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s",
+                                        parallelOutputFile)));
+    assertThat(state.getRowCountCache().size(), is(tableCount));
+    // Tables counted in parallel have the same counts, in the same
+    // order
+    assertThat(withoutTimestamps(parallelOutputFile),
+               is(withoutTimestamps(serialOutputFile)));
+
+    // Counts are answered from the row count cache
+    final Path cachedOutputFile = Files.createTempFile("schemacrawler",
+                                                       ".txt");
+    execute(command("count")
+      .outputfile(cachedOutputFile.toString())
+      .outputformat("text")
+      .parallelism(4)
+      .nocache());
+    assertThat(withoutTimestamps(cachedOutputFile),
+               is(withoutTimestamps(serialOutputFile)));
+
+    Files.delete(serialOutputFile);
+    Files.delete(parallelOutputFile);
+    Files.delete(cachedOutputFile);
+  }
+
+  @Test
+  public void executeSampled()
+    throws Exception
+  {
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    execute(command("dump")
+      .outputfile(outputFile.toString())
+      .outputformat("text")
+      .nocache());
+
+    final Path sampledOutputFile = Files.createTempFile("schemacrawler",
+                                                        ".txt");
+    final Object returnValue = execute(command("dump")
+      .outputfile(sampledOutputFile.toString())
+      .outputformat("text")
+      .nocache()
+      .samplepercent(50.0)
+      .sampleseed(7));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s",
+                                        sampledOutputFile)));
+    assertThat(Files.size(sampledOutputFile) < Files.size(outputFile),
+               is(true));
+
+    // The same seed samples the same rows again
+    final Path resampledOutputFile = Files.createTempFile("schemacrawler",
+                                                          ".txt");
+    execute(command("dump")
+      .outputfile(resampledOutputFile.toString())
+      .outputformat("text")
+      .nocache()
+      .samplepercent(50.0)
+      .sampleseed(7));
+    assertThat(withoutTimestamps(resampledOutputFile),
+               is(withoutTimestamps(sampledOutputFile)));
+
+    // The maximum number of rows is taken from the sample
+    final Path limitedOutputFile = Files.createTempFile("schemacrawler",
+                                                        ".txt");
+    execute(command("dump")
+      .outputfile(limitedOutputFile.toString())
+      .outputformat("text")
+      .nocache()
+      .maxrows(1)
+      .samplepercent(50.0)
+      .sampleseed(7));
+    final List<String> lines = Files.readAllLines(limitedOutputFile);
+    final List<String> sampledLines = Files.readAllLines(sampledOutputFile);
+    int tableCount = 0;
+    for (int i = 0; i < lines.size(); i++)
+    {
+      if (lines.get(i).startsWith("-----"))
+      {
+        tableCount++;
+        assertThat(i + 3 >= lines.size() || lines.get(i + 3).trim().isEmpty(),
+                   is(true));
+        if (i + 2 < lines.size() && !lines.get(i + 2).trim().isEmpty())
+        {
+          assertThat(sampledLines.contains(lines.get(i + 2)), is(true));
+        }
+      }
+    }
+    assertThat(tableCount > 0, is(true));
+
+    Files.delete(outputFile);
+    Files.delete(sampledOutputFile);
+    Files.delete(resampledOutputFile);
+    Files.delete(limitedOutputFile);
+  }
+
+  @Test
+  public void executeStreaming()
+    throws Exception
+  {
+    final Path outputFile = Files.createTempFile("schemacrawler", ".txt");
+    execute(command("dump")
+      .outputfile(outputFile.toString())
+      .outputformat("text")
+      .nocache());
+
+    final Path streamedOutputFile = Files.createTempFile("schemacrawler",
+                                                         ".txt");
+    final Object returnValue = execute(command("dump")
+      .outputfile(streamedOutputFile.toString())
+      .outputformat("text")
+      .nocache()
+      .fetchsize(2));
+    assertThat(returnValue.toString(),
+               startsWith(String.format("Output sent to %s",
+                                        streamedOutputFile)));
+    // Rows fetched a few at a time are the same rows
+    assertThat(withoutTimestamps(streamedOutputFile),
+               is(withoutTimestamps(outputFile)));
+
+    final Path limitedOutputFile = Files.createTempFile("schemacrawler",
+                                                        ".txt");
+    execute(command("dump")
+      .outputfile(limitedOutputFile.toString())
+      .outputformat("text")
+      .nocache()
+      .fetchsize(2)
+      .maxrows(1));
+    // Each table has a row of column names, and at most one row of data
+    final List<String> lines = Files.readAllLines(limitedOutputFile);
+    int tableCount = 0;
+    for (int i = 0; i < lines.size(); i++)
+    {
+      if (lines.get(i).startsWith("-----"))
+      {
+        tableCount++;
+        assertThat(i + 3 >= lines.size() || lines.get(i + 3).trim().isEmpty(),
+                   is(true));
+      }
+    }
+    assertThat(tableCount > 0, is(true));
+    assertThat(Files.size(limitedOutputFile) < Files.size(outputFile),
+               is(true));
+
+    Files.delete(outputFile);
+    Files.delete(streamedOutputFile);
+    Files.delete(limitedOutputFile);
+  }
+
   @Before
   public void setup()
     throws SchemaCrawlerException, SQLException
   {
+    state.setRenderCacheDirectory(renderCacheDirectory.getRoot().toString());
+    state.setLayoutCacheDirectory(layoutCacheDirectory.getRoot().toString());
+
     final StandardMethodTargetRegistrar registrar = new StandardMethodTargetRegistrar();
     registrar.setApplicationContext(context);
     registrar.register(registry);
@@ -182,7 +964,7 @@ public class ExecuteCommandsTest
 
     // Load schema
     final LoadCommands loadCommands = new LoadCommands(state);
-    loadCommands.loadCatalog(InfoLevel.standard);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
   }
 
   @Before
@@ -196,6 +978,38 @@ public class ExecuteCommandsTest
     System.setErr(new PrintStream(err));
   }
 
+  private static ExecuteOptions command(final String command)
+  {
+    return new ExecuteOptions(command);
+  }
+
+  private Object execute(final ExecuteOptions options)
+  {
+    return invoke(lookupCommand(registry, "execute"), options.toArguments());
+  }
+
+  private void executeDdl(final String... sqls)
+    throws SQLException
+  {
+    try (final Connection connection = state.getDataSource().getConnection();
+        final Statement statement = connection.createStatement();)
+    {
+      for (final String sql: sqls)
+      {
+        statement.execute(sql);
+      }
+    }
+  }
+
+  private List<String> withoutTimestamps(final Path file)
+    throws IOException
+  {
+    return Files.readAllLines(file).stream()
+      .map(line -> line.replaceAll("\\d{4}-\\d{2}-\\d{2}[ T][\\d:.]+",
+                                   ""))
+      .collect(Collectors.toList());
+  }
+
   @After
   public void sweep()
   {
@@ -31,15 +31,20 @@ package schemacrawler.shell.test.functional;
 
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsCollectionContaining.hasItem;
+import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.springframework.util.ReflectionUtils.findMethod;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -49,13 +54,23 @@ import org.springframework.shell.standard.StandardMethodTargetRegistrar;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.ForeignKeyColumnReference;
 import schemacrawler.schema.RoutineType;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
 import schemacrawler.schemacrawler.InclusionRule;
 import schemacrawler.schemacrawler.InclusionRuleWithRegularExpression;
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.schemacrawler.RegularExpressionInclusionRule;
 import schemacrawler.schemacrawler.SchemaCrawlerException;
 import schemacrawler.schemacrawler.SchemaCrawlerOptions;
+import schemacrawler.shell.catalog.MappedCatalog;
+import schemacrawler.shell.commands.CatalogFileCommands;
 import schemacrawler.shell.commands.ConnectCommands;
 import schemacrawler.shell.commands.FilterCommands;
+import schemacrawler.shell.commands.LoadCommands;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
 import schemacrawler.shell.test.TestSchemaCrawlerShellState;
@@ -69,6 +84,10 @@ public class FilterCommandsTest
 {
 
   private static final Class<?> COMMANDS_CLASS_UNDER_TEST = FilterCommands.class;
+  private static final String FILTERED_OUT = "schemacrawler.table.filtered_out";
+
+  @Rule
+  public TemporaryFolder catalogDirectory = new TemporaryFolder();
 
   private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
   @Autowired
@@ -98,7 +117,8 @@ public class FilterCommandsTest
                              commandMethod,
                              boolean.class,
                              int.class,
-                             int.class)));
+                             int.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     // Check state before invoking command
@@ -108,7 +128,7 @@ public class FilterCommandsTest
     assertThat(preOptions.getChildTableFilterDepth(), is(0));
     assertThat(preOptions.getParentTableFilterDepth(), is(0));
 
-    invoke(commandTarget, true, 1, 1);
+    invoke(commandTarget, true, 1, 1, false);
 
     // Check state after invoking command
     final SchemaCrawlerOptions postOptions = state
@@ -118,6 +138,129 @@ public class FilterCommandsTest
     assertThat(postOptions.getParentTableFilterDepth(), is(1));
   }
 
+  @Test
+  public void filterInMemory()
+    throws SQLException
+  {
+    final MethodTarget commandTarget = lookupCommand(registry, "filter");
+
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+    final Catalog catalog = state.getCatalog();
+    assertThat(state.getFilteredCatalog(), is(sameInstance(catalog)));
+
+    state.getSchemaCrawlerOptionsBuilder()
+      .includeTables(new RegularExpressionInclusionRule(".*\\.AUTHORS"));
+    invoke(commandTarget, false, 0, 1, true);
+    assertThat(state.isFilterCatalogInMemory(), is(true));
+
+    final Catalog filteredCatalog = state.getFilteredCatalog();
+    assertThat(filteredCatalog, is(not(sameInstance(catalog))));
+    assertThat(state.getFilteredCatalog(), is(sameInstance(filteredCatalog)));
+    assertThat(state.getCatalog(), is(sameInstance(catalog)));
+    assertThat(catalog.getTables().size(), is(19));
+    assertThat(filteredCatalog.getTables().size(), is(2));
+
+    final Schema schema = filteredCatalog.lookupSchema("PUBLIC.BOOKS").get();
+    assertThat(filteredCatalog.lookupTable(schema, "AUTHORS").isPresent(),
+               is(true));
+    assertThat(filteredCatalog.lookupTable(schema, "BOOKAUTHORS").isPresent(),
+               is(true));
+    assertThat(filteredCatalog.lookupTable(schema, "BOOKS").isPresent(),
+               is(false));
+    assertThat(catalog.lookupTable(schema, "BOOKS").isPresent(), is(true));
+
+    // Tables that are filtered out are marked in the view, and not in
+    // the loaded catalog
+    final Table bookAuthors = filteredCatalog
+      .lookupTable(schema, "BOOKAUTHORS").get();
+    for (final ForeignKey foreignKey: bookAuthors.getImportedForeignKeys())
+    {
+      for (final ForeignKeyColumnReference columnReference: foreignKey)
+      {
+        final Table referencedTable = columnReference.getPrimaryKeyColumn()
+          .getParent();
+        assertThat(referencedTable.getFullName(),
+                   referencedTable.getAttribute(FILTERED_OUT, false),
+                   is(!referencedTable.getName().equals("AUTHORS")));
+      }
+    }
+    for (final Table table: catalog.getTables())
+    {
+      assertThat(table.getFullName(),
+                 table.hasAttribute(FILTERED_OUT),
+                 is(false));
+    }
+
+    state.getSchemaCrawlerOptionsBuilder()
+      .includeTables(new RegularExpressionInclusionRule(".*\\.BOOKS"));
+    assertThat(state.getFilteredCatalog(),
+               is(not(sameInstance(filteredCatalog))));
+
+    invoke(commandTarget, false, 0, 0, false);
+    assertThat(state.getFilteredCatalog(), is(sameInstance(catalog)));
+
+    state.sweep();
+  }
+
+  @Test
+  public void filterInMemoryImportedCatalog()
+    throws SQLException
+  {
+    final MethodTarget commandTarget = lookupCommand(registry, "filter");
+
+    final LoadCommands loadCommands = new LoadCommands(state);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+    final Path catalogFile = catalogDirectory.getRoot().toPath()
+      .resolve("schemacrawler.catalog");
+    final CatalogFileCommands catalogFileCommands = new CatalogFileCommands(state);
+    catalogFileCommands.exportCatalog(catalogFile.toString());
+    state.setCatalog(null);
+    catalogFileCommands.importCatalog(catalogFile.toString());
+    final Catalog catalog = state.getCatalog();
+    assertThat(catalog instanceof MappedCatalog, is(true));
+
+    state.getSchemaCrawlerOptionsBuilder()
+      .includeTables(new RegularExpressionInclusionRule(".*\\.AUTHORS"));
+    invoke(commandTarget, false, 0, 1, true);
+
+    final Catalog filteredCatalog = state.getFilteredCatalog();
+    assertThat(filteredCatalog, is(not(sameInstance(catalog))));
+    assertThat(state.getCatalog(), is(sameInstance(catalog)));
+    assertThat(filteredCatalog.getTables().size(), is(2));
+
+    // Marks are made in the view, without copying the imported catalog
+    final Schema schema = filteredCatalog.lookupSchema("PUBLIC.BOOKS").get();
+    final Table bookAuthors = filteredCatalog
+      .lookupTable(schema, "BOOKAUTHORS").get();
+    assertThat(bookAuthors.getImportedForeignKeys().size(), is(2));
+    for (final ForeignKey foreignKey: bookAuthors.getImportedForeignKeys())
+    {
+      for (final ForeignKeyColumnReference columnReference: foreignKey)
+      {
+        final Table referencedTable = columnReference.getPrimaryKeyColumn()
+          .getParent();
+        assertThat(referencedTable.getFullName(),
+                   referencedTable.getAttribute(FILTERED_OUT, false),
+                   is(!referencedTable.getName().equals("AUTHORS")));
+        assertThat(referencedTable.getFullName(),
+                   catalog.lookupTable(schema, referencedTable.getName())
+                     .get().hasAttribute(FILTERED_OUT),
+                   is(false));
+      }
+    }
+
+    state.sweep();
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void filterInMemoryNoEmptyTables()
+  {
+    final MethodTarget commandTarget = lookupCommand(registry, "filter");
+
+    invoke(commandTarget, true, 0, 0, true);
+  }
+
   @Test
   public void grep()
     throws SQLException
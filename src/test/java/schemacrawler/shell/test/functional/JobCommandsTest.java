@@ -0,0 +1,262 @@
+/*
+========================================================================
+SchemaCrawler
+http://www.schemacrawler.com
+Copyright (c) 2000-2019, Sualeh Fatehi <sualeh@hotmail.com>.
+All rights reserved.
+------------------------------------------------------------------------
+
+SchemaCrawler is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+SchemaCrawler and the accompanying materials are made available under
+the terms of the Eclipse Public License v1.0, GNU General Public License
+v3 or GNU Lesser General Public License v3.
+
+You may elect to redistribute this code under any of these licenses.
+
+The Eclipse Public License is available at:
+http://www.eclipse.org/legal/epl-v10.html
+
+The GNU General Public License v3 and the GNU Lesser General Public
+License v3 are available at:
+http://www.gnu.org/licenses/
+
+========================================================================
+*/
+
+package schemacrawler.shell.test.functional;
+
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.shell.ConfigurableCommandRegistry;
+import org.springframework.shell.MethodTarget;
+import org.springframework.shell.standard.StandardMethodTargetRegistrar;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import schemacrawler.schemacrawler.InfoLevel;
+import schemacrawler.shell.commands.ConnectCommands;
+import schemacrawler.shell.commands.JobCommands;
+import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.jobs.Job;
+import schemacrawler.shell.jobs.JobRegistry;
+import schemacrawler.shell.state.SchemaCrawlerShellState;
+import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
+import schemacrawler.shell.test.TestSchemaCrawlerShellState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {
+                                  TestSchemaCrawlerShellState.class,
+                                  JobCommands.class })
+public class JobCommandsTest
+  extends BaseSchemaCrawlerShellTest
+{
+
+  private static final Class<?> COMMANDS_CLASS_UNDER_TEST = JobCommands.class;
+
+  private final ConfigurableCommandRegistry registry = new ConfigurableCommandRegistry();
+  @Autowired
+  private SchemaCrawlerShellState state;
+  @Autowired
+  private ApplicationContext context;
+
+  @Test
+  public void cancel()
+  {
+    final String command = "cancel";
+    final String commandMethod = "cancel";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("7. Job Commands"));
+    assertThat(commandTarget.getHelp(), is("Cancel a background job"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             int.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget, 0).toString(), is("No running job"));
+
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    final Job job = state.getJobRegistry().submit("test", () -> {
+      cancelled.await();
+      return "Done";
+    }, () -> "waiting", cancelled::countDown);
+    assertThat(state.getJobRegistry().getRunningJob().get(), is(job));
+    assertThat(job.getProgress(), is("waiting"));
+
+    assertThat(invoke(commandTarget, 0).toString(),
+               is(String.format("Cancelled job %d", job.getId())));
+    assertThat(job.getStatus(), is(Job.Status.cancelled));
+    assertThat(state.getJobRegistry().getRunningJob().isPresent(), is(false));
+
+    assertThat(invoke(commandTarget, job.getId()).toString(),
+               is(String.format("Job %d is not running", job.getId())));
+  }
+
+  @Test
+  public void jobs()
+  {
+    final String command = "jobs";
+    final String commandMethod = "jobs";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("7. Job Commands"));
+    assertThat(commandTarget.getHelp(), is("List background jobs"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST, commandMethod)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget), nullValue());
+  }
+
+  @Test
+  public void jobStatus()
+    throws Exception
+  {
+    final String command = "job-status";
+    final String commandMethod = "jobStatus";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("7. Job Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Show the status of a background job"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             int.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget, 0).toString(), is("No job found"));
+
+    final Job job = state.getJobRegistry().submit("test",
+                                                  () -> "Done",
+                                                  null,
+                                                  null);
+    assertThat(job.await(), is("Done"));
+    assertThat(invoke(commandTarget, job.getId()).toString(),
+               is(String.format("Job %d is completed", job.getId())));
+  }
+
+  @Test
+  public void queuedJobs()
+    throws Exception
+  {
+    final JobRegistry jobRegistry = new JobRegistry(1);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final Job first = jobRegistry.submit("first", () -> {
+      release.await();
+      return "First";
+    }, null, release::countDown);
+    final Job second = jobRegistry.submit("second", () -> "Second", null, null);
+    final Job third = jobRegistry.submit("third", () -> "Third", null, null);
+
+    // Only one job runs at a time
+    assertThat(second.getStatus(), is(Job.Status.queued));
+    assertThat(second.isRunning(), is(true));
+    assertThat(third.cancel(), is(true));
+
+    release.countDown();
+    assertThat(first.await(), is("First"));
+    assertThat(second.await(), is("Second"));
+    assertThat(third.getStatus(), is(Job.Status.cancelled));
+  }
+
+  @Test
+  public void startedJobs()
+    throws Exception
+  {
+    final JobRegistry jobRegistry = new JobRegistry(1);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final Job background = jobRegistry.submit("background", () -> {
+      release.await();
+      return "Background";
+    }, null, release::countDown);
+    final Job queued = jobRegistry.submit("queued", () -> "Queued", null, null);
+
+    // Jobs that the shell waits for do not queue behind background jobs
+    final Job foreground = jobRegistry.start("foreground",
+                                             () -> "Foreground",
+                                             null,
+                                             null);
+    assertThat(foreground.await(), is("Foreground"));
+    assertThat(queued.getStatus(), is(Job.Status.queued));
+    assertThat(jobRegistry.getJobs().size(), is(3));
+
+    release.countDown();
+    assertThat(background.await(), is("Background"));
+    assertThat(queued.await(), is("Queued"));
+  }
+
+  @Before
+  public void setup()
+    throws SQLException
+  {
+    final StandardMethodTargetRegistrar registrar = new StandardMethodTargetRegistrar();
+    registrar.setApplicationContext(context);
+    registrar.register(registry);
+
+    // Create a connection
+    final ConnectCommands connectCommands = new ConnectCommands(state);
+    connectCommands
+      .connectUrl("jdbc:hsqldb:hsql://localhost:9001/schemacrawler", "sa", "");
+  }
+
+  @After
+  public void sweep()
+  {
+    state.sweep();
+  }
+
+  @Test
+  public void waitForJob()
+  {
+    final String command = "wait";
+    final String commandMethod = "waitForJob";
+
+    final MethodTarget commandTarget = lookupCommand(registry, command);
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getGroup(), is("7. Job Commands"));
+    assertThat(commandTarget.getHelp(),
+               is("Wait for a background job to finish"));
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             commandMethod,
+                             int.class)));
+    assertThat(commandTarget.getAvailability().isAvailable(), is(true));
+
+    assertThat(invoke(commandTarget, 0).toString(), is("No job found"));
+
+    final LoadCommands loadCommands = new LoadCommands(state);
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, true).toString(),
+               startsWith("Started job"));
+
+    assertThat(invoke(commandTarget, 0).toString(), is("Loaded catalog"));
+    assertThat(state.isLoaded(), is(true));
+    assertThat(state.getCatalog().getTables().size(), is(19));
+  }
+
+}
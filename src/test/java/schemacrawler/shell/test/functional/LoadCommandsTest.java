@@ -31,13 +31,26 @@ package schemacrawler.shell.test.functional;
 
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.StringContains.containsString;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.springframework.util.ReflectionUtils.findMethod;
 
+import java.io.StringWriter;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.sql.DataSource;
 
 import org.jline.utils.AttributedString;
 import org.junit.After;
@@ -52,13 +65,30 @@ import org.springframework.shell.standard.StandardMethodTargetRegistrar;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import schemacrawler.schema.Catalog;
+import schemacrawler.schema.Column;
+import schemacrawler.schema.ForeignKey;
+import schemacrawler.schema.ForeignKeyColumnReference;
+import schemacrawler.schema.Schema;
+import schemacrawler.schema.Table;
+import schemacrawler.schema.TableRelationshipType;
+import schemacrawler.schemacrawler.Config;
 import schemacrawler.schemacrawler.InfoLevel;
 import schemacrawler.schemacrawler.SchemaCrawlerException;
+import schemacrawler.shell.catalog.CatalogLoadProgress;
+import schemacrawler.shell.catalog.MergedCatalog;
+import schemacrawler.shell.catalog.UpgradedCatalog;
 import schemacrawler.shell.commands.ConnectCommands;
 import schemacrawler.shell.commands.LoadCommands;
+import schemacrawler.shell.jdbc.MonitoredJdbc;
+import schemacrawler.shell.state.PooledDataSource;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
 import schemacrawler.shell.test.TestSchemaCrawlerShellState;
+import schemacrawler.tools.executable.CommandDaisyChain;
+import schemacrawler.tools.executable.SchemaCrawlerCommand;
+import schemacrawler.tools.options.OutputOptionsBuilder;
+import schemacrawler.tools.options.TextOutputFormat;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {
@@ -90,12 +120,27 @@ public class LoadCommandsTest
     assertThat(commandTarget.getMethod(),
                is(findMethod(COMMANDS_CLASS_UNDER_TEST,
                              commandMethod,
-                             InfoLevel.class)));
+                             InfoLevel.class,
+                             boolean.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             String.class,
+                             InfoLevel.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     assertThat(state.getCatalog(), nullValue());
 
-    final Object returnValue = invoke(commandTarget, InfoLevel.standard);
+    final Object returnValue = invoke(commandTarget,
+                                      InfoLevel.standard,
+                                      false,
+                                      false,
+                                      1,
+                                      false,
+                                      "",
+                                      InfoLevel.maximum,
+                                      false);
 
     assertThat(returnValue, notNullValue());
     assertThat(returnValue, is(instanceOf(AttributedString.class)));
@@ -105,6 +150,335 @@ public class LoadCommandsTest
     assertThat(state.getCatalog().getTables().size(), is(19));
   }
 
+  @Test
+  public void cancelledLoadReleasesConnections()
+    throws SQLException
+  {
+    final CatalogLoadProgress progress = new CatalogLoadProgress();
+    progress.cancel();
+    final DataSource dataSource = MonitoredJdbc
+      .monitor(state.getDataSource(), progress);
+    try
+    {
+      dataSource.getConnection();
+      fail("Got a connection for a cancelled load");
+    }
+    catch (final SQLException e)
+    {
+      assertThat(e.getMessage(), is("Catalog load was cancelled"));
+    }
+    assertThat(((PooledDataSource) state.getDataSource()).getNumActive(),
+               is(0));
+  }
+
+  @Test
+  public void loadCatalogInParallel()
+    throws Exception
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+    final List<String> serialTables = tableNames(state.getCatalog());
+    final List<String> serialSchemas = schemaNames(state.getCatalog());
+    final String serialOutput = render(state.getCatalog());
+    assertThat(serialOutput, containsString("Foreign Keys"));
+
+    final Object returnValue = loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 4, false, "", InfoLevel.maximum, false);
+    assertThat(returnValue.toString(), startsWith("Loaded catalog"));
+
+    final Catalog catalog = state.getCatalog();
+    assertThat(catalog, is(instanceOf(MergedCatalog.class)));
+    assertThat(tableNames(catalog), is(serialTables));
+    assertThat(schemaNames(catalog), is(serialSchemas));
+    for (final Table table: catalog.getTables())
+    {
+      assertThat(catalog.lookupTable(table.getSchema(), table.getName())
+        .isPresent(), is(true));
+      assertThat(catalog.getTables(table.getSchema()).contains(table),
+                 is(true));
+      // Tables in other schemas that are referenced by foreign keys are
+      // found in the merged catalog
+      for (final ForeignKey foreignKey: table.getForeignKeys())
+      {
+        for (final ForeignKeyColumnReference columnReference: foreignKey)
+        {
+          final Table pkTable = columnReference.getPrimaryKeyColumn()
+            .getParent();
+          assertThat(pkTable.getFullName(),
+                     catalog.lookupTable(pkTable.getSchema(),
+                                         pkTable.getName())
+                       .isPresent(),
+                     is(serialTables.contains(pkTable.getFullName())));
+        }
+      }
+    }
+
+    // Same output, including foreign keys across schemas
+    assertThat(render(catalog), is(serialOutput));
+  }
+
+  @Test
+  public void loadCatalogWithDetailTables()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.minimum,
+                             false,
+                             false,
+                             1,
+                             false,
+                             "",
+                             InfoLevel.maximum,
+                             false);
+    final List<String> minimumTables = tableNames(state.getCatalog());
+    Collections.sort(minimumTables);
+    final int minimumRoutineCount = state.getCatalog().getRoutines().size();
+
+    final Object returnValue = loadCommands.loadCatalog(InfoLevel.minimum,
+                                                        false,
+                                                        false,
+                                                        1,
+                                                        false,
+                                                        ".*\\.AUTHORS",
+                                                        InfoLevel.maximum,
+                                                        false);
+    assertThat(returnValue.toString(), is("Loaded catalog"));
+
+    // Tables are ordered by the foreign keys of the detail tables, so
+    // compare table names in alphabetical order
+    final Catalog catalog = state.getCatalog();
+    final List<String> tables = tableNames(catalog);
+    Collections.sort(tables);
+    assertThat(tables, is(minimumTables));
+    assertThat(catalog.getRoutines().size(), is(minimumRoutineCount));
+    for (final Table table: catalog.getTables())
+    {
+      final boolean isDetailTable = table.getName().equals("AUTHORS");
+      assertThat(table.getFullName(),
+                 table.getColumns().isEmpty(),
+                 is(!isDetailTable));
+      assertThat(catalog.lookupTable(table.getSchema(), table.getName())
+        .get(), is(table));
+    }
+  }
+
+  @Test
+  public void loadCatalogWithDetailTablesForeignKeys()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.standard,
+                             false,
+                             false,
+                             1,
+                             false,
+                             ".*\\.AUTHORS",
+                             InfoLevel.maximum,
+                             false);
+
+    // Foreign keys between the detail tables and the other tables
+    // reference the loaded tables at both ends
+    final Catalog catalog = state.getCatalog();
+    assertLinked(catalog);
+    final Schema schema = catalog.lookupSchema("PUBLIC.BOOKS").get();
+    final Table authors = catalog.lookupTable(schema, "AUTHORS").get();
+    final Table bookAuthors = catalog.lookupTable(schema, "BOOKAUTHORS").get();
+    assertThat(authors.getRelatedTables(TableRelationshipType.child).stream()
+      .anyMatch(table -> table == bookAuthors), is(true));
+    assertThat(bookAuthors.getRelatedTables(TableRelationshipType.parent)
+      .stream().anyMatch(table -> table == authors), is(true));
+    assertThat(bookAuthors.getColumns().isEmpty(), is(false));
+    for (final ForeignKey foreignKey: bookAuthors.getImportedForeignKeys())
+    {
+      for (final ForeignKeyColumnReference columnReference: foreignKey)
+      {
+        assertThat(columnReference.getPrimaryKeyColumn().getParent()
+          .getColumns().isEmpty(), is(false));
+      }
+    }
+  }
+
+  @Test
+  public void refreshCatalog()
+    throws SQLException
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    final MethodTarget commandTarget = lookupCommand(registry,
+                                                     "refresh-catalog");
+    assertThat(commandTarget, notNullValue());
+    assertThat(commandTarget.getMethod(),
+               is(findMethod(COMMANDS_CLASS_UNDER_TEST,
+                             "refreshCatalog",
+                             String.class)));
+
+    state.setSnapshotDdlMarkers(true);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+    assertThat(invoke(commandTarget, "").toString(), is("Catalog is up to date"));
+
+    try
+    {
+      executeDdl("ALTER TABLE BOOKS.AUTHORS ADD COLUMN REFRESH_NOTE VARCHAR(10)",
+                 "CREATE TABLE BOOKS.REFRESH_TEST (ID INTEGER)");
+      assertThat(invoke(commandTarget, "").toString(),
+                 startsWith("Refreshed catalog, with 1 changed, 1 added and 0 dropped tables"));
+
+      final Catalog catalog = state.getCatalog();
+      assertThat(catalog.getTables().size(), is(20));
+      final Schema schema = catalog.lookupSchema("PUBLIC.BOOKS").get();
+      assertThat(catalog.lookupTable(schema, "AUTHORS").get()
+        .lookupColumn("REFRESH_NOTE").isPresent(), is(true));
+      assertThat(catalog.lookupTable(schema, "REFRESH_TEST").isPresent(),
+                 is(true));
+    }
+    finally
+    {
+      executeDdl("ALTER TABLE BOOKS.AUTHORS DROP COLUMN REFRESH_NOTE",
+                 "DROP TABLE BOOKS.REFRESH_TEST");
+    }
+
+    assertThat(invoke(commandTarget, "").toString(),
+               startsWith("Refreshed catalog, with 1 changed, 0 added and 1 dropped tables"));
+    assertThat(tableNames(state.getCatalog()).size(), is(19));
+  }
+
+  @Test
+  public void refreshCatalogTables()
+    throws SQLException
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    state.setSnapshotDdlMarkers(true);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+    try
+    {
+      executeDdl("ALTER TABLE BOOKS.AUTHORS ADD COLUMN REFRESH_NOTE VARCHAR(10)");
+      final Object returnValue = loadCommands.refreshCatalog(".*\\.AUTHORS");
+      assertThat(returnValue.toString(),
+                 startsWith("Refreshed catalog, with 1 changed, 0 added and 0 dropped tables"));
+    }
+    finally
+    {
+      executeDdl("ALTER TABLE BOOKS.AUTHORS DROP COLUMN REFRESH_NOTE");
+    }
+
+    final Catalog catalog = state.getCatalog();
+    assertThat(catalog.getTables().size(), is(19));
+    final Table authors = catalog
+      .lookupTable(catalog.lookupSchema("PUBLIC.BOOKS").get(), "AUTHORS")
+      .get();
+    assertThat(authors.lookupColumn("REFRESH_NOTE").isPresent(), is(true));
+    assertThat(authors.getRelatedTables(TableRelationshipType.child).isEmpty(),
+               is(false));
+
+    // Foreign keys to the refreshed table reference it, and not the
+    // table that it replaced
+    for (final Table table: catalog.getTables())
+    {
+      for (final ForeignKey foreignKey: table.getForeignKeys())
+      {
+        for (final ForeignKeyColumnReference columnReference: foreignKey)
+        {
+          final Table pkTable = columnReference.getPrimaryKeyColumn()
+            .getParent();
+          if (pkTable.getFullName().equals(authors.getFullName()))
+          {
+            assertThat(pkTable == authors, is(true));
+          }
+        }
+      }
+    }
+    assertLinked(catalog);
+
+    // Two hops away from the refreshed table, BOOKS reaches it through
+    // BOOKAUTHORS
+    final Schema schema = catalog.lookupSchema("PUBLIC.BOOKS").get();
+    final Table books = catalog.lookupTable(schema, "BOOKS").get();
+    final Table bookAuthors = catalog.lookupTable(schema, "BOOKAUTHORS").get();
+    assertThat(books.getRelatedTables(TableRelationshipType.child).stream()
+      .anyMatch(table -> table == bookAuthors), is(true));
+    assertThat(bookAuthors.getRelatedTables(TableRelationshipType.parent)
+      .stream().anyMatch(table -> table == authors), is(true));
+  }
+
+  @Test
+  public void refreshCatalogWithoutDdlMarkers()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    state.setSnapshotDdlMarkers(false);
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+
+    assertThat(loadCommands.refreshCatalog("").toString(),
+               is("Catalog had no DDL markers, so recorded them for the next refresh"));
+    assertThat(loadCommands.refreshCatalog("").toString(),
+               is("Catalog is up to date"));
+  }
+
+  @Test
+  public void upgradeCatalog()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.minimum, false, false, 1, false, "", InfoLevel.maximum, false);
+    final Catalog minimumCatalog = state.getCatalog();
+    assertThat(tableColumnCount(minimumCatalog), is(0));
+
+    final Object returnValue = loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 1, true, "", InfoLevel.maximum, false);
+    assertThat(returnValue.toString(), is("Upgraded catalog"));
+
+    final Catalog catalog = state.getCatalog();
+    assertThat(catalog, is(instanceOf(UpgradedCatalog.class)));
+    assertThat(catalog.getTables().size(), is(19));
+    assertThat(tableColumnCount(catalog) > 0, is(true));
+    // Database information has no extra detail at the standard info
+    // level, so it is kept from the loaded catalog
+    assertThat(catalog.getDatabaseInfo() == minimumCatalog.getDatabaseInfo(),
+               is(true));
+
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 1, true, "", InfoLevel.maximum, false)
+      .toString(), is("Catalog already has the detail for the info level"));
+    assertThat(loadCommands
+      .loadCatalog(InfoLevel.minimum, false, false, 1, true, "", InfoLevel.maximum, false)
+      .toString(), is("Catalog already has the detail for the info level"));
+    assertThat(state.getCatalog(), is(catalog));
+  }
+
+  @Test
+  public void upgradeCatalogWithTableDetail()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.standard, false, false, 1, false, "", InfoLevel.maximum, false);
+
+    // Tables already have columns, which an upgrade would retrieve again
+    final Object returnValue = loadCommands
+      .loadCatalog(InfoLevel.maximum, false, false, 1, true, "", InfoLevel.maximum, false);
+    assertThat(returnValue.toString(), startsWith("Loaded catalog"));
+    assertThat(state.getCatalog(), is(not(instanceOf(UpgradedCatalog.class))));
+    assertThat(tableColumnCount(state.getCatalog()) > 0, is(true));
+  }
+
+  @Test
+  public void upgradeCatalogWithoutDetail()
+  {
+    final LoadCommands loadCommands = new LoadCommands(state);
+
+    loadCommands.loadCatalog(InfoLevel.minimum, false, false, 1, false, "", InfoLevel.maximum, false);
+    // Catalogs loaded by older versions do not record the detail they
+    // have
+    state.getCatalog()
+      .removeAttribute("schemacrawler.shell.schema_info_retrievals");
+
+    final Object returnValue = loadCommands
+      .loadCatalog(InfoLevel.standard, false, false, 1, true, "", InfoLevel.maximum, false);
+    assertThat(returnValue.toString(), startsWith("Loaded catalog"));
+    assertThat(tableColumnCount(state.getCatalog()) > 0, is(true));
+  }
+
   @Before
   public void setup()
     throws SchemaCrawlerException, SQLException
@@ -123,6 +497,100 @@ public class LoadCommandsTest
   public void sweep()
   {
     state.sweep();
+    state.setSnapshotDdlMarkers(false);
+  }
+
+  /**
+   * Checks that both ends of every foreign key are tables in the
+   * catalog, and not partial tables, or tables that were replaced.
+   */
+  private void assertLinked(final Catalog catalog)
+  {
+    for (final Table table: catalog.getTables())
+    {
+      for (final ForeignKey foreignKey: table.getForeignKeys())
+      {
+        for (final ForeignKeyColumnReference columnReference: foreignKey)
+        {
+          for (final Column column: Arrays
+            .asList(columnReference.getPrimaryKeyColumn(),
+                    columnReference.getForeignKeyColumn()))
+          {
+            final Table parent = column.getParent();
+            final Optional<? extends Table> catalogTable = catalog
+              .lookupTable(parent.getSchema(), parent.getName());
+            assertThat(column.getFullName(),
+                       catalogTable.isPresent() && catalogTable.get() == parent,
+                       is(true));
+          }
+        }
+      }
+    }
+  }
+
+  private void executeDdl(final String... sqls)
+    throws SQLException
+  {
+    try (final Connection connection = state.getDataSource().getConnection();
+        final Statement statement = connection.createStatement();)
+    {
+      for (final String sql: sqls)
+      {
+        statement.execute(sql);
+      }
+    }
+  }
+
+  private String render(final Catalog catalog)
+    throws Exception
+  {
+    final Config config = new Config();
+    config.put("schemacrawler.format.no_header", "true");
+    config.put("schemacrawler.format.no_footer", "true");
+    config.put("schemacrawler.format.no_schemacrawler_info", "true");
+
+    final StringWriter writer = new StringWriter();
+    final SchemaCrawlerCommand scCommand = new CommandDaisyChain("details");
+    scCommand.setSchemaCrawlerOptions(state.getSchemaCrawlerOptionsBuilder()
+      .toOptions());
+    scCommand.setOutputOptions(OutputOptionsBuilder
+      .newOutputOptions(TextOutputFormat.text, writer));
+    scCommand.setAdditionalConfiguration(config);
+    scCommand.setIdentifiers(state.getSchemaRetrievalOptionsBuilder()
+      .toOptions().getIdentifiers());
+    scCommand.setCatalog(catalog);
+    scCommand.execute();
+    return writer.toString();
+  }
+
+  private List<String> schemaNames(final Catalog catalog)
+  {
+    final List<String> schemaNames = new ArrayList<>();
+    for (final Schema schema: catalog.getSchemas())
+    {
+      schemaNames.add(schema.getFullName());
+    }
+    return schemaNames;
+  }
+
+  private int tableColumnCount(final Catalog catalog)
+  {
+    int columnCount = 0;
+    for (final Table table: catalog.getTables())
+    {
+      columnCount = columnCount + table.getColumns().size();
+    }
+    return columnCount;
+  }
+
+  private List<String> tableNames(final Catalog catalog)
+  {
+    final List<String> tableNames = new ArrayList<>();
+    for (final Table table: catalog.getTables())
+    {
+      tableNames.add(table.getFullName());
+    }
+    return tableNames;
   }
 
 }
@@ -124,7 +124,7 @@ public class TextOutputCommandsTest
 
     // Load schema
     final LoadCommands loadCommands = new LoadCommands(state);
-    loadCommands.loadCatalog(InfoLevel.minimum);
+    loadCommands.loadCatalog(InfoLevel.minimum, false, false, 1, false, "", InfoLevel.maximum, false);
   }
 
   @Test
@@ -120,7 +120,15 @@ public class ConnectCommandsIntegrationTest
                              String.class,
                              String.class,
                              String.class,
-                             String.class)));
+                             String.class,
+                             int.class,
+                             int.class,
+                             int.class,
+                             long.class,
+                             String.class,
+                             int.class,
+                             boolean.class,
+                             long.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     assertThat(shell.evaluate(() -> "is-connected"), is(false));
@@ -155,7 +163,15 @@ public class ConnectCommandsIntegrationTest
                              commandMethod,
                              String.class,
                              String.class,
-                             String.class)));
+                             String.class,
+                             int.class,
+                             int.class,
+                             int.class,
+                             long.class,
+                             String.class,
+                             int.class,
+                             boolean.class,
+                             long.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     assertThat(shell.evaluate(() -> "is-connected"), is(false));
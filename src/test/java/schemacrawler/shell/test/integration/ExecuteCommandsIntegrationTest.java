@@ -62,6 +62,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import schemacrawler.shell.commands.ExecuteCommands;
+import schemacrawler.shell.executable.OutputSink.Compression;
 import schemacrawler.shell.state.SchemaCrawlerShellState;
 import schemacrawler.shell.test.BaseSchemaCrawlerShellTest;
 import schemacrawler.shell.test.TestSchemaCrawlerShellState;
@@ -141,7 +142,21 @@ public class ExecuteCommandsIntegrationTest
                              commandMethod,
                              String.class,
                              String.class,
-                             String.class)));
+                             String.class,
+                             Compression.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             long.class,
+                             int.class,
+                             int.class,
+                             double.class,
+                             int.class,
+                             boolean.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     // Check state before invoking command
@@ -103,7 +103,8 @@ public class FilterCommandsIntegrationTest
                              commandMethod,
                              boolean.class,
                              int.class,
-                             int.class)));
+                             int.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     // Check state before invoking command
@@ -93,7 +93,14 @@ public class LoadCommandsIntegrationTest
     assertThat(commandTarget.getMethod(),
                is(findMethod(COMMANDS_CLASS_UNDER_TEST,
                              commandMethod,
-                             InfoLevel.class)));
+                             InfoLevel.class,
+                             boolean.class,
+                             boolean.class,
+                             int.class,
+                             boolean.class,
+                             String.class,
+                             InfoLevel.class,
+                             boolean.class)));
     assertThat(commandTarget.getAvailability().isAvailable(), is(true));
 
     assertThat(state.getCatalog(), nullValue());